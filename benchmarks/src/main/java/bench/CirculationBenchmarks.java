@@ -0,0 +1,74 @@
+package bench;
+
+import core.LibraryService;
+import entities.BookItem;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import transactions.Loan;
+import users.Borrower;
+
+/**
+ * Issue/return round trips through LibraryService (the same checks as
+ * actionIssueBook and actionReturnBook) and Borrower.getActiveLoans.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class CirculationBenchmarks {
+
+    // Each thread works its own slice of copies and borrowers, so threads
+    // measure the desk paths rather than collide on one copy
+    @State(Scope.Thread)
+    public static class Desk {
+        SplittableRandom rnd;
+        BookItem[] copies;
+        Borrower[] borrowers;
+
+        @Setup(Level.Trial)
+        public void slice(LibraryFixture f, ThreadParams t) {
+            rnd = new SplittableRandom(1234L + t.getThreadIndex());
+            int n = t.getThreadCount();
+            int i = t.getThreadIndex();
+            copies = slice(f.circulation, i, n);
+            borrowers = slice(f.borrowers, i, n);
+        }
+
+        private static <T> T[] slice(T[] all, int index, int count) {
+            int per = Math.max(1, all.length / count);
+            int from = Math.min(index * per, all.length - per);
+            return java.util.Arrays.copyOfRange(all, from, from + per);
+        }
+    }
+
+    @Benchmark
+    public Loan issueReturn(LibraryFixture f, Desk d) {
+        BookItem item = d.copies[d.rnd.nextInt(d.copies.length)];
+        Borrower who = d.borrowers[d.rnd.nextInt(d.borrowers.length)];
+        if (f.service.checkBorrower(who) != LibraryService.Outcome.OK)
+            return null;
+        LibraryService.Result issued = f.service.issue(f.desk, who.getId(), item.getBarcode());
+        if (!issued.isOk())
+            return null;
+        return f.service.returnItem(f.desk, item.getBarcode()).getLoan();
+    }
+
+    @Benchmark
+    public List<Loan> getActiveLoans(LibraryFixture f, Desk d) {
+        return f.holders[d.rnd.nextInt(f.holders.length)].getActiveLoans();
+    }
+}
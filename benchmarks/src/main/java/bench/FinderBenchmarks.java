@@ -0,0 +1,125 @@
+package bench;
+
+import core.CatalogAutocomplete;
+import core.CatalogFacets;
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transactions.Loan;
+import users.Person;
+
+/**
+ * Every LibraryDatabase finder, against a random key per call. Thread
+ * count comes from the command line (-t), see the README.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class FinderBenchmarks {
+
+    // Each thread draws its own keys
+    @State(Scope.Thread)
+    public static class Keys {
+        final SplittableRandom rnd = new SplittableRandom(1234);
+
+        <T> T pick(T[] values) {
+            return values[rnd.nextInt(values.length)];
+        }
+    }
+
+    @Benchmark
+    public BookTitle findBookByISBN(LibraryFixture f, Keys k) {
+        return f.db.findBookByISBN(k.pick(f.isbns));
+    }
+
+    @Benchmark
+    public BookItem findItemByBarcode(LibraryFixture f, Keys k) {
+        return f.db.findItemByBarcode(k.pick(f.barcodes));
+    }
+
+    @Benchmark
+    public Person findPersonById(LibraryFixture f, Keys k) {
+        return f.db.findPersonById(f.personIds[k.rnd.nextInt(f.personIds.length)]);
+    }
+
+    @Benchmark
+    public Author findAuthorByName(LibraryFixture f, Keys k) {
+        return f.db.findAuthorByName(k.pick(f.authorNames));
+    }
+
+    @Benchmark
+    public List<Author> findAuthorsLike(LibraryFixture f, Keys k) {
+        return f.db.findAuthorsLike(k.pick(f.authorNames).substring(1));
+    }
+
+    @Benchmark
+    public List<BookTitle> findTitlesByAuthor(LibraryFixture f, Keys k) {
+        return f.db.findTitlesByAuthor(k.pick(f.population.authors));
+    }
+
+    @Benchmark
+    public Loan findActiveLoanByBookItem(LibraryFixture f, Keys k) {
+        return f.db.findActiveLoanByBookItem(k.pick(f.loaned));
+    }
+
+    @Benchmark
+    public Loan findActiveLoanById(LibraryFixture f, Keys k) {
+        Loan l = f.db.findActiveLoanByBookItem(k.pick(f.loaned));
+        return l == null ? null : f.db.findActiveLoanById(l.getLoanID());
+    }
+
+    @Benchmark
+    public List<Loan> findLoansDueBetween(LibraryFixture f) {
+        LocalDate today = LocalDate.now();
+        return f.db.findLoansDueBetween(today, today.plusDays(1));
+    }
+
+    @Benchmark
+    public List<Loan> findOverdueLoans(LibraryFixture f) {
+        return f.db.findOverdueLoans(LocalDate.now());
+    }
+
+    @Benchmark
+    public BookTitle findBookByTitle(LibraryFixture f, Keys k) {
+        return f.db.findBookByTitle(k.pick(f.words));
+    }
+
+    @Benchmark
+    public List<BookTitle> searchCatalog(LibraryFixture f, Keys k) {
+        return f.service.search(k.pick(f.words) + " " + k.pick(f.words));
+    }
+
+    @Benchmark
+    public List<BookTitle> searchCatalogFuzzy(LibraryFixture f, Keys k) {
+        // Drop a letter, as a typo would
+        return f.db.searchCatalogFuzzy(k.pick(f.words).substring(1) + " " + k.pick(f.words));
+    }
+
+    @Benchmark
+    public CatalogFacets.Result filterCatalog(LibraryFixture f, Keys k) {
+        CatalogFacets.Selection s = new CatalogFacets.Selection()
+                .add(CatalogFacets.Facet.AUTHOR, k.pick(f.population.authors))
+                .add(CatalogFacets.Facet.AVAILABILITY, CatalogFacets.AVAILABLE);
+        return f.db.filterCatalog(s, 0, 50, 10);
+    }
+
+    @Benchmark
+    public List<CatalogAutocomplete.Suggestion> suggest(LibraryFixture f, Keys k) {
+        return f.db.suggest(k.pick(f.words).substring(0, 3), CatalogAutocomplete.MAX_SUGGESTIONS);
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import core.LibraryDatabase;
+import core.LibraryService;
+import entities.BookItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import users.Borrower;
+import users.Librarian;
+
+/**
+ * One synthetic library per catalog size (see {@link DataGenerator}),
+ * shared by every benchmark thread. The database is always in concurrent
+ * mode so the same fixture serves any -t. The last quarter of the copies
+ * is held open by 'holders' (3 loans each) for the loan finders; the rest
+ * circulates in the issue/return benchmarks.
+ */
+@State(Scope.Benchmark)
+public class LibraryFixture {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int size;
+
+    LibraryDatabase db;
+    LibraryService service;
+    Librarian desk;
+    DataGenerator.Population population;
+    String[] isbns;
+    String[] barcodes;
+    String[] authorNames;
+    int[] personIds;
+    String[] words;
+    BookItem[] circulation;
+    Borrower[] borrowers;
+    Borrower[] holders;
+    BookItem[] loaned;
+
+    @Setup(Level.Trial)
+    public void build() {
+        db = new LibraryDatabase(true);
+        service = new LibraryService(db);
+        desk = new Librarian(1, "Bench Desk", "desk", "desk@lib.com", 0);
+        db.addPerson(desk);
+        DataGenerator gen = new DataGenerator(42);
+        population = gen.populate(db, size, 1);
+        DataGenerator.Population p = population;
+
+        isbns = new String[p.titles.length];
+        for (int i = 0; i < isbns.length; i++) {
+            isbns[i] = p.titles[i].getIsbn();
+        }
+        barcodes = new String[p.items.length];
+        for (int i = 0; i < barcodes.length; i++) {
+            barcodes[i] = p.items[i].getBarcode();
+        }
+        authorNames = new String[p.authors.length];
+        for (int i = 0; i < authorNames.length; i++) {
+            authorNames[i] = p.authors[i].getName();
+        }
+        personIds = new int[p.borrowers.length];
+        for (int i = 0; i < personIds.length; i++) {
+            personIds[i] = p.borrowers[i].getId();
+        }
+        Random r = new Random(7);
+        words = new String[256];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = gen.randomWord(r);
+        }
+
+        int held = p.items.length / 4;
+        circulation = Arrays.copyOfRange(p.items, 0, p.items.length - held);
+        loaned = Arrays.copyOfRange(p.items, p.items.length - held, p.items.length);
+        borrowers = Arrays.copyOfRange(p.borrowers, 0, p.borrowers.length / 2);
+        List<Borrower> withLoans = new ArrayList<>();
+        int next = 0;
+        for (Borrower b : Arrays.copyOfRange(p.borrowers, p.borrowers.length / 2, p.borrowers.length)) {
+            for (int k = 0; k < 3 && next < loaned.length; k++) {
+                db.issueLoan(b, loaned[next++]);
+            }
+            withLoans.add(b);
+        }
+        holders = withLoans.toArray(new Borrower[0]);
+    }
+}
@@ -2,7 +2,14 @@ import core.LibrarySystem;
 
 public class Test {
 
-    public static void main(String[] args) {
+    // java Test                                   -> interactive menus
+    // java Test --batch <file|-> <userId> <password> [report|-]   -> batch commands
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 4 && args[0].equals("--batch")) {
+            boolean ok = new LibrarySystem().runBatch(args[1], Integer.parseInt(args[2]), args[3],
+                    args.length > 4 ? args[4] : "-");
+            System.exit(ok ? 0 : 1);
+        }
         new LibrarySystem().run();
     }
 }
@@ -0,0 +1,101 @@
+package bench;
+
+import core.LibraryDatabase;
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.util.Random;
+import users.Borrower;
+
+/**
+ * Builds synthetic, reproducible library populations for benchmarks and
+ * load tests. Titles are made of words from a fixed synthetic vocabulary,
+ * so keyword searches have realistic selectivity.
+ */
+public class DataGenerator {
+
+    // What was generated, for picking random keys during a run
+    public static class Population {
+        public final Author[] authors;
+        public final BookTitle[] titles;
+        public final BookItem[] items;
+        public final Borrower[] borrowers;
+
+        Population(Author[] authors, BookTitle[] titles, BookItem[] items, Borrower[] borrowers) {
+            this.authors = authors;
+            this.titles = titles;
+            this.items = items;
+            this.borrowers = borrowers;
+        }
+    }
+
+    private static final String[] SYLLABLES = { "ka", "lo", "mi", "ra", "ten", "vo", "shi", "an", "del", "or",
+            "pu", "zan", "ri", "el", "mor", "tha", "gu", "ne", "sil", "bra" };
+    private static final String[] GENRES = { "Fantasy", "Mystery", "Fiction", "Dystopian", "Satire", "History",
+            "Science", "Poetry", "Romance", "Horror", "Biography", "Travel" };
+    private static final String[] PUBLISHERS = { "Scholastic", "Houghton", "Harper", "Secker", "Kodansha",
+            "Penguin", "Vintage", "Tor", "Orbit", "Faber" };
+
+    // First borrower ID; staff/admin demo users sit below this
+    public static final int FIRST_BORROWER_ID = 100_000;
+
+    private final Random rnd;
+    private final String[] vocabulary;
+
+    public DataGenerator(long seed) {
+        this.rnd = new Random(seed);
+        this.vocabulary = new String[SYLLABLES.length * SYLLABLES.length];
+        int n = 0;
+        for (String a : SYLLABLES) {
+            for (String b : SYLLABLES) {
+                vocabulary[n++] = a + b;
+            }
+        }
+    }
+
+    public String randomWord(Random r) {
+        return vocabulary[r.nextInt(vocabulary.length)];
+    }
+
+    /**
+     * @param titles          number of BookTitles; items, authors and borrowers scale from it
+     * @param copiesPerTitle  BookItems created per title
+     */
+    public Population populate(LibraryDatabase db, int titles, int copiesPerTitle) {
+        Author[] authors = new Author[Math.max(50, titles / 20)];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = new Author(i + 1, capitalize(randomWord(rnd)) + " " + capitalize(randomWord(rnd)) + " " + i);
+            db.addAuthor(authors[i]);
+        }
+
+        BookTitle[] catalog = new BookTitle[titles];
+        BookItem[] items = new BookItem[titles * copiesPerTitle];
+        int barcode = 0;
+        for (int i = 0; i < titles; i++) {
+            String name = capitalize(randomWord(rnd)) + " " + randomWord(rnd) + " " + randomWord(rnd);
+            BookTitle t = new BookTitle("979-" + i, name, GENRES[rnd.nextInt(GENRES.length)],
+                    PUBLISHERS[rnd.nextInt(PUBLISHERS.length)]);
+            t.addAuthor(authors[rnd.nextInt(authors.length)]);
+            if (rnd.nextInt(10) == 0)
+                t.addAuthor(authors[rnd.nextInt(authors.length)]);
+            db.addBookTitle(t);
+            catalog[i] = t;
+            for (int c = 0; c < copiesPerTitle; c++) {
+                BookItem item = new BookItem("S" + barcode, t);
+                db.addBookItem(item);
+                items[barcode++] = item;
+            }
+        }
+
+        Borrower[] borrowers = new Borrower[Math.max(100, titles / 10)];
+        for (int i = 0; i < borrowers.length; i++) {
+            borrowers[i] = new Borrower(FIRST_BORROWER_ID + i, "Member " + i, "pw" + i, "member" + i + "@example.com");
+            db.addPerson(borrowers[i]);
+        }
+        return new Population(authors, catalog, items, borrowers);
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -0,0 +1,309 @@
+package bench;
+
+import core.LatencyHistogram;
+import core.LibraryDatabase;
+import core.LibraryJournal;
+import core.LibraryService;
+import entities.BookItem;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import users.Borrower;
+import users.Librarian;
+import users.Person;
+
+/**
+ * Headless load test for the desk workload. Builds a synthetic population
+ * (see {@link DataGenerator}), then runs N simulated sessions against
+ * {@link LibraryService}, each picking operations from a weighted mix of
+ * logins, searches, issues and returns, the same calls the menus make.
+ *
+ * Every session is a librarian at a desk with its own slice of copies, so
+ * issues and returns mostly succeed; whatever fails is counted by outcome.
+ * At the end it prints throughput, p50/p99/p999/max latency per operation
+ * and the error breakdown.
+ *
+ * Usage:
+ *   java -cp bin bench.LoadDriver [--titles 100000] [--copies 2] [--sessions 8]
+ *        [--warmup 5] [--duration 30] [--mix login=10,search=40,issue=25,return=25]
+ *        [--think-ms 0] [--journal load.journal] [--sync NONE|INTERVAL|EVERY_COMMIT]
+ */
+public class LoadDriver {
+
+    enum Op {
+        LOGIN, SEARCH, ISSUE, RETURN
+    }
+
+    // Per-session counters; merged once the run is over
+    static class Stats {
+        final Map<Op, LatencyHistogram> latency = new EnumMap<>(Op.class);
+        final Map<Op, Long> errors = new EnumMap<>(Op.class);
+        final Map<String, Long> errorKinds = new TreeMap<>();
+
+        Stats() {
+            for (Op op : Op.values()) {
+                latency.put(op, new LatencyHistogram());
+                errors.put(op, 0L);
+            }
+        }
+
+        void error(Op op, String kind) {
+            errors.merge(op, 1L, Long::sum);
+            errorKinds.merge(op + " " + kind, 1L, Long::sum);
+        }
+
+        void add(Stats other) {
+            for (Op op : Op.values()) {
+                latency.get(op).add(other.latency.get(op));
+                errors.merge(op, other.errors.get(op), Long::sum);
+            }
+            other.errorKinds.forEach((k, v) -> errorKinds.merge(k, v, Long::sum));
+        }
+    }
+
+    private static final String STAFF_PASSWORD = "desk";
+    private static final int FIRST_STAFF_ID = 10_000;
+
+    private int titles = 100_000;
+    private int copies = 2;
+    private int sessions = 8;
+    private int warmupSeconds = 5;
+    private int durationSeconds = 30;
+    private long thinkMillis = 0;
+    private int[] weights = { 10, 40, 25, 25 }; // by Op ordinal
+    private Path journalPath;
+    private LibraryJournal.SyncPolicy sync = LibraryJournal.SyncPolicy.INTERVAL;
+
+    private LibraryService service;
+    private DataGenerator generator;
+    private DataGenerator.Population population;
+
+    public static void main(String[] args) throws Exception {
+        LoadDriver d = new LoadDriver();
+        d.parse(args);
+        d.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String v = (i + 1 < args.length) ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--titles" -> titles = Integer.parseInt(v);
+                case "--copies" -> copies = Integer.parseInt(v);
+                case "--sessions" -> sessions = Integer.parseInt(v);
+                case "--warmup" -> warmupSeconds = Integer.parseInt(v);
+                case "--duration" -> durationSeconds = Integer.parseInt(v);
+                case "--think-ms" -> thinkMillis = Long.parseLong(v);
+                case "--mix" -> weights = parseMix(v);
+                case "--journal" -> journalPath = Paths.get(v);
+                case "--sync" -> sync = LibraryJournal.SyncPolicy.valueOf(v.toUpperCase());
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+    }
+
+    private static int[] parseMix(String spec) {
+        int[] w = new int[Op.values().length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            w[Op.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        return w;
+    }
+
+    private void run() throws Exception {
+        long start = System.nanoTime();
+        LibraryDatabase db = new LibraryDatabase(true);
+        generator = new DataGenerator(42);
+        population = generator.populate(db, titles, copies);
+        for (int s = 0; s < sessions; s++) {
+            db.addPerson(new Librarian(FIRST_STAFF_ID + s, "Desk " + s, STAFF_PASSWORD, "desk" + s + "@lib.com", 0));
+        }
+        System.out.printf(Locale.ROOT, "Population: %d titles, %d copies, %d authors, %d borrowers (%d ms)%n",
+                population.titles.length, population.items.length, population.authors.length,
+                population.borrowers.length, (System.nanoTime() - start) / 1_000_000);
+
+        LibraryJournal journal = null;
+        if (journalPath != null) {
+            Files.deleteIfExists(journalPath);
+            journal = LibraryJournal.open(journalPath, sync, 20);
+            db.attachJournal(journal);
+            System.out.println("Journal: " + journalPath + " (" + sync + ")");
+        }
+        service = new LibraryService(db);
+
+        try {
+            if (warmupSeconds > 0) {
+                System.out.println("Warmup " + warmupSeconds + " s ...");
+                phase(warmupSeconds);
+            }
+            System.out.println("Measuring " + durationSeconds + " s with " + sessions + " sessions ...");
+            long t0 = System.nanoTime();
+            Stats total = phase(durationSeconds);
+            report(total, (System.nanoTime() - t0) / 1e9);
+        } finally {
+            if (journal != null)
+                closeQuietly(journal);
+        }
+    }
+
+    private static void closeQuietly(LibraryJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Journal close failed: " + e.getMessage());
+        }
+    }
+
+    // Runs all sessions for 'seconds' and returns their merged stats
+    private Stats phase(int seconds) throws InterruptedException {
+        CountDownLatch go = new CountDownLatch(1);
+        Stats[] perSession = new Stats[sessions];
+        Thread[] threads = new Thread[sessions];
+        long[] deadline = new long[1];
+        for (int s = 0; s < sessions; s++) {
+            final int idx = s;
+            perSession[s] = new Stats();
+            threads[s] = new Thread(() -> {
+                try {
+                    go.await();
+                    new Session(idx, perSession[idx]).run(deadline[0]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "session-" + s);
+            threads[s].start();
+        }
+        deadline[0] = System.nanoTime() + seconds * 1_000_000_000L;
+        go.countDown();
+
+        Stats total = new Stats();
+        for (int s = 0; s < sessions; s++) {
+            threads[s].join();
+            total.add(perSession[s]);
+        }
+        return total;
+    }
+
+    // One simulated desk: a librarian login plus its own slice of copies
+    private class Session {
+        private final Stats stats;
+        private final Random rnd;
+        private final Person staff;
+        private final BookItem[] slice;
+        private final List<String> onLoan = new ArrayList<>();
+        private final int weightTotal;
+
+        Session(int idx, Stats stats) {
+            this.stats = stats;
+            this.rnd = new Random(1000L + idx);
+            this.staff = service.login(FIRST_STAFF_ID + idx, STAFF_PASSWORD);
+            BookItem[] items = population.items;
+            int per = Math.max(1, items.length / sessions);
+            int from = Math.min(items.length - 1, idx * per);
+            this.slice = Arrays.copyOfRange(items, from, Math.min(items.length, from + per));
+            int w = 0;
+            for (int x : weights) {
+                w += x;
+            }
+            this.weightTotal = w;
+        }
+
+        void run(long deadline) throws InterruptedException {
+            while (System.nanoTime() < deadline) {
+                Op op = pick();
+                long t = System.nanoTime();
+                String error = execute(op);
+                stats.latency.get(op).record(System.nanoTime() - t);
+                if (error != null)
+                    stats.error(op, error);
+                if (thinkMillis > 0)
+                    Thread.sleep(thinkMillis);
+            }
+            // Hand the copies back so the next phase starts from the same state
+            for (String barcode : onLoan) {
+                service.returnItem(staff, barcode);
+            }
+            onLoan.clear();
+        }
+
+        private Op pick() {
+            int r = rnd.nextInt(weightTotal);
+            for (Op op : Op.values()) {
+                r -= weights[op.ordinal()];
+                if (r < 0)
+                    return op;
+            }
+            return Op.SEARCH;
+        }
+
+        // Returns null on success, otherwise the kind of failure
+        private String execute(Op op) {
+            switch (op) {
+                case LOGIN -> {
+                    Borrower b = randomBorrower();
+                    int n = b.getId() - DataGenerator.FIRST_BORROWER_ID;
+                    return service.login(b.getId(), "pw" + n) != null ? null : "BAD_LOGIN";
+                }
+                case SEARCH -> {
+                    String q = generator.randomWord(rnd);
+                    if (rnd.nextBoolean())
+                        q = q + " " + generator.randomWord(rnd).substring(0, 2);
+                    service.search(q);
+                    return null;
+                }
+                case ISSUE -> {
+                    String barcode = slice[rnd.nextInt(slice.length)].getBarcode();
+                    LibraryService.Result r = service.issue(staff, randomBorrower().getId(), barcode);
+                    if (!r.isOk())
+                        return r.getOutcome().name();
+                    onLoan.add(barcode);
+                    return null;
+                }
+                default -> {
+                    String barcode = onLoan.isEmpty() ? slice[rnd.nextInt(slice.length)].getBarcode()
+                            : onLoan.remove(rnd.nextInt(onLoan.size()));
+                    LibraryService.Result r = service.returnItem(staff, barcode);
+                    return r.isOk() ? null : r.getOutcome().name();
+                }
+            }
+        }
+
+        private Borrower randomBorrower() {
+            return population.borrowers[rnd.nextInt(population.borrowers.length)];
+        }
+    }
+
+    private void report(Stats s, double seconds) {
+        long allOps = 0;
+        long allErrors = 0;
+        System.out.println();
+        System.out.printf("%-8s | %10s | %8s | %10s | %9s | %9s | %9s | %9s%n",
+                "Op", "Count", "Errors", "ops/s", "p50 us", "p99 us", "p999 us", "max us");
+        for (Op op : Op.values()) {
+            LatencyHistogram h = s.latency.get(op);
+            long err = s.errors.get(op);
+            allOps += h.getCount();
+            allErrors += err;
+            System.out.printf(Locale.ROOT, "%-8s | %10d | %8d | %10.0f | %9.1f | %9.1f | %9.1f | %9.1f%n",
+                    op, h.getCount(), err, h.getCount() / seconds, h.percentile(0.50) / 1e3,
+                    h.percentile(0.99) / 1e3, h.percentile(0.999) / 1e3, h.getMax() / 1e3);
+        }
+        System.out.printf(Locale.ROOT, "%-8s | %10d | %8d | %10.0f%n", "TOTAL", allOps, allErrors, allOps / seconds);
+        if (!s.errorKinds.isEmpty()) {
+            System.out.println("\nErrors by outcome:");
+            s.errorKinds.forEach((k, v) -> System.out.printf("  %-28s %d%n", k, v));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package core;
+
+import entities.BookItem;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import transactions.Loan;
+
+/**
+ * Open loans, indexed by the loaned copy and by loan ID.
+ * Every operation is a constant number of hash lookups. In concurrent
+ * mode both maps are ConcurrentHashMaps and issue/close use putIfAbsent
+ * and conditional remove, so no lock is held across the two maps.
+ */
+public class ActiveLoanRegistry {
+    private Map<BookItem, Loan> loansByItem;
+    private Map<Integer, Loan> loansById;
+    private DueDateIndex dueDates;
+
+    public ActiveLoanRegistry() {
+        this(false);
+    }
+
+    public ActiveLoanRegistry(boolean concurrent) {
+        if (concurrent) {
+            this.loansByItem = new ConcurrentHashMap<>();
+            this.loansById = new ConcurrentHashMap<>();
+        } else {
+            this.loansByItem = new HashMap<>();
+            this.loansById = new LinkedHashMap<>();
+        }
+        this.dueDates = new DueDateIndex();
+    }
+
+    // Returns false if the copy is already on loan or the loan ID is taken.
+    public boolean issue(Loan loan) {
+        if (loansByItem.putIfAbsent(loan.getBookItem(), loan) != null)
+            return false;
+        if (loansById.putIfAbsent(loan.getLoanID(), loan) != null) {
+            loansByItem.remove(loan.getBookItem(), loan);
+            return false;
+        }
+        dueDates.add(loan);
+        return true;
+    }
+
+    public Loan findByItem(BookItem item) {
+        return loansByItem.get(item);
+    }
+
+    public Loan findById(int loanID) {
+        return loansById.get(loanID);
+    }
+
+    public boolean close(Loan loan) {
+        if (!loansById.remove(loan.getLoanID(), loan))
+            return false;
+        loansByItem.remove(loan.getBookItem(), loan);
+        dueDates.remove(loan);
+        return true;
+    }
+
+    public DueDateIndex getDueDates() {
+        return dueDates;
+    }
+
+    public int size() {
+        return loansById.size();
+    }
+
+    // Read-only view (in issue order unless concurrent).
+    public Collection<Loan> values() {
+        return Collections.unmodifiableCollection(loansById.values());
+    }
+}
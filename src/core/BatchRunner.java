@@ -0,0 +1,140 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import transactions.Loan;
+import users.Person;
+
+/**
+ * Runs desk commands from a text stream instead of the menus, one command
+ * per line, fields separated by spaces or commas; blank lines and lines
+ * starting with '#' are skipped:
+ *
+ *   RETURN   barcode
+ *   ISSUE    borrowerId barcode
+ *   ADD_ITEM isbn barcode
+ *
+ * Each command goes through LibraryService as the given user, so the menu
+ * role rules apply (librarians issue and return, admins add items).
+ * Commands run in order, in batches: the journal is synced once per batch
+ * rather than once per command, and the batch's report lines
+ * ("line,result,command") are written only after that sync.
+ */
+public class BatchRunner {
+
+    public static class Summary {
+        public long lines;
+        public long executed;
+        public long ok;
+        public long failed;
+        public long millis;
+        public final Map<String, Long> failures = new TreeMap<>();
+
+        @Override
+        public String toString() {
+            return String.format("%d commands, %d ok, %d failed in %d ms", executed, ok, failed, millis);
+        }
+    }
+
+    private final LibraryService service;
+    private final Person actor;
+    private final int batchSize;
+
+    public BatchRunner(LibraryService service, Person actor, int batchSize) {
+        this.service = service;
+        this.actor = actor;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public Summary run(BufferedReader in, Writer report) throws IOException {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        LibraryJournal journal = service.getDatabase().getJournal();
+        if (journal != null)
+            journal.setCommitsDeferred(true);
+        try {
+            List<String> results = new ArrayList<>(batchSize);
+            String line;
+            while ((line = in.readLine()) != null) {
+                summary.lines++;
+                String cmd = line.trim();
+                if (cmd.isEmpty() || cmd.startsWith("#"))
+                    continue;
+
+                String result = execute(cmd);
+                summary.executed++;
+                if (result.startsWith("OK")) {
+                    summary.ok++;
+                } else {
+                    summary.failed++;
+                    summary.failures.merge(result, 1L, Long::sum);
+                }
+                results.add(summary.lines + "," + result + "," + cmd);
+                if (results.size() >= batchSize)
+                    endBatch(journal, results, report);
+            }
+            endBatch(journal, results, report);
+        } finally {
+            if (journal != null)
+                journal.setCommitsDeferred(false);
+        }
+        summary.millis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    // Makes the batch durable, then reports it
+    private void endBatch(LibraryJournal journal, List<String> results, Writer report) throws IOException {
+        if (journal != null)
+            journal.flush();
+        for (String r : results) {
+            report.write(r);
+            report.write('\n');
+        }
+        report.flush();
+        results.clear();
+    }
+
+    // Returns "OK..." or the reason the command failed
+    private String execute(String cmd) {
+        String[] f = cmd.split("[\\s,]+");
+        String op = f[0].toUpperCase();
+        try {
+            switch (op) {
+                case "RETURN" -> {
+                    if (f.length != 2)
+                        return "USAGE: RETURN barcode";
+                    LibraryService.Result r = service.returnItem(actor, f[1]);
+                    if (!r.isOk())
+                        return r.getOutcome().name();
+                    double fine = r.getLoan().calculateFine();
+                    return fine > 0 ? String.format(Locale.ROOT, "OK fine %.2f", fine) : "OK";
+                }
+                case "ISSUE" -> {
+                    if (f.length != 3)
+                        return "USAGE: ISSUE borrowerId barcode";
+                    LibraryService.Result r = service.issue(actor, Integer.parseInt(f[1]), f[2]);
+                    if (!r.isOk())
+                        return r.getOutcome().name();
+                    Loan loan = r.getLoan();
+                    return "OK due " + loan.getDueDate();
+                }
+                case "ADD_ITEM" -> {
+                    if (f.length != 3)
+                        return "USAGE: ADD_ITEM isbn barcode";
+                    return service.addItem(actor, f[1], f[2]).name();
+                }
+                default -> {
+                    return "UNKNOWN_COMMAND";
+                }
+            }
+        } catch (NumberFormatException e) {
+            return "BAD_NUMBER";
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package core;
+
+import entities.Author;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import transactions.Loan;
+
+/**
+ * Type-ahead suggestions over title and author names. Every word of a
+ * name is a term in a character trie, and each trie node keeps the
+ * MAX_SUGGESTIONS most popular titles/authors having a word that starts
+ * with the node's prefix, so a keystroke costs one walk down the trie.
+ *
+ * Popularity is the number of times a title was issued (for an author,
+ * the sum over their titles). It is seeded from the loan history and then
+ * follows the event ring; it only ever grows, so a loan only moves its
+ * title (and authors) up the lists along the paths of their words.
+ * Removing a title or author rebuilds the lists on those paths and prunes
+ * the trie nodes no other name needs.
+ *
+ * Earlier words of a multi-word query must match whole words; the last
+ * one is the prefix being typed.
+ */
+public class CatalogAutocomplete implements LibraryEventRing.Handler {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    public static class Suggestion {
+        public final String text;
+        public final Object target; // BookTitle or Author
+        public final long popularity;
+
+        Suggestion(Entry e) {
+            this.text = e.target instanceof BookTitle t ? t.getTitle() : ((Author) e.target).getName();
+            this.target = e.target;
+            this.popularity = e.weight;
+        }
+    }
+
+    private static final class Entry {
+        final Object target;
+        final String[] terms; // the trie's own instances, once linked
+        final int[] slots; // position in each term's postings
+        long weight;
+
+        Entry(Object target, String[] terms, long weight) {
+            this.target = target;
+            this.terms = terms;
+            this.slots = new int[terms.length];
+            this.weight = weight;
+        }
+
+        boolean hasTerm(String term) {
+            for (String t : terms) {
+                if (t.equals(term))
+                    return true;
+            }
+            return false;
+        }
+
+        boolean hasTermStartingWith(String prefix) {
+            for (String t : terms) {
+                if (t.startsWith(prefix))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Entries having one term, in no particular order. Weights and two
+     * 64-bit signatures (one bit per word, one per 1-3 character word start)
+     * are kept in flat arrays beside them, so a scan only touches the
+     * entries that can match.
+     */
+    private static final class Postings {
+        Entry[] entries = new Entry[2];
+        long[] weights = new long[2];
+        long[] words = new long[2];
+        long[] starts = new long[2];
+        int size;
+
+        void add(Entry e, int termIndex) {
+            if (size == entries.length) {
+                int n = size * 2;
+                entries = Arrays.copyOf(entries, n);
+                weights = Arrays.copyOf(weights, n);
+                words = Arrays.copyOf(words, n);
+                starts = Arrays.copyOf(starts, n);
+            }
+            entries[size] = e;
+            weights[size] = e.weight;
+            words[size] = wordBits(e.terms);
+            starts[size] = startBits(e.terms);
+            e.slots[termIndex] = size++;
+        }
+
+        // Swap-remove; the entry moved into the hole learns its new slot
+        void remove(Entry e, int termIndex, String term) {
+            int at = e.slots[termIndex];
+            int last = --size;
+            if (at != last) {
+                Entry moved = entries[last];
+                entries[at] = moved;
+                weights[at] = weights[last];
+                words[at] = words[last];
+                starts[at] = starts[last];
+                moved.slots[termIndexOf(moved, term)] = at;
+            }
+            entries[last] = null;
+        }
+
+        // The best of these entries, by scanning the weights only
+        Entry[] top() {
+            Entry[] best = new Entry[0];
+            for (int i = 0; i < size; i++) {
+                if (best.length < MAX_SUGGESTIONS || weights[i] > best[best.length - 1].weight)
+                    best = offer(best, entries[i]);
+            }
+            return best;
+        }
+    }
+
+    private static final class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        // Set on nodes that end a term: the term, its entries and the best of those
+        String term;
+        Postings postings;
+        Entry[] own;
+        // Best entries in this subtree, most popular first
+        Entry[] best = new Entry[0];
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0)
+                return children[i];
+            i = -i - 1;
+            Node n = new Node();
+            labels = insert(labels, i, c);
+            Node[] kids = new Node[children.length + 1];
+            System.arraycopy(children, 0, kids, 0, i);
+            kids[i] = n;
+            System.arraycopy(children, i, kids, i + 1, children.length - i);
+            children = kids;
+            return n;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i < 0)
+                return;
+            char[] rest = new char[labels.length - 1];
+            System.arraycopy(labels, 0, rest, 0, i);
+            System.arraycopy(labels, i + 1, rest, i, rest.length - i);
+            Node[] kids = new Node[children.length - 1];
+            System.arraycopy(children, 0, kids, 0, i);
+            System.arraycopy(children, i + 1, kids, i, kids.length - i);
+            labels = rest;
+            children = kids;
+        }
+
+        private static char[] insert(char[] a, int i, char c) {
+            char[] out = new char[a.length + 1];
+            System.arraycopy(a, 0, out, 0, i);
+            out[i] = c;
+            System.arraycopy(a, i, out, i + 1, a.length - i);
+            return out;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Map<Object, Entry> entries = new IdentityHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Set by the loader thread, closed by whoever calls stop()
+    private volatile LibraryEventRing.Subscription subscription;
+
+    // ==========================================
+    // CATALOG SYNC (called by LibraryDatabase)
+    // ==========================================
+    public void addTitle(BookTitle t) {
+        add(t, t.getTitle());
+    }
+
+    public void addAuthor(Author a) {
+        add(a, a.getName());
+    }
+
+    // Title or author removed
+    public void remove(Object target) {
+        lock.writeLock().lock();
+        try {
+            Entry e = entries.remove(target);
+            if (e != null)
+                unlink(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Title or author renamed; keeps its popularity
+    public void rename(Object target, String name) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.remove(target);
+            if (old == null)
+                return;
+            unlink(old);
+            link(new Entry(target, terms(name), old.weight));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Object target, String name) {
+        lock.writeLock().lock();
+        try {
+            if (!entries.containsKey(target))
+                link(new Entry(target, terms(name), 0));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==========================================
+    // QUERIES
+    // ==========================================
+    /**
+     * Up to 'limit' (at most MAX_SUGGESTIONS) titles and authors for what
+     * has been typed so far, most popular first.
+     */
+    public List<Suggestion> suggest(String typed, int limit) {
+        List<String> tokens = CatalogSearchIndex.tokenize(typed);
+        limit = Math.min(limit, MAX_SUGGESTIONS);
+        if (tokens.isEmpty() || limit <= 0)
+            return List.of();
+        String prefix = tokens.get(tokens.size() - 1);
+        List<String> words = tokens.subList(0, tokens.size() - 1);
+
+        lock.readLock().lock();
+        try {
+            Node node = find(prefix);
+            if (node == null)
+                return List.of();
+            List<Suggestion> out = new ArrayList<>(limit);
+            for (Entry e : node.best) {
+                if (out.size() == limit)
+                    break;
+                if (hasAll(e, words))
+                    out.add(new Suggestion(e));
+            }
+            if (out.size() == limit || node.best.length < MAX_SUGGESTIONS || words.isEmpty())
+                return out;
+            return scanRarest(words, prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The node's best didn't have enough with all the earlier words: walk the
+    // entries of the rarest earlier word instead
+    private List<Suggestion> scanRarest(List<String> words, String prefix, int limit) {
+        Postings rarest = null;
+        for (String w : words) {
+            Node n = find(w);
+            if (n == null || n.postings == null)
+                return List.of();
+            if (rarest == null || n.postings.size < rarest.size)
+                rarest = n.postings;
+        }
+        long needWords = wordBits(words.toArray(String[]::new));
+        long needStart = startBit(prefix, Math.min(prefix.length(), START_CHARS));
+        PriorityQueue<Entry> top = new PriorityQueue<>((a, b) -> Long.compare(a.weight, b.weight));
+        for (int i = 0; i < rarest.size; i++) {
+            if ((rarest.words[i] & needWords) != needWords || (rarest.starts[i] & needStart) == 0)
+                continue;
+            if (top.size() == limit && rarest.weights[i] <= top.peek().weight)
+                continue;
+            Entry e = rarest.entries[i];
+            if (!e.hasTermStartingWith(prefix) || !hasAll(e, words))
+                continue;
+            if (top.size() == limit)
+                top.poll();
+            top.add(e);
+        }
+        Suggestion[] out = new Suggestion[top.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = new Suggestion(top.poll());
+        }
+        return Arrays.asList(out);
+    }
+
+    private static boolean hasAll(Entry e, List<String> words) {
+        for (String w : words) {
+            if (!e.hasTerm(w))
+                return false;
+        }
+        return true;
+    }
+
+    // ==========================================
+    // POPULARITY
+    // ==========================================
+    /**
+     * Seeds popularity from the loan history on a background thread, then
+     * follows issues on the event ring from the cursor the history was
+     * taken at, so each loan is counted once.
+     */
+    public void trackPopularity(LibraryDatabase db, CirculationAnalytics history) {
+        LibraryEventRing events = db.getEvents();
+        Thread loader = new Thread(() -> {
+            CirculationAnalytics.Seed<Map<BookTitle, long[]>> issues = history.scanHistoryAtCursor(ISSUE_COUNTS);
+            lock.writeLock().lock();
+            try {
+                issues.result.forEach((t, n) -> issued(t, n[0]));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (events != null)
+                subscription = events.subscribe("autocomplete", issues.cursor, 1024, this);
+        }, "autocomplete-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public void stop() {
+        if (subscription != null)
+            subscription.close();
+    }
+
+    private static final CirculationAnalytics.HistoryScan<Map<BookTitle, long[]>> ISSUE_COUNTS =
+            new CirculationAnalytics.HistoryScan<>() {
+                @Override
+                public Map<BookTitle, long[]> create() {
+                    return new HashMap<>();
+                }
+
+                @Override
+                public void add(Map<BookTitle, long[]> acc, int loanID, int borrowerID, entities.BookItem item,
+                        long issueDay, long dueDay, long returnDay) {
+                    acc.computeIfAbsent(item.getBookTitle(), k -> new long[1])[0]++;
+                }
+
+                @Override
+                public Map<BookTitle, long[]> merge(Map<BookTitle, long[]> left, Map<BookTitle, long[]> right) {
+                    right.forEach((t, n) -> left.computeIfAbsent(t, k -> new long[1])[0] += n[0]);
+                    return left;
+                }
+            };
+
+    @Override
+    public void onEvent(LibraryEventRing.Event e) {
+        if (e.getType() != LibraryEventRing.Type.LOAN_ISSUED)
+            return;
+        BookTitle t = ((Loan) e.getSubject()).getBookItem().getBookTitle();
+        lock.writeLock().lock();
+        try {
+            issued(t, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Credits a title and its authors with 'n' issues
+    private void issued(BookTitle t, long n) {
+        raise(entries.get(t), n);
+        for (Author a : t.getAuthors()) {
+            raise(entries.get(a), n);
+        }
+    }
+
+    // ==========================================
+    // TRIE MAINTENANCE (write lock held)
+    // ==========================================
+    private void link(Entry e) {
+        entries.put(e.target, e);
+        Node[][] paths = new Node[e.terms.length][];
+        for (int t = 0; t < e.terms.length; t++) {
+            String term = e.terms[t];
+            Node n = root;
+            Node[] path = new Node[term.length() + 1];
+            path[0] = n;
+            for (int i = 0; i < term.length(); i++) {
+                n = n.addChild(term.charAt(i));
+                path[i + 1] = n;
+            }
+            if (n.postings == null) {
+                n.term = term;
+                n.postings = new Postings();
+                n.own = new Entry[0];
+            }
+            // Entries share the trie's term instances, so postings can match them by reference
+            e.terms[t] = n.term;
+            paths[t] = path;
+        }
+        for (int t = 0; t < e.terms.length; t++) {
+            Node[] path = paths[t];
+            Node n = path[path.length - 1];
+            n.postings.add(e, t);
+            n.own = offer(n.own, e);
+            for (Node p : path) {
+                p.best = offer(p.best, e);
+            }
+        }
+    }
+
+    private void unlink(Entry e) {
+        for (int t = 0; t < e.terms.length; t++) {
+            String term = e.terms[t];
+            Node[] path = path(term);
+            if (path == null)
+                continue;
+            Node n = path[path.length - 1];
+            n.postings.remove(e, t, n.term);
+            if (n.postings.size == 0) {
+                // No name has this word any more
+                n.term = null;
+                n.postings = null;
+                n.own = null;
+            } else if (contains(n.own, e)) {
+                n.own = n.postings.top();
+            }
+            // Deepest first: nodes left ending no term and leading nowhere are cut
+            // off, and each one kept merges its children's fresh lists
+            for (int i = path.length - 1; i >= 0; i--) {
+                Node p = path[i];
+                if (i > 0 && p.postings == null && p.children.length == 0) {
+                    path[i - 1].removeChild(term.charAt(i - 1));
+                } else if (contains(p.best, e)) {
+                    p.best = merge(p);
+                }
+            }
+        }
+    }
+
+    private void raise(Entry e, long n) {
+        if (e == null || n <= 0)
+            return;
+        e.weight += n;
+        for (int i = 0; i < e.terms.length; i++) {
+            Node[] path = path(e.terms[i]);
+            if (path == null)
+                continue;
+            Node last = path[path.length - 1];
+            last.postings.weights[e.slots[i]] = e.weight;
+            last.own = offer(last.own, e);
+            for (Node p : path) {
+                p.best = offer(p.best, e);
+            }
+        }
+    }
+
+    // Puts 'e' (new, or with a higher weight than before) in its place in a best list
+    private static Entry[] offer(Entry[] best, Entry e) {
+        int at = indexOf(best, e);
+        if (at < 0) {
+            if (best.length == MAX_SUGGESTIONS) {
+                if (e.weight <= best[best.length - 1].weight)
+                    return best;
+                at = best.length - 1;
+            } else {
+                best = Arrays.copyOf(best, best.length + 1);
+                at = best.length - 1;
+            }
+            best[at] = e;
+        }
+        while (at > 0 && best[at - 1].weight < e.weight) {
+            best[at] = best[at - 1];
+            best[--at] = e;
+        }
+        return best;
+    }
+
+    // A node's best from its own entries and its children's best lists
+    private static Entry[] merge(Node n) {
+        Entry[] best = new Entry[0];
+        if (n.own != null) {
+            for (Entry e : n.own) {
+                best = offer(best, e);
+            }
+        }
+        for (Node c : n.children) {
+            for (Entry e : c.best) {
+                best = offer(best, e);
+            }
+        }
+        return best;
+    }
+
+    private static boolean contains(Entry[] best, Entry e) {
+        return indexOf(best, e) >= 0;
+    }
+
+    private static int indexOf(Entry[] best, Entry e) {
+        for (int i = 0; i < best.length; i++) {
+            if (best[i] == e)
+                return i;
+        }
+        return -1;
+    }
+
+    // Trie size, for tests and memory checks
+    int nodeCount() {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            List<Node> pending = new ArrayList<>(List.of(root));
+            while (!pending.isEmpty()) {
+                Node node = pending.remove(pending.size() - 1);
+                n++;
+                pending.addAll(Arrays.asList(node.children));
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node find(String prefix) {
+        Node n = root;
+        for (int i = 0; i < prefix.length() && n != null; i++) {
+            n = n.child(prefix.charAt(i));
+        }
+        return n;
+    }
+
+    private Node[] path(String term) {
+        Node[] path = new Node[term.length() + 1];
+        Node n = root;
+        path[0] = n;
+        for (int i = 0; i < term.length(); i++) {
+            n = n.child(term.charAt(i));
+            if (n == null)
+                return null;
+            path[i + 1] = n;
+        }
+        return path;
+    }
+
+    private static int termIndexOf(Entry e, String term) {
+        for (int i = 0;; i++) {
+            if (e.terms[i] == term)
+                return i;
+        }
+    }
+
+    // ==========================================
+    // SIGNATURES
+    // ==========================================
+    private static final int START_CHARS = 3;
+
+    private static long wordBits(String[] terms) {
+        long bits = 0;
+        for (String t : terms) {
+            bits |= bit(t.hashCode());
+        }
+        return bits;
+    }
+
+    // A bit for every word start of up to START_CHARS characters
+    private static long startBits(String[] terms) {
+        long bits = 0;
+        for (String t : terms) {
+            for (int n = 1; n <= Math.min(t.length(), START_CHARS); n++) {
+                bits |= startBit(t, n);
+            }
+        }
+        return bits;
+    }
+
+    private static long startBit(String s, int n) {
+        int h = n;
+        for (int i = 0; i < n; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return bit(h);
+    }
+
+    private static long bit(int h) {
+        return 1L << ((h * 0x9E3779B9) >>> 26);
+    }
+
+    // Distinct words of a name
+    private static String[] terms(String name) {
+        return CatalogSearchIndex.tokenize(name == null ? "" : name).stream().distinct().toArray(String[]::new);
+    }
+}
@@ -0,0 +1,430 @@
+package core;
+
+import entities.Author;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Faceted filtering of the catalog by genre, publisher, author and
+ * availability. Every title gets a small dense id, and every facet value
+ * keeps a {@link CompressedBitmap} of the ids of its titles. A filter is a
+ * union of the chosen values within a facet, intersected across facets.
+ *
+ * Each facet also reports how many titles each of its values would match
+ * if it were added, given the choices in the other facets (so picking a
+ * genre still shows the counts of the other genres). Counts come from
+ * bitmap intersection sizes, or from walking the matches when there are
+ * only a few; for facets with many values (authors) and broad filters,
+ * only the values with the most titles overall are counted.
+ *
+ * Availability is kept live: titles report when they gain their first or
+ * lose their last copy on the shelf. The index has its own lock, taken
+ * after a title's monitor, never before.
+ */
+public class CatalogFacets implements BookTitle.AvailabilityListener {
+
+    public enum Facet {
+        GENRE, PUBLISHER, AUTHOR, AVAILABILITY
+    }
+
+    public static final String AVAILABLE = "available";
+    public static final String UNAVAILABLE = "unavailable";
+
+    // Matches up to this size are tallied directly instead of intersected per value
+    private static final int TALLY_LIMIT = 4096;
+    // Facets with more values than this only count their largest values on broad filters
+    private static final int MANY_VALUES = 256;
+    private static final int RANKED = 1024;
+    // Bases intersected with at least this many values are made dense first
+    private static final int PROBE_MANY = 4;
+    private static final long RANKING_REFRESH = 1_000_000_000L;
+
+    private static final class Ranking {
+        final Object[] keys; // largest first
+        final int version;
+        final long builtAt;
+
+        Ranking(Object[] keys, int version, long builtAt) {
+            this.keys = keys;
+            this.version = version;
+            this.builtAt = builtAt;
+        }
+    }
+
+    /**
+     * Chosen values per facet (genre/publisher names, Author objects,
+     * AVAILABLE/UNAVAILABLE); an empty or missing facet doesn't filter.
+     */
+    public static class Selection {
+        private final EnumMap<Facet, List<Object>> chosen = new EnumMap<>(Facet.class);
+
+        public Selection add(Facet facet, Object value) {
+            List<Object> values = chosen.computeIfAbsent(facet, f -> new ArrayList<>());
+            if (!values.contains(value))
+                values.add(value);
+            return this;
+        }
+
+        // Adds the value, or takes it out again if it was already chosen
+        public Selection toggle(Facet facet, Object value) {
+            List<Object> values = chosen.get(facet);
+            if (values != null && values.remove(value)) {
+                if (values.isEmpty())
+                    chosen.remove(facet);
+                return this;
+            }
+            return add(facet, value);
+        }
+
+        public Selection clear() {
+            chosen.clear();
+            return this;
+        }
+
+        public List<Object> get(Facet facet) {
+            return chosen.getOrDefault(facet, Collections.emptyList());
+        }
+
+        public boolean isEmpty() {
+            return chosen.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            chosen.forEach((facet, values) -> {
+                if (sb.length() > 0)
+                    sb.append("; ");
+                sb.append(facet.name().toLowerCase(Locale.ROOT)).append('=');
+                for (int i = 0; i < values.size(); i++) {
+                    if (i > 0)
+                        sb.append(" | ");
+                    sb.append(label(values.get(i)));
+                }
+            });
+            return sb.length() == 0 ? "(none)" : sb.toString();
+        }
+    }
+
+    public static class FacetCount {
+        public final Object value;
+        public final String label;
+        public final int count;
+
+        FacetCount(Object value, int count) {
+            this.value = value;
+            this.label = CatalogFacets.label(value);
+            this.count = count;
+        }
+    }
+
+    public static class Result {
+        public final int total;
+        public final List<BookTitle> titles;
+        public final Map<Facet, List<FacetCount>> facets;
+
+        Result(int total, List<BookTitle> titles, Map<Facet, List<FacetCount>> facets) {
+            this.total = total;
+            this.titles = titles;
+            this.facets = facets;
+        }
+    }
+
+    // title <-> dense id; ids of removed titles are reused
+    private final Map<BookTitle, Integer> ids = new IdentityHashMap<>();
+    private BookTitle[] titles = new BookTitle[1024];
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+
+    // facet -> value key -> titles; genre/publisher keys are lower-cased names
+    private final EnumMap<Facet, Map<Object, CompressedBitmap>> values = new EnumMap<>(Facet.class);
+    // Display spelling of each genre/publisher key (the first one seen)
+    private final Map<String, String> spellings = new HashMap<>();
+    private final CompressedBitmap all = new CompressedBitmap();
+    // Bumped per facet when titles come or go (not on availability changes)
+    private final int[] versions = new int[Facet.values().length];
+    private final AtomicReferenceArray<Ranking> rankings = new AtomicReferenceArray<>(Facet.values().length);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CatalogFacets() {
+        for (Facet f : Facet.values()) {
+            values.put(f, new HashMap<>());
+        }
+        values.get(Facet.AVAILABILITY).put(AVAILABLE, new CompressedBitmap());
+        values.get(Facet.AVAILABILITY).put(UNAVAILABLE, new CompressedBitmap());
+    }
+
+    // Indexes a title, then follows its availability from now on
+    public void add(BookTitle t) {
+        lock.writeLock().lock();
+        try {
+            if (ids.containsKey(t))
+                return;
+            int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+            if (id == titles.length)
+                titles = Arrays.copyOf(titles, titles.length * 2);
+            titles[id] = t;
+            ids.put(t, id);
+            all.add(id);
+            bitmap(Facet.GENRE, key(t.getGenre()), t.getGenre()).add(id);
+            bitmap(Facet.PUBLISHER, key(t.getPublisher()), t.getPublisher()).add(id);
+            for (Author a : t.getAuthors()) {
+                bitmap(Facet.AUTHOR, a, null).add(id);
+            }
+            values.get(Facet.AVAILABILITY).get(UNAVAILABLE).add(id);
+            bumpVersions();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Reports the current availability straight away (under the title's lock)
+        t.setAvailabilityListener(this);
+    }
+
+    public void remove(BookTitle t) {
+        t.setAvailabilityListener(null);
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(t);
+            if (id == null)
+                return;
+            all.remove(id);
+            for (Facet f : Facet.values()) {
+                for (Object v : valuesOf(f, t, id)) {
+                    Map<Object, CompressedBitmap> facet = values.get(f);
+                    CompressedBitmap b = facet.get(v);
+                    if (b != null && b.remove(id) && b.isEmpty() && f != Facet.AVAILABILITY)
+                        facet.remove(v);
+                }
+            }
+            titles[id] = null;
+            if (freeCount == freeIds.length)
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            freeIds[freeCount++] = id;
+            bumpVersions();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drops an author's value (after the author was taken off their titles)
+    public void removeAuthor(Author a) {
+        lock.writeLock().lock();
+        try {
+            if (values.get(Facet.AUTHOR).remove(a) != null)
+                bumpVersions();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void bumpVersions() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+    }
+
+    @Override
+    public void availabilityChanged(BookTitle t, boolean available) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.get(t);
+            if (id == null)
+                return;
+            availability(available ? AVAILABLE : UNAVAILABLE).add(id);
+            availability(available ? UNAVAILABLE : AVAILABLE).remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return all.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Titles matching 'selection' (in catalog order, 'limit' of them from
+     * 'offset') plus, per facet, its 'facetLimit' values with the most
+     * matches, largest first.
+     */
+    public Result query(Selection selection, int offset, int limit, int facetLimit) {
+        lock.readLock().lock();
+        try {
+            // Union of the chosen values per facet (the index's own bitmap for a
+            // single value, read-only); a facet with no choice doesn't filter
+            EnumMap<Facet, CompressedBitmap> unions = new EnumMap<>(Facet.class);
+            for (Facet f : Facet.values()) {
+                List<Object> chosen = selection.get(f);
+                if (chosen.isEmpty())
+                    continue;
+                CompressedBitmap u = null;
+                for (Object v : chosen) {
+                    CompressedBitmap b = values.get(f).get(valueKey(f, v));
+                    if (b != null)
+                        u = u == null ? b : u.or(b);
+                }
+                unions.put(f, u == null ? new CompressedBitmap() : u);
+            }
+
+            // Leave-one-out intersections from prefix/suffix products, so each
+            // facet's base costs one AND at most instead of one per other facet
+            List<Facet> chosen = new ArrayList<>(unions.keySet());
+            int k = chosen.size();
+            CompressedBitmap[] prefix = new CompressedBitmap[k + 1];
+            CompressedBitmap[] suffix = new CompressedBitmap[k + 1];
+            prefix[0] = all;
+            suffix[k] = all;
+            for (int i = 0; i < k; i++) {
+                prefix[i + 1] = narrow(prefix[i], unions.get(chosen.get(i)));
+            }
+            for (int i = k - 1; i > 0; i--) {
+                suffix[i] = narrow(suffix[i + 1], unions.get(chosen.get(i)));
+            }
+            CompressedBitmap matches = prefix[k];
+            List<BookTitle> page = new ArrayList<>();
+            for (int id : matches.toArray(Math.max(0, offset), Math.max(0, limit))) {
+                page.add(titles[id]);
+            }
+
+            Map<Facet, List<FacetCount>> counts = new EnumMap<>(Facet.class);
+            for (Facet f : Facet.values()) {
+                int i = chosen.indexOf(f);
+                CompressedBitmap base = i < 0 ? matches : narrow(prefix[i], suffix[i + 1]);
+                counts.put(f, count(f, base, facetLimit));
+            }
+            return new Result(matches.getCardinality(), page, counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private CompressedBitmap narrow(CompressedBitmap base, CompressedBitmap filter) {
+        if (base == all)
+            return filter;
+        return filter == all ? base : base.and(filter);
+    }
+
+    private List<FacetCount> count(Facet f, CompressedBitmap base, int limit) {
+        Map<Object, CompressedBitmap> facet = values.get(f);
+        PriorityQueue<FacetCount> best = new PriorityQueue<>(Comparator.comparingInt((FacetCount c) -> c.count));
+        if (base != all && base.getCardinality() <= TALLY_LIMIT) {
+            Map<Object, int[]> tally = new HashMap<>();
+            base.forEach(id -> {
+                for (Object v : valuesOf(f, titles[id], id)) {
+                    tally.computeIfAbsent(v, k -> new int[1])[0]++;
+                }
+            });
+            tally.forEach((v, n) -> offer(best, f, v, n[0], limit));
+        } else {
+            Collection<Object> candidates = facet.size() <= MANY_VALUES ? facet.keySet() : ranking(f, limit * 4);
+            if (base != all && candidates.size() >= PROBE_MANY)
+                base = base.forProbing();
+            for (Object v : candidates) {
+                CompressedBitmap b = facet.get(v);
+                if (b != null)
+                    offer(best, f, v, base == all ? b.getCardinality() : b.andCardinality(base), limit);
+            }
+        }
+        List<FacetCount> out = new ArrayList<>(best);
+        out.sort(Comparator.comparingInt((FacetCount c) -> c.count).reversed());
+        return out;
+    }
+
+    private void offer(PriorityQueue<FacetCount> best, Facet f, Object key, int count, int limit) {
+        if (count == 0 || limit <= 0)
+            return;
+        if (best.size() < limit) {
+            best.add(new FacetCount(display(f, key), count));
+        } else if (count > best.peek().count) {
+            best.poll();
+            best.add(new FacetCount(display(f, key), count));
+        }
+    }
+
+    /**
+     * The first 'n' values of a facet by title count, from a ranking that is
+     * rebuilt when titles were added or removed since, at most once per
+     * RANKING_REFRESH, so bulk imports don't re-sort on every query.
+     */
+    private List<Object> ranking(Facet f, int n) {
+        Ranking r = rankings.get(f.ordinal());
+        long now = System.nanoTime();
+        if (r == null || (r.version != versions[f.ordinal()] && now - r.builtAt > RANKING_REFRESH)) {
+            Map<Object, CompressedBitmap> facet = values.get(f);
+            PriorityQueue<Map.Entry<Object, CompressedBitmap>> best = new PriorityQueue<>(
+                    Comparator.comparingInt((Map.Entry<Object, CompressedBitmap> e) -> e.getValue().getCardinality()));
+            for (Map.Entry<Object, CompressedBitmap> e : facet.entrySet()) {
+                best.add(e);
+                if (best.size() > RANKED)
+                    best.poll();
+            }
+            Object[] keys = new Object[best.size()];
+            for (int i = keys.length - 1; i >= 0; i--) {
+                keys[i] = best.poll().getKey();
+            }
+            r = new Ranking(keys, versions[f.ordinal()], now);
+            rankings.set(f.ordinal(), r);
+        }
+        return Arrays.asList(r.keys).subList(0, Math.min(n, r.keys.length));
+    }
+
+    // Value keys a title is indexed under in one facet
+    private List<Object> valuesOf(Facet f, BookTitle t, int id) {
+        return switch (f) {
+            case GENRE -> List.of(key(t.getGenre()));
+            case PUBLISHER -> List.of(key(t.getPublisher()));
+            case AUTHOR -> new ArrayList<>(t.getAuthors());
+            case AVAILABILITY -> List.of(availability(AVAILABLE).contains(id) ? AVAILABLE : UNAVAILABLE);
+        };
+    }
+
+    private CompressedBitmap bitmap(Facet f, Object key, String spelling) {
+        if (spelling != null)
+            spellings.putIfAbsent((String) key, spelling);
+        return values.get(f).computeIfAbsent(key, k -> new CompressedBitmap());
+    }
+
+    private CompressedBitmap availability(String value) {
+        return values.get(Facet.AVAILABILITY).get(value);
+    }
+
+    // Selection values as index keys: names are matched case-insensitively
+    private static Object valueKey(Facet f, Object v) {
+        return (f == Facet.GENRE || f == Facet.PUBLISHER) ? key((String) v) : v;
+    }
+
+    private Object display(Facet f, Object key) {
+        return (f == Facet.GENRE || f == Facet.PUBLISHER) ? spellings.getOrDefault(key, (String) key) : key;
+    }
+
+    private static String key(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String label(Object value) {
+        if (value instanceof Author a)
+            return a.getName();
+        String s = String.valueOf(value);
+        return s.isEmpty() ? "(none)" : s;
+    }
+}
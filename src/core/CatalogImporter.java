@@ -0,0 +1,296 @@
+package core;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import users.Borrower;
+
+/**
+ * Streaming CSV import for titles, items and borrowers.
+ *
+ * The file is read line by line and cut into batches; worker threads parse
+ * and validate batches while the calling thread inserts finished batches in
+ * file order. At most two batches per worker are in flight, so memory use
+ * does not depend on file size. Rejected rows are written to a reject file
+ * as "line,reason,original row".
+ *
+ * Expected columns (one header row is skipped if present):
+ *   TITLES:    isbn,title,genre,publisher,authors   (authors separated by ';')
+ *   ITEMS:     barcode,isbn
+ *   BORROWERS: id,name,password,contact
+ */
+public class CatalogImporter {
+
+    public enum Kind {
+        TITLES("isbn", 5),
+        ITEMS("barcode", 2),
+        BORROWERS("id", 4);
+
+        private final String header;
+        private final int columns;
+
+        Kind(String header, int columns) {
+            this.header = header;
+            this.columns = columns;
+        }
+    }
+
+    public static class Result {
+        public long rows;
+        public long imported;
+        public long rejected;
+        public long millis;
+
+        @Override
+        public String toString() {
+            return String.format("%d rows, %d imported, %d rejected in %d ms", rows, imported, rejected, millis);
+        }
+    }
+
+    // One parsed line; 'error' is set if it failed validation on the worker
+    private static class Row {
+        final long line;
+        final String raw;
+        final String[] fields;
+        final String error;
+
+        Row(long line, String raw, String[] fields, String error) {
+            this.line = line;
+            this.raw = raw;
+            this.fields = fields;
+            this.error = error;
+        }
+    }
+
+    private final LibraryDatabase db;
+    private final int threads;
+    private final int batchSize;
+    private final PrintStream progress;
+    private final long progressEvery;
+
+    private int nextAuthorId;
+
+    public CatalogImporter(LibraryDatabase db) {
+        this(db, Runtime.getRuntime().availableProcessors(), 2000, null, 100_000);
+    }
+
+    /**
+     * @param progress      where to print progress lines, or null for none
+     * @param progressEvery print a progress line every this many rows
+     */
+    public CatalogImporter(LibraryDatabase db, int threads, int batchSize, PrintStream progress, long progressEvery) {
+        this.db = db;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.progress = progress;
+        this.progressEvery = Math.max(1, progressEvery);
+    }
+
+    public Result importFile(Kind kind, Path csv, Path rejects) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        nextAuthorId = 1;
+        for (Author a : db.getAuthors()) {
+            nextAuthorId = Math.max(nextAuthorId, a.getAuthorID() + 1);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<List<Row>>> inFlight = new ArrayDeque<>();
+        int window = threads * 2;
+
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+                BufferedWriter rejectOut = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8)) {
+            long lineNo = 0;
+            List<String> batch = new ArrayList<>(batchSize);
+            long batchStart = 1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (lineNo == 1 && isHeader(kind, line))
+                    continue;
+                if (batch.isEmpty())
+                    batchStart = lineNo;
+                batch.add(line);
+                if (batch.size() == batchSize) {
+                    submit(workers, inFlight, kind, batchStart, batch);
+                    batch = new ArrayList<>(batchSize);
+                    if (inFlight.size() >= window)
+                        insert(kind, await(inFlight.poll()), result, rejectOut);
+                }
+            }
+            if (!batch.isEmpty())
+                submit(workers, inFlight, kind, batchStart, batch);
+            while (!inFlight.isEmpty()) {
+                insert(kind, await(inFlight.poll()), result, rejectOut);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        if (progress != null)
+            progress.println("Import " + kind + " done: " + result);
+        return result;
+    }
+
+    private void submit(ExecutorService workers, ArrayDeque<Future<List<Row>>> inFlight, Kind kind, long firstLine,
+            List<String> lines) {
+        inFlight.add(workers.submit(() -> parseBatch(kind, firstLine, lines)));
+    }
+
+    private static List<Row> await(Future<List<Row>> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import worker failed", e.getCause());
+        }
+    }
+
+    // ==========================================
+    // PARSE (worker threads)
+    // ==========================================
+    private static List<Row> parseBatch(Kind kind, long firstLine, List<String> lines) {
+        List<Row> rows = new ArrayList<>(lines.size());
+        long lineNo = firstLine;
+        for (String raw : lines) {
+            rows.add(parseRow(kind, lineNo++, raw));
+        }
+        return rows;
+    }
+
+    private static Row parseRow(Kind kind, long lineNo, String raw) {
+        if (raw.isBlank())
+            return new Row(lineNo, raw, null, "blank line");
+        String[] f = splitCsv(raw);
+        if (f == null)
+            return new Row(lineNo, raw, null, "unterminated quote");
+        if (f.length < kind.columns)
+            return new Row(lineNo, raw, null, "expected " + kind.columns + " columns, got " + f.length);
+        for (int i = 0; i < kind.columns; i++) {
+            f[i] = f[i].trim();
+            // authors may be empty; every other column is required
+            if (f[i].isEmpty() && !(kind == Kind.TITLES && i == 4))
+                return new Row(lineNo, raw, null, "empty column " + (i + 1));
+        }
+        if (kind == Kind.BORROWERS) {
+            try {
+                Integer.parseInt(f[0]);
+            } catch (NumberFormatException e) {
+                return new Row(lineNo, raw, null, "id is not a number");
+            }
+        }
+        return new Row(lineNo, raw, f, null);
+    }
+
+    // RFC 4180 style: commas inside "..." are literal, "" is an escaped quote.
+    // Returns null on an unterminated quote (records can't span lines).
+    static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        if (quoted)
+            return null;
+        fields.add(cur.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static boolean isHeader(Kind kind, String line) {
+        int comma = line.indexOf(',');
+        String first = (comma < 0 ? line : line.substring(0, comma)).trim();
+        return first.equalsIgnoreCase(kind.header);
+    }
+
+    // ==========================================
+    // INSERT (calling thread, file order)
+    // ==========================================
+    private void insert(Kind kind, List<Row> rows, Result result, BufferedWriter rejectOut) throws IOException {
+        for (Row row : rows) {
+            String error = (row.error != null) ? row.error : apply(kind, row.fields);
+            result.rows++;
+            if (error == null) {
+                result.imported++;
+            } else {
+                result.rejected++;
+                rejectOut.write(row.line + "," + error + "," + row.raw);
+                rejectOut.newLine();
+            }
+            if (progress != null && result.rows % progressEvery == 0)
+                progress.printf("  %,d rows (%,d imported, %,d rejected)%n", result.rows, result.imported,
+                        result.rejected);
+        }
+    }
+
+    // Returns null on success, or the reason the row was rejected
+    private String apply(Kind kind, String[] f) {
+        switch (kind) {
+            case TITLES: {
+                if (db.findBookByISBN(f[0]) != null)
+                    return "duplicate ISBN";
+                BookTitle t = new BookTitle(f[0], f[1], f[2], f[3]);
+                for (String name : f[4].split(";")) {
+                    name = name.trim();
+                    if (name.isEmpty())
+                        continue;
+                    Author a = db.findAuthorByName(name);
+                    if (a == null) {
+                        a = new Author(nextAuthorId++, name);
+                        db.addAuthor(a);
+                    }
+                    t.addAuthor(a);
+                }
+                return db.addBookTitle(t) ? null : "duplicate ISBN";
+            }
+            case ITEMS: {
+                BookTitle t = db.findBookByISBN(f[1]);
+                if (t == null)
+                    return "unknown ISBN";
+                return db.addBookItem(new BookItem(f[0], t)) ? null : "duplicate barcode";
+            }
+            case BORROWERS: {
+                Borrower b = new Borrower(Integer.parseInt(f[0]), f[1], f[2], f[3]);
+                return db.addPerson(b) ? null : "duplicate person ID";
+            }
+            default:
+                return "unsupported kind";
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package core;
+
+import entities.Author;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted token index over title, author names, genre and publisher.
+ * A title matches when it contains every query token; the last token may
+ * be a prefix so partially typed words still match. Hits are ranked by
+ * the summed weight of the fields the tokens were found in.
+ *
+ * Fuzzy lookups ({@link #searchFuzzy}, {@link #authorsLike}) match every
+ * query word to the indexed words within a few edits instead, through a
+ * trigram dictionary of those words, and rank by total edits first.
+ */
+public class CatalogSearchIndex {
+    private static final int TITLE_WEIGHT = 4;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int GENRE_WEIGHT = 1;
+    private static final int PUBLISHER_WEIGHT = 1;
+
+    // token -> (title -> weight)
+    private NavigableMap<String, Map<BookTitle, Integer>> postings;
+    // title -> the tokens it was indexed under, so removal doesn't re-tokenize
+    private Map<BookTitle, String[]> termsByTitle;
+    // author -> titles indexed under that author, for author renames
+    private Map<Author, Set<BookTitle>> titlesByAuthor;
+    // name token -> authors, and author -> its name tokens (every author, with titles or not)
+    private Map<String, Set<Author>> authorsByTerm;
+    private Map<Author, String[]> termsByAuthor;
+    // Every token above, for typo lookups
+    private TrigramIndex dictionary;
+
+    public CatalogSearchIndex() {
+        this.postings = new TreeMap<>();
+        this.termsByTitle = new HashMap<>();
+        this.titlesByAuthor = new HashMap<>();
+        this.authorsByTerm = new HashMap<>();
+        this.termsByAuthor = new HashMap<>();
+        this.dictionary = new TrigramIndex();
+    }
+
+    public void add(BookTitle t) {
+        Map<String, Integer> terms = new HashMap<>();
+        collect(terms, t.getTitle(), TITLE_WEIGHT);
+        collect(terms, t.getGenre(), GENRE_WEIGHT);
+        collect(terms, t.getPublisher(), PUBLISHER_WEIGHT);
+        for (Author a : t.getAuthors()) {
+            collect(terms, a.getName(), AUTHOR_WEIGHT);
+            titlesByAuthor.computeIfAbsent(a, k -> new HashSet<>()).add(t);
+        }
+
+        // Keep the posting's own key, so each distinct term is stored once
+        String[] indexed = new String[terms.size()];
+        int n = 0;
+        for (Map.Entry<String, Integer> e : terms.entrySet()) {
+            Map.Entry<String, Map<BookTitle, Integer>> posting = postings.ceilingEntry(e.getKey());
+            if (posting == null || !posting.getKey().equals(e.getKey())) {
+                postings.put(e.getKey(), new HashMap<>());
+                posting = postings.ceilingEntry(e.getKey());
+                dictionary.add(posting.getKey());
+            }
+            posting.getValue().put(t, e.getValue());
+            indexed[n++] = posting.getKey();
+        }
+        termsByTitle.put(t, indexed);
+    }
+
+    public void remove(BookTitle t) {
+        String[] terms = termsByTitle.remove(t);
+        if (terms == null)
+            return;
+        for (String term : terms) {
+            Map<BookTitle, Integer> posting = postings.get(term);
+            posting.remove(t);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+                dictionary.remove(term);
+            }
+        }
+        for (Author a : t.getAuthors()) {
+            Set<BookTitle> titles = titlesByAuthor.get(a);
+            if (titles != null && titles.remove(t) && titles.isEmpty())
+                titlesByAuthor.remove(a);
+        }
+    }
+
+    // Re-tokenizes a title after one of its fields changed.
+    public void update(BookTitle t) {
+        remove(t);
+        add(t);
+    }
+
+    // Indexes the author's name for fuzzy author lookups
+    public void addAuthor(Author a) {
+        String[] terms = tokenize(a.getName()).stream().distinct().toArray(String[]::new);
+        for (String term : terms) {
+            authorsByTerm.computeIfAbsent(term, k -> {
+                dictionary.add(k);
+                return new HashSet<>();
+            }).add(a);
+        }
+        termsByAuthor.put(a, terms);
+    }
+
+    public void removeAuthor(Author a) {
+        String[] terms = termsByAuthor.remove(a);
+        if (terms == null)
+            return;
+        for (String term : terms) {
+            Set<Author> authors = authorsByTerm.get(term);
+            authors.remove(a);
+            if (authors.isEmpty()) {
+                authorsByTerm.remove(term);
+                dictionary.remove(term);
+            }
+        }
+    }
+
+    // Re-tokenizes the author and every title they wrote (after a rename).
+    public void updateAuthor(Author a) {
+        if (termsByAuthor.containsKey(a)) {
+            removeAuthor(a);
+            addAuthor(a);
+        }
+        Set<BookTitle> titles = titlesByAuthor.get(a);
+        if (titles == null)
+            return;
+        for (BookTitle t : new ArrayList<>(titles)) {
+            update(t);
+        }
+    }
+
+    // Titles indexed under this author
+    public List<BookTitle> titlesOf(Author a) {
+        Set<BookTitle> titles = titlesByAuthor.get(a);
+        return titles == null ? Collections.emptyList() : new ArrayList<>(titles);
+    }
+
+    public List<BookTitle> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    // The 'limit' best matches of search(query)
+    public List<BookTitle> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+        String prefix = tokens.get(tokens.size() - 1);
+        NavigableMap<String, Map<BookTitle, Integer>> range = prefixRange(prefix);
+        if (range.isEmpty())
+            return Collections.emptyList();
+
+        List<Map<BookTitle, Integer>> hits = new ArrayList<>();
+        for (String token : tokens.subList(0, tokens.size() - 1)) {
+            Map<BookTitle, Integer> h = postings.get(token);
+            if (h == null)
+                return Collections.emptyList();
+            hits.add(h);
+        }
+
+        TopK top = new TopK(limit);
+        if (hits.isEmpty()) {
+            // Prefix only: walk its range, meeting each title under its first word there
+            for (Map.Entry<String, Map<BookTitle, Integer>> posting : range.entrySet()) {
+                for (Map.Entry<BookTitle, Integer> e : posting.getValue().entrySet()) {
+                    int w = prefixWeight(e.getKey(), prefix, posting.getKey(), e.getValue());
+                    if (w > 0)
+                        top.offer(e.getKey(), -w);
+                }
+            }
+            return top.sorted();
+        }
+
+        // Walk the rarest exact token's hits, probe the rest, then check the
+        // candidate's own words against the prefix
+        hits.sort(Comparator.comparingInt(Map::size));
+        outer:
+        for (Map.Entry<BookTitle, Integer> e : hits.get(0).entrySet()) {
+            int score = e.getValue();
+            for (int i = 1; i < hits.size(); i++) {
+                Integer w = hits.get(i).get(e.getKey());
+                if (w == null)
+                    continue outer;
+                score += w;
+            }
+            int w = prefixWeight(e.getKey(), prefix, null, 0);
+            if (w > 0)
+                top.offer(e.getKey(), -(long) (score + w));
+        }
+        return top.sorted();
+    }
+
+    /**
+     * Titles having, for every query word, a word within a few edits of it
+     * (see {@link #maxEdits}); fewest total edits first, then by field
+     * weight like {@link #search}.
+     */
+    public List<BookTitle> searchFuzzy(String query) {
+        return searchFuzzy(query, Integer.MAX_VALUE);
+    }
+
+    // The 'limit' best matches of searchFuzzy(query)
+    public List<BookTitle> searchFuzzy(String query, int limit) {
+        List<Map<String, Integer>> words = expand(query);
+        if (words.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+
+        // Each word's postings, closest spellings first, so the first posting
+        // holding a title gives that word's edits in it
+        List<List<Map<BookTitle, Integer>>> hits = new ArrayList<>();
+        List<int[]> edits = new ArrayList<>();
+        for (Map<String, Integer> w : words) {
+            List<Map.Entry<String, Integer>> spellings = new ArrayList<>(w.entrySet());
+            spellings.sort(Map.Entry.comparingByValue());
+            List<Map<BookTitle, Integer>> h = new ArrayList<>();
+            int[] d = new int[spellings.size()];
+            for (Map.Entry<String, Integer> e : spellings) {
+                Map<BookTitle, Integer> posting = postings.get(e.getKey());
+                if (posting != null) {
+                    d[h.size()] = e.getValue();
+                    h.add(posting);
+                }
+            }
+            if (h.isEmpty())
+                return Collections.emptyList();
+            hits.add(h);
+            edits.add(d);
+        }
+
+        // Walk the word whose spellings have the fewest titles and probe the
+        // rest, rarer words first so most candidates fail early
+        long[] sizes = new long[hits.size()];
+        Integer[] order = new Integer[hits.size()];
+        for (int i = 0; i < hits.size(); i++) {
+            for (Map<BookTitle, Integer> h : hits.get(i)) {
+                sizes[i] += h.size();
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> sizes[i]));
+        int rarest = order[0];
+
+        // Edits in the high bits, so one sort orders by edits, then weight
+        TopK top = new TopK(limit);
+        List<Map<BookTitle, Integer>> walk = hits.get(rarest);
+        for (int k = 0; k < walk.size(); k++) {
+            outer:
+            for (Map.Entry<BookTitle, Integer> e : walk.get(k).entrySet()) {
+                BookTitle t = e.getKey();
+                // Already met under a closer spelling
+                for (int j = 0; j < k; j++) {
+                    if (walk.get(j).containsKey(t))
+                        continue outer;
+                }
+                long total = edits.get(rarest)[k];
+                long weight = e.getValue();
+                for (int o = 1; o < order.length; o++) {
+                    int i = order[o];
+                    List<Map<BookTitle, Integer>> h = hits.get(i);
+                    Integer w = null;
+                    int j = 0;
+                    while (j < h.size() && (w = h.get(j).get(t)) == null) {
+                        j++;
+                    }
+                    if (w == null)
+                        continue outer;
+                    total += edits.get(i)[j];
+                    weight += w;
+                }
+                top.offer(t, (total << 32) - weight);
+            }
+        }
+        return top.sorted();
+    }
+
+    private static final class Scored {
+        final BookTitle title;
+        final long score;
+
+        Scored(BookTitle title, long score) {
+            this.title = title;
+            this.score = score;
+        }
+    }
+
+    // Lowest score first, then by title
+    private static final Comparator<Scored> RANK = Comparator.<Scored>comparingLong(x -> x.score)
+            .thenComparing(x -> x.title.getTitle(), String.CASE_INSENSITIVE_ORDER);
+
+    // The 'limit' best-ranked titles offered, kept in a heap with the worst on
+    // top; unbounded requests just collect and sort
+    private static final class TopK {
+        final int limit;
+        final List<Scored> all;
+        final PriorityQueue<Scored> heap;
+
+        TopK(int limit) {
+            this.limit = limit;
+            this.all = limit == Integer.MAX_VALUE ? new ArrayList<>() : null;
+            this.heap = all == null ? new PriorityQueue<>(Math.min(limit, 1024) + 1, RANK.reversed()) : null;
+        }
+
+        void offer(BookTitle t, long score) {
+            if (all != null) {
+                all.add(new Scored(t, score));
+                return;
+            }
+            if (heap.size() == limit && score > heap.peek().score)
+                return;
+            heap.add(new Scored(t, score));
+            if (heap.size() > limit)
+                heap.poll();
+        }
+
+        List<BookTitle> sorted() {
+            List<Scored> scored = all != null ? all : new ArrayList<>(heap);
+            scored.sort(RANK);
+            List<BookTitle> result = new ArrayList<>(scored.size());
+            for (Scored x : scored) {
+                result.add(x.title);
+            }
+            return result;
+        }
+    }
+
+    // Authors whose names match every word of 'name' within a few edits, closest first
+    public List<Author> authorsLike(String name) {
+        List<Map<String, Integer>> words = expand(name);
+        if (words.isEmpty())
+            return Collections.emptyList();
+        Map<String, Long> spelled = spellings(words);
+
+        Map<Author, Integer> edits = new HashMap<>();
+        String[] best = new String[words.size()];
+        for (String spelling : words.get(0).keySet()) {
+            Set<Author> authors = authorsByTerm.get(spelling);
+            if (authors == null)
+                continue;
+            for (Author a : authors) {
+                if (edits.containsKey(a))
+                    continue;
+                int total = closest(termsByAuthor.get(a), spelled, best);
+                if (total >= 0)
+                    edits.put(a, total);
+            }
+        }
+
+        List<Author> result = new ArrayList<>(edits.keySet());
+        result.sort(Comparator.<Author>comparingInt(edits::get)
+                .thenComparing(Author::getName, String.CASE_INSENSITIVE_ORDER));
+        return result;
+    }
+
+    // Edits allowed in a word: none for short words and numbers, then 1, then 2
+    static int maxEdits(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isDigit(word.charAt(i)))
+                return 0;
+        }
+        return word.length() < 3 ? 0 : word.length() < 6 ? 1 : 2;
+    }
+
+    // Spellings (indexed words and their edits) of each distinct query word,
+    // up to MAX_FUZZY_WORDS of them; empty if some word has none
+    private List<Map<String, Integer>> expand(String query) {
+        List<Map<String, Integer>> words = new ArrayList<>();
+        for (String token : new HashSet<>(tokenize(query))) {
+            if (words.size() == MAX_FUZZY_WORDS)
+                break;
+            Map<String, Integer> spellings = dictionary.similar(token, maxEdits(token));
+            if (spellings.isEmpty())
+                return Collections.emptyList();
+            words.add(spellings);
+        }
+        return words;
+    }
+
+    private static final int MAX_FUZZY_WORDS = 16;
+
+    // Indexed word -> for each query word i, (edits + 1) in bits 4i..4i+3, or 0
+    // if it isn't a spelling of that word; one lookup per word of a record
+    private static Map<String, Long> spellings(List<Map<String, Integer>> words) {
+        Map<String, Long> spelled = new HashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            int shift = 4 * i;
+            words.get(i).forEach((term, d) -> spelled.merge(term, (long) (d + 1) << shift, (a, b) -> a | b));
+        }
+        return spelled;
+    }
+
+    // Total edits of the record's closest word to each query word (and those
+    // words in 'best'), or -1 if some query word has no spelling in the record
+    private static int closest(String[] terms, Map<String, Long> spelled, String[] best) {
+        int[] edits = new int[best.length];
+        Arrays.fill(edits, Integer.MAX_VALUE);
+        for (String term : terms) {
+            Long bits = spelled.get(term);
+            if (bits == null)
+                continue;
+            for (int i = 0; i < best.length; i++) {
+                int d = (int) (bits >>> (4 * i)) & 0xF;
+                if (d != 0 && d - 1 < edits[i]) {
+                    edits[i] = d - 1;
+                    best[i] = term;
+                }
+            }
+        }
+        int total = 0;
+        for (int e : edits) {
+            if (e == Integer.MAX_VALUE)
+                return -1;
+            total += e;
+        }
+        return total;
+    }
+
+    // Postings of every indexed word starting with 'prefix'
+    private NavigableMap<String, Map<BookTitle, Integer>> prefixRange(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // The title's best weight among its words starting with 'prefix', or 0.
+    // When walking the prefix range ('under' is the word being walked, with
+    // the title's weight there), 0 unless 'under' is the title's first word
+    // in the range, so the walk counts each title once.
+    private int prefixWeight(BookTitle t, String prefix, String under, int weight) {
+        int best = 0;
+        String first = null;
+        int matches = 0;
+        for (String term : termsByTitle.get(t)) {
+            if (!term.startsWith(prefix))
+                continue;
+            matches++;
+            if (first == null || term.compareTo(first) < 0)
+                first = term;
+        }
+        if (matches == 0 || (under != null && !under.equals(first)))
+            return 0;
+        if (under != null && matches == 1)
+            return weight;
+        for (String term : termsByTitle.get(t)) {
+            if (term.startsWith(prefix))
+                best = Math.max(best, postings.get(term).get(t));
+        }
+        return best;
+    }
+
+    private static void collect(Map<String, Integer> terms, String text, int weight) {
+        if (text == null)
+            return;
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
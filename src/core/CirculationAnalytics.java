@@ -0,0 +1,491 @@
+package core;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import transactions.Loan;
+import transactions.LoanArchive;
+
+/**
+ * Circulation reports without walking loan histories. Issue and return
+ * counts and total loan days are kept per month for every title, genre,
+ * publisher and author, and updated from the database's event ring as
+ * loans are issued (counted in the issue month) and returned (counted,
+ * with their length, in the return month). A dashboard query only sums
+ * the months it asks for, so it costs the number of keys active in that
+ * window, not the size of the history.
+ *
+ * The aggregates are built at startup from the loan archive and the
+ * active loans with the same fork/join scan that {@link #scanHistory}
+ * offers for any other ad-hoc question over the full history: the archive
+ * snapshot is split into row ranges that are scanned and merged in
+ * parallel.
+ *
+ * If the consumer is lapped by the event ring, the aggregates are marked
+ * stale and rebuilt by the next query. A build captures the history and
+ * the ring cursor together, with mutations paused for the copy, so every
+ * loan is counted once: by the scan or by the events after the cursor.
+ */
+public class CirculationAnalytics implements LibraryEventRing.Handler {
+
+    public enum Dimension {
+        TITLE, GENRE, PUBLISHER, AUTHOR
+    }
+
+    public enum Measure {
+        ISSUES, RETURNS, AVG_LOAN_DAYS
+    }
+
+    /**
+     * One ad-hoc question over every loan. Each fork/join leaf gets its own
+     * accumulator from create(); partial results are combined with merge().
+     */
+    public interface HistoryScan<A> {
+        A create();
+
+        // returnDay is OPEN for loans that are still out
+        void add(A acc, int loanID, int borrowerID, BookItem item, long issueDay, long dueDay, long returnDay);
+
+        A merge(A left, A right);
+    }
+
+    public static final long OPEN = Long.MIN_VALUE;
+
+    // Minimum archive rows per fork/join leaf; leaves are also kept few enough
+    // (about four per worker) that merging partial results stays cheap
+    private static final int MIN_CHUNK = 1 << 16;
+
+    // One report line
+    public static class Row {
+        public final String label;
+        public final long issues;
+        public final long returns;
+        public final double avgLoanDays;
+
+        Row(String label, Stats s) {
+            this.label = label;
+            this.issues = s.issues;
+            this.returns = s.returns;
+            this.avgLoanDays = s.returns == 0 ? 0 : (double) s.loanDays / s.returns;
+        }
+    }
+
+    private static final class Stats {
+        long issues;
+        long returns;
+        long loanDays;
+
+        void add(Stats o) {
+            issues += o.issues;
+            returns += o.returns;
+            loanDays += o.loanDays;
+        }
+    }
+
+    // dimension -> month (year * 12 + month - 1) -> key -> counters
+    private static final class Cube {
+        final EnumMap<Dimension, Map<Integer, Map<Object, Stats>>> data = new EnumMap<>(Dimension.class);
+
+        // Month last used by the history scan for issues / returns, as an
+        // epoch-day range [from, to), so rows in the same month skip the lookup
+        private final long[] issueRange = {1, 0};
+        private Map<Object, Stats> issueTitles;
+        private final long[] returnRange = {1, 0};
+        private Map<Object, Stats> returnTitles;
+
+        Cube() {
+            for (Dimension d : Dimension.values()) {
+                data.put(d, new HashMap<>());
+            }
+        }
+
+        // Live updates: every dimension at once
+        void issued(BookTitle t, long issueDay) {
+            int month = month(issueDay);
+            for (Dimension d : Dimension.values()) {
+                forEachKey(d, t, key -> cell(d, month, key).issues++);
+            }
+        }
+
+        void returned(BookTitle t, long issueDay, long returnDay) {
+            int month = month(returnDay);
+            for (Dimension d : Dimension.values()) {
+                forEachKey(d, t, key -> {
+                    Stats s = cell(d, month, key);
+                    s.returns++;
+                    s.loanDays += returnDay - issueDay;
+                });
+            }
+        }
+
+        // History scans only count titles; rollUp() derives the rest once at the end
+        void scanIssued(BookTitle t, long day) {
+            if (day < issueRange[0] || day >= issueRange[1])
+                issueTitles = titlesOfMonth(day, issueRange);
+            issueTitles.computeIfAbsent(t, k -> new Stats()).issues++;
+        }
+
+        void scanReturned(BookTitle t, long issue, long day) {
+            if (day < returnRange[0] || day >= returnRange[1])
+                returnTitles = titlesOfMonth(day, returnRange);
+            Stats s = returnTitles.computeIfAbsent(t, k -> new Stats());
+            s.returns++;
+            s.loanDays += day - issue;
+        }
+
+        private Map<Object, Stats> titlesOfMonth(long day, long[] range) {
+            LocalDate first = LocalDate.ofEpochDay(day).withDayOfMonth(1);
+            range[0] = first.toEpochDay();
+            range[1] = first.plusMonths(1).toEpochDay();
+            return months(Dimension.TITLE, month(day));
+        }
+
+        void rollUp() {
+            data.get(Dimension.TITLE).forEach((month, titles) -> titles.forEach((t, s) -> {
+                for (Dimension d : Dimension.values()) {
+                    if (d != Dimension.TITLE)
+                        forEachKey(d, (BookTitle) t, key -> cell(d, month, key).add(s));
+                }
+            }));
+        }
+
+        private Map<Object, Stats> months(Dimension d, int month) {
+            return data.get(d).computeIfAbsent(month, m -> new HashMap<>());
+        }
+
+        private Stats cell(Dimension d, int month, Object key) {
+            return months(d, month).computeIfAbsent(key, k -> new Stats());
+        }
+
+        Cube merge(Cube o) {
+            for (Dimension d : Dimension.values()) {
+                Map<Integer, Map<Object, Stats>> mine = data.get(d);
+                o.data.get(d).forEach((month, keys) -> {
+                    Map<Object, Stats> target = mine.get(month);
+                    if (target == null) {
+                        mine.put(month, keys);
+                    } else {
+                        keys.forEach((key, s) -> target.merge(key, s, (a, b) -> {
+                            a.add(b);
+                            return a;
+                        }));
+                    }
+                });
+            }
+            return this;
+        }
+    }
+
+    // The keys a loan of 't' counts under in 'd'
+    private static void forEachKey(Dimension d, BookTitle t, Consumer<Object> action) {
+        switch (d) {
+            case TITLE -> action.accept(t);
+            case GENRE -> action.accept(label(t.getGenre()));
+            case PUBLISHER -> action.accept(label(t.getPublisher()));
+            case AUTHOR -> {
+                for (Author a : t.getAuthors()) {
+                    action.accept(a);
+                }
+            }
+        }
+    }
+
+    // Builds the title counts over the full history (used by rebuild)
+    private static final HistoryScan<Cube> CUBE_SCAN = new HistoryScan<>() {
+        @Override
+        public Cube create() {
+            return new Cube();
+        }
+
+        @Override
+        public void add(Cube c, int loanID, int borrowerID, BookItem item, long issueDay, long dueDay, long returnDay) {
+            BookTitle t = item.getBookTitle();
+            c.scanIssued(t, issueDay);
+            if (returnDay != OPEN)
+                c.scanReturned(t, issueDay, returnDay);
+        }
+
+        @Override
+        public Cube merge(Cube left, Cube right) {
+            return left.merge(right);
+        }
+    };
+
+    private final LibraryDatabase db;
+    private Cube cube = new Cube();
+    private volatile long ignoreBefore; // events already covered by the last rebuild
+    private volatile boolean stale;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    // Set by the loader thread, closed by whoever calls stop()
+    private volatile LibraryEventRing.Subscription subscription;
+
+    public CirculationAnalytics(LibraryDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Builds the aggregates from history on a background thread, then starts
+     * following the event ring from where the history was captured. Queries
+     * wait until the first build is done.
+     */
+    public void start() {
+        LibraryEventRing events = db.getEvents();
+        History history = History.capture(db);
+        Thread loader = new Thread(() -> {
+            try {
+                install(build(history), history.cursor);
+                if (events != null)
+                    subscription = events.subscribe("analytics", history.cursor, 1024, this);
+            } finally {
+                loaded.countDown();
+            }
+        }, "analytics-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public void stop() {
+        if (subscription != null)
+            subscription.close();
+    }
+
+    // Rebuilds from history on the calling thread
+    public void rebuild() {
+        History history = History.capture(db);
+        install(build(history), history.cursor);
+    }
+
+    private static Cube build(History history) {
+        Cube fresh = history.scan(CUBE_SCAN);
+        fresh.rollUp();
+        return fresh;
+    }
+
+    private synchronized void install(Cube fresh, long cursor) {
+        cube = fresh;
+        ignoreBefore = cursor;
+        stale = false;
+    }
+
+    /**
+     * The 'limit' keys of 'dimension' with the highest 'measure' over the
+     * months from..to (inclusive). AVG_LOAN_DAYS only ranks keys with
+     * returns in the window.
+     */
+    public List<Row> top(Dimension dimension, YearMonth from, YearMonth to, Measure measure, int limit) {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+        if (stale)
+            rebuild();
+        synchronized (this) {
+            return top(cube, dimension, from, to, measure, limit);
+        }
+    }
+
+    private static List<Row> top(Cube cube, Dimension dimension, YearMonth from, YearMonth to, Measure measure,
+            int limit) {
+        Map<Integer, Map<Object, Stats>> months = cube.data.get(dimension);
+        Map<Object, Stats> totals;
+        if (from.equals(to)) {
+            totals = months.getOrDefault(month(from), Map.of());
+        } else {
+            totals = new HashMap<>();
+            for (int m = month(from); m <= month(to); m++) {
+                Map<Object, Stats> keys = months.get(m);
+                if (keys != null)
+                    keys.forEach((key, s) -> totals.computeIfAbsent(key, k -> new Stats()).add(s));
+            }
+        }
+
+        // Keep the best 'limit' in a min-heap instead of sorting every key
+        Comparator<Map.Entry<Object, Stats>> order = Comparator.comparingDouble(e -> value(e.getValue(), measure));
+        PriorityQueue<Map.Entry<Object, Stats>> best = new PriorityQueue<>(order);
+        for (Map.Entry<Object, Stats> e : totals.entrySet()) {
+            if (measure == Measure.AVG_LOAN_DAYS && e.getValue().returns == 0)
+                continue;
+            if (best.size() < limit) {
+                best.add(e);
+            } else if (limit > 0 && order.compare(e, best.peek()) > 0) {
+                best.poll();
+                best.add(e);
+            }
+        }
+        List<Row> rows = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Map.Entry<Object, Stats> e = best.poll();
+            rows.add(new Row(label(e.getKey()), e.getValue()));
+        }
+        Collections.reverse(rows);
+        return rows;
+    }
+
+    private static double value(Stats s, Measure measure) {
+        return switch (measure) {
+            case ISSUES -> s.issues;
+            case RETURNS -> s.returns;
+            case AVG_LOAN_DAYS -> s.returns == 0 ? 0 : (double) s.loanDays / s.returns;
+        };
+    }
+
+    /**
+     * Runs 'scan' over every archived loan, split into row ranges on the
+     * fork/join pool, then over the active loans.
+     */
+    public <A> A scanHistory(HistoryScan<A> scan) {
+        return new History(db).scan(scan);
+    }
+
+    // A scan's result and the event ring cursor its history was taken at
+    public static final class Seed<A> {
+        public final A result;
+        public final long cursor;
+
+        Seed(A result, long cursor) {
+            this.result = result;
+            this.cursor = cursor;
+        }
+    }
+
+    /**
+     * Like {@link #scanHistory}, over the history as of one event ring
+     * position, which is returned with the result: following the ring from
+     * there delivers exactly the loans the scan didn't see.
+     */
+    public <A> Seed<A> scanHistoryAtCursor(HistoryScan<A> scan) {
+        History history = History.capture(db);
+        return new Seed<>(history.scan(scan), history.cursor);
+    }
+
+    // Archive snapshot plus a copy of the active loans, taken on the caller's
+    // thread so the scan itself can run anywhere
+    private static class History {
+        private final LoanArchive.Snapshot archive;
+        private final Loan[] open;
+        // Events from here on are changes the copies above don't include (see capture)
+        private final long cursor;
+
+        History(LibraryDatabase db) {
+            this.archive = db.getLoanArchive().snapshot();
+            this.open = db.getAllLoans().toArray(new Loan[0]);
+            LibraryEventRing events = db.getEvents();
+            this.cursor = events == null ? 0 : events.getCursor();
+        }
+
+        // With mutations paused, so the copies and the cursor agree
+        static History capture(LibraryDatabase db) {
+            return db.readQuiesced(() -> new History(db));
+        }
+
+        <A> A scan(HistoryScan<A> scan) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            int chunk = Math.max(MIN_CHUNK, archive.size() / (pool.getParallelism() * 4));
+            A result = pool.invoke(new ScanTask<>(archive, 0, archive.size(), chunk, scan));
+            A rest = scan.create();
+            for (Loan loan : open) {
+                scan.add(rest, loan.getLoanID(), loan.getBorrower().getId(), loan.getBookItem(),
+                        loan.getIssueDate().toEpochDay(), loan.getDueDate().toEpochDay(), OPEN);
+            }
+            return scan.merge(result, rest);
+        }
+    }
+
+    private static class ScanTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final LoanArchive.Snapshot archive;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final HistoryScan<A> scan;
+
+        ScanTask(LoanArchive.Snapshot archive, int from, int to, int chunk, HistoryScan<A> scan) {
+            this.archive = archive;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.scan = scan;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= chunk) {
+                A acc = scan.create();
+                archive.forEach(from, to, (id, borrower, item, issue, due, returned) -> scan.add(acc, id, borrower,
+                        item, issue, due, returned));
+                return acc;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(archive, from, mid, chunk, scan);
+            left.fork();
+            A right = new ScanTask<>(archive, mid, to, chunk, scan).compute();
+            return scan.merge(left.join(), right);
+        }
+    }
+
+    // ==========================================
+    // EVENT RING CONSUMER
+    // ==========================================
+    @Override
+    public void onEvent(LibraryEventRing.Event e) {
+        if (e.getSequence() < ignoreBefore)
+            return;
+        switch (e.getType()) {
+            case LOAN_ISSUED -> {
+                Loan loan = (Loan) e.getSubject();
+                synchronized (this) {
+                    cube.issued(loan.getBookItem().getBookTitle(), loan.getIssueDate().toEpochDay());
+                }
+            }
+            case LOAN_RETURNED -> {
+                Loan loan = (Loan) e.getSubject();
+                synchronized (this) {
+                    cube.returned(loan.getBookItem().getBookTitle(), loan.getIssueDate().toEpochDay(),
+                            loan.getReturnDate().toEpochDay());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onOverrun(long lost) {
+        stale = true;
+    }
+
+    // --- HELPERS ---
+    private static int month(long epochDay) {
+        LocalDate d = LocalDate.ofEpochDay(epochDay);
+        return d.getYear() * 12 + d.getMonthValue() - 1;
+    }
+
+    private static int month(YearMonth ym) {
+        return ym.getYear() * 12 + ym.getMonthValue() - 1;
+    }
+
+    private static String label(Object key) {
+        if (key instanceof BookTitle t)
+            return t.getTitle();
+        if (key instanceof Author a)
+            return a.getName();
+        return key == null || key.toString().isBlank() ? "(none)" : key.toString();
+    }
+}
@@ -0,0 +1,566 @@
+package core;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of non-negative ints stored like a Roaring bitmap: the id space is cut
+ * into 64K-wide chunks, and each non-empty chunk is either a sorted char
+ * array (sparse, 2 bytes per member) or a 1024-word bitset (dense, 8 KB
+ * flat). Intersections and unions work chunk by chunk on whichever forms
+ * meet, so their cost follows the smaller side rather than the id range.
+ *
+ * Not thread-safe; CatalogFacets guards its bitmaps with a lock.
+ */
+public class CompressedBitmap {
+    // Members above which an array chunk becomes a bitset; below half of it, back again
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITS_WORDS = 1 << 10;
+    // Size ratio above which array intersections search instead of merge
+    private static final int SKEW = 16;
+    // Array chunks above this size are converted by forProbing()
+    private static final int PROBE_DENSE = 1024;
+
+    private char[] keys; // high 16 bits of the ids in each chunk, ascending
+    private Chunk[] chunks;
+    private int size; // chunks in use
+    private int cardinality;
+
+    public CompressedBitmap() {
+        this(4);
+    }
+
+    private CompressedBitmap(int chunkCapacity) {
+        this.keys = new char[Math.max(1, chunkCapacity)];
+        this.chunks = new Chunk[keys.length];
+    }
+
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int id) {
+        int i = find((char) (id >>> 16));
+        return i >= 0 && chunks[i].contains((char) id);
+    }
+
+    // Returns false if 'id' was already a member
+    public boolean add(int id) {
+        char key = (char) (id >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk(i, key, new ArrayChunk());
+        }
+        Chunk c = chunks[i];
+        int before = c.cardinality();
+        chunks[i] = c.add((char) id);
+        if (chunks[i].cardinality() == before)
+            return false;
+        cardinality++;
+        return true;
+    }
+
+    // Returns false if 'id' wasn't a member
+    public boolean remove(int id) {
+        int i = find((char) (id >>> 16));
+        if (i < 0)
+            return false;
+        Chunk c = chunks[i];
+        int before = c.cardinality();
+        chunks[i] = c.remove((char) id);
+        if (chunks[i].cardinality() == before)
+            return false;
+        cardinality--;
+        if (chunks[i].cardinality() == 0)
+            removeChunk(i);
+        return true;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap(Math.min(size, other.size));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk c = and(chunks[i], other.chunks[j]);
+                if (c.cardinality() > 0)
+                    result.appendChunk(keys[i], c);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap(size + other.size);
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendChunk(keys[i], chunks[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.appendChunk(other.keys[j], other.chunks[j].copy());
+                j++;
+            } else {
+                result.appendChunk(keys[i], or(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // |this AND other| without building the intersection
+    public int andCardinality(CompressedBitmap other) {
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                n += andCardinality(chunks[i], other.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * A copy with every array chunk of more than PROBE_DENSE members held as
+     * a bitset. Word-wise intersections beat probing that many members, so a
+     * bitmap about to be intersected with many others pays for this once.
+     * Chunks kept as they were are shared: don't modify the copy.
+     */
+    public CompressedBitmap forProbing() {
+        CompressedBitmap result = new CompressedBitmap(size);
+        for (int i = 0; i < size; i++) {
+            Chunk c = chunks[i];
+            result.appendChunk(keys[i],
+                    c instanceof ArrayChunk a && a.n > PROBE_DENSE ? a.toBits() : c);
+        }
+        return result;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            chunks[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    // Up to 'limit' members in ascending order, skipping the first 'offset'
+    public int[] toArray(int offset, int limit) {
+        int n = Math.max(0, Math.min(limit, cardinality - offset));
+        int[] out = new int[n];
+        int skip = offset;
+        int filled = 0;
+        for (int i = 0; i < size && filled < n; i++) {
+            Chunk c = chunks[i];
+            if (skip >= c.cardinality()) {
+                skip -= c.cardinality();
+                continue;
+            }
+            filled = c.copyTo(keys[i] << 16, skip, out, filled);
+            skip = 0;
+        }
+        return out;
+    }
+
+    // --- CHUNK TABLE ---
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertChunk(int i, char key, Chunk c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(chunks, i, chunks, i + 1, size - i);
+        keys[i] = key;
+        chunks[i] = c;
+        size++;
+    }
+
+    private void removeChunk(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(chunks, i + 1, chunks, i, size - i - 1);
+        chunks[--size] = null;
+    }
+
+    // Chunks built in key order by and/or
+    private void appendChunk(char key, Chunk c) {
+        insertChunk(size, key, c);
+        cardinality += c.cardinality();
+    }
+
+    // --- CHUNK OPERATIONS ---
+    private static Chunk and(Chunk a, Chunk b) {
+        if (a instanceof ArrayChunk x) {
+            return b instanceof ArrayChunk y ? x.and(y) : x.and((BitsChunk) b);
+        }
+        return b instanceof ArrayChunk y ? y.and((BitsChunk) a) : ((BitsChunk) a).and((BitsChunk) b);
+    }
+
+    private static Chunk or(Chunk a, Chunk b) {
+        if (a instanceof ArrayChunk x) {
+            return b instanceof ArrayChunk y ? x.or(y) : ((BitsChunk) b).or(x);
+        }
+        return b instanceof ArrayChunk y ? ((BitsChunk) a).or(y) : ((BitsChunk) a).or((BitsChunk) b);
+    }
+
+    private static int andCardinality(Chunk a, Chunk b) {
+        if (a instanceof ArrayChunk x) {
+            return b instanceof ArrayChunk y ? x.andCardinality(y) : x.andCardinality((BitsChunk) b);
+        }
+        return b instanceof ArrayChunk y ? y.andCardinality((BitsChunk) a)
+                : ((BitsChunk) a).andCardinality((BitsChunk) b);
+    }
+
+    private abstract static class Chunk {
+        abstract int cardinality();
+
+        abstract boolean contains(char v);
+
+        // Both return the chunk to keep (it may have switched form)
+        abstract Chunk add(char v);
+
+        abstract Chunk remove(char v);
+
+        abstract Chunk copy();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        // Writes members from the 'skip'-th on into out[at..]; returns the new fill
+        abstract int copyTo(int base, int skip, int[] out, int at);
+    }
+
+    private static final class ArrayChunk extends Chunk {
+        char[] values;
+        int n;
+
+        ArrayChunk() {
+            this(new char[4], 0);
+        }
+
+        ArrayChunk(char[] values, int n) {
+            this.values = values;
+            this.n = n;
+        }
+
+        @Override
+        int cardinality() {
+            return n;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return Arrays.binarySearch(values, 0, n, v) >= 0;
+        }
+
+        @Override
+        Chunk add(char v) {
+            int i = Arrays.binarySearch(values, 0, n, v);
+            if (i >= 0)
+                return this;
+            if (n == ARRAY_MAX)
+                return toBits().add(v);
+            i = -i - 1;
+            if (n == values.length)
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n * 2));
+            System.arraycopy(values, i, values, i + 1, n - i);
+            values[i] = v;
+            n++;
+            return this;
+        }
+
+        @Override
+        Chunk remove(char v) {
+            int i = Arrays.binarySearch(values, 0, n, v);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, n - i - 1);
+                n--;
+            }
+            return this;
+        }
+
+        @Override
+        Chunk copy() {
+            return new ArrayChunk(Arrays.copyOf(values, Math.max(1, n)), n);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < n; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        int copyTo(int base, int skip, int[] out, int at) {
+            for (int i = skip; i < n && at < out.length; i++) {
+                out[at++] = base | values[i];
+            }
+            return at;
+        }
+
+        BitsChunk toBits() {
+            BitsChunk b = new BitsChunk();
+            for (int i = 0; i < n; i++) {
+                b.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            b.card = n;
+            return b;
+        }
+
+        ArrayChunk and(ArrayChunk o) {
+            if (n > o.n)
+                return o.and(this);
+            char[] out = new char[n];
+            int k = 0;
+            if (n * SKEW < o.n) {
+                // Much smaller side: binary-search each value instead of merging
+                int from = 0;
+                for (int i = 0; i < n && from < o.n; i++) {
+                    int at = Arrays.binarySearch(o.values, from, o.n, values[i]);
+                    if (at >= 0) {
+                        out[k++] = values[i];
+                        from = at + 1;
+                    } else {
+                        from = -at - 1;
+                    }
+                }
+                return new ArrayChunk(out, k);
+            }
+            // Branch-free merge: the comparisons are unpredictable on real data
+            for (int i = 0, j = 0; i < n && j < o.n;) {
+                char a = values[i];
+                char b = o.values[j];
+                out[k] = a;
+                k += a == b ? 1 : 0;
+                i += a <= b ? 1 : 0;
+                j += a >= b ? 1 : 0;
+            }
+            return new ArrayChunk(out, k);
+        }
+
+        ArrayChunk and(BitsChunk o) {
+            char[] out = new char[n];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (o.contains(values[i]))
+                    out[k++] = values[i];
+            }
+            return new ArrayChunk(out, k);
+        }
+
+        int andCardinality(ArrayChunk o) {
+            if (n > o.n)
+                return o.andCardinality(this);
+            int k = 0;
+            if (n * SKEW < o.n) {
+                int from = 0;
+                for (int i = 0; i < n && from < o.n; i++) {
+                    int at = Arrays.binarySearch(o.values, from, o.n, values[i]);
+                    if (at >= 0) {
+                        k++;
+                        from = at + 1;
+                    } else {
+                        from = -at - 1;
+                    }
+                }
+                return k;
+            }
+            for (int i = 0, j = 0; i < n && j < o.n;) {
+                char a = values[i];
+                char b = o.values[j];
+                k += a == b ? 1 : 0;
+                i += a <= b ? 1 : 0;
+                j += a >= b ? 1 : 0;
+            }
+            return k;
+        }
+
+        int andCardinality(BitsChunk o) {
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (o.contains(values[i]))
+                    k++;
+            }
+            return k;
+        }
+
+        Chunk or(ArrayChunk o) {
+            if (n + o.n > ARRAY_MAX) {
+                BitsChunk b = toBits();
+                return b.or(o);
+            }
+            char[] out = new char[n + o.n];
+            int k = 0, i = 0, j = 0;
+            while (i < n || j < o.n) {
+                if (j == o.n || (i < n && values[i] < o.values[j])) {
+                    out[k++] = values[i++];
+                } else if (i == n || values[i] > o.values[j]) {
+                    out[k++] = o.values[j++];
+                } else {
+                    out[k++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayChunk(out, k);
+        }
+    }
+
+    private static final class BitsChunk extends Chunk {
+        final long[] words = new long[BITS_WORDS];
+        int card;
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return (words[v >>> 6] & (1L << v)) != 0;
+        }
+
+        @Override
+        Chunk add(char v) {
+            long w = words[v >>> 6];
+            long bit = 1L << v;
+            if ((w & bit) == 0) {
+                words[v >>> 6] = w | bit;
+                card++;
+            }
+            return this;
+        }
+
+        @Override
+        Chunk remove(char v) {
+            long w = words[v >>> 6];
+            long bit = 1L << v;
+            if ((w & bit) != 0) {
+                words[v >>> 6] = w & ~bit;
+                card--;
+            }
+            return card < ARRAY_MAX / 2 ? toArray() : this;
+        }
+
+        @Override
+        Chunk copy() {
+            BitsChunk b = new BitsChunk();
+            System.arraycopy(words, 0, b.words, 0, BITS_WORDS);
+            b.card = card;
+            return b;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < BITS_WORDS; w++) {
+                long bits = words[w];
+                while (bits != 0) {
+                    action.accept(base | (w << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        @Override
+        int copyTo(int base, int skip, int[] out, int at) {
+            for (int w = 0; w < BITS_WORDS && at < out.length; w++) {
+                long bits = words[w];
+                int c = Long.bitCount(bits);
+                if (skip >= c) {
+                    skip -= c;
+                    continue;
+                }
+                while (bits != 0 && at < out.length) {
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        out[at++] = base | (w << 6) | Long.numberOfTrailingZeros(bits);
+                    }
+                    bits &= bits - 1;
+                }
+            }
+            return at;
+        }
+
+        ArrayChunk toArray() {
+            char[] out = new char[Math.max(1, card)];
+            int k = 0;
+            for (int w = 0; w < BITS_WORDS; w++) {
+                long bits = words[w];
+                while (bits != 0) {
+                    out[k++] = (char) ((w << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return new ArrayChunk(out, k);
+        }
+
+        Chunk and(BitsChunk o) {
+            int c = andCardinality(o);
+            if (c <= ARRAY_MAX) {
+                // Small result: write the array form directly
+                char[] out = new char[Math.max(1, c)];
+                int k = 0;
+                for (int w = 0; w < BITS_WORDS; w++) {
+                    long bits = words[w] & o.words[w];
+                    while (bits != 0) {
+                        out[k++] = (char) ((w << 6) | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+                return new ArrayChunk(out, k);
+            }
+            BitsChunk b = new BitsChunk();
+            for (int w = 0; w < BITS_WORDS; w++) {
+                b.words[w] = words[w] & o.words[w];
+            }
+            b.card = c;
+            return b;
+        }
+
+        int andCardinality(BitsChunk o) {
+            int c = 0;
+            for (int w = 0; w < BITS_WORDS; w++) {
+                c += Long.bitCount(words[w] & o.words[w]);
+            }
+            return c;
+        }
+
+        BitsChunk or(ArrayChunk o) {
+            BitsChunk b = (BitsChunk) copy();
+            for (int i = 0; i < o.n; i++) {
+                b.add(o.values[i]);
+            }
+            return b;
+        }
+
+        BitsChunk or(BitsChunk o) {
+            BitsChunk b = new BitsChunk();
+            int c = 0;
+            for (int w = 0; w < BITS_WORDS; w++) {
+                b.words[w] = words[w] | o.words[w];
+                c += Long.bitCount(b.words[w]);
+            }
+            b.card = c;
+            return b;
+        }
+    }
+}
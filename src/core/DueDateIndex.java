@@ -0,0 +1,64 @@
+package core;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import transactions.Loan;
+
+/**
+ * Open loans bucketed by due date (epoch day), so "due tomorrow" or
+ * "overdue today" is a range query instead of a walk over every loan.
+ *
+ * Always thread-safe, so the overdue sweep can read it from its own thread.
+ * Empty buckets are only dropped by {@link #purgeBefore} for past days,
+ * which new loans can't land in, so add never races with bucket removal.
+ */
+public class DueDateIndex {
+    private final ConcurrentSkipListMap<Long, Set<Loan>> loansByDueDay;
+
+    public DueDateIndex() {
+        this.loansByDueDay = new ConcurrentSkipListMap<>();
+    }
+
+    public void add(Loan loan) {
+        loansByDueDay.computeIfAbsent(loan.getDueDate().toEpochDay(), k -> ConcurrentHashMap.newKeySet()).add(loan);
+    }
+
+    public void remove(Loan loan) {
+        Set<Loan> bucket = loansByDueDay.get(loan.getDueDate().toEpochDay());
+        if (bucket != null)
+            bucket.remove(loan);
+    }
+
+    // Loans due on any day in [from, to], earliest first
+    public List<Loan> dueBetween(LocalDate from, LocalDate to) {
+        return collect(loansByDueDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+    }
+
+    // Loans due strictly before 'day', i.e. overdue as of 'day'
+    public List<Loan> dueBefore(LocalDate day) {
+        return collect(loansByDueDay.headMap(day.toEpochDay(), false));
+    }
+
+    // Drops empty buckets for days before 'day'
+    public void purgeBefore(LocalDate day) {
+        Iterator<Map.Entry<Long, Set<Loan>>> it = loansByDueDay.headMap(day.toEpochDay(), false).entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().isEmpty())
+                it.remove();
+        }
+    }
+
+    private static List<Loan> collect(Map<Long, Set<Loan>> range) {
+        List<Loan> result = new ArrayList<>();
+        for (Set<Loan> bucket : range.values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+}
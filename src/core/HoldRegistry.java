@@ -0,0 +1,312 @@
+package core;
+
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import transactions.Hold;
+import transactions.HoldQueue;
+import users.Borrower;
+
+/**
+ * Open holds: a FIFO {@link HoldQueue} of waiting holds per title, the
+ * ready hold of each copy set aside (ON_HOLD), and each borrower's holds.
+ * A returned copy goes to the head of its title's queue with one poll,
+ * so a title with thousands of holds returns as fast as one with none.
+ *
+ * Waiting holds lapse after WAIT_DAYS and ready ones after PICKUP_DAYS.
+ * Both deadlines sit in a day-slotted {@link TimerWheel}, so the daily
+ * expiry only touches the holds that are due. A ready hold that lapses
+ * passes its copy on to the next in line. Methods that can hand a copy on
+ * add the holds they make READY to a caller's 'promoted' list, so the
+ * caller can tell their borrowers.
+ *
+ * Every method is synchronized; each is a constant number of map and
+ * queue operations, except those that close all of a title's or a
+ * borrower's holds.
+ */
+public class HoldRegistry {
+    public static final int WAIT_DAYS = 180;
+    public static final int PICKUP_DAYS = 3;
+    // More slots than the longest deadline, so a slot only holds one day's holds
+    private static final int WHEEL_SLOTS = 256;
+
+    // Concurrent only so returns can see there's no queue without taking the lock
+    private final Map<BookTitle, HoldQueue> queues = new ConcurrentHashMap<>();
+    private final Map<BookItem, Hold> readyByItem = new HashMap<>();
+    private final Map<Borrower, List<Hold>> byBorrower = new HashMap<>();
+    private final Map<Integer, Hold> byId = new HashMap<>();
+    private final TimerWheel<Hold> expiries = new TimerWheel<>(WHEEL_SLOTS, h -> h.getExpiryDate().toEpochDay());
+    private int nextHoldId = 1;
+
+    // ==========================================
+    // PLACING & CANCELLING
+    // ==========================================
+    /**
+     * A new hold at the back of the title's queue, or null if the borrower
+     * already holds the title. If a copy is on the shelf it is set aside
+     * for the head of the queue straight away.
+     */
+    public synchronized Hold place(Borrower b, BookTitle t, LocalDate today) {
+        return place(nextHoldId, b, t, today);
+    }
+
+    // With a given ID (journal replay)
+    public synchronized Hold place(int holdID, Borrower b, BookTitle t, LocalDate today) {
+        for (Hold h : holdsOf(b)) {
+            if (h.getBookTitle() == t)
+                return null;
+        }
+        nextHoldId = Math.max(nextHoldId, holdID + 1);
+        Hold h = new Hold(holdID, b, t, today, today.plusDays(WAIT_DAYS));
+        enqueue(h);
+        // A return that saw no queue may have just shelved a copy
+        BookItem free = t.findAvailableCopy();
+        if (free != null)
+            offer(free, BookStatus.AVAILABLE, today);
+        return h;
+    }
+
+    // Re-registers a hold with its original ID and dates (journal replay, snapshot load).
+    // A ready hold's copy must already be ON_HOLD.
+    public synchronized void restore(Hold h) {
+        nextHoldId = Math.max(nextHoldId, h.getHoldID() + 1);
+        if (h.getState() == Hold.State.READY) {
+            readyByItem.put(h.getReadyItem(), h);
+            index(h);
+            expiries.schedule(h);
+        } else {
+            enqueue(h);
+        }
+    }
+
+    /**
+     * Closes an open hold. A ready hold's copy goes to the next in line
+     * (added to 'promoted') or back on the shelf. Returns false (nothing
+     * changed) if the hold was already closed.
+     */
+    public synchronized boolean cancel(Hold h, Hold.State why, LocalDate today, List<Hold> promoted) {
+        if (!h.isOpen())
+            return false;
+        expiries.cancel(h);
+        unindex(h);
+        BookItem item = h.getReadyItem();
+        if (item == null) {
+            HoldQueue q = queues.get(h.getBookTitle());
+            if (q != null && q.remove(h) && q.isEmpty())
+                queues.remove(h.getBookTitle());
+            h.close(why);
+            return true;
+        }
+        readyByItem.remove(item);
+        h.close(why);
+        Hold next = offer(item, BookStatus.ON_HOLD, today);
+        if (next != null)
+            promoted.add(next);
+        else
+            item.compareAndSetStatus(BookStatus.ON_HOLD, BookStatus.AVAILABLE);
+        return true;
+    }
+
+    // ==========================================
+    // CIRCULATION
+    // ==========================================
+    /**
+     * Sets the copy aside for the head of its title's queue, moving it from
+     * 'from' to ON_HOLD. Returns the hold now READY, or null (copy untouched)
+     * if nobody is waiting or the copy is no longer in 'from'.
+     */
+    public synchronized Hold offer(BookItem item, BookStatus from, LocalDate today) {
+        HoldQueue q = queues.get(item.getBookTitle());
+        if (q == null || !item.compareAndSetStatus(from, BookStatus.ON_HOLD))
+            return null;
+        Hold h = q.poll();
+        if (q.isEmpty())
+            queues.remove(item.getBookTitle());
+        expiries.cancel(h);
+        h.markReady(item, today.plusDays(PICKUP_DAYS));
+        readyByItem.put(item, h);
+        expiries.schedule(h);
+        return h;
+    }
+
+    /**
+     * Hands the copy set aside for 'b' over for issuing: ON_HOLD -> LOANED.
+     * Returns the fulfilled hold, or null (nothing changed) if the copy
+     * isn't held for 'b'.
+     */
+    public synchronized Hold claim(BookItem item, Borrower b) {
+        Hold h = readyByItem.get(item);
+        if (h == null || h.getBorrower() != b || !item.compareAndSetStatus(BookStatus.ON_HOLD, BookStatus.LOANED))
+            return null;
+        fulfil(h);
+        return h;
+    }
+
+    // Journal replay of an issue: closes the ready hold without touching the copy's status
+    public synchronized void claimed(BookItem item, Borrower b) {
+        Hold h = readyByItem.get(item);
+        if (h != null && h.getBorrower() == b)
+            fulfil(h);
+    }
+
+    /**
+     * Takes every hold whose last day is before 'today' off the expiry
+     * wheel; the caller expires each with {@link #expire(Hold, LocalDate)}.
+     */
+    public synchronized List<Hold> takeDue(LocalDate today) {
+        List<Hold> due = new ArrayList<>();
+        expiries.advance(today.toEpochDay() - 1, due::add);
+        return due;
+    }
+
+    /**
+     * Expires 'h' if it is still open and past its last day, passing a
+     * lapsed ready hold's copy on (see {@link #cancel}). Returns false
+     * (nothing changed) if it was closed or got a new deadline since it
+     * came due.
+     */
+    public synchronized boolean expire(Hold h, LocalDate today, List<Hold> promoted) {
+        if (!h.isOpen() || !h.getExpiryDate().isBefore(today))
+            return false;
+        return cancel(h, Hold.State.EXPIRED, today, promoted);
+    }
+
+    // ==========================================
+    // CASCADES (from the database's removers)
+    // ==========================================
+    // The title is going away with its copies: close its holds, no hand-offs
+    public synchronized void removeTitle(BookTitle t) {
+        HoldQueue q = queues.remove(t);
+        if (q != null) {
+            for (Hold h = q.poll(); h != null; h = q.poll()) {
+                expiries.cancel(h);
+                unindex(h);
+                h.close(Hold.State.CANCELLED);
+            }
+        }
+        for (BookItem i : t.getCopies()) {
+            Hold h = readyByItem.remove(i);
+            if (h != null) {
+                expiries.cancel(h);
+                unindex(h);
+                h.close(Hold.State.CANCELLED);
+            }
+        }
+    }
+
+    // The copy set aside is withdrawn (removed, or no longer ON_HOLD): its hold
+    // goes back to the front of the queue, and gets another copy if one is on
+    // the shelf
+    public synchronized void removeItem(BookItem item, LocalDate today, List<Hold> promoted) {
+        Hold h = readyByItem.remove(item);
+        if (h == null)
+            return;
+        expiries.cancel(h);
+        LocalDate until = h.getPlacedDate().plusDays(WAIT_DAYS);
+        h.markWaiting(until.isBefore(today) ? today : until);
+        queues.computeIfAbsent(h.getBookTitle(), k -> new HoldQueue()).addFirst(h);
+        expiries.schedule(h);
+        BookItem free = h.getBookTitle().findAvailableCopy();
+        Hold next = free != null ? offer(free, BookStatus.AVAILABLE, today) : null;
+        if (next != null)
+            promoted.add(next);
+    }
+
+    public synchronized void removeBorrower(Borrower b, LocalDate today, List<Hold> promoted) {
+        for (Hold h : holdsOf(b)) {
+            cancel(h, Hold.State.CANCELLED, today, promoted);
+        }
+    }
+
+    // ==========================================
+    // LOOKUPS
+    // ==========================================
+    // Lock-free; may miss a hold being placed right now (place() catches that copy)
+    public boolean hasWaiting(BookTitle t) {
+        return queues.containsKey(t);
+    }
+
+    public synchronized Hold findById(int holdID) {
+        return byId.get(holdID);
+    }
+
+    // The hold a copy is set aside for, or null
+    public synchronized Hold findReady(BookItem item) {
+        return readyByItem.get(item);
+    }
+
+    public synchronized List<Hold> holdsOf(Borrower b) {
+        List<Hold> holds = byBorrower.get(b);
+        return holds == null ? Collections.emptyList() : new ArrayList<>(holds);
+    }
+
+    public synchronized int queueLength(BookTitle t) {
+        HoldQueue q = queues.get(t);
+        return q == null ? 0 : q.size();
+    }
+
+    // Waiting holds ahead of 'h' (0 for the head); -1 if it isn't waiting
+    public synchronized int positionOf(Hold h) {
+        HoldQueue q = queues.get(h.getBookTitle());
+        return q != null && q.contains(h) ? q.positionOf(h) : -1;
+    }
+
+    // Every open hold: each title's queue in order, then the ready ones (for snapshots)
+    public synchronized List<Hold> allHolds() {
+        List<Hold> all = new ArrayList<>(byId.size());
+        for (HoldQueue q : queues.values()) {
+            for (Hold h : q) {
+                all.add(h);
+            }
+        }
+        all.addAll(readyByItem.values());
+        return all;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    public synchronized int peekNextHoldId() {
+        return nextHoldId;
+    }
+
+    public synchronized void ensureNextHoldId(int next) {
+        nextHoldId = Math.max(nextHoldId, next);
+    }
+
+    // ==========================================
+    // INTERNALS
+    // ==========================================
+    private void enqueue(Hold h) {
+        queues.computeIfAbsent(h.getBookTitle(), k -> new HoldQueue()).addLast(h);
+        index(h);
+        expiries.schedule(h);
+    }
+
+    private void fulfil(Hold h) {
+        readyByItem.remove(h.getReadyItem());
+        expiries.cancel(h);
+        unindex(h);
+        h.close(Hold.State.FULFILLED);
+    }
+
+    private void index(Hold h) {
+        byId.put(h.getHoldID(), h);
+        byBorrower.computeIfAbsent(h.getBorrower(), k -> new ArrayList<>(2)).add(h);
+    }
+
+    private void unindex(Hold h) {
+        byId.remove(h.getHoldID());
+        List<Hold> holds = byBorrower.get(h.getBorrower());
+        if (holds != null && holds.remove(h) && holds.isEmpty())
+            byBorrower.remove(h.getBorrower());
+    }
+}
@@ -0,0 +1,71 @@
+package core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Array-backed list that also knows each element's position, so removing an
+ * element takes constant time: the last element moves into its slot.
+ * Elements are distinct and compared by identity. The order is insertion
+ * order until something is removed.
+ *
+ * Used for the database's catalog, inventory, person and author lists, which
+ * are paged by index but must not be scanned on every delete.
+ */
+class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+    private final ArrayList<T> elements = new ArrayList<>();
+    private final Map<Object, Integer> positions = new IdentityHashMap<>();
+
+    @Override
+    public T get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean add(T e) {
+        if (positions.putIfAbsent(e, elements.size()) != null)
+            return false;
+        elements.add(e);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Integer at = positions.remove(o);
+        if (at == null)
+            return false;
+        T last = elements.remove(elements.size() - 1);
+        if (last != o) {
+            elements.set(at, last);
+            positions.put(last, at);
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return positions.containsKey(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return positions.getOrDefault(o, -1);
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        positions.clear();
+        modCount++;
+    }
+}
@@ -0,0 +1,144 @@
+package core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the HTTP API: escaping strings into a StringBuilder
+ * and parsing flat request bodies ({"key": value, ...}, no nesting) into a
+ * map of strings. Numbers and booleans are returned as their text, null as
+ * a null value.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    // Appends 's' as a quoted JSON string ("null" when s is null)
+    static StringBuilder string(StringBuilder sb, String s) {
+        if (s == null)
+            return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    static Map<String, String> parseObject(String text) {
+        Parser p = new Parser(text);
+        Map<String, String> map = new LinkedHashMap<>();
+        p.skipSpace();
+        p.expect('{');
+        p.skipSpace();
+        if (p.peek() == '}') {
+            p.pos++;
+            return map;
+        }
+        while (true) {
+            p.skipSpace();
+            String key = p.string();
+            p.skipSpace();
+            p.expect(':');
+            p.skipSpace();
+            map.put(key, p.value());
+            p.skipSpace();
+            char c = p.next();
+            if (c == '}')
+                return map;
+            if (c != ',')
+                throw new IllegalArgumentException("Expected ',' or '}' at " + (p.pos - 1));
+        }
+    }
+
+    private static class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        char peek() {
+            if (pos >= s.length())
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            return s.charAt(pos);
+        }
+
+        char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        void expect(char c) {
+            if (next() != c)
+                throw new IllegalArgumentException("Expected '" + c + "' at " + (pos - 1));
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        String value() {
+            char c = peek();
+            if (c == '"')
+                return string();
+            if (c == '{' || c == '[')
+                throw new IllegalArgumentException("Nested values are not supported");
+            int start = pos;
+            while (pos < s.length() && ",} \t\r\n".indexOf(s.charAt(pos)) < 0) {
+                pos++;
+            }
+            String raw = s.substring(start, pos);
+            if (raw.isEmpty())
+                throw new IllegalArgumentException("Missing value at " + start);
+            return raw.equals("null") ? null : raw;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"')
+                    return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length())
+                            throw new IllegalArgumentException("Bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package core;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Unique-key index: an open-addressing table of entity references with
+ * their normalized keys and key hashes, in parallel arrays. The key is
+ * normalized once, when the entity is added, and lookups compare against
+ * the stored copy, so a probe never calls back into the entity (in compact
+ * mode that would decode its text from the TextArena). A HashMap would also
+ * keep a Node per entry.
+ *
+ * Writers take a lock; readers run optimistically and retry under the read
+ * lock only if a write overlapped, so lookups from many desks don't contend.
+ */
+class KeyIndex<T> {
+    private static final class Table {
+        final Object[] slots;
+        final String[] keys;
+        final int[] hashes;
+
+        Table(int capacity) {
+            slots = new Object[capacity];
+            keys = new String[capacity];
+            hashes = new int[capacity];
+        }
+    }
+
+    private final Function<T, String> keyOf;
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table = new Table(16);
+    private int size;
+
+    // keyOf must give the normalized key (as passed to get) of an entity; it's
+    // called on add and remove only
+    KeyIndex(Function<T, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    T get(String key) {
+        int h = hash(key);
+        long stamp = lock.tryOptimisticRead();
+        T found = find(table, key, h);
+        if (lock.validate(stamp))
+            return found;
+        stamp = lock.readLock();
+        try {
+            return find(table, key, h);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // False (nothing stored) if another entity already has this key
+    boolean add(T value) {
+        String key = keyOf.apply(value);
+        int h = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            if (find(t, key, h) != null)
+                return false;
+            if ((size + 1) * 2 > t.slots.length)
+                t = table = resize(t);
+            insert(t, value, key, h);
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Removes this exact entity; false if it isn't the one indexed under its key
+    boolean remove(T value) {
+        String key = keyOf.apply(value);
+        int h = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int mask = t.slots.length - 1;
+            for (int i = h & mask;; i = (i + 1) & mask) {
+                Object slot = t.slots[i];
+                if (slot == null)
+                    return false;
+                if (slot == value) {
+                    delete(t, i);
+                    size--;
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Bounded by the table length, so a torn optimistic read can't spin forever
+    @SuppressWarnings("unchecked")
+    private T find(Table t, String key, int h) {
+        Object[] slots = t.slots;
+        String[] keys = t.keys;
+        int[] hashes = t.hashes;
+        int mask = slots.length - 1;
+        for (int i = h & mask, n = 0; n < slots.length; i = (i + 1) & mask, n++) {
+            Object slot = slots[i];
+            if (slot == null)
+                return null;
+            if (hashes[i] == h && key.equals(keys[i]))
+                return (T) slot;
+        }
+        return null;
+    }
+
+    private static void insert(Table t, Object value, String key, int h) {
+        int mask = t.slots.length - 1;
+        int i = h & mask;
+        while (t.slots[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t.hashes[i] = h;
+        t.keys[i] = key;
+        t.slots[i] = value;
+    }
+
+    // Backward-shift deletion: later entries of the probe run move up, so no tombstones
+    private static void delete(Table t, int hole) {
+        int mask = t.slots.length - 1;
+        for (int i = (hole + 1) & mask; t.slots[i] != null; i = (i + 1) & mask) {
+            int home = t.hashes[i] & mask;
+            // Move the entry if its home slot isn't cyclically within (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                t.slots[hole] = t.slots[i];
+                t.keys[hole] = t.keys[i];
+                t.hashes[hole] = t.hashes[i];
+                hole = i;
+            }
+        }
+        t.slots[hole] = null;
+        t.keys[hole] = null;
+        t.hashes[hole] = 0;
+    }
+
+    private static Table resize(Table old) {
+        Table t = new Table(old.slots.length * 2);
+        for (int i = 0; i < old.slots.length; i++) {
+            if (old.slots[i] != null)
+                insert(t, old.slots[i], old.keys[i], old.hashes[i]);
+        }
+        return t;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
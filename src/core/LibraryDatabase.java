@@ -3,118 +3,1068 @@ package core;
 import entities.Author;
 import entities.BookItem;
 import entities.BookTitle;
+import enums.BookStatus;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import transactions.Hold;
 import transactions.Loan;
+import transactions.LoanArchive;
+import users.Borrower;
 import users.Person;
 
 public class LibraryDatabase {
+    private final boolean concurrent;
+
     private List<BookTitle> catalog;
     private List<BookItem> inventory;
     private List<Person> persons;
     private List<Author> authors;
-    private List<Loan> activeLoans;
+    private ActiveLoanRegistry activeLoans;
+    private AtomicInteger nextLoanId;
+    private AtomicInteger nextAuthorId;
+    private LoanArchive loanArchive;
+    // Per-title hold queues and the copies set aside for them (locks itself)
+    private HoldRegistry holds;
+
+    // Primary-key indexes (keys are normalized); titles and copies, the big
+    // ones, are KeyIndexes that don't keep a key String per entry
+    private KeyIndex<BookTitle> titlesByIsbn;
+    private KeyIndex<BookItem> itemsByBarcode;
+    private Map<Integer, Person> personsById;
+    private Map<String, Author> authorsByName;
+
+    // The search index is a TreeMap, so it's guarded separately; issue/return never take this lock
+    private CatalogSearchIndex searchIndex;
+    private ReadWriteLock searchLock;
+    // Genre/publisher/author/availability bitmaps (locks itself)
+    private CatalogFacets facets;
+    // Type-ahead trie over title and author names (locks itself)
+    private CatalogAutocomplete autocomplete;
+
+    // Optional write-ahead journal; null means purely in-memory
+    private LibraryJournal journal;
+    // Every mutation holds this shared; a checkpoint holds it exclusively, so
+    // the snapshot and the journal reset after it see no change in between
+    private final ReentrantReadWriteLock mutations = new ReentrantReadWriteLock();
+    // Optional change stream for downstream consumers; null means none
+    private LibraryEventRing events;
+    // Background checkpoints (see startCheckpoints); guarded by its own lock, not
+    // 'this', since stopping waits for a checkpoint that waits for mutations
+    private final Object checkpointLock = new Object();
+    private ScheduledExecutorService checkpointer;
 
     public LibraryDatabase() {
-        this.catalog = new ArrayList<>();
-        this.inventory = new ArrayList<>();
-        this.persons = new ArrayList<>();
-        this.authors = new ArrayList<>();
-        this.activeLoans = new ArrayList<>();
+        this(false);
+    }
+
+    /**
+     * @param concurrent if true, indexes are ConcurrentHashMaps and the lists are
+     *                   synchronized, so many desks can issue and return at once
+     */
+    public LibraryDatabase(boolean concurrent) {
+        this.concurrent = concurrent;
+
+        this.catalog = newList();
+        this.inventory = newList();
+        this.persons = newList();
+        this.authors = newList();
+        this.activeLoans = new ActiveLoanRegistry(concurrent);
+        this.nextLoanId = new AtomicInteger(1);
+        this.nextAuthorId = new AtomicInteger(1);
+        this.loanArchive = new LoanArchive();
+        this.holds = new HoldRegistry();
+
+        this.titlesByIsbn = new KeyIndex<>(t -> key(t.getIsbn()));
+        this.itemsByBarcode = new KeyIndex<>(i -> key(i.getBarcode()));
+        this.personsById = newMap();
+        this.authorsByName = newMap();
+
+        this.searchIndex = new CatalogSearchIndex();
+        this.searchLock = new ReentrantReadWriteLock();
+        this.facets = new CatalogFacets();
+        this.autocomplete = new CatalogAutocomplete();
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    // Attach after replay, so replayed records aren't journaled twice.
+    public void attachJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+
+    public LibraryJournal getJournal() {
+        return journal;
+    }
+
+    // See LibrarySnapshot.checkpoint
+    ReadWriteLock getMutationLock() {
+        return mutations;
+    }
+
+    /**
+     * Checks the journal every 'periodMillis' on a daemon thread and writes a
+     * checkpoint to 'snapshot' once the journal reaches 'journalBytes', so the
+     * journal stays bounded however the database is driven (console, HTTP, batch).
+     */
+    public void startCheckpoints(Path snapshot, long journalBytes, long periodMillis) {
+        synchronized (checkpointLock) {
+            if (checkpointer != null)
+                return;
+            checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            checkpointer.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpointIfDue(snapshot, journalBytes);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Checkpoint failed: " + e.getMessage());
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Stops the checkpoint task, waiting for one in progress so the journal can be closed after
+    public void stopCheckpoints() {
+        synchronized (checkpointLock) {
+            if (checkpointer == null)
+                return;
+            checkpointer.shutdown();
+            try {
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            checkpointer = null;
+        }
+    }
+
+    // Returns whether a checkpoint was written
+    boolean checkpointIfDue(Path snapshot, long journalBytes) throws IOException {
+        LibraryJournal j = journal;
+        if (j == null || j.size() < journalBytes)
+            return false;
+        LibrarySnapshot.checkpoint(this, snapshot);
+        return true;
+    }
+
+    // Like the journal, attach after replay so consumers only see live changes.
+    public void attachEvents(LibraryEventRing events) {
+        this.events = events;
+    }
+
+    public LibraryEventRing getEvents() {
+        return events;
     }
 
     // --- ADDERS ---
-    public void addBookTitle(BookTitle t) {
-        catalog.add(t);
+    // Each adder returns false (and stores nothing) if the key is already taken.
+    // Each mutation appends its journal record and claims its event sequences
+    // inside the same locks that make it visible (see LOCKING below), and waits
+    // for durability after them before filling the events in.
+    public boolean addBookTitle(BookTitle t) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (this) {
+                synchronized (t) {
+                    if (!titlesByIsbn.add(t))
+                        return false;
+                    catalog.add(t);
+                    searchLock.writeLock().lock();
+                    try {
+                        searchIndex.add(t);
+                    } finally {
+                        searchLock.writeLock().unlock();
+                    }
+                    facets.add(t);
+                    autocomplete.addTitle(t);
+                    if (journal != null)
+                        seq = journal.logAddTitle(t);
+                    ev = claimEvents(1);
+                }
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.TITLE_ADDED, t);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
-    public void addBookItem(BookItem i) {
-        inventory.add(i);
+    public boolean addBookItem(BookItem i) {
+        mutations.readLock().lock();
+        try {
+            Hold ready;
+            long seq = 0, ev;
+            synchronized (i.getBookTitle()) {
+                if (!itemsByBarcode.add(i))
+                    return false;
+                inventory.add(i);
+                i.getBookTitle().addCopy(i);
+                if (journal != null)
+                    seq = journal.logAddItem(i);
+                // A new copy of a title with a queue goes straight to its head
+                ready = offerToHolds(i, BookStatus.AVAILABLE, i.getPurchaseDate());
+                ev = claimEvents(ready != null ? 2 : 1);
+            }
+            try {
+                commit(seq);
+            } finally {
+                ev = publish(ev, LibraryEventRing.Type.ITEM_ADDED, i);
+                if (ready != null)
+                    publish(ev, LibraryEventRing.Type.HOLD_READY, ready);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
-    public void addPerson(Person p) {
-        persons.add(p);
+    public boolean addPerson(Person p) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (p) {
+                if (personsById.putIfAbsent(p.getId(), p) != null)
+                    return false;
+                persons.add(p);
+                if (journal != null)
+                    seq = journal.logAddPerson(p);
+                ev = claimEvents(1);
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.PERSON_ADDED, p);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
-    public void addAuthor(Author a) {
-        authors.add(a);
+    public boolean addAuthor(Author a) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (this) {
+                if (authorsByName.putIfAbsent(key(a.getName()), a) != null)
+                    return false;
+                authors.add(a);
+                nextAuthorId.accumulateAndGet(a.getAuthorID() + 1, Math::max);
+                searchLock.writeLock().lock();
+                try {
+                    searchIndex.addAuthor(a);
+                } finally {
+                    searchLock.writeLock().unlock();
+                }
+                autocomplete.addAuthor(a);
+                if (journal != null)
+                    seq = journal.logAddAuthor(a);
+                ev = claimEvents(1);
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.AUTHOR_ADDED, a);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
-    public void addLoan(Loan loan) {
-        activeLoans.add(loan);
+    // Returns false if the copy already has an open loan.
+    public boolean addLoan(Loan loan) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (loan.getBorrower()) {
+                synchronized (loan.getBookItem().getBookTitle()) {
+                    if (!activeLoans.issue(loan))
+                        return false;
+                    if (journal != null)
+                        seq = journal.logOpenLoan(loan);
+                    ev = claimEvents(1);
+                }
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.LOAN_OPENED, loan);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
     // --- REMOVERS (For CRUD) ---
-    public void removeBookTitle(BookTitle t) {
-        catalog.remove(t);
+    // Removers only visit the records linked to the one removed, through the
+    // reverse indexes (title -> copies, author -> titles, borrower and copy ->
+    // open loan), and return false (removing nothing) if an open loan needs it.
+    // Title, copy and person removers hold the mutation lock exclusively, so no
+    // issue can slip in between checking the open loans and removing.
+
+    // Removes the title together with its copies
+    public boolean removeBookTitle(BookTitle t) {
+        List<BookItem> copies;
+        long seq = 0, ev;
+        Lock exclusive = lockExclusive();
+        try {
+            if (titlesByIsbn.get(key(t.getIsbn())) != t)
+                return false;
+            copies = t.getCopies();
+            for (BookItem i : copies) {
+                if (activeLoans.findByItem(i) != null)
+                    return false;
+            }
+            LocalDate today = LocalDate.now();
+            // Hand-offs between the title's own copies are closed with it below
+            List<Hold> promoted = new ArrayList<>();
+            for (BookItem i : copies) {
+                seq = Math.max(seq, unlinkItem(i, today, promoted));
+            }
+            titlesByIsbn.remove(t);
+            catalog.remove(t);
+            searchLock.writeLock().lock();
+            try {
+                searchIndex.remove(t);
+            } finally {
+                searchLock.writeLock().unlock();
+            }
+            facets.remove(t);
+            autocomplete.remove(t);
+            holds.removeTitle(t);
+            if (journal != null)
+                seq = journal.logRemoveTitle(t);
+            ev = claimEvents(copies.size() + 1);
+        } finally {
+            exclusive.unlock();
+        }
+        try {
+            commit(seq);
+        } finally {
+            for (BookItem i : copies) {
+                ev = publish(ev, LibraryEventRing.Type.ITEM_REMOVED, i);
+            }
+            publish(ev, LibraryEventRing.Type.TITLE_REMOVED, t);
+        }
+        return true;
+    }
+
+    public boolean removeBookItem(BookItem i) {
+        return removeBookItem(i, LocalDate.now());
     }
 
-    public void removeBookItem(BookItem i) {
+    // 'today' dates a hold put back in the queue (replay passes the journaled day)
+    boolean removeBookItem(BookItem i, LocalDate today) {
+        long seq, ev;
+        List<Hold> promoted = new ArrayList<>();
+        Lock exclusive = lockExclusive();
+        try {
+            if (!isListed(i) || activeLoans.findByItem(i) != null)
+                return false;
+            seq = unlinkItem(i, today, promoted);
+            ev = claimEvents(1 + promoted.size());
+        } finally {
+            exclusive.unlock();
+        }
+        try {
+            commit(seq);
+        } finally {
+            ev = publish(ev, LibraryEventRing.Type.ITEM_REMOVED, i);
+            publishReady(ev, promoted);
+        }
+        return true;
+    }
+
+    // Takes a copy with no open loan out of every index; caller holds the mutation lock exclusively
+    private long unlinkItem(BookItem i, LocalDate today, List<Hold> promoted) {
+        itemsByBarcode.remove(i);
         inventory.remove(i);
+        i.getBookTitle().removeCopy(i);
+        // A copy set aside for a patron puts them back at the front of the
+        // queue, or hands them another copy on the shelf
+        holds.removeItem(i, today, promoted);
+        return journal != null ? journal.logRemoveItem(i, today) : 0;
+    }
+
+    public boolean removePerson(Person p) {
+        return removePerson(p, LocalDate.now());
+    }
+
+    // 'today' dates the hand-offs of copies set aside for them (replay passes the journaled day)
+    boolean removePerson(Person p, LocalDate today) {
+        long seq, ev;
+        List<Hold> promoted = new ArrayList<>();
+        Lock exclusive = lockExclusive();
+        try {
+            if (!isListed(p))
+                return false;
+            if (p instanceof Borrower b && b.getActiveLoanCount() > 0)
+                return false;
+            personsById.remove(p.getId(), p);
+            persons.remove(p);
+            if (p instanceof Borrower b)
+                holds.removeBorrower(b, today, promoted);
+            seq = journal != null ? journal.logRemovePerson(p, today) : 0;
+            ev = claimEvents(1 + promoted.size());
+        } finally {
+            exclusive.unlock();
+        }
+        try {
+            commit(seq);
+        } finally {
+            ev = publish(ev, LibraryEventRing.Type.PERSON_REMOVED, p);
+            publishReady(ev, promoted);
+        }
+        return true;
+    }
+
+    // Whether the copy / person is still in the database (not removed, nor never added)
+    private boolean isListed(BookItem i) {
+        return itemsByBarcode.get(key(i.getBarcode())) == i;
+    }
+
+    private boolean isListed(Person p) {
+        return personsById.get(p.getId()) == p;
     }
 
-    public void removePerson(Person p) {
-        persons.remove(p);
+    // Runs 'read' with no mutation in progress, e.g. to capture loans together
+    // with the event ring cursor they're complete up to (loan events are
+    // published before a mutation lets go of the lock)
+    <T> T readQuiesced(Supplier<T> read) {
+        Lock exclusive = lockExclusive();
+        try {
+            return read.get();
+        } finally {
+            exclusive.unlock();
+        }
     }
 
-    public void removeAuthor(Author a) {
-        authors.remove(a);
+    // A thread inside a mutation holds the lock shared and can't upgrade it:
+    // calling a remover from there is a bug, so fail instead of deadlocking.
+    private Lock lockExclusive() {
+        if (mutations.getReadHoldCount() > 0)
+            throw new IllegalStateException("Exclusive section entered from inside a mutation");
+        Lock exclusive = mutations.writeLock();
+        exclusive.lock();
+        return exclusive;
+    }
+
+    // Also takes the author off each of their titles
+    public boolean removeAuthor(Author a) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (this) {
+                if (!authorsByName.remove(key(a.getName()), a))
+                    return false;
+                authors.remove(a);
+                searchLock.writeLock().lock();
+                try {
+                    for (BookTitle t : searchIndex.titlesOf(a)) {
+                        searchIndex.remove(t);
+                        t.removeAuthor(a);
+                        searchIndex.add(t);
+                    }
+                    searchIndex.removeAuthor(a);
+                } finally {
+                    searchLock.writeLock().unlock();
+                }
+                facets.removeAuthor(a);
+                autocomplete.remove(a);
+                if (journal != null)
+                    seq = journal.logRemoveAuthor(a);
+                ev = claimEvents(1);
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.AUTHOR_REMOVED, a);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
     public void removeLoan(Loan loan) {
-        activeLoans.remove(loan);
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (loan.getBorrower()) {
+                synchronized (loan.getBookItem().getBookTitle()) {
+                    if (!activeLoans.close(loan))
+                        return;
+                    if (journal != null)
+                        seq = journal.logCloseLoan(loan);
+                    ev = claimEvents(1);
+                }
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.LOAN_CLOSED, loan);
+            }
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // Closes the open loan on this copy and returns it (null if none).
+    public Loan closeLoan(BookItem item) {
+        mutations.readLock().lock();
+        try {
+            Loan loan;
+            long seq = 0, ev = 0;
+            // Retried if another desk closes it between the lookup and the locks
+            while ((loan = activeLoans.findByItem(item)) != null) {
+                synchronized (loan.getBorrower()) {
+                    synchronized (item.getBookTitle()) {
+                        if (!activeLoans.close(loan))
+                            continue;
+                        if (journal != null)
+                            seq = journal.logCloseLoan(loan);
+                        ev = claimEvents(1);
+                        break;
+                    }
+                }
+            }
+            if (loan == null)
+                return null;
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.LOAN_CLOSED, loan);
+            }
+            return loan;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // --- CIRCULATION ---
+    // LOCKING: a loan changes under its borrower's lock, then its title's;
+    // copies and holds of a title change under the title's lock, then the
+    // hold registry's. Each change is journaled before those locks are
+    // released, so replay sees a title's changes in the order they happened,
+    // and so are the event ring sequences, so consumers see them in that order.
+    // Catalog changes (titles and authors) also hold the database's own lock.
+    // Outside all of these, every mutation holds the mutation lock shared;
+    // title, copy and person removers (and checkpoints) hold it exclusively.
+
+    // Moves the copy AVAILABLE -> LOANED with a CAS, so two desks can't both win
+    // (or ON_HOLD -> LOANED if it's set aside for this borrower, fulfilling the hold);
+    // returns null if the copy wasn't available or the borrower can't borrow
+    // (account not ACTIVE or at maxBookLimit). The borrower's own lock makes the
+    // limit check and the new loan one step.
+    public Loan issueLoan(Borrower borrower, BookItem item) {
+        mutations.readLock().lock();
+        try {
+            // Removers hold the mutation lock exclusively, so these can't change until we're done
+            if (!isListed(item) || !isListed(borrower))
+                return null;
+            Loan loan;
+            long seq = 0, ev;
+            synchronized (borrower) {
+                if (!borrower.canBorrow())
+                    return null;
+                synchronized (item.getBookTitle()) {
+                    // A copy's open loan only changes under its title's lock, so
+                    // checking it first means a claimed hold always gets its loan
+                    if (activeLoans.findByItem(item) != null)
+                        return null;
+                    if (!item.compareAndSetStatus(BookStatus.AVAILABLE, BookStatus.LOANED)
+                            && (item.getStatus() != BookStatus.ON_HOLD || holds.claim(item, borrower) == null))
+                        return null;
+                    // Only fails if addLoan took the ID
+                    do {
+                        loan = new Loan(nextLoanId(), borrower, item);
+                    } while (!activeLoans.issue(loan));
+                    borrower.addLoan(loan);
+                    if (journal != null)
+                        seq = journal.logIssue(loan);
+                    ev = claimEvents(1);
+                }
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.LOAN_ISSUED, loan);
+            }
+            return loan;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // Closes the open loan on this copy and moves it LOANED -> AVAILABLE, or
+    // LOANED -> ON_HOLD for the head of the title's hold queue (see findReadyHold);
+    // returns null if the copy wasn't on loan.
+    public Loan returnLoan(BookItem item) {
+        return returnLoan(item, LocalDate.now());
+    }
+
+    Loan returnLoan(BookItem item, LocalDate returnDate) {
+        mutations.readLock().lock();
+        try {
+            Loan loan;
+            Hold ready = null;
+            long seq = 0, ev = 0;
+            // Retried if another desk closes it between the lookup and the locks
+            while ((loan = activeLoans.findByItem(item)) != null) {
+                synchronized (loan.getBorrower()) {
+                    synchronized (item.getBookTitle()) {
+                        if (!activeLoans.close(loan))
+                            continue;
+                        loan.markReturned(returnDate);
+                        ready = offerToHolds(item, BookStatus.LOANED, returnDate);
+                        if (ready == null)
+                            item.compareAndSetStatus(BookStatus.LOANED, BookStatus.AVAILABLE);
+                        archiveLoan(loan);
+                        if (journal != null)
+                            seq = journal.logReturn(loan);
+                        ev = claimEvents(ready != null ? 2 : 1);
+                        break;
+                    }
+                }
+            }
+            if (loan == null)
+                return null;
+            try {
+                commit(seq);
+            } finally {
+                ev = publish(ev, LibraryEventRing.Type.LOAN_RETURNED, loan);
+                if (ready != null)
+                    publish(ev, LibraryEventRing.Type.HOLD_READY, ready);
+            }
+            return loan;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // Moves a returned loan into the columnar archive (also used by snapshot load)
+    void archiveLoan(Loan loan) {
+        loan.getBorrower().archiveLoan(loan, loanArchive);
+    }
+
+    // Manual status change (e.g. LOST, REFERENCE_ONLY). A copy put back on the
+    // shelf goes to the title's next hold if anyone is waiting.
+    public void setItemStatus(BookItem item, BookStatus status) {
+        setItemStatus(item, status, LocalDate.now());
+    }
+
+    // 'today' dates any hand-off (replay passes the journaled day)
+    void setItemStatus(BookItem item, BookStatus status, LocalDate today) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            List<Hold> promoted = new ArrayList<>();
+            synchronized (item.getBookTitle()) {
+                BookStatus old = item.getStatus();
+                item.setStatus(status);
+                if (old == BookStatus.ON_HOLD && status != BookStatus.ON_HOLD)
+                    holds.removeItem(item, today, promoted);
+                if (status == BookStatus.AVAILABLE) {
+                    Hold ready = offerToHolds(item, BookStatus.AVAILABLE, today);
+                    if (ready != null)
+                        promoted.add(ready);
+                }
+                if (journal != null)
+                    seq = journal.logSetStatus(item, status, today);
+                ev = claimEvents(1 + promoted.size());
+            }
+            try {
+                commit(seq);
+            } finally {
+                if (events != null)
+                    events.publish(ev, LibraryEventRing.Type.ITEM_STATUS_CHANGED, item, status);
+                publishReady(ev + 1, promoted);
+            }
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // Re-registers a loan with its original ID and dates (journal replay).
+    // 'issued' also links it to the borrower and marks the copy LOANED, as issueLoan does.
+    void restoreLoan(Loan loan, boolean issued) {
+        ensureNextLoanId(loan.getLoanID() + 1);
+        if (!activeLoans.issue(loan) || !issued)
+            return;
+        loan.getBorrower().addLoan(loan);
+        holds.claimed(loan.getBookItem(), loan.getBorrower());
+        loan.getBookItem().setStatus(BookStatus.LOANED);
+    }
+
+    // --- HOLDS ---
+    /**
+     * Queues the borrower for the title; if a copy is on the shelf it is set
+     * aside for the head of the queue at once. Returns null if the borrower
+     * already holds the title.
+     */
+    public Hold placeHold(Borrower borrower, BookTitle t) {
+        return placeHold(borrower, t, LocalDate.now(), 0);
+    }
+
+    // holdID 0 takes the next one (replay passes the journaled ID and day)
+    Hold placeHold(Borrower borrower, BookTitle t, LocalDate today, int holdID) {
+        mutations.readLock().lock();
+        try {
+            if (titlesByIsbn.get(key(t.getIsbn())) != t || !isListed(borrower))
+                return null;
+            Hold h;
+            boolean ready;
+            long seq = 0, ev;
+            synchronized (borrower) {
+                synchronized (t) {
+                    h = holdID == 0 ? holds.place(borrower, t, today) : holds.place(holdID, borrower, t, today);
+                    if (h == null)
+                        return null;
+                    if (journal != null)
+                        seq = journal.logPlaceHold(h);
+                    ready = h.getState() == Hold.State.READY;
+                    ev = claimEvents(ready ? 2 : 1);
+                }
+            }
+            try {
+                commit(seq);
+            } finally {
+                ev = publish(ev, LibraryEventRing.Type.HOLD_PLACED, h);
+                if (ready)
+                    publish(ev, LibraryEventRing.Type.HOLD_READY, h);
+            }
+            return h;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // Cancels an open hold; a copy set aside for it goes to the next in line.
+    // Returns false if the hold was already closed.
+    public boolean cancelHold(Hold h) {
+        return cancelHold(h, LocalDate.now());
+    }
+
+    boolean cancelHold(Hold h, LocalDate today) {
+        mutations.readLock().lock();
+        try {
+            List<Hold> promoted = new ArrayList<>();
+            long seq = 0, ev;
+            synchronized (h.getBookTitle()) {
+                if (!holds.cancel(h, Hold.State.CANCELLED, today, promoted))
+                    return false;
+                if (journal != null)
+                    seq = journal.logCancelHold(h, today);
+                ev = claimEvents(1 + promoted.size());
+            }
+            try {
+                commit(seq);
+            } finally {
+                ev = publish(ev, LibraryEventRing.Type.HOLD_CLOSED, h);
+                publishReady(ev, promoted);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    /**
+     * Expires the holds whose last day is before 'today' (waiting ones
+     * after HoldRegistry.WAIT_DAYS, uncollected ones after PICKUP_DAYS);
+     * uncollected copies pass to the next in line. Run daily.
+     */
+    public List<Hold> expireHolds(LocalDate today) {
+        return expireHolds(today, new ArrayList<>());
+    }
+
+    // Also adds the holds handed a lapsed hold's copy to 'promoted'
+    List<Hold> expireHolds(LocalDate today, List<Hold> promoted) {
+        mutations.readLock().lock();
+        try {
+            List<Hold> due = holds.takeDue(today);
+            List<Hold> expired = new ArrayList<>();
+            // Per expired hold: its first claimed event and where its hand-offs start in 'promoted'
+            List<long[]> claims = new ArrayList<>();
+            long seq = 0;
+            // Lapsed waiting holds leave their queues first, so a lapsed ready
+            // hold's copy goes to someone still waiting
+            for (Hold.State state : new Hold.State[] { Hold.State.WAITING, Hold.State.READY }) {
+                for (Hold h : due) {
+                    if (h.getState() != state)
+                        continue;
+                    synchronized (h.getBookTitle()) {
+                        int from = promoted.size();
+                        if (!holds.expire(h, today, promoted))
+                            continue;
+                        expired.add(h);
+                        if (journal != null)
+                            seq = journal.logExpireHold(h, today);
+                        claims.add(new long[] { claimEvents(1 + promoted.size() - from), from });
+                    }
+                }
+            }
+            // One wait covers the whole pass
+            try {
+                commit(seq);
+            } finally {
+                for (int k = 0; k < expired.size(); k++) {
+                    long ev = publish(claims.get(k)[0], LibraryEventRing.Type.HOLD_CLOSED, expired.get(k));
+                    int to = k + 1 < claims.size() ? (int) claims.get(k + 1)[1] : promoted.size();
+                    publishReady(ev, promoted.subList((int) claims.get(k)[1], to));
+                }
+            }
+            return expired;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    // Journal replay of one lapsed hold
+    void expireHold(Hold h, LocalDate today) {
+        mutations.readLock().lock();
+        try {
+            synchronized (h.getBookTitle()) {
+                holds.expire(h, today, new ArrayList<>());
+            }
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    public Hold findHoldById(int holdID) {
+        return holds.findById(holdID);
+    }
+
+    // The hold a copy is set aside for (status ON_HOLD), or null
+    public Hold findReadyHold(BookItem item) {
+        return holds.findReady(item);
+    }
+
+    public List<Hold> findHoldsByBorrower(Borrower borrower) {
+        return holds.holdsOf(borrower);
+    }
+
+    public int getHoldQueueLength(BookTitle t) {
+        return holds.queueLength(t);
+    }
+
+    // Waiting holds ahead of this one; -1 once it's ready or closed
+    public int getHoldPosition(Hold h) {
+        return holds.positionOf(h);
+    }
+
+    HoldRegistry getHolds() {
+        return holds;
+    }
+
+    // Sets the copy aside for the title's next hold, if anyone is waiting
+    private Hold offerToHolds(BookItem item, BookStatus from, LocalDate today) {
+        if (!holds.hasWaiting(item.getBookTitle()))
+            return null;
+        return holds.offer(item, from, today);
+    }
+
+    // --- UPDATERS ---
+    // Renames go through the database so the indexes stay in sync.
+    public void renameBookTitle(BookTitle t, String title) {
+        mutations.readLock().lock();
+        try {
+            long seq = 0, ev;
+            synchronized (this) {
+                searchLock.writeLock().lock();
+                try {
+                    t.setTitle(title);
+                    if (titlesByIsbn.get(key(t.getIsbn())) == t)
+                        searchIndex.update(t);
+                } finally {
+                    searchLock.writeLock().unlock();
+                }
+                autocomplete.rename(t, title);
+                if (journal != null)
+                    seq = journal.logRenameTitle(t);
+                ev = claimEvents(1);
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.TITLE_RENAMED, t);
+            }
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    public boolean renameAuthor(Author a, String name) {
+        mutations.readLock().lock();
+        try {
+            String oldName;
+            long seq = 0, ev;
+            synchronized (this) {
+                String newKey = key(name);
+                Author existing = authorsByName.get(newKey);
+                if (existing != null && existing != a)
+                    return false;
+                oldName = a.getName();
+                authorsByName.remove(key(oldName), a);
+                a.setName(name);
+                authorsByName.put(newKey, a);
+                searchLock.writeLock().lock();
+                try {
+                    searchIndex.updateAuthor(a);
+                } finally {
+                    searchLock.writeLock().unlock();
+                }
+                autocomplete.rename(a, name);
+                if (journal != null)
+                    seq = journal.logRenameAuthor(oldName, name);
+                ev = claimEvents(1);
+            }
+            try {
+                commit(seq);
+            } finally {
+                publish(ev, LibraryEventRing.Type.AUTHOR_RENAMED, a);
+            }
+            return true;
+        } finally {
+            mutations.readLock().unlock();
+        }
     }
 
     // --- FINDERS ---
+    // Best-ranked match, or null
     public BookTitle findBookByTitle(String title) {
-        for (BookTitle t : catalog) {
-            if (t.getTitle().toLowerCase().contains(title.toLowerCase()))
-                return t;
+        List<BookTitle> hits = searchCatalog(title, 1);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    // All titles matching every keyword (title, author, genre, publisher), best first
+    public List<BookTitle> searchCatalog(String query) {
+        return searchCatalog(query, Integer.MAX_VALUE);
+    }
+
+    // The 'limit' best matches only, without ranking the rest
+    public List<BookTitle> searchCatalog(String query, int limit) {
+        searchLock.readLock().lock();
+        try {
+            return searchIndex.search(query, limit);
+        } finally {
+            searchLock.readLock().unlock();
         }
-        return null;
     }
 
-    public BookTitle findBookByISBN(String isbn) {
-        for (BookTitle t : catalog) {
-            if (t.getIsbn().equalsIgnoreCase(isbn))
-                return t;
+    // Like searchCatalog, but each keyword may be misspelled by an edit or two; closest first
+    public List<BookTitle> searchCatalogFuzzy(String query) {
+        return searchCatalogFuzzy(query, Integer.MAX_VALUE);
+    }
+
+    public List<BookTitle> searchCatalogFuzzy(String query, int limit) {
+        searchLock.readLock().lock();
+        try {
+            return searchIndex.searchFuzzy(query, limit);
+        } finally {
+            searchLock.readLock().unlock();
         }
-        return null;
+    }
+
+    // Titles matching every chosen facet, with live counts per facet value
+    public CatalogFacets.Result filterCatalog(CatalogFacets.Selection selection, int offset, int limit,
+            int facetLimit) {
+        return facets.query(selection, offset, limit, facetLimit);
+    }
+
+    // Titles and authors for a partly typed name, most borrowed first
+    public List<CatalogAutocomplete.Suggestion> suggest(String typed, int limit) {
+        return autocomplete.suggest(typed, limit);
+    }
+
+    public CatalogAutocomplete getAutocomplete() {
+        return autocomplete;
+    }
+
+    public BookTitle findBookByISBN(String isbn) {
+        return titlesByIsbn.get(key(isbn));
     }
 
     public BookItem findItemByBarcode(String barcode) {
-        for (BookItem i : inventory) {
-            if (i.getBarcode().equalsIgnoreCase(barcode))
-                return i;
-        }
-        return null;
+        return itemsByBarcode.get(key(barcode));
     }
 
     public Loan findActiveLoanByBookItem(BookItem item) {
-        for (Loan loan : activeLoans) {
-            if (loan.getBookItem().equals(item))
-                return loan;
-        }
-        return null;
+        return activeLoans.findByItem(item);
+    }
+
+    public Loan findActiveLoanById(int loanID) {
+        return activeLoans.findById(loanID);
+    }
+
+    // Open loans due on any day in [from, to], earliest first
+    public List<Loan> findLoansDueBetween(LocalDate from, LocalDate to) {
+        return activeLoans.getDueDates().dueBetween(from, to);
+    }
+
+    // Open loans that are overdue as of 'today', earliest first
+    public List<Loan> findOverdueLoans(LocalDate today) {
+        return activeLoans.getDueDates().dueBefore(today);
     }
 
     public Person findPersonById(int id) {
-        for (Person p : persons) {
-            if (p.getId() == id)
-                return p;
-        }
-        return null;
+        return personsById.get(id);
     }
 
     public Author findAuthorByName(String name) {
-        for (Author a : authors) {
-            if (a.getName().equalsIgnoreCase(name))
-                return a;
+        return authorsByName.get(key(name));
+    }
+
+    // Authors whose name is within a few edits per word of 'name', closest first
+    public List<Author> findAuthorsLike(String name) {
+        searchLock.readLock().lock();
+        try {
+            return searchIndex.authorsLike(name);
+        } finally {
+            searchLock.readLock().unlock();
+        }
+    }
+
+    public List<BookTitle> findTitlesByAuthor(Author a) {
+        searchLock.readLock().lock();
+        try {
+            return searchIndex.titlesOf(a);
+        } finally {
+            searchLock.readLock().unlock();
         }
-        return null;
     }
 
     // --- GET ALL LISTS ---
+    // In concurrent mode these are synchronized lists; hold their lock while iterating.
     public List<BookTitle> getCatalog() {
         return catalog;
     }
@@ -131,7 +1081,80 @@ public class LibraryDatabase {
         return authors;
     }
 
-    public List<Loan> getAllLoans() {
-        return activeLoans;
+    public Collection<Loan> getAllLoans() {
+        return activeLoans.values();
+    }
+
+    // Every returned loan, for sequential report scans
+    public LoanArchive getLoanArchive() {
+        return loanArchive;
+    }
+
+    public DueDateIndex getDueDateIndex() {
+        return activeLoans.getDueDates();
+    }
+
+    public int getActiveLoanCount() {
+        return activeLoans.size();
+    }
+
+    // Loan IDs are handed out sequentially so they stay unique.
+    public int nextLoanId() {
+        return nextLoanId.getAndIncrement();
+    }
+
+    // Past every author added so far, however they were added (replay, import, API)
+    public int nextAuthorId() {
+        return nextAuthorId.getAndIncrement();
+    }
+
+    int peekNextLoanId() {
+        return nextLoanId.get();
+    }
+
+    void ensureNextLoanId(int next) {
+        nextLoanId.accumulateAndGet(next, Math::max);
+    }
+
+    // --- HELPERS ---
+    private static String key(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    // Waits for a mutation's journal record to become durable (per the
+    // journal's SyncPolicy); called once the mutation's locks are released
+    private void commit(long seq) {
+        if (seq != 0)
+            journal.commit(seq);
+    }
+
+    // Claims a mutation's event sequences; called under the locks its journal
+    // record is written in, so events come out in journal order (see LOCKING)
+    private long claimEvents(int count) {
+        return events != null ? events.claim(count) : 0;
+    }
+
+    // Fills the claimed sequence 'at' and returns the next one. Every claimed
+    // sequence is filled, also when commit throws: consumers wait on a gap.
+    private long publish(long at, LibraryEventRing.Type type, Object subject) {
+        if (events != null)
+            events.publish(at, type, subject, null);
+        return at + 1;
+    }
+
+    private long publishReady(long at, List<Hold> promoted) {
+        for (Hold h : promoted) {
+            at = publish(at, LibraryEventRing.Type.HOLD_READY, h);
+        }
+        return at;
+    }
+
+    // Constant-time removal by element, so deletes don't scan the whole list
+    private <T> List<T> newList() {
+        return concurrent ? Collections.synchronizedList(new IndexedList<>()) : new IndexedList<>();
+    }
+
+    private <K, V> Map<K, V> newMap() {
+        return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,313 @@
+package core;
+
+import enums.BookStatus;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stream of LibraryDatabase state changes for downstream consumers
+ * (notifications, analytics, replication), kept in a preallocated ring of
+ * mutable slots.
+ *
+ * Publishing claims a sequence number with one atomic increment and fills
+ * the slot in place: no allocation, no locks, and it never waits for
+ * consumers. LibraryDatabase claims a mutation's sequences while it holds
+ * the locks it journals under and fills them after the journal commit, so
+ * consumers see changes in journal order. A consumer that falls more than a ring's length behind is
+ * lapped; it notices (each slot carries its sequence), is told how many
+ * events it lost via {@link Handler#onOverrun} and continues from the
+ * oldest event still in the ring. Its lag is visible through
+ * {@link Subscription#getLag()}.
+ *
+ * Each subscription has its own thread and position, may start from any
+ * sequence still in the ring, and receives events in batches of up to
+ * 'maxBatch', followed by {@link Handler#onBatchEnd()}. An idle consumer
+ * parks until a publish unparks it. A handler that throws is reported
+ * through {@link Handler#onError} and the stream moves on to the next event.
+ */
+public class LibraryEventRing {
+
+    public enum Type {
+        TITLE_ADDED, TITLE_REMOVED, TITLE_RENAMED,
+        ITEM_ADDED, ITEM_REMOVED, ITEM_STATUS_CHANGED,
+        PERSON_ADDED, PERSON_REMOVED,
+        AUTHOR_ADDED, AUTHOR_REMOVED, AUTHOR_RENAMED,
+        LOAN_ISSUED, LOAN_RETURNED, LOAN_OPENED, LOAN_CLOSED,
+        HOLD_PLACED, HOLD_READY, HOLD_CLOSED
+    }
+
+    /**
+     * One event as seen by a consumer. The instance is reused for every
+     * event of a subscription; copy out anything needed after onEvent.
+     */
+    public static final class Event {
+        private long sequence;
+        private long timeMillis;
+        private Type type;
+        private Object subject;
+        private BookStatus status;
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        // The BookTitle, BookItem, Person, Author or Loan the event is about
+        public Object getSubject() {
+            return subject;
+        }
+
+        // New status for ITEM_STATUS_CHANGED, otherwise null
+        public BookStatus getStatus() {
+            return status;
+        }
+    }
+
+    public interface Handler {
+        void onEvent(Event e);
+
+        // After each batch, e.g. to flush downstream writes
+        default void onBatchEnd() {
+        }
+
+        // 'lost' events were overwritten before this consumer read them
+        default void onOverrun(long lost) {
+        }
+
+        // onEvent (or onBatchEnd, with a null event) threw; the event counts as delivered
+        default void onError(Event e, RuntimeException failure) {
+            System.err.println("Event handler failed on " + (e != null ? e.getType() + " #" + e.getSequence()
+                    : "batch end") + ": " + failure);
+        }
+    }
+
+    // Ring slot; 'sequence' is -1 while the slot is being rewritten
+    private static final class Slot {
+        volatile long sequence = -1;
+        long timeMillis;
+        Type type;
+        Object subject;
+        BookStatus status;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Same subscriptions as an array, so publish can check for parked consumers without allocating
+    private volatile Subscription[] parkable = new Subscription[0];
+
+    // 'capacity' is rounded up to a power of two
+    public LibraryEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    // Sequence the next event will get (= number claimed so far; all of them
+    // are published once no mutation is in progress)
+    public long getCursor() {
+        return next.get();
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    void publish(Type type, Object subject, BookStatus status) {
+        publish(claim(1), type, subject, status);
+    }
+
+    /**
+     * Reserves the next 'count' sequences without publishing them. Consumers
+     * stop at a claimed sequence until {@link #publish(long, Type, Object,
+     * BookStatus)} fills it, so claiming under a lock orders the events by
+     * that lock even if they're filled after it's released. Every claimed
+     * sequence must be filled.
+     */
+    long claim(int count) {
+        return next.getAndAdd(count);
+    }
+
+    // Fills a sequence taken with claim()
+    void publish(long seq, Type type, Object subject, BookStatus status) {
+        Slot s = slots[(int) seq & mask];
+        // The slot's previous lap may be claimed but not filled yet; writing
+        // it first would leave its consumers waiting on a sequence never seen
+        long previous = seq - slots.length;
+        while (previous >= 0 && s.sequence != previous) {
+            Thread.onSpinWait();
+        }
+        s.sequence = -1;
+        VarHandle.storeStoreFence(); // readers must see -1 before any field changes
+        s.timeMillis = System.currentTimeMillis();
+        s.type = type;
+        s.subject = subject;
+        s.status = status;
+        s.sequence = seq;
+        // Pairs with the consumer's "waiting = true, then re-check the slot" (both volatile),
+        // so either it sees this event or we see it waiting
+        for (Subscription sub : parkable) {
+            if (sub.waiting)
+                LockSupport.unpark(sub.thread);
+        }
+    }
+
+    /**
+     * Starts a consumer at 'startSequence' (0 = oldest still in the ring,
+     * {@link #getCursor()} = only new events) on its own daemon thread.
+     */
+    public Subscription subscribe(String name, long startSequence, int maxBatch, Handler handler) {
+        Subscription sub = new Subscription(name, Math.max(0, startSequence), Math.max(1, maxBatch), handler);
+        synchronized (subscriptions) {
+            subscriptions.add(sub);
+            parkable = subscriptions.toArray(new Subscription[0]);
+        }
+        sub.thread.start();
+        return sub;
+    }
+
+    public class Subscription {
+        private final String name;
+        private final int maxBatch;
+        private final Handler handler;
+        private final Thread thread;
+        private final Event view = new Event();
+        private volatile long sequence; // next to read
+        private volatile long lost;
+        private volatile long errors;
+        private volatile boolean running = true;
+        // Set while the consumer is about to park or parked
+        private volatile boolean waiting;
+
+        Subscription(String name, long start, int maxBatch, Handler handler) {
+            this.name = name;
+            this.sequence = start;
+            this.maxBatch = maxBatch;
+            this.handler = handler;
+            this.thread = new Thread(this::run, "events-" + name);
+            thread.setDaemon(true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getLag() {
+            return Math.max(0, next.get() - sequence);
+        }
+
+        public long getLostCount() {
+            return lost;
+        }
+
+        // Events (and batch ends) whose handler threw
+        public long getErrorCount() {
+            return errors;
+        }
+
+        public void close() {
+            running = false;
+            synchronized (subscriptions) {
+                subscriptions.remove(this);
+                parkable = subscriptions.toArray(new Subscription[0]);
+            }
+            LockSupport.unpark(thread);
+        }
+
+        private void run() {
+            while (running) {
+                if (drain() > 0) {
+                    try {
+                        handler.onBatchEnd();
+                    } catch (RuntimeException e) {
+                        failed(null, e);
+                    }
+                    continue;
+                }
+                waiting = true;
+                // Re-check after announcing: a publish from here on sees 'waiting' and unparks us
+                if (running && slots[(int) sequence & mask].sequence < sequence)
+                    LockSupport.park(this);
+                waiting = false;
+            }
+        }
+
+        // Delivers up to maxBatch published events; returns how many
+        private int drain() {
+            long seq = sequence;
+            int n = 0;
+            while (n < maxBatch) {
+                long oldest = next.get() - slots.length;
+                if (seq < oldest) {
+                    overrun(oldest - seq);
+                    seq = oldest;
+                }
+                Slot s = slots[(int) seq & mask];
+                long published = s.sequence;
+                if (published != seq) {
+                    if (published > seq) {
+                        // Rewritten for a later lap before we got here
+                        long skipTo = Math.max(seq + 1, next.get() - slots.length);
+                        overrun(skipTo - seq);
+                        seq = skipTo;
+                        continue;
+                    }
+                    break; // not published yet
+                }
+                view.sequence = seq;
+                view.timeMillis = s.timeMillis;
+                view.type = s.type;
+                view.subject = s.subject;
+                view.status = s.status;
+                VarHandle.loadLoadFence();
+                if (s.sequence != seq)
+                    continue; // overwritten while copying; the lap check above skips it
+                try {
+                    handler.onEvent(view);
+                } catch (RuntimeException e) {
+                    failed(view, e);
+                }
+                seq++;
+                n++;
+            }
+            sequence = seq;
+            return n;
+        }
+
+        private void failed(Event e, RuntimeException failure) {
+            errors++;
+            try {
+                handler.onError(e, failure);
+            } catch (RuntimeException ignored) {
+                // Nothing left to report it to
+            }
+        }
+
+        private void overrun(long count) {
+            lost += count;
+            handler.onOverrun(count);
+        }
+    }
+}
@@ -0,0 +1,713 @@
+package core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import transactions.Hold;
+import transactions.Loan;
+import users.Admin;
+import users.Borrower;
+import users.Librarian;
+import users.Person;
+
+/**
+ * JSON over HTTP for kiosks and the web OPAC, on the JDK's built-in
+ * com.sun.net.httpserver. Requests authenticate with HTTP Basic
+ * ("userId:password") and get the same rights as the console menus:
+ *
+ *   any user   GET  /api/catalog?q=[&fuzzy=true]&offset=&limit=   GET /api/titles/{isbn}
+ *              GET  /api/catalog/facets?genre=&publisher=&author=&available=&offset=&limit=
+ *              GET  /api/suggest?q=&limit=
+ *              GET  /api/items?offset=&limit=        GET /api/items/{barcode}
+ *   borrower   GET  /api/members/{ownId}/loans[?active=true]   GET /api/members/{ownId}/holds
+ *              POST /api/holds {isbn}                DELETE /api/holds/{ownHoldId}
+ *   librarian  POST /api/loans {borrowerId, barcode}  POST /api/returns {barcode}
+ *              GET  /api/members/{id}/loans[?active=true]   GET /api/overdue
+ *              GET  /api/members/{id}/holds   POST /api/holds {isbn, borrowerId}   DELETE /api/holds/{id}
+ *   admin      POST/PUT/DELETE /api/titles[/{isbn}]   POST/DELETE /api/items[/{barcode}]
+ *              GET/POST/DELETE /api/authors[/{name}]  GET/POST/DELETE /api/persons[/{id}]
+ *              GET  /api/authors?q= (closest spellings first)
+ *
+ * Each request runs on its own virtual thread when the JDK has them (21+),
+ * otherwise on a fixed pool. Listings are streamed in chunks so a full
+ * catalog never has to be built as one string. The database must be in
+ * concurrent mode.
+ */
+public class LibraryHttpServer {
+
+    // Ends a request with an error status; thrown from anywhere in a handler
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static final int CHUNK = 8192;
+    // Facet filter defaults: titles per page, values listed per facet
+    private static final int FACET_PAGE = 50;
+    private static final int FACET_VALUES = 10;
+
+    private final LibraryDatabase db;
+    private final LibraryService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * @param fallbackThreads pool size when virtual threads are not available
+     */
+    public LibraryHttpServer(LibraryDatabase db, int port, int fallbackThreads) throws IOException {
+        if (!db.isConcurrent())
+            throw new IllegalArgumentException("HTTP API needs a concurrent LibraryDatabase");
+        this.db = db;
+        this.service = new LibraryService(db);
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor(fallbackThreads);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    // Virtual-thread-per-task on JDK 21+, looked up reflectively so this still builds on 17
+    static ExecutorService newRequestExecutor(int fallbackThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(1, fallbackThreads), r -> {
+                Thread t = new Thread(r, "http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // ==========================================
+    // DISPATCH
+    // ==========================================
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            Person user = authenticate(ex);
+            if (user == null) {
+                ex.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"library\"");
+                throw new ApiException(401, "Login required");
+            }
+            String[] path = segments(ex);
+            String resource = path.length > 0 ? path[0] : "";
+            String key = path.length > 1 ? path[1] : null;
+            String method = ex.getRequestMethod();
+
+            switch (resource) {
+                case "catalog" -> {
+                    requireMethod(method, "GET");
+                    if (key == null) {
+                        catalog(ex);
+                    } else if (key.equals("facets") && path.length == 2) {
+                        facets(ex);
+                    } else {
+                        throw new ApiException(404, "Not found");
+                    }
+                }
+                case "suggest" -> {
+                    requireMethod(method, "GET");
+                    suggest(ex);
+                }
+                case "titles" -> titles(ex, user, method, key);
+                case "items" -> items(ex, user, method, key);
+                case "loans" -> {
+                    requireMethod(method, "POST");
+                    require(user instanceof Librarian);
+                    Map<String, String> body = body(ex);
+                    LibraryService.Result r = service.issue(user, intField(body, "borrowerId"), field(body, "barcode"));
+                    outcome(ex, r, 201);
+                }
+                case "returns" -> {
+                    requireMethod(method, "POST");
+                    require(user instanceof Librarian);
+                    outcome(ex, service.returnItem(user, field(body(ex), "barcode")), 200);
+                }
+                case "holds" -> holds(ex, user, method, key);
+                case "members" -> {
+                    requireMethod(method, "GET");
+                    if (key == null || path.length != 3)
+                        throw new ApiException(404, "Not found");
+                    switch (path[2]) {
+                        case "loans" -> memberLoans(ex, user, parseInt(key));
+                        case "holds" -> memberHolds(ex, user, parseInt(key));
+                        default -> throw new ApiException(404, "Not found");
+                    }
+                }
+                case "overdue" -> {
+                    requireMethod(method, "GET");
+                    require(user instanceof Librarian);
+                    stream(ex, db.findOverdueLoans(LocalDate.now()), LibraryHttpServer::loan);
+                }
+                case "authors" -> authors(ex, user, method, key);
+                case "persons" -> persons(ex, user, method, key);
+                default -> throw new ApiException(404, "Not found");
+            }
+        } catch (ApiException e) {
+            fail(ex, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            fail(ex, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP " + ex.getRequestMethod() + " " + ex.getRequestURI().getPath() + " failed: " + e);
+            e.printStackTrace();
+            fail(ex, 500, "Internal error");
+        } finally {
+            ex.close();
+        }
+    }
+
+    // Basic auth: base64("id:password")
+    private Person authenticate(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.regionMatches(true, 0, "Basic ", 0, 6))
+            return null;
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(auth.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int colon = decoded.indexOf(':');
+        if (colon < 0)
+            return null;
+        try {
+            return service.login(Integer.parseInt(decoded.substring(0, colon)), decoded.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ==========================================
+    // RESOURCES
+    // ==========================================
+    // fuzzy=true tolerates a typo or two per keyword
+    private void catalog(HttpExchange ex) throws IOException {
+        Map<String, String> query = query(ex);
+        String q = query.get("q");
+        if (q == null || q.isBlank()) {
+            stream(ex, page(ex, db.getCatalog()), LibraryHttpServer::title);
+        } else if (Boolean.parseBoolean(query.get("fuzzy"))) {
+            stream(ex, page(ex, service.searchFuzzy(q, pageEnd(ex))), LibraryHttpServer::title);
+        } else {
+            stream(ex, page(ex, service.search(q, pageEnd(ex))), LibraryHttpServer::title);
+        }
+    }
+
+    // Comma-separated values within a facet are OR-ed, facets are AND-ed
+    private void facets(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        CatalogFacets.Selection selection = new CatalogFacets.Selection();
+        for (String genre : list(q.get("genre"))) {
+            selection.add(CatalogFacets.Facet.GENRE, genre);
+        }
+        for (String publisher : list(q.get("publisher"))) {
+            selection.add(CatalogFacets.Facet.PUBLISHER, publisher);
+        }
+        for (String name : list(q.get("author"))) {
+            Author a = db.findAuthorByName(name);
+            if (a == null)
+                throw new IllegalArgumentException("Unknown author: " + name);
+            selection.add(CatalogFacets.Facet.AUTHOR, a);
+        }
+        for (String available : list(q.get("available"))) {
+            selection.add(CatalogFacets.Facet.AVAILABILITY,
+                    Boolean.parseBoolean(available) ? CatalogFacets.AVAILABLE : CatalogFacets.UNAVAILABLE);
+        }
+        int offset = q.containsKey("offset") ? parseInt(q.get("offset")) : 0;
+        int limit = q.containsKey("limit") ? parseInt(q.get("limit")) : FACET_PAGE;
+        CatalogFacets.Result r = db.filterCatalog(selection, offset, limit, FACET_VALUES);
+
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"total\":").append(r.total).append(",\"titles\":[");
+        for (int i = 0; i < r.titles.size(); i++) {
+            if (i > 0)
+                sb.append(',');
+            title(r.titles.get(i), sb);
+        }
+        sb.append("],\"facets\":{");
+        boolean firstFacet = true;
+        for (Map.Entry<CatalogFacets.Facet, List<CatalogFacets.FacetCount>> e : r.facets.entrySet()) {
+            if (!firstFacet)
+                sb.append(',');
+            firstFacet = false;
+            sb.append('"').append(e.getKey().name().toLowerCase(Locale.ROOT)).append("\":[");
+            List<CatalogFacets.FacetCount> counts = e.getValue();
+            for (int i = 0; i < counts.size(); i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append("{\"value\":");
+                Json.string(sb, counts.get(i).label).append(",\"count\":").append(counts.get(i).count).append('}');
+            }
+            sb.append(']');
+        }
+        send(ex, 200, sb.append("}}").toString());
+    }
+
+    // Type-ahead: titles and authors for a partly typed name, most borrowed first
+    private void suggest(HttpExchange ex) throws IOException {
+        Map<String, String> q = query(ex);
+        int limit = q.containsKey("limit") ? parseInt(q.get("limit")) : CatalogAutocomplete.MAX_SUGGESTIONS;
+        List<CatalogAutocomplete.Suggestion> hits = db.suggest(q.getOrDefault("q", ""), limit);
+        StringBuilder sb = new StringBuilder(64 * hits.size() + 2).append('[');
+        for (int i = 0; i < hits.size(); i++) {
+            CatalogAutocomplete.Suggestion s = hits.get(i);
+            if (i > 0)
+                sb.append(',');
+            if (s.target instanceof BookTitle t) {
+                sb.append("{\"type\":\"title\",\"isbn\":");
+                Json.string(sb, t.getIsbn());
+            } else {
+                sb.append("{\"type\":\"author\"");
+            }
+            sb.append(",\"text\":");
+            Json.string(sb, s.text).append(",\"loans\":").append(s.popularity).append('}');
+        }
+        send(ex, 200, sb.append(']').toString());
+    }
+
+    private void titles(HttpExchange ex, Person user, String method, String isbn) throws IOException {
+        if (method.equals("GET")) {
+            BookTitle t = found(isbn == null ? null : db.findBookByISBN(isbn));
+            send(ex, 200, row(t, LibraryHttpServer::title));
+            return;
+        }
+        require(user instanceof Admin);
+        switch (method) {
+            case "POST" -> {
+                Map<String, String> body = body(ex);
+                BookTitle t = new BookTitle(field(body, "isbn"), field(body, "title"), field(body, "genre"),
+                        field(body, "publisher"));
+                String authorName = body.get("author");
+                if (authorName != null) {
+                    Author a = db.findAuthorByName(authorName);
+                    if (a != null)
+                        t.addAuthor(a);
+                }
+                if (!db.addBookTitle(t))
+                    throw new ApiException(409, "ISBN exists");
+                send(ex, 201, row(t, LibraryHttpServer::title));
+            }
+            case "PUT" -> {
+                BookTitle t = found(isbn == null ? null : db.findBookByISBN(isbn));
+                db.renameBookTitle(t, field(body(ex), "title"));
+                send(ex, 200, row(t, LibraryHttpServer::title));
+            }
+            case "DELETE" -> {
+                if (!db.removeBookTitle(found(isbn == null ? null : db.findBookByISBN(isbn))))
+                    throw new ApiException(409, "Copies are on loan");
+                send(ex, 204, null);
+            }
+            default -> throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private void items(HttpExchange ex, Person user, String method, String barcode) throws IOException {
+        if (method.equals("GET")) {
+            if (barcode == null) {
+                stream(ex, page(ex, db.getInventory()), LibraryHttpServer::item);
+            } else {
+                send(ex, 200, row(found(db.findItemByBarcode(barcode)), LibraryHttpServer::item));
+            }
+            return;
+        }
+        require(user instanceof Admin);
+        switch (method) {
+            case "POST" -> {
+                Map<String, String> body = body(ex);
+                BookTitle t = db.findBookByISBN(field(body, "isbn"));
+                if (t == null)
+                    throw new ApiException(404, "Title not found");
+                BookItem item = new BookItem(field(body, "barcode"), t);
+                if (!db.addBookItem(item))
+                    throw new ApiException(409, "Barcode exists");
+                send(ex, 201, row(item, LibraryHttpServer::item));
+            }
+            case "DELETE" -> {
+                if (!db.removeBookItem(found(barcode == null ? null : db.findItemByBarcode(barcode))))
+                    throw new ApiException(409, "Item is on loan");
+                send(ex, 204, null);
+            }
+            default -> throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    // Borrowers may only see their own loans; librarians see anyone's
+    private void memberLoans(HttpExchange ex, Person user, int id) throws IOException {
+        require(user instanceof Librarian || (user instanceof Borrower && user.getId() == id));
+        Person p = db.findPersonById(id);
+        if (!(p instanceof Borrower))
+            throw new ApiException(404, "Not a borrower");
+        Borrower b = (Borrower) p;
+        boolean activeOnly = "true".equalsIgnoreCase(query(ex).get("active"));
+        stream(ex, activeOnly ? b.getActiveLoans() : b.getLoanHistory(), LibraryHttpServer::loan);
+    }
+
+    private void memberHolds(HttpExchange ex, Person user, int id) throws IOException {
+        require(user instanceof Librarian || (user instanceof Borrower && user.getId() == id));
+        Person p = db.findPersonById(id);
+        if (!(p instanceof Borrower))
+            throw new ApiException(404, "Not a borrower");
+        stream(ex, db.findHoldsByBorrower((Borrower) p), this::hold);
+    }
+
+    // A borrower places holds for themselves; borrowerId lets a librarian place one for anyone
+    private void holds(HttpExchange ex, Person user, String method, String id) throws IOException {
+        switch (method) {
+            case "POST" -> {
+                if (id != null)
+                    throw new ApiException(405, "Method not allowed");
+                Map<String, String> body = body(ex);
+                int borrowerId = body.containsKey("borrowerId") ? intField(body, "borrowerId") : user.getId();
+                LibraryService.HoldResult r = service.placeHold(user, borrowerId, field(body, "isbn"));
+                if (r.isOk()) {
+                    send(ex, 201, row(r.getHold(), this::hold));
+                } else {
+                    refuse(ex, r.getOutcome());
+                }
+            }
+            case "DELETE" -> {
+                LibraryService.Outcome o = service.cancelHold(user, parseInt(found(id)));
+                if (o == LibraryService.Outcome.OK) {
+                    send(ex, 204, null);
+                } else {
+                    refuse(ex, o);
+                }
+            }
+            default -> throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private void authors(HttpExchange ex, Person user, String method, String name) throws IOException {
+        require(user instanceof Admin);
+        switch (method) {
+            case "GET" -> {
+                // ?q= lists the authors whose names are close to q, closest first
+                String q = query(ex).get("q");
+                List<Author> authors = q == null ? db.getAuthors() : db.findAuthorsLike(q);
+                stream(ex, page(ex, authors), (a, sb) -> {
+                    sb.append("{\"id\":").append(a.getAuthorID()).append(",\"name\":");
+                    Json.string(sb, a.getName()).append('}');
+                });
+            }
+            case "POST" -> {
+                Author a = new Author(db.nextAuthorId(), field(body(ex), "name"));
+                if (!db.addAuthor(a))
+                    throw new ApiException(409, "Author exists");
+                StringBuilder sb = new StringBuilder("{\"id\":").append(a.getAuthorID()).append(",\"name\":");
+                send(ex, 201, Json.string(sb, a.getName()).append('}').toString());
+            }
+            case "DELETE" -> {
+                db.removeAuthor(found(name == null ? null : db.findAuthorByName(name)));
+                send(ex, 204, null);
+            }
+            default -> throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private void persons(HttpExchange ex, Person user, String method, String id) throws IOException {
+        require(user instanceof Admin);
+        switch (method) {
+            case "GET" -> stream(ex, page(ex, db.getPersons()), LibraryHttpServer::person);
+            case "POST" -> {
+                Map<String, String> body = body(ex);
+                int newId = intField(body, "id");
+                String name = field(body, "name");
+                String pass = field(body, "password");
+                String contact = body.getOrDefault("contact", "Contact");
+                Person p = switch (body.getOrDefault("role", "BORROWER").toUpperCase()) {
+                    case "BORROWER", "MEMBER" -> new Borrower(newId, name, pass, contact);
+                    case "LIBRARIAN" -> new Librarian(newId, name, pass, contact, 3000);
+                    case "ADMIN" -> new Admin(newId, name, pass, contact, 5000);
+                    default -> throw new IllegalArgumentException("Unknown role");
+                };
+                if (!db.addPerson(p))
+                    throw new ApiException(409, "ID taken");
+                send(ex, 201, row(p, LibraryHttpServer::person));
+            }
+            case "DELETE" -> {
+                Person p = found(id == null ? null : db.findPersonById(parseInt(id)));
+                if (p.getId() == user.getId())
+                    throw new ApiException(409, "Cannot delete self");
+                if (!db.removePerson(p))
+                    throw new ApiException(409, "Borrower has open loans");
+                send(ex, 204, null);
+            }
+            default -> throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    // Maps a desk outcome onto a status code and a JSON body
+    private void outcome(HttpExchange ex, LibraryService.Result r, int okStatus) throws IOException {
+        if (r.isOk()) {
+            send(ex, okStatus, row(r.getLoan(), LibraryHttpServer::loan));
+        } else {
+            refuse(ex, r.getOutcome());
+        }
+    }
+
+    private static void refuse(HttpExchange ex, LibraryService.Outcome outcome) throws IOException {
+        int status = switch (outcome) {
+            case NOT_FOUND, NOT_BORROWER -> 404;
+            case FORBIDDEN -> 403;
+            default -> 409;
+        };
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.string(sb, outcome.name()).append('}');
+        send(ex, status, sb.toString());
+    }
+
+    // ==========================================
+    // JSON ROWS
+    // ==========================================
+    private static void title(BookTitle t, StringBuilder sb) {
+        sb.append("{\"isbn\":");
+        Json.string(sb, t.getIsbn()).append(",\"title\":");
+        Json.string(sb, t.getTitle()).append(",\"genre\":");
+        Json.string(sb, t.getGenre()).append(",\"publisher\":");
+        Json.string(sb, t.getPublisher()).append(",\"authors\":[");
+        List<Author> authors = t.getAuthors();
+        for (int i = 0; i < authors.size(); i++) {
+            if (i > 0)
+                sb.append(',');
+            Json.string(sb, authors.get(i).getName());
+        }
+        sb.append("],\"totalCopies\":").append(t.getTotalCopies())
+                .append(",\"availableCopies\":").append(t.getAvailableCount()).append('}');
+    }
+
+    private static void item(BookItem i, StringBuilder sb) {
+        sb.append("{\"barcode\":");
+        Json.string(sb, i.getBarcode()).append(",\"isbn\":");
+        Json.string(sb, i.getBookTitle().getIsbn()).append(",\"title\":");
+        Json.string(sb, i.getBookTitle().getTitle()).append(",\"status\":\"").append(i.getStatus()).append("\"}");
+    }
+
+    private static void loan(Loan l, StringBuilder sb) {
+        sb.append("{\"loanId\":").append(l.getLoanID()).append(",\"borrowerId\":").append(l.getBorrower().getId())
+                .append(",\"barcode\":");
+        Json.string(sb, l.getBookItem().getBarcode()).append(",\"title\":");
+        Json.string(sb, l.getBookItem().getBookTitle().getTitle())
+                .append(",\"issueDate\":\"").append(l.getIssueDate())
+                .append("\",\"dueDate\":\"").append(l.getDueDate()).append("\",\"returnDate\":");
+        if (l.getReturnDate() == null) {
+            sb.append("null");
+        } else {
+            sb.append('"').append(l.getReturnDate()).append('"');
+        }
+        sb.append(",\"fine\":").append(l.calculateFine()).append('}');
+    }
+
+    // Position is the number of waiting holds ahead (null unless WAITING)
+    private void hold(Hold h, StringBuilder sb) {
+        sb.append("{\"holdId\":").append(h.getHoldID()).append(",\"borrowerId\":").append(h.getBorrower().getId())
+                .append(",\"isbn\":");
+        Json.string(sb, h.getBookTitle().getIsbn()).append(",\"title\":");
+        Json.string(sb, h.getBookTitle().getTitle())
+                .append(",\"state\":\"").append(h.getState())
+                .append("\",\"placedDate\":\"").append(h.getPlacedDate())
+                .append("\",\"expiryDate\":\"").append(h.getExpiryDate()).append("\",\"barcode\":");
+        if (h.getReadyItem() == null) {
+            sb.append("null");
+        } else {
+            Json.string(sb, h.getReadyItem().getBarcode());
+        }
+        int position = db.getHoldPosition(h);
+        sb.append(",\"position\":").append(position < 0 ? "null" : String.valueOf(position)).append('}');
+    }
+
+    private static void person(Person p, StringBuilder sb) {
+        sb.append("{\"id\":").append(p.getId()).append(",\"name\":");
+        Json.string(sb, p.getName()).append(",\"role\":\"").append(p.getRoleType()).append("\"}");
+    }
+
+    private static <T> String row(T value, Pager.RowFormatter<T> fmt) {
+        StringBuilder sb = new StringBuilder(256);
+        fmt.format(value, sb);
+        return sb.toString();
+    }
+
+    private static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        return Json.string(sb, message).append('}').toString();
+    }
+
+    // ==========================================
+    // HTTP HELPERS
+    // ==========================================
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        if (json == null) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Error body, unless a streamed response had already started
+    private static void fail(HttpExchange ex, int status, String message) throws IOException {
+        if (ex.getResponseCode() == -1)
+            send(ex, status, error(message));
+    }
+
+    // Chunked JSON array, written out every CHUNK characters
+    private static <T> void stream(HttpExchange ex, List<T> rows, Pager.RowFormatter<T> fmt) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(ex.getResponseBody(), CHUNK * 2),
+                StandardCharsets.UTF_8)) {
+            StringBuilder sb = new StringBuilder(CHUNK + 512);
+            sb.append('[');
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0)
+                    sb.append(',');
+                fmt.format(rows.get(i), sb);
+                if (sb.length() >= CHUNK) {
+                    out.append(sb);
+                    sb.setLength(0);
+                }
+            }
+            out.append(sb).append(']');
+        }
+    }
+
+    // Copies the requested window (?offset=&limit=) out of a possibly synchronized list
+    private static <T> List<T> page(HttpExchange ex, List<T> list) {
+        Map<String, String> q = query(ex);
+        int offset = Math.max(0, q.containsKey("offset") ? parseInt(q.get("offset")) : 0);
+        int limit = q.containsKey("limit") ? Math.max(0, parseInt(q.get("limit"))) : Integer.MAX_VALUE;
+        synchronized (list) {
+            int from = Math.min(offset, list.size());
+            int to = (int) Math.min(list.size(), (long) from + limit);
+            return new ArrayList<>(list.subList(from, to));
+        }
+    }
+
+    // offset + limit: how many ranked hits page() may need
+    private static int pageEnd(HttpExchange ex) {
+        Map<String, String> q = query(ex);
+        int offset = Math.max(0, q.containsKey("offset") ? parseInt(q.get("offset")) : 0);
+        int limit = q.containsKey("limit") ? Math.max(0, parseInt(q.get("limit"))) : Integer.MAX_VALUE;
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    private static String[] segments(HttpExchange ex) {
+        String path = ex.getRequestURI().getRawPath().substring("/api/".length());
+        if (path.isEmpty())
+            return new String[0];
+        String[] parts = path.split("/");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = URLDecoder.decode(parts[i], StandardCharsets.UTF_8);
+        }
+        return parts;
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> map = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null)
+            return map;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            map.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static List<String> list(String param) {
+        List<String> values = new ArrayList<>();
+        if (param != null) {
+            for (String v : param.split(",")) {
+                if (!v.isBlank())
+                    values.add(v.trim());
+            }
+        }
+        return values;
+    }
+
+    private static Map<String, String> body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String field(Map<String, String> body, String name) {
+        String v = body.get(name);
+        if (v == null || v.isBlank())
+            throw new IllegalArgumentException("Missing field '" + name + "'");
+        return v.trim();
+    }
+
+    private static int intField(Map<String, String> body, String name) {
+        return parseInt(field(body, name));
+    }
+
+    private static int parseInt(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + s);
+        }
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected))
+            throw new ApiException(405, "Method not allowed");
+    }
+
+    private static void require(boolean allowed) {
+        if (!allowed)
+            throw new ApiException(403, "Forbidden");
+    }
+
+    private static <T> T found(T value) {
+        if (value == null)
+            throw new ApiException(404, "Not found");
+        return value;
+    }
+}
@@ -0,0 +1,752 @@
+package core;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import transactions.Hold;
+import transactions.Loan;
+import users.Admin;
+import users.Borrower;
+import users.Librarian;
+import users.Person;
+import users.Staff;
+
+/**
+ * Append-only write-ahead journal of every LibraryDatabase mutation.
+ *
+ * Each record is framed as [int length][int crc32][payload]. Records are
+ * encoded into an in-memory buffer under a short lock; how and when that
+ * buffer reaches the disk depends on the {@link SyncPolicy}. Concurrent
+ * EVERY_COMMIT callers share fsyncs (group commit): whoever gets the sync
+ * lock first forces everything written so far, and the callers queued
+ * behind it find their record already durable.
+ *
+ * After a checkpoint (see LibrarySnapshot) the journal is reset and starts
+ * with an EPOCH record matching the snapshot, so a journal that predates
+ * the snapshot is recognised and not replayed on top of it.
+ */
+public class LibraryJournal implements Closeable {
+
+    public enum SyncPolicy {
+        // Leave flushing to the OS; data reaches the file when the buffer fills or on close
+        NONE,
+        // Background fsync every few milliseconds; a crash loses at most one interval
+        INTERVAL,
+        // Each mutation waits until its record is fsynced (shared with concurrent callers)
+        EVERY_COMMIT
+    }
+
+    private static final int BUFFER_LIMIT = 64 * 1024;
+    private static final int MAX_RECORD = 1 << 20;
+
+    // Record types
+    private static final byte ADD_AUTHOR = 1;
+    private static final byte REMOVE_AUTHOR = 2;
+    private static final byte RENAME_AUTHOR = 3;
+    private static final byte ADD_TITLE = 4;
+    private static final byte REMOVE_TITLE = 5;
+    private static final byte RENAME_TITLE = 6;
+    private static final byte ADD_ITEM = 7;
+    private static final byte REMOVE_ITEM = 8;
+    private static final byte ADD_PERSON = 9;
+    private static final byte REMOVE_PERSON = 10;
+    private static final byte ISSUE = 11;
+    private static final byte RETURN = 12;
+    private static final byte OPEN_LOAN = 13;
+    private static final byte CLOSE_LOAN = 14;
+    private static final byte SET_STATUS = 15;
+    private static final byte EPOCH = 16;
+    private static final byte PLACE_HOLD = 17;
+    private static final byte CANCEL_HOLD = 18;
+    private static final byte EXPIRE_HOLD = 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+    private final ScheduledExecutorService syncer;
+
+    private final Object lock = new Object();
+    private final Object syncLock = new Object();
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final RecordBuffer pending = new RecordBuffer();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final CRC32 crc = new CRC32();
+
+    // Set per thread by bulk callers; see setCommitsDeferred
+    private final ThreadLocal<Boolean> commitsDeferred = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private long appendedSeq;
+    private long writtenSeq;
+    private volatile long durableSeq;
+    private boolean closed;
+    private long epoch;
+
+    private LibraryJournal(Path path, FileChannel channel, SyncPolicy policy, long syncMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.policy = policy;
+        if (policy == SyncPolicy.INTERVAL) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncer = null;
+        }
+    }
+
+    public static LibraryJournal open(Path path, SyncPolicy policy, long syncMillis) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new LibraryJournal(path, channel, policy, syncMillis);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public SyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getEpoch() {
+        synchronized (lock) {
+            return epoch;
+        }
+    }
+
+    // Bytes on disk plus bytes still buffered
+    public long size() throws IOException {
+        synchronized (lock) {
+            return channel.size() + pending.size();
+        }
+    }
+
+    // ==========================================
+    // LOGGING (called by LibraryDatabase inside each successful mutation)
+    // ==========================================
+    // Each appends its record while the caller still holds the mutation's
+    // locks, so records land in the order the changes took effect, and
+    // returns its sequence number for commit() once those locks are released.
+    long logAddAuthor(Author a) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(ADD_AUTHOR);
+                recordOut.writeInt(a.getAuthorID());
+                recordOut.writeUTF(a.getName());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logRemoveAuthor(Author a) {
+        return logKey(REMOVE_AUTHOR, a.getName());
+    }
+
+    long logRenameAuthor(String oldName, String newName) {
+        return logKeyValue(RENAME_AUTHOR, oldName, newName);
+    }
+
+    long logAddTitle(BookTitle t) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(ADD_TITLE);
+                recordOut.writeUTF(t.getIsbn());
+                recordOut.writeUTF(t.getTitle());
+                recordOut.writeUTF(t.getGenre());
+                recordOut.writeUTF(t.getPublisher());
+                List<Author> authors = t.getAuthors();
+                recordOut.writeShort(authors.size());
+                for (Author a : authors) {
+                    recordOut.writeUTF(a.getName());
+                }
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logRemoveTitle(BookTitle t) {
+        return logKey(REMOVE_TITLE, t.getIsbn());
+    }
+
+    long logRenameTitle(BookTitle t) {
+        return logKeyValue(RENAME_TITLE, t.getIsbn(), t.getTitle());
+    }
+
+    long logAddItem(BookItem i) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(ADD_ITEM);
+                recordOut.writeUTF(i.getBarcode());
+                recordOut.writeUTF(i.getBookTitle().getIsbn());
+                recordOut.writeLong(i.getPurchaseDate().toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    // 'day' dates the hold hand-offs the removal causes, so replay redoes them alike
+    long logRemoveItem(BookItem i, LocalDate day) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(REMOVE_ITEM);
+                recordOut.writeUTF(i.getBarcode());
+                recordOut.writeLong(day.toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    // The status set, not the copy's current one: it may have gone on to a hold since
+    long logSetStatus(BookItem i, BookStatus status, LocalDate day) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(SET_STATUS);
+                recordOut.writeUTF(i.getBarcode());
+                recordOut.writeUTF(status.name());
+                recordOut.writeLong(day.toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logAddPerson(Person p) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(ADD_PERSON);
+                recordOut.writeUTF(p.getRoleType());
+                recordOut.writeInt(p.getId());
+                recordOut.writeUTF(p.getName());
+                recordOut.writeUTF(p.getPassword());
+                recordOut.writeUTF(p.getContactInfo());
+                recordOut.writeDouble(p instanceof Staff ? ((Staff) p).getSalary() : 0);
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logRemovePerson(Person p, LocalDate day) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(REMOVE_PERSON);
+                recordOut.writeInt(p.getId());
+                recordOut.writeLong(day.toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logIssue(Loan loan) {
+        return logLoan(ISSUE, loan);
+    }
+
+    long logOpenLoan(Loan loan) {
+        return logLoan(OPEN_LOAN, loan);
+    }
+
+    long logReturn(Loan loan) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(RETURN);
+                recordOut.writeUTF(loan.getBookItem().getBarcode());
+                recordOut.writeLong(loan.getReturnDate().toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logCloseLoan(Loan loan) {
+        return logKey(CLOSE_LOAN, loan.getBookItem().getBarcode());
+    }
+
+    // Hand-offs of returned copies aren't logged: replaying the return redoes them
+    long logPlaceHold(Hold h) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(PLACE_HOLD);
+                recordOut.writeInt(h.getHoldID());
+                recordOut.writeInt(h.getBorrower().getId());
+                recordOut.writeUTF(h.getBookTitle().getIsbn());
+                recordOut.writeLong(h.getPlacedDate().toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    long logCancelHold(Hold h, LocalDate day) {
+        return logHoldClosed(CANCEL_HOLD, h, day);
+    }
+
+    // One record per hold, under its title's lock like every other hold change
+    long logExpireHold(Hold h, LocalDate day) {
+        return logHoldClosed(EXPIRE_HOLD, h, day);
+    }
+
+    private long logHoldClosed(byte type, Hold h, LocalDate day) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(type);
+                recordOut.writeInt(h.getHoldID());
+                recordOut.writeLong(day.toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    private long logLoan(byte type, Loan loan) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(type);
+                recordOut.writeInt(loan.getLoanID());
+                recordOut.writeInt(loan.getBorrower().getId());
+                recordOut.writeUTF(loan.getBookItem().getBarcode());
+                recordOut.writeLong(loan.getIssueDate().toEpochDay());
+                recordOut.writeLong(loan.getDueDate().toEpochDay());
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    private long logKey(byte type, String key) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(type);
+                recordOut.writeUTF(key);
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    private long logKeyValue(byte type, String key, String value) {
+        long seq;
+        synchronized (lock) {
+            try {
+                begin(type);
+                recordOut.writeUTF(key);
+                recordOut.writeUTF(value);
+                seq = end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return seq;
+    }
+
+    // ==========================================
+    // FRAMING & DURABILITY
+    // ==========================================
+    // Both must be called while holding 'lock'
+    private void begin(byte type) throws IOException {
+        if (closed)
+            throw new IllegalStateException("Journal is closed");
+        record.reset();
+        recordOut.writeByte(type);
+    }
+
+    private long end() throws IOException {
+        crc.reset();
+        crc.update(record.array(), 0, record.size());
+        pendingOut.writeInt(record.size());
+        pendingOut.writeInt((int) crc.getValue());
+        record.writeTo(pending);
+        appendedSeq++;
+        if (pending.size() >= BUFFER_LIMIT)
+            writePending();
+        return appendedSeq;
+    }
+
+    // Hands buffered records to the OS; caller holds 'lock'
+    private void writePending() throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(pending.array(), 0, pending.size());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        pending.reset();
+        writtenSeq = appendedSeq;
+    }
+
+    // Waits until record 'seq' is durable, if the SyncPolicy asks for that
+    void commit(long seq) {
+        if (policy == SyncPolicy.EVERY_COMMIT && !commitsDeferred.get())
+            sync(seq);
+    }
+
+    /**
+     * While set, EVERY_COMMIT records written by the calling thread don't wait
+     * for their own fsync. Bulk callers (see BatchRunner) call {@link #flush}
+     * once per batch instead, and only report the batch after that.
+     */
+    public void setCommitsDeferred(boolean deferred) {
+        commitsDeferred.set(deferred);
+    }
+
+    // Makes every record up to 'seq' durable. Callers that arrive while
+    // another thread is forcing wait on syncLock and usually find their
+    // record already covered when they get in.
+    private void sync(long seq) {
+        if (durableSeq >= seq)
+            return;
+        synchronized (syncLock) {
+            if (durableSeq >= seq)
+                return;
+            long target;
+            try {
+                synchronized (lock) {
+                    writePending();
+                    target = writtenSeq;
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            durableSeq = target;
+        }
+    }
+
+    // Forces everything appended so far to disk.
+    public void flush() {
+        long seq;
+        synchronized (lock) {
+            seq = appendedSeq;
+        }
+        sync(seq);
+    }
+
+    /**
+     * Drops every record and starts a new epoch. Only call this once a
+     * snapshot covering everything journaled so far is safely on disk.
+     */
+    public void reset(long newEpoch) throws IOException {
+        synchronized (syncLock) {
+            synchronized (lock) {
+                pending.reset();
+                channel.truncate(0);
+                channel.position(0);
+                epoch = newEpoch;
+                begin(EPOCH);
+                recordOut.writeLong(newEpoch);
+                end();
+                writePending();
+            }
+            channel.force(true);
+            durableSeq = writtenSeq;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Journal sync failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed)
+                return;
+        }
+        if (syncer != null)
+            syncer.shutdownNow();
+        flush();
+        synchronized (lock) {
+            closed = true;
+        }
+        channel.close();
+    }
+
+    // ==========================================
+    // REPLAY
+    // ==========================================
+    public int replay(LibraryDatabase db) throws IOException {
+        return replay(db, 0);
+    }
+
+    /**
+     * Re-applies every intact record to 'db' (which must not have this journal
+     * attached yet). A torn or corrupt tail is truncated so new records follow
+     * the last good one. If the journal is older than 'snapshotEpoch' its
+     * contents are already in the snapshot, so it is reset instead.
+     * Returns the number of records applied.
+     */
+    public int replay(LibraryDatabase db, long snapshotEpoch) throws IOException {
+        long validEnd = 0;
+        int applied = 0;
+        byte[] payload = new byte[256];
+        CRC32 check = new CRC32();
+
+        try (InputStream raw = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(raw, BUFFER_LIMIT))) {
+            while (true) {
+                int length;
+                int expected;
+                try {
+                    length = in.readInt();
+                    expected = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD)
+                        break;
+                    if (payload.length < length)
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                check.reset();
+                check.update(payload, 0, length);
+                if ((int) check.getValue() != expected)
+                    break;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+                if (validEnd == 0) {
+                    long found = 0;
+                    if (payload[0] == EPOCH) {
+                        record.readByte();
+                        found = record.readLong();
+                    }
+                    synchronized (lock) {
+                        epoch = found;
+                    }
+                    if (found < snapshotEpoch)
+                        break;
+                    if (found > snapshotEpoch)
+                        System.err.println("Journal: epoch " + found + " is newer than snapshot epoch " + snapshotEpoch);
+                    if (payload[0] == EPOCH) {
+                        validEnd += 8 + length;
+                        continue;
+                    }
+                }
+                apply(db, record);
+                validEnd += 8 + length;
+                applied++;
+            }
+        }
+
+        if (epoch < snapshotEpoch) {
+            reset(snapshotEpoch);
+            return 0;
+        }
+
+        synchronized (lock) {
+            if (channel.size() > validEnd) {
+                System.err.println("Journal: discarding " + (channel.size() - validEnd) + " bytes of torn tail");
+                channel.truncate(validEnd);
+            }
+            channel.position(validEnd);
+        }
+        return applied;
+    }
+
+    private void apply(LibraryDatabase db, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_AUTHOR -> {
+                int id = in.readInt();
+                db.addAuthor(new Author(id, in.readUTF()));
+            }
+            case REMOVE_AUTHOR -> {
+                Author a = db.findAuthorByName(in.readUTF());
+                if (a != null)
+                    db.removeAuthor(a);
+            }
+            case RENAME_AUTHOR -> {
+                Author a = db.findAuthorByName(in.readUTF());
+                String name = in.readUTF();
+                if (a != null)
+                    db.renameAuthor(a, name);
+            }
+            case ADD_TITLE -> {
+                BookTitle t = new BookTitle(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                int n = in.readShort();
+                for (int i = 0; i < n; i++) {
+                    Author a = db.findAuthorByName(in.readUTF());
+                    if (a != null)
+                        t.addAuthor(a);
+                }
+                db.addBookTitle(t);
+            }
+            case REMOVE_TITLE -> {
+                BookTitle t = db.findBookByISBN(in.readUTF());
+                if (t != null)
+                    db.removeBookTitle(t);
+            }
+            case RENAME_TITLE -> {
+                BookTitle t = db.findBookByISBN(in.readUTF());
+                String title = in.readUTF();
+                if (t != null)
+                    db.renameBookTitle(t, title);
+            }
+            case ADD_ITEM -> {
+                String barcode = in.readUTF();
+                BookTitle t = db.findBookByISBN(in.readUTF());
+                LocalDate purchased = LocalDate.ofEpochDay(in.readLong());
+                if (t != null)
+                    db.addBookItem(new BookItem(barcode, t, purchased));
+            }
+            case REMOVE_ITEM -> {
+                BookItem i = db.findItemByBarcode(in.readUTF());
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                if (i != null)
+                    db.removeBookItem(i, day);
+            }
+            case SET_STATUS -> {
+                BookItem i = db.findItemByBarcode(in.readUTF());
+                BookStatus status = BookStatus.valueOf(in.readUTF());
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                if (i != null)
+                    db.setItemStatus(i, status, day);
+            }
+            case ADD_PERSON -> {
+                String role = in.readUTF();
+                int id = in.readInt();
+                String name = in.readUTF();
+                String password = in.readUTF();
+                String contact = in.readUTF();
+                double salary = in.readDouble();
+                Person p = switch (role) {
+                    case "ADMIN" -> new Admin(id, name, password, contact, salary);
+                    case "LIBRARIAN" -> new Librarian(id, name, password, contact, salary);
+                    default -> new Borrower(id, name, password, contact);
+                };
+                db.addPerson(p);
+            }
+            case REMOVE_PERSON -> {
+                Person p = db.findPersonById(in.readInt());
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                if (p != null)
+                    db.removePerson(p, day);
+            }
+            case ISSUE, OPEN_LOAN -> {
+                int loanID = in.readInt();
+                Person p = db.findPersonById(in.readInt());
+                BookItem item = db.findItemByBarcode(in.readUTF());
+                LocalDate issued = LocalDate.ofEpochDay(in.readLong());
+                LocalDate due = LocalDate.ofEpochDay(in.readLong());
+                if (p instanceof Borrower && item != null)
+                    db.restoreLoan(new Loan(loanID, (Borrower) p, item, issued, due), type == ISSUE);
+            }
+            case RETURN -> {
+                BookItem item = db.findItemByBarcode(in.readUTF());
+                LocalDate returned = LocalDate.ofEpochDay(in.readLong());
+                if (item != null)
+                    db.returnLoan(item, returned);
+            }
+            case CLOSE_LOAN -> {
+                BookItem item = db.findItemByBarcode(in.readUTF());
+                if (item != null)
+                    db.closeLoan(item);
+            }
+            case PLACE_HOLD -> {
+                int holdID = in.readInt();
+                Person p = db.findPersonById(in.readInt());
+                BookTitle t = db.findBookByISBN(in.readUTF());
+                LocalDate placed = LocalDate.ofEpochDay(in.readLong());
+                if (p instanceof Borrower && t != null)
+                    db.placeHold((Borrower) p, t, placed, holdID);
+            }
+            case CANCEL_HOLD -> {
+                Hold h = db.findHoldById(in.readInt());
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                if (h != null)
+                    db.cancelHold(h, day);
+            }
+            case EXPIRE_HOLD -> {
+                Hold h = db.findHoldById(in.readInt());
+                LocalDate day = LocalDate.ofEpochDay(in.readLong());
+                if (h != null)
+                    db.expireHold(h, day);
+            }
+            default ->
+                System.err.println("Journal: skipping unknown record type " + type);
+        }
+    }
+
+    // ByteArrayOutputStream that exposes its backing array, so CRC and
+    // channel writes don't need a copy
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package core;
+
+import entities.TextArena;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and latency histograms for the desk operations, switched on with
+ * -Dlibrary.metrics=true. ENABLED is a static final, so with metrics off
+ * the calls in LibraryService fold away and cost nothing. With metrics on,
+ * each operation costs two nanoTime reads, a LongAdder increment and one
+ * atomic histogram increment.
+ *
+ * Each operation is also emitted as a "library.Operation" Flight Recorder
+ * event, which only does work while a recording has it enabled.
+ */
+public final class LibraryMetrics {
+
+    public enum Op {
+        LOGIN, SEARCH, ISSUE, RETURN
+    }
+
+    public static final boolean ENABLED = Boolean.getBoolean("library.metrics");
+
+    private static final Op[] OPS = Op.values();
+    private static final LongAdder[] COUNTS = new LongAdder[OPS.length];
+    private static final LongAdder[] ERRORS = new LongAdder[OPS.length];
+    private static final LatencyHistogram[] LATENCY = new LatencyHistogram[OPS.length];
+
+    static {
+        for (int i = 0; i < OPS.length; i++) {
+            COUNTS[i] = new LongAdder();
+            ERRORS[i] = new LongAdder();
+            LATENCY[i] = new LatencyHistogram();
+        }
+    }
+
+    @Name("library.Operation")
+    @Label("Library Operation")
+    @Category("Library")
+    @StackTrace(false)
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Succeeded")
+        boolean ok;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    private LibraryMetrics() {
+    }
+
+    // Start timestamp for record(); 0 when metrics are off
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    public static void record(Op op, long start, boolean ok) {
+        if (!ENABLED)
+            return;
+        long nanos = System.nanoTime() - start;
+        int i = op.ordinal();
+        COUNTS[i].increment();
+        if (!ok)
+            ERRORS[i].increment();
+        LATENCY[i].record(nanos);
+
+        OperationEvent e = new OperationEvent();
+        if (e.isEnabled()) {
+            e.operation = op.name();
+            e.ok = ok;
+            e.latency = nanos;
+            e.commit();
+        }
+    }
+
+    public static long getCount(Op op) {
+        return COUNTS[op.ordinal()].sum();
+    }
+
+    public static long getErrors(Op op) {
+        return ERRORS[op.ordinal()].sum();
+    }
+
+    public static LatencyHistogram getLatency(Op op) {
+        return LATENCY[op.ordinal()];
+    }
+
+    public static void reset() {
+        for (int i = 0; i < OPS.length; i++) {
+            COUNTS[i].reset();
+            ERRORS[i].reset();
+            LATENCY[i].reset();
+        }
+    }
+
+    // Publishes the counters plus db size gauges as library:type=Metrics
+    public static void registerMBean(LibraryDatabase db) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("library:type=Metrics");
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(new Bean(db), name);
+    }
+
+    private static class Bean implements LibraryMetricsMXBean {
+        private final LibraryDatabase db;
+
+        Bean(LibraryDatabase db) {
+            this.db = db;
+        }
+
+        @Override
+        public int getCatalogSize() {
+            return db.getCatalog().size();
+        }
+
+        @Override
+        public int getInventorySize() {
+            return db.getInventory().size();
+        }
+
+        @Override
+        public int getPersonCount() {
+            return db.getPersons().size();
+        }
+
+        @Override
+        public int getActiveLoanCount() {
+            return db.getActiveLoanCount();
+        }
+
+        @Override
+        public int getArchivedLoanCount() {
+            return db.getLoanArchive().size();
+        }
+
+        @Override
+        public long getTextArenaBytes() {
+            return TextArena.allocatedBytes();
+        }
+
+        @Override
+        public Map<String, Long> getOperationCounts() {
+            Map<String, Long> m = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                m.put(op.name(), getCount(op));
+            }
+            return m;
+        }
+
+        @Override
+        public Map<String, Long> getErrorCounts() {
+            Map<String, Long> m = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                m.put(op.name(), getErrors(op));
+            }
+            return m;
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP50Micros() {
+            return latency(h -> h.percentile(0.50) / 1e3);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP99Micros() {
+            return latency(h -> h.percentile(0.99) / 1e3);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyP999Micros() {
+            return latency(h -> h.percentile(0.999) / 1e3);
+        }
+
+        @Override
+        public void reset() {
+            LibraryMetrics.reset();
+        }
+
+        private static Map<String, Double> latency(ToDoubleFunction<LatencyHistogram> f) {
+            Map<String, Double> m = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                m.put(op.name(), f.applyAsDouble(getLatency(op)));
+            }
+            return m;
+        }
+    }
+}
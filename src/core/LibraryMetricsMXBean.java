@@ -0,0 +1,35 @@
+package core;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LibraryMetrics}, registered as "library:type=Metrics".
+ * Maps are keyed by operation name (LOGIN, SEARCH, ISSUE, RETURN).
+ */
+public interface LibraryMetricsMXBean {
+
+    int getCatalogSize();
+
+    int getInventorySize();
+
+    int getPersonCount();
+
+    int getActiveLoanCount();
+
+    int getArchivedLoanCount();
+
+    // Bytes held by the shared text arena (0 unless -Dlibrary.compact=true)
+    long getTextArenaBytes();
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Double> getLatencyP50Micros();
+
+    Map<String, Double> getLatencyP99Micros();
+
+    Map<String, Double> getLatencyP999Micros();
+
+    void reset();
+}
@@ -0,0 +1,218 @@
+package core;
+
+import entities.BookItem;
+import entities.BookTitle;
+import enums.AccountStatus;
+import java.util.List;
+import transactions.Hold;
+import transactions.Loan;
+import users.Admin;
+import users.Borrower;
+import users.Librarian;
+import users.Person;
+
+/**
+ * The desk operations (login, search, issue, return, holds) without any
+ * console I/O. Same checks and role rules as the LibrarySystem menus: anyone
+ * may search, only librarians issue and return, and borrowers place and
+ * cancel their own holds (librarians anyone's). Failures come back as an
+ * {@link Outcome} so callers decide how to report them.
+ */
+public class LibraryService {
+
+    public enum Outcome {
+        OK,
+        NOT_FOUND,
+        FORBIDDEN,
+        NOT_BORROWER,
+        ACCOUNT_INACTIVE,
+        LIMIT_REACHED,
+        NOT_AVAILABLE,
+        NOT_LOANED,
+        DUPLICATE
+    }
+
+    public static class Result {
+        private final Outcome outcome;
+        private final Loan loan;
+
+        Result(Outcome outcome, Loan loan) {
+            this.outcome = outcome;
+            this.loan = loan;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // The loan issued or closed, null unless OK
+        public Loan getLoan() {
+            return loan;
+        }
+
+        public boolean isOk() {
+            return outcome == Outcome.OK;
+        }
+    }
+
+    public static class HoldResult {
+        private final Outcome outcome;
+        private final Hold hold;
+
+        HoldResult(Outcome outcome, Hold hold) {
+            this.outcome = outcome;
+            this.hold = hold;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // The hold placed, null unless OK
+        public Hold getHold() {
+            return hold;
+        }
+
+        public boolean isOk() {
+            return outcome == Outcome.OK;
+        }
+    }
+
+    private final LibraryDatabase db;
+
+    public LibraryService(LibraryDatabase db) {
+        this.db = db;
+    }
+
+    public LibraryDatabase getDatabase() {
+        return db;
+    }
+
+    // Returns the person on a valid ID/password pair, otherwise null
+    public Person login(int id, String password) {
+        long t = LibraryMetrics.start();
+        Person p = db.findPersonById(id);
+        Person user = (p != null && p.validatePassword(password)) ? p : null;
+        LibraryMetrics.record(LibraryMetrics.Op.LOGIN, t, user != null);
+        return user;
+    }
+
+    public List<BookTitle> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    // The 'limit' best matches, e.g. one page's worth
+    public List<BookTitle> search(String query, int limit) {
+        long t = LibraryMetrics.start();
+        List<BookTitle> hits = db.searchCatalog(query, limit);
+        LibraryMetrics.record(LibraryMetrics.Op.SEARCH, t, true);
+        return hits;
+    }
+
+    // Typo-tolerant search, for when the exact one finds nothing
+    public List<BookTitle> searchFuzzy(String query) {
+        return searchFuzzy(query, Integer.MAX_VALUE);
+    }
+
+    public List<BookTitle> searchFuzzy(String query, int limit) {
+        long t = LibraryMetrics.start();
+        List<BookTitle> hits = db.searchCatalogFuzzy(query, limit);
+        LibraryMetrics.record(LibraryMetrics.Op.SEARCH, t, true);
+        return hits;
+    }
+
+    // Whether 'p' may take out another book right now
+    public Outcome checkBorrower(Person p) {
+        if (!(p instanceof Borrower))
+            return Outcome.NOT_BORROWER;
+        Borrower b = (Borrower) p;
+        if (b.getAccountStatus() != AccountStatus.ACTIVE)
+            return Outcome.ACCOUNT_INACTIVE;
+        if (b.getActiveLoanCount() >= b.getMaxBookLimit())
+            return Outcome.LIMIT_REACHED;
+        return Outcome.OK;
+    }
+
+    public Result issue(Person actor, int borrowerId, String barcode) {
+        long t = LibraryMetrics.start();
+        Result r = doIssue(actor, borrowerId, barcode);
+        LibraryMetrics.record(LibraryMetrics.Op.ISSUE, t, r.isOk());
+        return r;
+    }
+
+    private Result doIssue(Person actor, int borrowerId, String barcode) {
+        if (!(actor instanceof Librarian))
+            return new Result(Outcome.FORBIDDEN, null);
+        Person p = db.findPersonById(borrowerId);
+        Outcome check = checkBorrower(p);
+        if (check != Outcome.OK)
+            return new Result(check, null);
+
+        BookItem item = db.findItemByBarcode(barcode);
+        if (item == null)
+            return new Result(Outcome.NOT_FOUND, null);
+        Loan loan = db.issueLoan((Borrower) p, item);
+        if (loan != null)
+            return new Result(Outcome.OK, loan);
+        // Either the copy is out or another desk took the borrower's last slot
+        Outcome now = checkBorrower(p);
+        return new Result(now == Outcome.OK ? Outcome.NOT_AVAILABLE : now, null);
+    }
+
+    public Result returnItem(Person actor, String barcode) {
+        long t = LibraryMetrics.start();
+        Result r;
+        if (!(actor instanceof Librarian)) {
+            r = new Result(Outcome.FORBIDDEN, null);
+        } else {
+            BookItem item = db.findItemByBarcode(barcode);
+            Loan loan = (item != null) ? db.returnLoan(item) : null;
+            r = (item == null) ? new Result(Outcome.NOT_FOUND, null)
+                    : (loan != null) ? new Result(Outcome.OK, loan) : new Result(Outcome.NOT_LOANED, null);
+        }
+        LibraryMetrics.record(LibraryMetrics.Op.RETURN, t, r.isOk());
+        return r;
+    }
+
+    // Admin only, like Manage Book Items
+    public Outcome addItem(Person actor, String isbn, String barcode) {
+        if (!(actor instanceof Admin))
+            return Outcome.FORBIDDEN;
+        BookTitle t = db.findBookByISBN(isbn);
+        if (t == null)
+            return Outcome.NOT_FOUND;
+        return db.addBookItem(new BookItem(barcode, t)) ? Outcome.OK : Outcome.DUPLICATE;
+    }
+
+    // ==========================================
+    // HOLDS
+    // ==========================================
+    // Queues the borrower for the title; DUPLICATE if they already hold it
+    public HoldResult placeHold(Person actor, int borrowerId, String isbn) {
+        if (!mayActFor(actor, borrowerId))
+            return new HoldResult(Outcome.FORBIDDEN, null);
+        Person p = db.findPersonById(borrowerId);
+        if (!(p instanceof Borrower))
+            return new HoldResult(Outcome.NOT_BORROWER, null);
+        if (((Borrower) p).getAccountStatus() != AccountStatus.ACTIVE)
+            return new HoldResult(Outcome.ACCOUNT_INACTIVE, null);
+        BookTitle t = db.findBookByISBN(isbn);
+        if (t == null)
+            return new HoldResult(Outcome.NOT_FOUND, null);
+        Hold h = db.placeHold((Borrower) p, t);
+        return h != null ? new HoldResult(Outcome.OK, h) : new HoldResult(Outcome.DUPLICATE, null);
+    }
+
+    public Outcome cancelHold(Person actor, int holdId) {
+        Hold h = db.findHoldById(holdId);
+        if (h == null)
+            return Outcome.NOT_FOUND;
+        if (!mayActFor(actor, h.getBorrower().getId()))
+            return Outcome.FORBIDDEN;
+        return db.cancelHold(h) ? Outcome.OK : Outcome.NOT_FOUND;
+    }
+
+    private static boolean mayActFor(Person actor, int borrowerId) {
+        return actor instanceof Librarian || (actor instanceof Borrower && actor.getId() == borrowerId);
+    }
+}
@@ -0,0 +1,381 @@
+package core;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import transactions.Hold;
+import transactions.Loan;
+import transactions.LoanArchive;
+import users.Admin;
+import users.Borrower;
+import users.Librarian;
+import users.Person;
+import users.Staff;
+
+/**
+ * Compact binary image of a LibraryDatabase: authors, titles, items,
+ * persons, every borrower's loan history and the open holds,
+ * cross-referenced by position instead of by key. The file ends with a CRC32 of everything before it.
+ *
+ * Loading maps the file read-only and decodes it in one sequential pass.
+ * Startup is then "load snapshot, replay journal tail": {@link #checkpoint}
+ * writes a new snapshot and resets the journal to the snapshot's epoch.
+ */
+public class LibrarySnapshot {
+    private static final long MAGIC = 0x4C49425F534E4150L; // "LIB_SNAP"
+    private static final int VERSION = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private LibrarySnapshot() {
+    }
+
+    // ==========================================
+    // CHECKPOINT
+    // ==========================================
+    /**
+     * Writes a snapshot of 'db' and truncates its journal. Mutations wait
+     * while this runs, so every record of the old journal is in the snapshot
+     * and every change after it goes to the new one.
+     */
+    public static void checkpoint(LibraryDatabase db, Path path) throws IOException {
+        Lock quiet = db.getMutationLock().writeLock();
+        quiet.lock();
+        try {
+            LibraryJournal journal = db.getJournal();
+            long epoch = (journal != null) ? journal.getEpoch() + 1 : 1;
+            write(db, epoch, path);
+            if (journal != null)
+                journal.reset(epoch);
+        } finally {
+            quiet.unlock();
+        }
+    }
+
+    // ==========================================
+    // WRITE
+    // ==========================================
+    public static void write(LibraryDatabase db, long epoch, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(tmp);
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc);
+                DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(epoch);
+
+            // In concurrent mode the lists are synchronized: hold each one's lock while it's written
+            List<Author> authors = db.getAuthors();
+            Map<Author, Integer> authorIdx = new IdentityHashMap<>();
+            synchronized (authors) {
+                out.writeInt(authors.size());
+                for (Author a : authors) {
+                    authorIdx.put(a, authorIdx.size());
+                    out.writeInt(a.getAuthorID());
+                    writeString(out, a.getName());
+                }
+            }
+
+            List<BookTitle> catalog = db.getCatalog();
+            Map<BookTitle, Integer> titleIdx = new IdentityHashMap<>();
+            synchronized (catalog) {
+                out.writeInt(catalog.size());
+                for (BookTitle t : catalog) {
+                    titleIdx.put(t, titleIdx.size());
+                    writeString(out, t.getIsbn());
+                    writeString(out, t.getTitle());
+                    writeString(out, t.getGenre());
+                    writeString(out, t.getPublisher());
+                    List<Author> written = t.getAuthors();
+                    out.writeInt(written.size());
+                    for (Author a : written) {
+                        out.writeInt(authorIdx.getOrDefault(a, -1));
+                    }
+                }
+            }
+
+            List<BookItem> inventory = db.getInventory();
+            Map<BookItem, Integer> itemIdx = new IdentityHashMap<>();
+            synchronized (inventory) {
+                out.writeInt(inventory.size());
+                for (BookItem i : inventory) {
+                    itemIdx.put(i, itemIdx.size());
+                    writeString(out, i.getBarcode());
+                    out.writeInt(titleIdx.getOrDefault(i.getBookTitle(), -1));
+                    out.writeByte(i.getStatus().ordinal());
+                    out.writeLong(i.getPurchaseDate().toEpochDay());
+                }
+            }
+
+            List<Person> persons = db.getPersons();
+            Map<Person, Integer> personIdxOf = new IdentityHashMap<>();
+            synchronized (persons) {
+                Map<Integer, Borrower> borrowersById = new HashMap<>();
+                out.writeInt(persons.size());
+                for (Person p : persons) {
+                    personIdxOf.put(p, personIdxOf.size());
+                    out.writeByte(p instanceof Admin ? 'A' : p instanceof Librarian ? 'L' : 'B');
+                    out.writeInt(p.getId());
+                    writeString(out, p.getName());
+                    writeString(out, p.getPassword());
+                    writeString(out, p.getContactInfo());
+                    out.writeDouble(p instanceof Staff ? ((Staff) p).getSalary() : 0);
+                    if (p instanceof Borrower)
+                        borrowersById.put(p.getId(), (Borrower) p);
+                }
+
+                // Archived loans in archive order (one pass, not a scan per borrower),
+                // then the loans each borrower still holds as objects, oldest first
+                LoanArchive.Snapshot archived = db.getLoanArchive().snapshot();
+                long loanCount = 0;
+                for (int row = 0; row < archived.size(); row++) {
+                    if (ownerOf(archived, row, borrowersById) != null)
+                        loanCount++;
+                }
+                Map<Borrower, List<Loan>> held = new IdentityHashMap<>();
+                for (Borrower b : borrowersById.values()) {
+                    List<Loan> loans = b.getUnarchivedLoans();
+                    held.put(b, loans);
+                    loanCount += loans.size();
+                }
+
+                out.writeLong(loanCount);
+                for (int row = 0; row < archived.size(); row++) {
+                    Borrower b = ownerOf(archived, row, borrowersById);
+                    if (b == null)
+                        continue;
+                    out.writeInt(archived.loanId(row));
+                    out.writeInt(personIdxOf.get(b));
+                    out.writeInt(itemIdx.getOrDefault(archived.item(row), -1));
+                    out.writeLong(archived.issueDay(row));
+                    out.writeLong(archived.dueDay(row));
+                    out.writeLong(archived.returnDay(row));
+                    out.writeBoolean(false);
+                }
+                for (Person p : persons) {
+                    if (p instanceof Borrower) {
+                        for (Loan l : held.get(p)) {
+                            out.writeInt(l.getLoanID());
+                            out.writeInt(personIdxOf.get(p));
+                            out.writeInt(itemIdx.getOrDefault(l.getBookItem(), -1));
+                            out.writeLong(l.getIssueDate().toEpochDay());
+                            out.writeLong(l.getDueDate().toEpochDay());
+                            out.writeLong(l.getReturnDate() != null ? l.getReturnDate().toEpochDay() : NO_DATE);
+                            out.writeBoolean(db.findActiveLoanById(l.getLoanID()) == l);
+                        }
+                    }
+                }
+            }
+            out.writeInt(db.peekNextLoanId());
+
+            // Open holds, each title's queue in order; a ready hold names its copy
+            HoldRegistry registry = db.getHolds();
+            List<Hold> holds = registry.allHolds();
+            out.writeInt(holds.size());
+            for (Hold h : holds) {
+                out.writeInt(h.getHoldID());
+                out.writeInt(personIdxOf.getOrDefault(h.getBorrower(), -1));
+                out.writeInt(titleIdx.getOrDefault(h.getBookTitle(), -1));
+                out.writeLong(h.getPlacedDate().toEpochDay());
+                out.writeLong(h.getExpiryDate().toEpochDay());
+                out.writeInt(h.getReadyItem() != null ? itemIdx.getOrDefault(h.getReadyItem(), -1) : -1);
+            }
+            out.writeInt(registry.peekNextHoldId());
+
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ==========================================
+    // LOAD
+    // ==========================================
+    /**
+     * Loads the snapshot into an empty 'db' (journal not yet attached) and
+     * returns its epoch, to be passed on to {@link LibraryJournal#replay}.
+     */
+    public static long load(Path path, LibraryDatabase db) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Snapshot larger than 2 GB is not supported");
+            if (size < 24)
+                throw new IOException("Snapshot truncated");
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int body = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice().limit(body));
+            if ((int) crc.getValue() != buf.getInt(body))
+                throw new IOException("Snapshot checksum mismatch");
+
+            buf.limit(body);
+            if (buf.getLong() != MAGIC)
+                throw new IOException("Not a library snapshot");
+            int version = buf.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot version " + version);
+            long epoch = buf.getLong();
+
+            Reader in = new Reader(buf);
+
+            Author[] authors = new Author[buf.getInt()];
+            for (int i = 0; i < authors.length; i++) {
+                int id = buf.getInt();
+                authors[i] = new Author(id, in.string());
+                db.addAuthor(authors[i]);
+            }
+
+            BookTitle[] titles = new BookTitle[buf.getInt()];
+            for (int i = 0; i < titles.length; i++) {
+                BookTitle t = new BookTitle(in.string(), in.string(), in.string(), in.string());
+                int n = buf.getInt();
+                for (int k = 0; k < n; k++) {
+                    int a = buf.getInt();
+                    if (a >= 0)
+                        t.addAuthor(authors[a]);
+                }
+                titles[i] = t;
+                db.addBookTitle(t);
+            }
+
+            BookStatus[] statuses = BookStatus.values();
+            BookItem[] items = new BookItem[buf.getInt()];
+            for (int i = 0; i < items.length; i++) {
+                String barcode = in.string();
+                int t = buf.getInt();
+                BookStatus status = statuses[buf.get()];
+                LocalDate purchased = LocalDate.ofEpochDay(buf.getLong());
+                if (t < 0)
+                    continue;
+                items[i] = new BookItem(barcode, titles[t], purchased);
+                items[i].setStatus(status);
+                db.addBookItem(items[i]);
+            }
+
+            Person[] persons = new Person[buf.getInt()];
+            for (int i = 0; i < persons.length; i++) {
+                byte role = buf.get();
+                int id = buf.getInt();
+                String name = in.string();
+                String password = in.string();
+                String contact = in.string();
+                double salary = buf.getDouble();
+                persons[i] = switch (role) {
+                    case 'A' -> new Admin(id, name, password, contact, salary);
+                    case 'L' -> new Librarian(id, name, password, contact, salary);
+                    default -> new Borrower(id, name, password, contact);
+                };
+                db.addPerson(persons[i]);
+            }
+
+            long loans = buf.getLong();
+            for (long i = 0; i < loans; i++) {
+                int loanID = buf.getInt();
+                Borrower b = (Borrower) persons[buf.getInt()];
+                int itemIdx = buf.getInt();
+                LocalDate issued = LocalDate.ofEpochDay(buf.getLong());
+                LocalDate due = LocalDate.ofEpochDay(buf.getLong());
+                long returned = buf.getLong();
+                boolean open = buf.get() != 0;
+                if (itemIdx < 0 || items[itemIdx] == null)
+                    continue;
+
+                Loan loan = new Loan(loanID, b, items[itemIdx], issued, due);
+                if (returned != NO_DATE)
+                    loan.markReturned(LocalDate.ofEpochDay(returned));
+                if (open) {
+                    db.restoreLoan(loan, true);
+                } else if (loan.getReturnDate() != null) {
+                    db.archiveLoan(loan);
+                } else {
+                    b.addLoan(loan);
+                }
+            }
+            db.ensureNextLoanId(buf.getInt());
+
+            HoldRegistry registry = db.getHolds();
+            int holds = buf.getInt();
+            for (int i = 0; i < holds; i++) {
+                int holdID = buf.getInt();
+                int p = buf.getInt();
+                int t = buf.getInt();
+                LocalDate placed = LocalDate.ofEpochDay(buf.getLong());
+                LocalDate expiry = LocalDate.ofEpochDay(buf.getLong());
+                int ready = buf.getInt();
+                if (p < 0 || t < 0 || !(persons[p] instanceof Borrower))
+                    continue;
+                Hold h = new Hold(holdID, (Borrower) persons[p], titles[t], placed, expiry);
+                if (ready >= 0) {
+                    if (items[ready] == null)
+                        continue;
+                    h.markReady(items[ready], expiry);
+                }
+                registry.restore(h);
+            }
+            registry.ensureNextHoldId(buf.getInt());
+            db.getLoanArchive().trimToSize();
+            return epoch;
+        }
+    }
+
+    // The current borrower an archive row belongs to, or null (e.g. a removed person's row)
+    private static Borrower ownerOf(LoanArchive.Snapshot archived, int row, Map<Integer, Borrower> borrowersById) {
+        int id = archived.borrowerId(row);
+        Borrower b = borrowersById.get(id);
+        return (b != null && b.ownsArchivedRow(row, id)) ? b : null;
+    }
+
+    // Decodes length-prefixed UTF-8 strings through one reusable scratch array
+    private static class Reader {
+        private final MappedByteBuffer buf;
+        private byte[] scratch = new byte[64];
+
+        Reader(MappedByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        String string() {
+            int len = buf.getInt();
+            if (scratch.length < len)
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.get(scratch, 0, len);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+}
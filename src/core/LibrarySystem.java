@@ -2,15 +2,42 @@ package core;
 
 import entities.*;
 import enums.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import javax.management.JMException;
+import transactions.Hold;
 import transactions.Loan;
 import users.*;
 
 public class LibrarySystem {
 
     private LibraryDatabase database;
+    private LibraryService service;
     private Scanner scanner;
     private Person loggedInUser;
+    private OverdueSweeper overdueSweeper;
+    private Pager pager;
+    private LibraryHttpServer httpServer;
+    private CirculationAnalytics analytics;
+
+    // Commands per journal sync in batch mode
+    private static final int BATCH_SIZE = 1000;
 
     // ANSI Colors
     public static final String ANSI_RESET = "\u001B[0m";
@@ -22,9 +49,114 @@ public class LibrarySystem {
     public static final String ANSI_BOLD = "\u001B[1m";
 
     public LibrarySystem() {
-        this.database = new LibraryDatabase();
+        // -Dlibrary.http.port=<port> also serves the JSON API, which needs the concurrent database
+        String httpPort = System.getProperty("library.http.port");
+        this.database = new LibraryDatabase(httpPort != null);
+        this.service = new LibraryService(database);
         this.scanner = new Scanner(System.in);
-        setupDummyData();
+        // -Dlibrary.pageSize=<rows per screen>
+        this.pager = new Pager(scanner, System.out, Integer.parseInt(System.getProperty("library.pageSize", "20")));
+        openJournal();
+        // Holds may have lapsed while the system was down
+        database.expireHolds(LocalDate.now());
+        // -Dlibrary.sweep.at=HH:mm (daily overdue sweep)  -Dlibrary.sweep.dueSoonDays=<days>
+        this.overdueSweeper = new OverdueSweeper(database,
+                Integer.parseInt(System.getProperty("library.sweep.dueSoonDays", "1")), null);
+        overdueSweeper.start(LocalTime.parse(System.getProperty("library.sweep.at", "06:00")));
+        this.analytics = new CirculationAnalytics(database);
+        analytics.start();
+        database.getAutocomplete().trackPopularity(database, analytics);
+        if (httpPort != null) {
+            startHttpServer(Integer.parseInt(httpPort));
+        }
+        if (LibraryMetrics.ENABLED) {
+            try {
+                LibraryMetrics.registerMBean(database);
+            } catch (JMException e) {
+                System.out.println(ANSI_RED + "Metrics MBean unavailable: " + e.getMessage() + ANSI_RESET);
+            }
+        }
+    }
+
+    // -Dlibrary.http.threads=<pool size when the JDK has no virtual threads>
+    private void startHttpServer(int port) {
+        try {
+            httpServer = new LibraryHttpServer(database, port,
+                    Integer.parseInt(System.getProperty("library.http.threads", "200")));
+            httpServer.start();
+            System.out.println(ANSI_CYAN + "HTTP API listening on port " + httpServer.getPort() + ANSI_RESET);
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "HTTP API unavailable: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    // Rebuilds the database from snapshot + journal tail; seeds demo data on first run.
+    // Stops with an IllegalStateException if saved state exists but can't be loaded.
+    // -Dlibrary.journal=<path>  -Dlibrary.journal.sync=NONE|INTERVAL|EVERY_COMMIT  -Dlibrary.journal.syncMillis=<ms>
+    // -Dlibrary.snapshot=<path>  -Dlibrary.snapshot.journalBytes=<checkpoint once the journal is this big>
+    // -Dlibrary.snapshot.checkMillis=<how often the background task checks the journal size>
+    private void openJournal() {
+        String path = System.getProperty("library.journal", "library.journal");
+        Path snapshotPath = Paths.get(System.getProperty("library.snapshot", "library.snapshot"));
+        // Set once saved state starts loading; past that point a failure must not fall back to demo data
+        boolean recovering = false;
+        try {
+            long checkpointBytes = Long.parseLong(System.getProperty("library.snapshot.journalBytes", "4194304"));
+            long checkpointMillis = Long.parseLong(System.getProperty("library.snapshot.checkMillis", "5000"));
+            LibraryJournal.SyncPolicy policy = LibraryJournal.SyncPolicy
+                    .valueOf(System.getProperty("library.journal.sync", "INTERVAL").toUpperCase());
+            long syncMillis = Long.parseLong(System.getProperty("library.journal.syncMillis", "20"));
+
+            long epoch = 0;
+            if (Files.exists(snapshotPath)) {
+                recovering = true;
+                long start = System.nanoTime();
+                epoch = LibrarySnapshot.load(snapshotPath, database);
+                System.out.printf(ANSI_CYAN + "Loaded snapshot %s in %d ms%n" + ANSI_RESET, snapshotPath,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+
+            LibraryJournal journal = LibraryJournal.open(Paths.get(path), policy, syncMillis);
+            recovering |= Files.size(journal.getPath()) > 0;
+            int replayed = journal.replay(database, epoch);
+            database.attachJournal(journal);
+            attachEvents();
+            database.startCheckpoints(snapshotPath, checkpointBytes, checkpointMillis);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::closeJournal));
+
+            if (replayed == 0 && epoch == 0) {
+                setupDummyData();
+            } else if (replayed > 0) {
+                System.out.println(ANSI_CYAN + "Recovered " + replayed + " journal records from " + path + ANSI_RESET);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            if (recovering) {
+                // The database holds part of the saved state: don't run (or seed demo data) on top of it
+                System.out.println(ANSI_RED + "Could not recover " + snapshotPath + " / " + path + ": " + e.getMessage()
+                        + ANSI_RESET);
+                throw new IllegalStateException("Library state could not be recovered", e);
+            }
+            System.out.println(ANSI_RED + "Journal unavailable (" + e.getMessage() + "), running in-memory." + ANSI_RESET);
+            setupDummyData();
+            attachEvents();
+        }
+    }
+
+    // -Dlibrary.events.capacity=<ring slots> (change stream for downstream consumers)
+    private void attachEvents() {
+        database.attachEvents(new LibraryEventRing(Integer.parseInt(System.getProperty("library.events.capacity", "65536"))));
+    }
+
+    private void closeJournal() {
+        database.stopCheckpoints();
+        LibraryJournal journal = database.getJournal();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println(ANSI_RED + "Journal close failed: " + e.getMessage() + ANSI_RESET);
+            }
+        }
     }
 
     public void run() {
@@ -42,11 +174,21 @@ public class LibrarySystem {
                         handleLogin();
                     case "2" -> {
                         System.out.println(ANSI_GREEN + "\n>>> Goodbye! <<<" + ANSI_RESET);
+                        if (httpServer != null) {
+                            httpServer.stop();
+                        }
+                        closeJournal();
                         running = false;
                     }
                     default ->
                         System.out.println(ANSI_RED + "Invalid option." + ANSI_RESET);
                 }
+            } catch (NoSuchElementException e) {
+                // Console input closed: keep serving HTTP if it is on, otherwise shut down
+                running = false;
+                if (httpServer == null) {
+                    closeJournal();
+                }
             } catch (Exception e) {
                 System.out.println(ANSI_RED + "Unexpected Error: " + e.getMessage() + ANSI_RESET);
             }
@@ -65,7 +207,7 @@ public class LibrarySystem {
         System.out.print("Enter Password: ");
         String pass = readString();
 
-        if (person.validatePassword(pass)) {
+        if (service.login(id, pass) != null) {
             loggedInUser = person;
             System.out.println(ANSI_GREEN + "Welcome, " + ANSI_BOLD + person.getName() + ANSI_RESET
                     + ANSI_GREEN + " [" + person.getRoleType() + "]" + ANSI_RESET);
@@ -96,6 +238,7 @@ public class LibrarySystem {
             System.out.println("2. Show Available Books (All Items)");
             System.out.println("3. My Active Loans");
             System.out.println("4. My Loan History");
+            System.out.println("5. My Holds");
             System.out.println("0. Logout");
             System.out.print(ANSI_YELLOW + "Select: " + ANSI_RESET);
 
@@ -108,6 +251,8 @@ public class LibrarySystem {
                     actionViewMyActiveLoans(member);
                 case "4" ->
                     member.printLoanHistory();
+                case "5" ->
+                    menuHolds(member);
                 case "0" ->
                     active = false;
                 default ->
@@ -130,6 +275,9 @@ public class LibrarySystem {
             System.out.println(ANSI_GREEN + "4. Return Book" + ANSI_RESET);
             System.out.println("5. Search Member Active Loans");
             System.out.println("6. Search Member Loan History");
+            System.out.println("7. Overdue / Due Soon Report");
+            System.out.println("8. Batch Commands (file)");
+            System.out.println("9. Member Holds");
             System.out.println("0. Logout");
             System.out.print(ANSI_YELLOW + "Select: " + ANSI_RESET);
 
@@ -146,6 +294,18 @@ public class LibrarySystem {
                     actionSearchMemberActiveLoans();
                 case "6" ->
                     actionSearchMemberHistory();
+                case "7" ->
+                    actionOverdueReport();
+                case "8" ->
+                    menuBatch(staff);
+                case "9" -> {
+                    Person p = database.findPersonById(readInt("Enter Member ID: "));
+                    if (p instanceof Borrower) {
+                        menuHolds((Borrower) p);
+                    } else {
+                        System.out.println(ANSI_RED + "User is not a borrower." + ANSI_RESET);
+                    }
+                }
                 case "0" ->
                     active = false;
                 default ->
@@ -168,6 +328,10 @@ public class LibrarySystem {
             System.out.println(ANSI_GREEN + "4. Manage Book Items" + ANSI_RESET);
             System.out.println(ANSI_GREEN + "5. Manage Authors" + ANSI_RESET);
             System.out.println(ANSI_GREEN + "6. Manage Persons" + ANSI_RESET);
+            System.out.println(ANSI_GREEN + "7. Bulk Import (CSV)" + ANSI_RESET);
+            System.out.println(ANSI_GREEN + "8. Batch Commands (file)" + ANSI_RESET);
+            System.out.println("9. Metrics");
+            System.out.println("10. Reports");
             System.out.println("0. Logout");
             System.out.print(ANSI_YELLOW + "Select: " + ANSI_RESET);
 
@@ -184,6 +348,14 @@ public class LibrarySystem {
                     menuManageAuthors(admin);
                 case "6" ->
                     menuManagePersons(admin);
+                case "7" ->
+                    menuBulkImport(admin);
+                case "8" ->
+                    menuBatch(admin);
+                case "9" ->
+                    actionMetrics();
+                case "10" ->
+                    menuReports();
                 case "0" ->
                     active = false;
                 default ->
@@ -199,51 +371,192 @@ public class LibrarySystem {
     // SHARED ACTIONS
     // ==========================================
     private void actionViewCatalog() {
-        System.out.println(ANSI_CYAN + "Enter keyword to search (or press Enter for all):" + ANSI_RESET);
+        System.out.println(ANSI_CYAN + "Enter keyword to search (Enter for all, 'filter' to filter by facets,"
+                + " end with '?' for suggestions):" + ANSI_RESET);
         String q = readString();
-        if (q.isEmpty()) {
-            System.out.println(ANSI_BOLD + "\n--- FULL CATALOG ---" + ANSI_RESET);
-            if (database.getCatalog().isEmpty()) {
-                System.out.println("No books found.");
+        if (q.equalsIgnoreCase("filter")) {
+            actionFilterCatalog();
+        } else if (q.endsWith("?")) {
+            List<CatalogAutocomplete.Suggestion> hits = database.suggest(q.substring(0, q.length() - 1),
+                    CatalogAutocomplete.MAX_SUGGESTIONS);
+            if (hits.isEmpty()) {
+                System.out.println(ANSI_YELLOW + "No suggestions." + ANSI_RESET);
             }
-            for (BookTitle t : database.getCatalog()) {
-                t.printDetails();
+            for (CatalogAutocomplete.Suggestion s : hits) {
+                String kind = s.target instanceof BookTitle ? "Title " : "Author";
+                System.out.println(ANSI_CYAN + kind + ANSI_RESET + "  " + s.text + "  (" + s.popularity + " loans)");
             }
+        } else if (q.isEmpty()) {
+            pager.show("FULL CATALOG", "ISBN           | Title                          | Authors              | Genre        | Avail/Total",
+                    database.getCatalog(), (t, sb) -> {
+                        Pager.cell(sb, t.getIsbn(), 14);
+                        Pager.cell(sb, t.getTitle(), 30);
+                        Pager.cell(sb, t.getAuthorNames(), 20);
+                        Pager.cell(sb, t.getGenre(), 12);
+                        sb.append(t.getAvailableCount()).append('/').append(t.getTotalCopies());
+                    });
         } else {
-            BookTitle t = database.findBookByTitle(q);
-            if (t != null) {
-                t.printDetails();
+            List<BookTitle> hits = service.search(q);
+            if (hits.isEmpty()) {
+                hits = service.searchFuzzy(q);
+                System.out.println(ANSI_YELLOW + (hits.isEmpty() ? "No match found." : "No exact match; showing close spellings.")
+                        + ANSI_RESET);
+            }
+            if (hits.isEmpty()) {
+                return;
+            } else if (hits.size() <= 5) {
+                StringBuilder sb = new StringBuilder(ANSI_BOLD + "\n--- " + hits.size() + " MATCH(ES) ---" + ANSI_RESET + "\n");
+                for (BookTitle t : hits) {
+                    t.appendDetails(sb);
+                }
+                System.out.print(sb);
             } else {
-                System.out.println(ANSI_YELLOW + "No match found." + ANSI_RESET);
+                pager.show(hits.size() + " MATCHES", "ISBN           | Title                          | Authors              | Avail/Total",
+                        hits, (t, sb) -> {
+                            Pager.cell(sb, t.getIsbn(), 14);
+                            Pager.cell(sb, t.getTitle(), 30);
+                            Pager.cell(sb, t.getAuthorNames(), 20);
+                            sb.append(t.getAvailableCount()).append('/').append(t.getTotalCopies());
+                        });
             }
         }
     }
 
-    private void actionShowAllItems() {
-        System.out.println(ANSI_BOLD + "\n--- ALL PHYSICAL ITEMS ---" + ANSI_RESET);
-        if (database.getInventory().isEmpty()) {
-            System.out.println("Inventory empty.");
-            return;
+    // Exact (case-insensitive) author lookup; on a miss, prints close spellings and returns null
+    private Author findAuthor(String name) {
+        Author a = database.findAuthorByName(name);
+        if (a == null && !name.isBlank()) {
+            List<Author> close = database.findAuthorsLike(name);
+            StringBuilder sb = new StringBuilder(ANSI_RED + "Author not found." + ANSI_RESET);
+            for (int i = 0; i < Math.min(3, close.size()); i++) {
+                sb.append(i == 0 ? " Did you mean: " : ", ").append(close.get(i).getName());
+            }
+            System.out.println(close.isEmpty() ? sb : sb.append('?'));
         }
-        System.out.printf(ANSI_BOLD + "%-10s | %-20s | %-10s%n" + ANSI_RESET, "Barcode", "Title", "Status");
-        for (BookItem i : database.getInventory()) {
-            System.out.printf("%-10s | %-20s | %-10s%n",
-                    i.getBarcode(),
-                    truncate(i.getBookTitle().getTitle(), 20),
-                    i.getStatus());
+        return a;
+    }
+
+    private void actionFilterCatalog() {
+        CatalogFacets.Selection selection = new CatalogFacets.Selection();
+        while (true) {
+            CatalogFacets.Result r = database.filterCatalog(selection, 0, 0, 8);
+            StringBuilder sb = new StringBuilder(ANSI_BOLD + "\n--- FILTER: " + selection + " (" + r.total + " titles) ---" + ANSI_RESET + "\n");
+            r.facets.forEach((facet, counts) -> {
+                sb.append(ANSI_CYAN).append(facet).append(ANSI_RESET).append(':');
+                for (CatalogFacets.FacetCount c : counts) {
+                    sb.append("  ").append(c.label).append(" (").append(c.count).append(')');
+                }
+                sb.append('\n');
+            });
+            sb.append("g <genre> | p <publisher> | a <author> | v yes/no | c = clear | l = list | 0 = back\n");
+            System.out.print(sb);
+            String cmd = readString();
+            String arg = cmd.length() > 2 ? cmd.substring(2).trim() : "";
+            switch (cmd.isEmpty() ? "" : cmd.substring(0, 1).toLowerCase()) {
+                case "g" ->
+                    selection.toggle(CatalogFacets.Facet.GENRE, arg);
+                case "p" ->
+                    selection.toggle(CatalogFacets.Facet.PUBLISHER, arg);
+                case "a" -> {
+                    Author a = findAuthor(arg);
+                    if (a != null) {
+                        selection.toggle(CatalogFacets.Facet.AUTHOR, a);
+                    }
+                }
+                case "v" ->
+                    selection.toggle(CatalogFacets.Facet.AVAILABILITY,
+                            arg.equalsIgnoreCase("yes") ? CatalogFacets.AVAILABLE : CatalogFacets.UNAVAILABLE);
+                case "c" ->
+                    selection.clear();
+                case "l" -> {
+                    List<BookTitle> hits = database.filterCatalog(selection, 0, r.total, 0).titles;
+                    pager.show(hits.size() + " MATCHES", "ISBN           | Title                          | Authors              | Avail/Total",
+                            hits, (t, line) -> {
+                                Pager.cell(line, t.getIsbn(), 14);
+                                Pager.cell(line, t.getTitle(), 30);
+                                Pager.cell(line, t.getAuthorNames(), 20);
+                                line.append(t.getAvailableCount()).append('/').append(t.getTotalCopies());
+                            });
+                }
+                case "0" -> {
+                    return;
+                }
+                default ->
+                    System.out.println(ANSI_RED + "Invalid option." + ANSI_RESET);
+            }
         }
     }
 
+    private void actionShowAllItems() {
+        pager.show("ALL PHYSICAL ITEMS", "Barcode    | Title                | Status", database.getInventory(), (i, sb) -> {
+            Pager.cell(sb, i.getBarcode(), 10);
+            Pager.cell(sb, i.getBookTitle().getTitle(), 20);
+            sb.append(i.getStatus());
+        });
+    }
+
     private void actionViewMyActiveLoans(Borrower b) {
         System.out.println(ANSI_BOLD + "\nYour Active Loans:" + ANSI_RESET);
-        if (b.getActiveLoans().isEmpty()) {
+        List<Loan> active = b.getActiveLoans();
+        if (active.isEmpty()) {
             System.out.println(ANSI_YELLOW + " - No active loans." + ANSI_RESET);
         }
-        for (Loan l : b.getActiveLoans()) {
+        for (Loan l : active) {
             System.out.println("- " + l.getBookItem().getBookTitle().getTitle() + " (Due: " + ANSI_RED + l.getDueDate() + ANSI_RESET + ")");
         }
     }
 
+    // Lists the member's holds, then place ('p') or cancel ('c'); the logged-in user acts for them
+    private void menuHolds(Borrower b) {
+        System.out.println(ANSI_BOLD + "\nHolds of " + b.getName() + ":" + ANSI_RESET);
+        List<Hold> holds = database.findHoldsByBorrower(b);
+        if (holds.isEmpty()) {
+            System.out.println(ANSI_YELLOW + " - No holds." + ANSI_RESET);
+        }
+        for (Hold h : holds) {
+            String where = h.getState() == Hold.State.READY
+                    ? ANSI_GREEN + "READY: copy " + h.getReadyItem().getBarcode() + ", pick up by " + h.getExpiryDate() + ANSI_RESET
+                    : "Waiting, " + database.getHoldPosition(h) + " ahead (until " + h.getExpiryDate() + ")";
+            System.out.println("#" + h.getHoldID() + " " + h.getBookTitle().getTitle() + " - " + where);
+        }
+        System.out.print(ANSI_CYAN + "\n'p' place a hold, 'c' cancel one, Enter to go back: " + ANSI_RESET);
+        switch (readString().toLowerCase()) {
+            case "p" -> {
+                System.out.print("Enter ISBN: ");
+                LibraryService.HoldResult r = service.placeHold(loggedInUser, b.getId(), readRequiredString());
+                switch (r.getOutcome()) {
+                    case OK -> {
+                        Hold h = r.getHold();
+                        System.out.println(ANSI_GREEN + (h.getState() == Hold.State.READY
+                                ? "Hold placed; copy " + h.getReadyItem().getBarcode() + " is set aside until " + h.getExpiryDate() + "."
+                                : "Hold placed; " + database.getHoldPosition(h) + " ahead in the queue.") + ANSI_RESET);
+                    }
+                    case NOT_FOUND ->
+                        System.out.println(ANSI_RED + "Title not found." + ANSI_RESET);
+                    case DUPLICATE ->
+                        System.out.println(ANSI_RED + "Already holding this title." + ANSI_RESET);
+                    case ACCOUNT_INACTIVE ->
+                        System.out.println(ANSI_RED + "Account is " + b.getAccountStatus() + "." + ANSI_RESET);
+                    default ->
+                        System.out.println(ANSI_RED + "Not allowed." + ANSI_RESET);
+                }
+            }
+            case "c" -> {
+                int id = readInt("Enter Hold #: ");
+                Hold h = database.findHoldById(id);
+                if (h == null || h.getBorrower() != b) {
+                    System.out.println(ANSI_RED + "No such hold." + ANSI_RESET);
+                } else if (service.cancelHold(loggedInUser, id) == LibraryService.Outcome.OK) {
+                    System.out.println(ANSI_GREEN + "Hold cancelled." + ANSI_RESET);
+                } else {
+                    System.out.println(ANSI_RED + "Not allowed." + ANSI_RESET);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
     // ==========================================
     // LIBRARIAN ACTIONS
     // ==========================================
@@ -251,43 +564,57 @@ public class LibrarySystem {
         int bid = readInt("Enter Borrower ID: ");
         Person p = database.findPersonById(bid);
 
-        if (!(p instanceof Borrower)) {
-            System.out.println(ANSI_RED + "Error: Not a valid borrower." + ANSI_RESET);
-            return;
+        switch (service.checkBorrower(p)) {
+            case NOT_BORROWER -> {
+                System.out.println(ANSI_RED + "Error: Not a valid borrower." + ANSI_RESET);
+                return;
+            }
+            case ACCOUNT_INACTIVE -> {
+                System.out.println(ANSI_RED + "Account is " + ((Borrower) p).getAccountStatus() + "." + ANSI_RESET);
+                return;
+            }
+            case LIMIT_REACHED -> {
+                System.out.println(ANSI_RED + "Borrowing limit reached (" + ((Borrower) p).getMaxBookLimit() + " books)." + ANSI_RESET);
+                return;
+            }
+            default -> {
+            }
         }
 
         System.out.print("Enter Item Barcode: ");
         String bc = readRequiredString();
-        BookItem item = database.findItemByBarcode(bc);
 
-        if (item != null && item.getStatus() == BookStatus.AVAILABLE) {
-            Loan l = new Loan((int) (Math.random() * 10000), (Borrower) p, item);
-            database.addLoan(l);
-            ((Borrower) p).addLoan(l);
-            item.setStatus(BookStatus.LOANED);
+        if (service.issue(staff, bid, bc).isOk()) {
             System.out.println(ANSI_GREEN + "Book Issued." + ANSI_RESET);
         } else {
-            System.out.println(ANSI_RED + "Item not available or found." + ANSI_RESET);
+            BookItem item = database.findItemByBarcode(bc);
+            Hold h = item != null ? database.findReadyHold(item) : null;
+            if (h != null) {
+                System.out.println(ANSI_RED + "Copy is on hold for " + h.getBorrower().getName() + " (ID " + h.getBorrower().getId()
+                        + ") until " + h.getExpiryDate() + "." + ANSI_RESET);
+            } else {
+                System.out.println(ANSI_RED + "Item not available or found." + ANSI_RESET);
+            }
         }
     }
 
     private void actionReturnBook() {
         System.out.print("Scan Barcode: ");
         String bc = readRequiredString();
-        BookItem item = database.findItemByBarcode(bc);
-
-        if (item != null && item.getStatus() == BookStatus.LOANED) {
-            Loan loan = database.findActiveLoanByBookItem(item);
-            if (loan != null) {
-                loan.markReturned();
-                double fine = loan.calculateFine();
-                if (fine > 0) {
-                    System.out.println(ANSI_YELLOW + "ALERT: Book Overdue. Fine: $" + String.format("%.2f", fine) + ANSI_RESET);
-                }
-                database.removeLoan(loan);
+
+        Loan loan = service.returnItem(loggedInUser, bc).getLoan();
+
+        if (loan != null) {
+            double fine = loan.calculateFine();
+            if (fine > 0) {
+                System.out.println(ANSI_YELLOW + "ALERT: Book Overdue. Fine: $" + String.format("%.2f", fine) + ANSI_RESET);
             }
-            item.setStatus(BookStatus.AVAILABLE);
             System.out.println(ANSI_GREEN + "Book Returned." + ANSI_RESET);
+            Hold h = database.findReadyHold(loan.getBookItem());
+            if (h != null) {
+                System.out.println(ANSI_YELLOW + "Put on the hold shelf for " + h.getBorrower().getName() + " (ID "
+                        + h.getBorrower().getId() + ") until " + h.getExpiryDate() + "." + ANSI_RESET);
+            }
         } else {
             System.out.println(ANSI_RED + "Item not currently loaned." + ANSI_RESET);
         }
@@ -313,6 +640,43 @@ public class LibrarySystem {
         }
     }
 
+    private void actionOverdueReport() {
+        OverdueSweeper.Report r = overdueSweeper.getLastReport();
+        if (r == null || !r.getDate().equals(LocalDate.now())) {
+            r = overdueSweeper.sweep(LocalDate.now());
+        }
+        System.out.println(ANSI_BOLD + "\n--- OVERDUE (" + r.getOverdue().size() + ") as of " + r.getDate() + " ---" + ANSI_RESET);
+        for (Loan l : r.getOverdue()) {
+            printLoanRow(l, ANSI_RED);
+        }
+        System.out.println(ANSI_BOLD + "\n--- DUE SOON (" + r.getDueSoon().size() + ") ---" + ANSI_RESET);
+        for (Loan l : r.getDueSoon()) {
+            printLoanRow(l, ANSI_YELLOW);
+        }
+        if (!r.getExpiredHolds().isEmpty()) {
+            System.out.println(ANSI_BOLD + "\n--- HOLDS EXPIRED (" + r.getExpiredHolds().size() + ") ---" + ANSI_RESET);
+            for (Hold h : r.getExpiredHolds()) {
+                System.out.println("#" + h.getHoldID() + " " + truncate(h.getBookTitle().getTitle(), 20) + " | "
+                        + truncate(h.getBorrower().getName(), 15));
+            }
+        }
+        if (!r.getPromotedHolds().isEmpty()) {
+            System.out.println(ANSI_BOLD + "\n--- HOLDS NOW READY (" + r.getPromotedHolds().size() + ") ---" + ANSI_RESET);
+            for (Hold h : r.getPromotedHolds()) {
+                System.out.println("#" + h.getHoldID() + " " + truncate(h.getBookTitle().getTitle(), 20) + " | "
+                        + truncate(h.getBorrower().getName(), 15));
+            }
+        }
+    }
+
+    private void printLoanRow(Loan l, String color) {
+        System.out.printf("%-10s | %-20s | %-15s | " + color + "%s" + ANSI_RESET + "%n",
+                l.getBookItem().getBarcode(),
+                truncate(l.getBookItem().getBookTitle().getTitle(), 20),
+                truncate(l.getBorrower().getName(), 15),
+                l.getDueDate());
+    }
+
     // ==========================================
     // ADMIN ACTIONS
     // ==========================================
@@ -339,7 +703,7 @@ public class LibrarySystem {
             BookTitle t = new BookTitle(isbn, title, genre, pub);
 
             System.out.print("Author Name: ");
-            Author a = database.findAuthorByName(readString());
+            Author a = findAuthor(readString());
             if (a != null) {
                 t.addAuthor(a);
             }
@@ -352,7 +716,7 @@ public class LibrarySystem {
             BookTitle t = database.findBookByISBN(readString());
             if (t != null) {
                 System.out.print("New Title: ");
-                t.setTitle(readRequiredString());
+                database.renameBookTitle(t, readRequiredString());
                 System.out.println(ANSI_GREEN + "Updated." + ANSI_RESET);
             } else {
                 System.out.println(ANSI_RED + "Not found." + ANSI_RESET);
@@ -362,8 +726,12 @@ public class LibrarySystem {
             System.out.print("ISBN to delete: ");
             BookTitle t = database.findBookByISBN(readString());
             if (t != null) {
-                database.removeBookTitle(t);
-                System.out.println(ANSI_GREEN + "Deleted." + ANSI_RESET);
+                int copies = t.getTotalCopies();
+                if (database.removeBookTitle(t)) {
+                    System.out.println(ANSI_GREEN + "Deleted (with " + copies + " copies)." + ANSI_RESET);
+                } else {
+                    System.out.println(ANSI_RED + "Cannot delete: copies are on loan." + ANSI_RESET);
+                }
             } else {
                 System.out.println(ANSI_RED + "Not found." + ANSI_RESET);
             }
@@ -391,8 +759,11 @@ public class LibrarySystem {
             System.out.print("Barcode to delete: ");
             BookItem i = database.findItemByBarcode(readString());
             if (i != null) {
-                database.removeBookItem(i);
-                System.out.println(ANSI_GREEN + "Deleted." + ANSI_RESET);
+                if (database.removeBookItem(i)) {
+                    System.out.println(ANSI_GREEN + "Deleted." + ANSI_RESET);
+                } else {
+                    System.out.println(ANSI_RED + "Cannot delete: item is on loan." + ANSI_RESET);
+                }
             } else {
                 System.out.println(ANSI_RED + "Not found." + ANSI_RESET);
             }
@@ -416,27 +787,29 @@ public class LibrarySystem {
         String c = readString();
         if (c.equals("1")) {
             System.out.print("Name: ");
-            database.addAuthor(new Author((int) (Math.random() * 1000), readRequiredString()));
-            System.out.println(ANSI_GREEN + "Added." + ANSI_RESET);
+            if (database.addAuthor(new Author((int) (Math.random() * 1000), readRequiredString()))) {
+                System.out.println(ANSI_GREEN + "Added." + ANSI_RESET);
+            } else {
+                System.out.println(ANSI_RED + "Author exists." + ANSI_RESET);
+            }
         } else if (c.equals("2")) {
             System.out.print("Name to delete: ");
-            Author a = database.findAuthorByName(readString());
+            Author a = findAuthor(readString());
             if (a != null) {
+                int titles = database.findTitlesByAuthor(a).size();
                 database.removeAuthor(a);
-                System.out.println(ANSI_GREEN + "Deleted." + ANSI_RESET);
-            } else {
-                System.out.println(ANSI_RED + "Not found." + ANSI_RESET);
+                System.out.println(ANSI_GREEN + "Deleted (removed from " + titles + " titles)." + ANSI_RESET);
             }
         }
     }
 
     private void menuManagePersons(Admin admin) {
-        System.out.println(ANSI_BOLD + "\n--- MANAGE PERSONS ---" + ANSI_RESET);
         // Show Existing
-        System.out.printf("%-5s | %-20s | %-15s%n", "ID", "Name", "Role");
-        for (Person p : database.getPersons()) {
-            System.out.printf("%-5d | %-20s | %-15s%n", p.getId(), p.getName(), p.getRoleType());
-        }
+        pager.show("MANAGE PERSONS", "ID    | Name                 | Role", database.getPersons(), (p, sb) -> {
+            Pager.cell(sb, p.getId(), 5);
+            Pager.cell(sb, p.getName(), 20);
+            sb.append(p.getRoleType());
+        });
         System.out.println("---------------------------------------------");
 
         System.out.println("1. Add Borrower\n2. Add Librarian\n3. Add Admin\n4. Delete Person");
@@ -455,15 +828,20 @@ public class LibrarySystem {
             String pass = readRequiredString();
 
             // Create Specific Classes
+            Person p;
             if (c.equals("1")) {
-                database.addPerson(new Borrower(id, name, pass, "Contact"));
+                p = new Borrower(id, name, pass, "Contact");
             } else if (c.equals("2")) {
-                database.addPerson(new Librarian(id, name, pass, "Contact", 3000));
-            } else if (c.equals("3")) {
-                database.addPerson(new Admin(id, name, pass, "Contact", 5000));
+                p = new Librarian(id, name, pass, "Contact", 3000);
+            } else {
+                p = new Admin(id, name, pass, "Contact", 5000);
             }
 
-            System.out.println(ANSI_GREEN + "User added." + ANSI_RESET);
+            if (database.addPerson(p)) {
+                System.out.println(ANSI_GREEN + "User added." + ANSI_RESET);
+            } else {
+                System.out.println(ANSI_RED + "ID taken." + ANSI_RESET);
+            }
         } else if (c.equals("4")) {
             int id = readInt("ID to delete: ");
             Person p = database.findPersonById(id);
@@ -472,14 +850,229 @@ public class LibrarySystem {
                     System.out.println(ANSI_RED + "Cannot delete self." + ANSI_RESET);
                     return;
                 }
-                database.removePerson(p);
-                System.out.println(ANSI_GREEN + "Deleted." + ANSI_RESET);
+                if (database.removePerson(p)) {
+                    System.out.println(ANSI_GREEN + "Deleted." + ANSI_RESET);
+                } else {
+                    System.out.println(ANSI_RED + "Cannot delete: borrower has open loans." + ANSI_RESET);
+                }
             } else {
                 System.out.println(ANSI_RED + "Not found." + ANSI_RESET);
             }
         }
     }
 
+    private void menuBulkImport(Admin admin) {
+        System.out.println(ANSI_BOLD + "\n--- BULK IMPORT ---" + ANSI_RESET);
+        System.out.println("1. Titles   (isbn,title,genre,publisher,author1;author2)");
+        System.out.println("2. Items    (barcode,isbn)");
+        System.out.println("3. Borrowers (id,name,password,contact)");
+        System.out.print(ANSI_YELLOW + "Select: " + ANSI_RESET);
+        CatalogImporter.Kind kind;
+        switch (readString()) {
+            case "1" -> kind = CatalogImporter.Kind.TITLES;
+            case "2" -> kind = CatalogImporter.Kind.ITEMS;
+            case "3" -> kind = CatalogImporter.Kind.BORROWERS;
+            default -> {
+                System.out.println(ANSI_RED + "Invalid option." + ANSI_RESET);
+                return;
+            }
+        }
+
+        System.out.print("CSV file: ");
+        Path csv = Paths.get(readRequiredString());
+        if (!Files.isReadable(csv)) {
+            System.out.println(ANSI_RED + "Cannot read " + csv + ANSI_RESET);
+            return;
+        }
+        Path rejects = csv.resolveSibling(csv.getFileName() + ".rejects.csv");
+
+        try {
+            CatalogImporter importer = new CatalogImporter(database, Runtime.getRuntime().availableProcessors(),
+                    2000, System.out, 50_000);
+            CatalogImporter.Result r = importer.importFile(kind, csv, rejects);
+            System.out.println(ANSI_GREEN + "Imported " + r.imported + " of " + r.rows + " rows." + ANSI_RESET);
+            if (r.rejected > 0) {
+                System.out.println(ANSI_YELLOW + r.rejected + " rejected rows written to " + rejects + ANSI_RESET);
+            }
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Import failed: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    private void actionMetrics() {
+        System.out.println(ANSI_BOLD + "\n--- METRICS ---" + ANSI_RESET);
+        System.out.printf("Titles: %d | Items: %d | Persons: %d | Active loans: %d | Archived loans: %d%n",
+                database.getCatalog().size(), database.getInventory().size(), database.getPersons().size(),
+                database.getActiveLoanCount(), database.getLoanArchive().size());
+        if (TextArena.ENABLED) {
+            System.out.printf("Compact storage: text arena %.1f MB, %d genres, %d publishers%n",
+                    TextArena.allocatedBytes() / 1e6, BookTitle.GENRES.size(), BookTitle.PUBLISHERS.size());
+        }
+        LibraryEventRing events = database.getEvents();
+        if (events != null) {
+            System.out.println("Events published: " + events.getCursor() + " (ring of " + events.getCapacity() + ")");
+            for (LibraryEventRing.Subscription sub : events.getSubscriptions()) {
+                System.out.println("  consumer " + sub.getName() + ": lag " + sub.getLag() + ", lost " + sub.getLostCount()
+                        + ", handler errors " + sub.getErrorCount());
+            }
+        }
+        if (!LibraryMetrics.ENABLED) {
+            System.out.println(ANSI_YELLOW + "Operation metrics are off (start with -Dlibrary.metrics=true)." + ANSI_RESET);
+            return;
+        }
+        System.out.println(ANSI_BOLD + "Op       |      Count |   Errors |    p50 us |    p99 us |   p999 us |    max us" + ANSI_RESET);
+        for (LibraryMetrics.Op op : LibraryMetrics.Op.values()) {
+            LatencyHistogram h = LibraryMetrics.getLatency(op);
+            System.out.printf("%-8s | %10d | %8d | %9.1f | %9.1f | %9.1f | %9.1f%n", op,
+                    LibraryMetrics.getCount(op), LibraryMetrics.getErrors(op), h.percentile(0.50) / 1e3,
+                    h.percentile(0.99) / 1e3, h.percentile(0.999) / 1e3, h.getMax() / 1e3);
+        }
+    }
+
+    private void menuReports() {
+        System.out.println(ANSI_BOLD + "\n--- REPORTS ---" + ANSI_RESET);
+        System.out.println("1. Most Borrowed Titles\n2. Circulation by Genre\n3. Circulation by Publisher");
+        System.out.println("4. Average Loan Days per Author\n5. Late Returns by Genre (full history)");
+        String c = readString();
+        if (c.equals("5")) {
+            actionLateReturnsByGenre();
+            return;
+        }
+        CirculationAnalytics.Dimension dimension;
+        CirculationAnalytics.Measure measure = CirculationAnalytics.Measure.ISSUES;
+        switch (c) {
+            case "1" ->
+                dimension = CirculationAnalytics.Dimension.TITLE;
+            case "2" ->
+                dimension = CirculationAnalytics.Dimension.GENRE;
+            case "3" ->
+                dimension = CirculationAnalytics.Dimension.PUBLISHER;
+            case "4" -> {
+                dimension = CirculationAnalytics.Dimension.AUTHOR;
+                measure = CirculationAnalytics.Measure.AVG_LOAN_DAYS;
+            }
+            default -> {
+                System.out.println(ANSI_RED + "Invalid option." + ANSI_RESET);
+                return;
+            }
+        }
+        int months = Math.max(1, readInt("Months to include (1 = this month): "));
+        YearMonth to = YearMonth.now();
+        YearMonth from = to.minusMonths(months - 1);
+
+        long start = System.nanoTime();
+        List<CirculationAnalytics.Row> rows = analytics.top(dimension, from, to, measure, 20);
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println(ANSI_BOLD + String.format("%-30s | %8s | %8s | %9s", dimension, "Issues", "Returns",
+                "Avg days") + ANSI_RESET);
+        for (CirculationAnalytics.Row r : rows) {
+            System.out.printf("%-30.30s | %8d | %8d | %9.1f%n", r.label, r.issues, r.returns, r.avgLoanDays);
+        }
+        if (rows.isEmpty()) {
+            System.out.println(" - No loans in " + from + (months > 1 ? " .. " + to : "") + ".");
+        }
+        System.out.println(ANSI_CYAN + "(" + from + " .. " + to + ", " + micros + " us)" + ANSI_RESET);
+    }
+
+    // Example of an ad-hoc question answered by a fork/join scan over every loan
+    private void actionLateReturnsByGenre() {
+        long start = System.nanoTime();
+        Map<String, long[]> byGenre = analytics.scanHistory(new CirculationAnalytics.HistoryScan<Map<String, long[]>>() {
+            @Override
+            public Map<String, long[]> create() {
+                return new HashMap<>();
+            }
+
+            @Override
+            public void add(Map<String, long[]> acc, int loanID, int borrowerID, BookItem item, long issueDay,
+                    long dueDay, long returnDay) {
+                if (returnDay == CirculationAnalytics.OPEN)
+                    return;
+                long[] n = acc.computeIfAbsent(item.getBookTitle().getGenre(), g -> new long[2]);
+                n[0]++;
+                if (returnDay > dueDay)
+                    n[1]++;
+            }
+
+            @Override
+            public Map<String, long[]> merge(Map<String, long[]> left, Map<String, long[]> right) {
+                right.forEach((genre, n) -> {
+                    long[] m = left.computeIfAbsent(genre, g -> new long[2]);
+                    m[0] += n[0];
+                    m[1] += n[1];
+                });
+                return left;
+            }
+        });
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(ANSI_BOLD + String.format("%-30s | %8s | %8s | %6s", "GENRE", "Returns", "Late", "Late %")
+                + ANSI_RESET);
+        byGenre.entrySet().stream().sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1])).forEach(e -> {
+            long[] n = e.getValue();
+            System.out.printf("%-30.30s | %8d | %8d | %5.1f%%%n", e.getKey(), n[0], n[1], 100.0 * n[1] / n[0]);
+        });
+        if (byGenre.isEmpty()) {
+            System.out.println(" - No returned loans yet.");
+        }
+        System.out.println(ANSI_CYAN + "(scanned " + database.getLoanArchive().size() + " archived loans in " + millis
+                + " ms)" + ANSI_RESET);
+    }
+
+    private void menuBatch(Staff staff) {
+        System.out.println(ANSI_BOLD + "\n--- BATCH COMMANDS ---" + ANSI_RESET);
+        System.out.println("One per line: RETURN barcode | ISSUE borrowerId barcode | ADD_ITEM isbn barcode");
+        System.out.print("Command file: ");
+        Path file = Paths.get(readRequiredString());
+        if (!Files.isReadable(file)) {
+            System.out.println(ANSI_RED + "Cannot read " + file + ANSI_RESET);
+            return;
+        }
+        Path report = file.resolveSibling(file.getFileName() + ".report.csv");
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                BufferedWriter out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            printBatchSummary(new BatchRunner(service, staff, BATCH_SIZE).run(in, out));
+            System.out.println(ANSI_CYAN + "Per-line results written to " + report + ANSI_RESET);
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Batch failed: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    /**
+     * Non-interactive entry point: logs in as 'userId', runs the commands
+     * from 'commands' ("-" = stdin) and writes the per-line report to
+     * 'report' ("-" = stdout). Returns false if the login failed.
+     */
+    public boolean runBatch(String commands, int userId, String password, String report) throws IOException {
+        Person user = service.login(userId, password);
+        if (user == null) {
+            System.out.println(ANSI_RED + "Invalid user ID or password." + ANSI_RESET);
+            return false;
+        }
+        BufferedReader in = commands.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(commands), StandardCharsets.UTF_8);
+        Writer out = report.equals("-")
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedWriter(Paths.get(report), StandardCharsets.UTF_8);
+        try {
+            BatchRunner.Summary s = new BatchRunner(service, user, BATCH_SIZE).run(in, out);
+            out.flush();
+            printBatchSummary(s);
+        } finally {
+            in.close();
+            if (!report.equals("-"))
+                out.close();
+            if (httpServer == null)
+                closeJournal();
+        }
+        return true;
+    }
+
+    private void printBatchSummary(BatchRunner.Summary s) {
+        System.out.println(ANSI_GREEN + s + ANSI_RESET);
+        s.failures.forEach((reason, n) -> System.out.println(ANSI_YELLOW + "  " + reason + ": " + n + ANSI_RESET));
+    }
+
     // ==========================================
     // HELPERS
     // ==========================================
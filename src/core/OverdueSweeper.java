@@ -0,0 +1,128 @@
+package core;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import transactions.Hold;
+import transactions.Loan;
+
+/**
+ * Daily sweep over the due-date index. Each run produces a {@link Report}
+ * with everything overdue and everything due within the next few days.
+ * The same run expires lapsed holds (see LibraryDatabase#expireHolds);
+ * the latest report is kept for the staff menu and also handed to an
+ * optional listener (e.g. for notifications).
+ */
+public class OverdueSweeper {
+
+    public static class Report {
+        private final LocalDate date;
+        private final List<Loan> overdue;
+        private final List<Loan> dueSoon;
+        private final List<Hold> expiredHolds;
+        private final List<Hold> promotedHolds;
+
+        Report(LocalDate date, List<Loan> overdue, List<Loan> dueSoon, List<Hold> expiredHolds,
+                List<Hold> promotedHolds) {
+            this.date = date;
+            this.overdue = overdue;
+            this.dueSoon = dueSoon;
+            this.expiredHolds = expiredHolds;
+            this.promotedHolds = promotedHolds;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        // Due before 'date', earliest first
+        public List<Loan> getOverdue() {
+            return overdue;
+        }
+
+        // Due from 'date' through the due-soon window, earliest first
+        public List<Loan> getDueSoon() {
+            return dueSoon;
+        }
+
+        // Holds that lapsed in this sweep (not picked up, or waited too long)
+        public List<Hold> getExpiredHolds() {
+            return expiredHolds;
+        }
+
+        // Holds handed the copy of a lapsed one, now ready for pickup
+        public List<Hold> getPromotedHolds() {
+            return promotedHolds;
+        }
+    }
+
+    private final LibraryDatabase db;
+    private final int dueSoonDays;
+    private final Consumer<Report> listener;
+    private ScheduledExecutorService scheduler;
+    private volatile Report lastReport;
+
+    /**
+     * @param dueSoonDays how many days ahead count as "due soon" (1 = today and tomorrow)
+     * @param listener    called after every sweep, may be null
+     */
+    public OverdueSweeper(LibraryDatabase db, int dueSoonDays, Consumer<Report> listener) {
+        this.db = db;
+        this.dueSoonDays = dueSoonDays;
+        this.listener = listener;
+    }
+
+    // Runs the sweep every day at 'at' (local time) on a daemon thread
+    public synchronized void start(LocalTime at) {
+        if (scheduler != null)
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overdue-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(at);
+        if (!next.isAfter(now))
+            next = next.plusDays(1);
+        long delay = Duration.between(now, next).toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                sweep(LocalDate.now());
+            } catch (RuntimeException e) {
+                System.err.println("Overdue sweep failed: " + e.getMessage());
+            }
+        }, delay, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public Report sweep(LocalDate today) {
+        db.getDueDateIndex().purgeBefore(today.minusDays(1));
+        List<Hold> promoted = new ArrayList<>();
+        List<Hold> expired = db.expireHolds(today, promoted);
+        Report report = new Report(today, db.findOverdueLoans(today),
+                db.findLoansDueBetween(today, today.plusDays(dueSoonDays)), expired, promoted);
+        lastReport = report;
+        if (listener != null)
+            listener.accept(report);
+        return report;
+    }
+
+    // Latest report, or null if no sweep has run yet
+    public Report getLastReport() {
+        return lastReport;
+    }
+}
@@ -0,0 +1,101 @@
+package core;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Paginated table view for large listings. A screen is formatted into one
+ * reusable StringBuilder and written with a single print, so the cost of a
+ * page depends on the page size, not on the size of the list. Navigation is
+ * cursor based over a random-access list: Enter/n = next, p = previous,
+ * g N = jump to page N, q = quit.
+ */
+public class Pager {
+
+    public interface RowFormatter<T> {
+        void format(T row, StringBuilder out);
+    }
+
+    private final Scanner scanner;
+    private final PrintStream out;
+    private final int pageSize;
+    private final StringBuilder buf;
+
+    public Pager(Scanner scanner, PrintStream out, int pageSize) {
+        this.scanner = scanner;
+        this.out = out;
+        this.pageSize = Math.max(1, pageSize);
+        this.buf = new StringBuilder(8192);
+    }
+
+    public <T> void show(String title, String header, List<T> rows, RowFormatter<T> fmt) {
+        int page = 0;
+        while (true) {
+            int total = rows.size();
+            int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+            page = Math.min(page, pages - 1);
+
+            buf.setLength(0);
+            buf.append(LibrarySystem.ANSI_BOLD).append("\n--- ").append(title).append(" ---")
+                    .append(LibrarySystem.ANSI_RESET).append('\n');
+            if (total == 0) {
+                buf.append("Nothing to show.\n");
+                out.print(buf);
+                return;
+            }
+            buf.append(LibrarySystem.ANSI_BOLD).append(header).append(LibrarySystem.ANSI_RESET).append('\n');
+            int end = Math.min(total, (page + 1) * pageSize);
+            for (int i = page * pageSize; i < end; i++) {
+                fmt.format(rows.get(i), buf);
+                buf.append('\n');
+            }
+            buf.append(LibrarySystem.ANSI_CYAN).append("Page ").append(page + 1).append('/').append(pages)
+                    .append(" (").append(total).append(" rows)").append(LibrarySystem.ANSI_RESET);
+            if (pages == 1) {
+                buf.append('\n');
+                out.print(buf);
+                return;
+            }
+            buf.append(LibrarySystem.ANSI_YELLOW).append("  [Enter/n]ext [p]rev [g N] go to page [q]uit: ")
+                    .append(LibrarySystem.ANSI_RESET);
+            out.print(buf);
+            out.flush();
+
+            String cmd = scanner.nextLine().trim().toLowerCase();
+            if (cmd.isEmpty() || cmd.equals("n")) {
+                if (page == pages - 1)
+                    return;
+                page++;
+            } else if (cmd.equals("p")) {
+                page = Math.max(0, page - 1);
+            } else if (cmd.startsWith("g")) {
+                try {
+                    page = Math.max(0, Integer.parseInt(cmd.substring(1).trim()) - 1);
+                } catch (NumberFormatException e) {
+                    out.println(LibrarySystem.ANSI_RED + ">> Usage: g <page>" + LibrarySystem.ANSI_RESET);
+                }
+            } else if (cmd.equals("q")) {
+                return;
+            }
+        }
+    }
+
+    // --- Fixed-width cell helpers (no String.format per row) ---
+    // Left-aligned, truncated with "..." when too long
+    public static StringBuilder cell(StringBuilder sb, String s, int width) {
+        if (s.length() > width) {
+            sb.append(s, 0, width - 3).append("...");
+        } else {
+            sb.append(s);
+            for (int i = s.length(); i < width; i++) {
+                sb.append(' ');
+            }
+        }
+        return sb.append(" | ");
+    }
+
+    public static StringBuilder cell(StringBuilder sb, int n, int width) {
+        return cell(sb, Integer.toString(n), width);
+    }
+}
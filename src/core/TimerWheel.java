@@ -0,0 +1,84 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hashed timer wheel with one slot per day: an entry due on day d sits in
+ * slot d % slots, and advancing the wheel to a day only visits the slots of
+ * the days passed, so expiring a day's entries costs the number due that
+ * day, not the number scheduled. With more slots than the longest deadline
+ * every entry of a slot is due the same day; later ones just wait in their
+ * slot for another turn.
+ *
+ * Slots are IndexedLists, so cancelling an entry is constant time too.
+ * Not thread-safe; the owner guards it.
+ */
+class TimerWheel<T> {
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final List<IndexedList<T>> slots;
+    private final ToLongFunction<T> dayOf;
+    // Every entry due on or before this day has been expired
+    private long current = NOT_STARTED;
+    private int size;
+
+    TimerWheel(int slots, ToLongFunction<T> dayOf) {
+        this.slots = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            this.slots.add(new IndexedList<>());
+        }
+        this.dayOf = dayOf;
+    }
+
+    // dayOf(e) must not change until it is cancelled or expired
+    void schedule(T e) {
+        long day = dayOf.applyAsLong(e);
+        // Already due: the next advance picks it up
+        if (current != NOT_STARTED && day <= current)
+            day = current + 1;
+        if (slotFor(day).add(e))
+            size++;
+    }
+
+    void cancel(T e) {
+        long day = dayOf.applyAsLong(e);
+        if (slotFor(day).remove(e) || (current != NOT_STARTED && slotFor(current + 1).remove(e)))
+            size--;
+    }
+
+    /**
+     * Removes every entry due on or before 'day' and hands it to 'expired'.
+     * The first call (and a call after a gap of a full turn) visits every slot once.
+     */
+    void advance(long day, Consumer<T> expired) {
+        if (current != NOT_STARTED && day <= current)
+            return;
+        long from = (current == NOT_STARTED || day - current >= slots.size()) ? day - slots.size() + 1 : current + 1;
+        current = day;
+        for (long d = from; d <= day; d++) {
+            IndexedList<T> slot = slotFor(d);
+            // Backwards, so the swap-remove only moves entries already looked at
+            for (int i = slot.size() - 1; i >= 0; i--) {
+                if (i >= slot.size())
+                    continue;
+                T e = slot.get(i);
+                if (dayOf.applyAsLong(e) <= day) {
+                    slot.remove(e);
+                    size--;
+                    expired.accept(e);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private IndexedList<T> slotFor(long day) {
+        return slots.get((int) Math.floorMod(day, (long) slots.size()));
+    }
+}
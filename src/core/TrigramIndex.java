@@ -0,0 +1,199 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Typo lookup over a dictionary of distinct terms. Every term is indexed
+ * under the trigrams of its padded form ("tolkien" -> "$$t", "$to", "tol",
+ * ...), and a misspelled word only measures its edit distance to the
+ * terms sharing enough trigrams with it: an edit disturbs at most four
+ * trigrams (three for a single-character change), so a term within k edits
+ * shares all but about 4k of the word's distinct trigrams.
+ *
+ * Terms are reference counted, so several indexes can feed one dictionary.
+ * Not thread-safe; the owner guards it (CatalogSearchIndex runs under the
+ * database's search lock).
+ */
+class TrigramIndex {
+    private static final char PAD = '\0';
+
+    private static final class IntList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shared-trigram counts for one query word: open addressing over the
+     * term IDs actually met, so a lookup costs its candidates, not the
+     * dictionary size.
+     */
+    private static final class Counts {
+        private final int[] keys; // term ID + 1, 0 = empty
+        private final int[] counts;
+        private final int mask;
+
+        Counts(int expected) {
+            int cap = Integer.highestOneBit(Math.max(8, expected * 2) - 1) << 1;
+            this.keys = new int[cap];
+            this.counts = new int[cap];
+            this.mask = cap - 1;
+        }
+
+        int increment(int id) {
+            int key = id + 1;
+            int i = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            return ++counts[i];
+        }
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<Long, IntList> grams = new HashMap<>();
+    private String[] terms = new String[64];
+    private int[] refs = new int[64];
+    private IntList free = new IntList();
+    private int next;
+
+    void add(String term) {
+        Integer id = ids.get(term);
+        if (id != null) {
+            refs[id]++;
+            return;
+        }
+        int n = free.size > 0 ? free.ids[--free.size] : next++;
+        if (n == terms.length) {
+            terms = Arrays.copyOf(terms, n * 2);
+            refs = Arrays.copyOf(refs, n * 2);
+        }
+        terms[n] = term;
+        refs[n] = 1;
+        ids.put(term, n);
+        for (long g : trigrams(term)) {
+            grams.computeIfAbsent(g, k -> new IntList()).add(n);
+        }
+    }
+
+    void remove(String term) {
+        Integer id = ids.get(term);
+        if (id == null || --refs[id] > 0)
+            return;
+        ids.remove(term);
+        for (long g : trigrams(term)) {
+            IntList list = grams.get(g);
+            list.remove(id);
+            if (list.size == 0)
+                grams.remove(g);
+        }
+        terms[id] = null;
+        free.add(id);
+    }
+
+    /**
+     * Dictionary terms within maxEdits of the word (an adjacent swap counts
+     * as one edit), with their distances; the word itself at 0 if present.
+     */
+    Map<String, Integer> similar(String word, int maxEdits) {
+        Map<String, Integer> out = new HashMap<>();
+        if (maxEdits == 0) {
+            if (ids.containsKey(word))
+                out.put(word, 0);
+            return out;
+        }
+        long[] wanted = trigrams(word);
+        int need = Math.max(1, wanted.length - 4 * maxEdits);
+        IntList[] lists = new IntList[wanted.length];
+        int postings = 0;
+        for (int k = 0; k < wanted.length; k++) {
+            lists[k] = grams.get(wanted[k]);
+            if (lists[k] != null)
+                postings += lists[k].size;
+        }
+        Counts shared = new Counts(postings);
+        for (IntList list : lists) {
+            if (list == null)
+                continue;
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                // Measure once, when the count reaches the bar
+                if (shared.increment(id) != need)
+                    continue;
+                String term = terms[id];
+                if (Math.abs(term.length() - word.length()) > maxEdits)
+                    continue;
+                int d = distance(word, term, maxEdits);
+                if (d <= maxEdits)
+                    out.put(term, d);
+            }
+        }
+        return out;
+    }
+
+    // Distinct trigrams of the term padded with two PADs on each side
+    private static long[] trigrams(String term) {
+        String s = "" + PAD + PAD + term + PAD + PAD;
+        long[] out = new long[s.length() - 2];
+        int n = 0;
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            long g = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+            boolean seen = false;
+            for (int j = 0; j < n && !seen; j++) {
+                seen = out[j] == g;
+            }
+            if (!seen)
+                out[n++] = g;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Edit distance counting an adjacent swap as one edit (optimal string
+     * alignment); gives up with max + 1 as soon as a row exceeds max.
+     */
+    static int distance(String a, String b, int max) {
+        int[] prev2 = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            row[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, row[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    d = Math.min(d, prev2[j - 2] + 1);
+                row[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max)
+                return max + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = row;
+            row = t;
+        }
+        return prev[b.length()];
+    }
+}
@@ -2,40 +2,77 @@ package entities;
 
 import enums.BookStatus;
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class BookItem {
+    private static final AtomicReferenceFieldUpdater<BookItem, BookStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(BookItem.class, BookStatus.class, "status");
 
+    // A String, or a TextArena reference (and a null String) in compact mode
     private String barcode;
+    private int barcodeRef;
     private BookTitle bookTitle;
-    private BookStatus status;
-    private LocalDate purchaseDate;
+    private volatile BookStatus status;
+    private int purchaseDay; // epoch day
+    // The copy's slot in its title while counted there, else -1 (see BookTitle.addCopy);
+    // guarded by the title's lock
+    int slot = -1;
 
-    public BookItem(String barcode, BookTitle bookTitle) { 
-        this.barcode = barcode;
+    public BookItem(String barcode, BookTitle bookTitle) {
+        this(barcode, bookTitle, LocalDate.now());
+    }
+
+    // Restores a copy with its original purchase date (snapshot load)
+    public BookItem(String barcode, BookTitle bookTitle, LocalDate purchaseDate) {
+        if (TextArena.ENABLED) {
+            this.barcodeRef = TextArena.put(barcode);
+        } else {
+            this.barcode = barcode;
+        }
         this.bookTitle = bookTitle;
         this.status = BookStatus.AVAILABLE; // Default
-        this.purchaseDate = LocalDate.now();
+        this.purchaseDay = (int) purchaseDate.toEpochDay();
     }
 
     public String getBarcode() {
-        return barcode;
+        return TextArena.ENABLED ? TextArena.get(barcodeRef) : barcode;
     }
 
     public BookTitle getBookTitle() {
         return bookTitle;
     }
 
+    public LocalDate getPurchaseDate() {
+        return LocalDate.ofEpochDay(purchaseDay);
+    }
+
     public BookStatus getStatus() {
         return status;
     }
 
+    // Transitions run under the title's lock, so its counts change together with the status
     public void setStatus(BookStatus status) {
-        this.status = status;
+        synchronized (bookTitle) {
+            BookStatus old = STATUS.getAndSet(this, status);
+            if (old != status)
+                bookTitle.copyStatusChanged(this, old, status);
+        }
+    }
+
+    // Atomic transition: only succeeds if the copy is still in the expected state.
+    public boolean compareAndSetStatus(BookStatus expected, BookStatus next) {
+        synchronized (bookTitle) {
+            if (!STATUS.compareAndSet(this, expected, next))
+                return false;
+            if (expected != next)
+                bookTitle.copyStatusChanged(this, expected, next);
+            return true;
+        }
     }
 
     public void printInfo() {
         bookTitle.printDetails();
-        System.out.println("Barcode: " + barcode);
+        System.out.println("Barcode: " + getBarcode());
         System.out.println("Status: " + status);
         System.out.println("-------------------------");
     }
@@ -1,43 +1,87 @@
 package entities;
 
+import enums.BookStatus;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class BookTitle {
+
+    // Told when the title gains its first or loses its last copy on the shelf,
+    // while the title's lock is held
+    public interface AvailabilityListener {
+        void availabilityChanged(BookTitle t, boolean available);
+    }
+
+    // Genre and publisher are dictionary codes; title and ISBN are Strings, or
+    // TextArena references (and null Strings) in compact mode
+    public static final ValueDictionary GENRES = new ValueDictionary();
+    public static final ValueDictionary PUBLISHERS = new ValueDictionary();
+
     private String isbn;
     private String title;
+    private int isbnRef;
+    private int titleRef;
     private List<Author> authors;
-    private String genre;
-    private String publisher;
+    private int genre;
+    private int publisher;
+
+    // Every counted copy in a slot, in the order added (removals leave holes
+    // until compacted), and live copy counts per BookStatus, maintained by
+    // BookItem status transitions (all guarded by 'this'). 'shelf' has a bit
+    // per slot whose copy is AVAILABLE and 'shelfWords' a bit per non-zero
+    // word of it, so the first copy on the shelf is two trailing-zero counts away.
+    private BookItem[] slots;
+    private int slotCount;
+    private int copyTotal;
+    private long[] shelf;
+    private long[] shelfWords;
+    private int[] copyCounts;
+    private AvailabilityListener availabilityListener;
 
     public BookTitle(String isbn, String title, String genre, String publisher) {
-        this.isbn = isbn;
-        this.title = title;
-        this.genre = genre;
-        this.publisher = publisher;
-        this.authors = new ArrayList<>();
+        if (TextArena.ENABLED) {
+            this.isbnRef = TextArena.put(isbn);
+        } else {
+            this.isbn = isbn;
+        }
+        setTitle(title);
+        this.genre = GENRES.encode(genre);
+        this.publisher = PUBLISHERS.encode(publisher);
+        this.authors = new ArrayList<>(1);
+        this.slots = new BookItem[1];
+        this.shelf = new long[1];
+        this.shelfWords = new long[1];
+        this.copyCounts = new int[BookStatus.values().length];
     }
 
     public void addAuthor(Author author) {
         this.authors.add(author);
     }
 
+    // Copy-on-write, so readers iterating the old list aren't disturbed
+    public void removeAuthor(Author author) {
+        List<Author> rest = new ArrayList<>(authors);
+        rest.remove(author);
+        this.authors = rest;
+    }
+
     // Getters
     public String getTitle() {
-        return title;
+        return TextArena.ENABLED ? TextArena.get(titleRef) : title;
     }
 
     public String getIsbn() {
-        return isbn;
+        return TextArena.ENABLED ? TextArena.get(isbnRef) : isbn;
     }
 
     public String getGenre() {
-        return genre;
+        return GENRES.decode(genre);
     }
 
     public String getPublisher() {
-        return publisher;
+        return PUBLISHERS.decode(publisher);
     }
 
     public List<Author> getAuthors() {
@@ -46,15 +90,161 @@ public class BookTitle {
 
     // Setters (Added for CRUD)
     public void setTitle(String title) {
-        this.title = title;
+        if (TextArena.ENABLED) {
+            this.titleRef = TextArena.put(title);
+        } else {
+            this.title = title;
+        }
     }
 
     public void setGenre(String genre) {
-        this.genre = genre;
+        this.genre = GENRES.encode(genre);
     }
 
     public void setPublisher(String publisher) {
-        this.publisher = publisher;
+        this.publisher = PUBLISHERS.encode(publisher);
+    }
+
+    // --- COPIES & AVAILABILITY ---
+    // Starts counting a copy (called by LibraryDatabase.addBookItem)
+    public synchronized void addCopy(BookItem item) {
+        if (item.getBookTitle() != this || item.slot >= 0)
+            return;
+        if (slotCount == slots.length)
+            resizeSlots(slots.length * 2);
+        item.slot = slotCount++;
+        slots[item.slot] = item;
+        copyTotal++;
+        copyCounts[item.getStatus().ordinal()]++;
+        if (item.getStatus() == BookStatus.AVAILABLE) {
+            shelve(item.slot);
+            if (availableCount() == 1)
+                notifyAvailability();
+        }
+    }
+
+    public synchronized void removeCopy(BookItem item) {
+        if (item.getBookTitle() != this || item.slot < 0)
+            return;
+        if (item.getStatus() == BookStatus.AVAILABLE)
+            unshelve(item.slot);
+        slots[item.slot] = null;
+        item.slot = -1;
+        copyTotal--;
+        copyCounts[item.getStatus().ordinal()]--;
+        if (item.getStatus() == BookStatus.AVAILABLE && availableCount() == 0)
+            notifyAvailability();
+        // Holes outnumber copies: close them up, keeping the order
+        if (slotCount - copyTotal > copyTotal)
+            compactSlots();
+    }
+
+    // Called by BookItem with this title's lock held, so counts follow every transition exactly
+    void copyStatusChanged(BookItem item, BookStatus from, BookStatus to) {
+        if (item.slot < 0)
+            return;
+        boolean wasAvailable = availableCount() > 0;
+        copyCounts[from.ordinal()]--;
+        copyCounts[to.ordinal()]++;
+        if (from == BookStatus.AVAILABLE)
+            unshelve(item.slot);
+        if (to == BookStatus.AVAILABLE)
+            shelve(item.slot);
+        if (wasAvailable != availableCount() > 0)
+            notifyAvailability();
+    }
+
+    // Reports the current availability to the new listener straight away
+    public synchronized void setAvailabilityListener(AvailabilityListener listener) {
+        this.availabilityListener = listener;
+        if (listener != null)
+            notifyAvailability();
+    }
+
+    private void notifyAvailability() {
+        if (availabilityListener != null)
+            availabilityListener.availabilityChanged(this, availableCount() > 0);
+    }
+
+    public synchronized int getTotalCopies() {
+        return copyTotal;
+    }
+
+    // The copies of this title, in the order added (a snapshot)
+    public synchronized List<BookItem> getCopies() {
+        List<BookItem> copies = new ArrayList<>(copyTotal);
+        for (int i = 0; i < slotCount; i++) {
+            if (slots[i] != null)
+                copies.add(slots[i]);
+        }
+        return copies;
+    }
+
+    public synchronized int getCopyCount(BookStatus status) {
+        return copyCounts[status.ordinal()];
+    }
+
+    public synchronized int getAvailableCount() {
+        return availableCount();
+    }
+
+    public synchronized boolean isAvailable() {
+        return availableCount() > 0;
+    }
+
+    // First copy on the shelf (in the order added), or null
+    public synchronized BookItem findAvailableCopy() {
+        for (int i = 0; i < shelfWords.length; i++) {
+            if (shelfWords[i] != 0) {
+                int word = (i << 6) + Long.numberOfTrailingZeros(shelfWords[i]);
+                return slots[(word << 6) + Long.numberOfTrailingZeros(shelf[word])];
+            }
+        }
+        return null;
+    }
+
+    private int availableCount() {
+        return copyCounts[BookStatus.AVAILABLE.ordinal()];
+    }
+
+    private void shelve(int slot) {
+        int word = slot >>> 6;
+        shelf[word] |= 1L << slot;
+        shelfWords[word >>> 6] |= 1L << word;
+    }
+
+    private void unshelve(int slot) {
+        int word = slot >>> 6;
+        shelf[word] &= ~(1L << slot);
+        if (shelf[word] == 0)
+            shelfWords[word >>> 6] &= ~(1L << word);
+    }
+
+    private void resizeSlots(int capacity) {
+        slots = Arrays.copyOf(slots, capacity);
+        int words = (capacity + 63) >>> 6;
+        shelf = Arrays.copyOf(shelf, words);
+        shelfWords = Arrays.copyOf(shelfWords, (words + 63) >>> 6);
+    }
+
+    private void compactSlots() {
+        int n = 0;
+        Arrays.fill(shelf, 0);
+        Arrays.fill(shelfWords, 0);
+        for (int i = 0; i < slotCount; i++) {
+            BookItem item = slots[i];
+            if (item == null)
+                continue;
+            slots[i] = null;
+            slots[n] = item;
+            item.slot = n;
+            if (item.getStatus() == BookStatus.AVAILABLE)
+                shelve(n);
+            n++;
+        }
+        slotCount = n;
+        if (slots.length > 2 * Math.max(1, n))
+            resizeSlots(Math.max(1, n));
     }
 
     public String getAuthorNames() {
@@ -64,12 +254,21 @@ public class BookTitle {
     }
 
     public void printDetails() {
-        System.out.println("--------------------------------");
-        System.out.println("Title:     " + title);
-        System.out.println("ISBN:      " + isbn);
-        System.out.println("Genre:     " + genre);
-        System.out.println("Publisher: " + publisher);
-        System.out.println("Authors:   " + getAuthorNames());
-        System.out.println("--------------------------------");
+        StringBuilder sb = new StringBuilder(256);
+        appendDetails(sb);
+        System.out.print(sb);
+    }
+
+    // Same block as printDetails, appended to a caller's buffer
+    public void appendDetails(StringBuilder sb) {
+        sb.append("--------------------------------\n")
+                .append("Title:     ").append(getTitle()).append('\n')
+                .append("ISBN:      ").append(getIsbn()).append('\n')
+                .append("Genre:     ").append(getGenre()).append('\n')
+                .append("Publisher: ").append(getPublisher()).append('\n')
+                .append("Authors:   ").append(getAuthorNames()).append('\n')
+                .append("Copies:    ").append(getAvailableCount()).append(" available / ")
+                .append(getTotalCopies()).append(" total\n")
+                .append("--------------------------------\n");
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package entities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Shared append-only store for catalog text (titles, ISBNs, barcodes) in
+ * compact mode ({@code -Dlibrary.compact=true}). Each string is written
+ * once as a length-prefixed UTF-8 record in a 1 MB page, and entities keep
+ * the record's int reference instead of a String object: a few bytes per
+ * short string instead of ~50. Getters decode a new String on each call.
+ *
+ * Records are never freed; a renamed or deleted title leaves its old text
+ * behind, which is fine for a catalog that mostly grows.
+ */
+public final class TextArena {
+    public static final boolean ENABLED = Boolean.getBoolean("library.compact");
+
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MAX_PAGES = 1 << (31 - PAGE_BITS);
+
+    private static volatile byte[][] pages = new byte[16][];
+    private static int pageCount;
+    private static int fill = PAGE_SIZE; // forces a first page
+
+    private TextArena() {
+    }
+
+    // Appends a string and returns its reference
+    public static synchronized int put(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int need = bytes.length + 5;
+        if (fill + need > PAGE_SIZE) {
+            if (pageCount == MAX_PAGES)
+                throw new IllegalStateException("Text arena full");
+            if (pageCount == pages.length)
+                pages = Arrays.copyOf(pages, pageCount * 2);
+            // A string longer than a page gets a page of its own
+            pages[pageCount++] = new byte[Math.max(PAGE_SIZE, need)];
+            fill = 0;
+        }
+        int ref = ((pageCount - 1) << PAGE_BITS) | fill;
+        byte[] page = pages[pageCount - 1];
+        int len = bytes.length;
+        while (len >= 0x80) {
+            page[fill++] = (byte) (len | 0x80);
+            len >>>= 7;
+        }
+        page[fill++] = (byte) len;
+        System.arraycopy(bytes, 0, page, fill, bytes.length);
+        fill += bytes.length;
+        return ref;
+    }
+
+    public static String get(int ref) {
+        byte[] page = pages[ref >>> PAGE_BITS];
+        int at = ref & (PAGE_SIZE - 1);
+        int len = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = page[at++];
+            len |= (b & 0x7F) << shift;
+            if (b >= 0)
+                break;
+        }
+        return new String(page, at, len, StandardCharsets.UTF_8);
+    }
+
+    // Bytes held by the arena, for the metrics view
+    public static synchronized long allocatedBytes() {
+        long n = 0;
+        for (int i = 0; i < pageCount; i++) {
+            n += pages[i].length;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,44 @@
+package entities;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding for low-cardinality text such as genres and
+ * publishers: each distinct value is stored once and entities keep its
+ * small int code. Codes are never reused, so a code stays valid for the
+ * life of the JVM.
+ */
+public final class ValueDictionary {
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public int encode(String value) {
+        if (value == null)
+            return -1;
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    public String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null)
+            return code;
+        String[] v = values;
+        if (size == v.length)
+            v = Arrays.copyOf(v, size * 2);
+        v[size] = value;
+        values = v; // publishes the slot before the code can be seen
+        codes.put(value, size);
+        return size++;
+    }
+}
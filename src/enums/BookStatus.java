@@ -3,5 +3,6 @@ public enum BookStatus {
     AVAILABLE,
     LOANED,
     LOST,
-    REFERENCE_ONLY
+    REFERENCE_ONLY,
+    ON_HOLD // Set aside for the patron at the head of the title's hold queue
 }
@@ -0,0 +1,97 @@
+package transactions;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.time.LocalDate;
+import users.Borrower;
+
+/**
+ * A patron's place in the queue for a title. While WAITING it sits in the
+ * title's {@link HoldQueue} until its expiry date; once a returned copy is
+ * set aside for it, it is READY and the expiry date becomes the last day
+ * the copy can be picked up.
+ */
+public class Hold {
+
+    public enum State {
+        WAITING,
+        READY,
+        FULFILLED,
+        CANCELLED,
+        EXPIRED
+    }
+
+    private final int holdID;
+    private final Borrower borrower;
+    private final BookTitle bookTitle;
+    private final LocalDate placedDate;
+    private LocalDate expiryDate;
+    private BookItem readyItem;
+    private State state;
+
+    // Links in the title's HoldQueue
+    Hold prev;
+    Hold next;
+    HoldQueue queue;
+
+    public Hold(int holdID, Borrower borrower, BookTitle bookTitle, LocalDate placedDate, LocalDate expiryDate) {
+        this.holdID = holdID;
+        this.borrower = borrower;
+        this.bookTitle = bookTitle;
+        this.placedDate = placedDate;
+        this.expiryDate = expiryDate;
+        this.state = State.WAITING;
+    }
+
+    public int getHoldID() {
+        return holdID;
+    }
+
+    public Borrower getBorrower() {
+        return borrower;
+    }
+
+    public BookTitle getBookTitle() {
+        return bookTitle;
+    }
+
+    public LocalDate getPlacedDate() {
+        return placedDate;
+    }
+
+    // Last day the hold is kept (WAITING) or the copy is kept for pickup (READY)
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    // The copy set aside, while READY
+    public BookItem getReadyItem() {
+        return readyItem;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isOpen() {
+        return state == State.WAITING || state == State.READY;
+    }
+
+    public void markReady(BookItem item, LocalDate pickupBy) {
+        this.readyItem = item;
+        this.expiryDate = pickupBy;
+        this.state = State.READY;
+    }
+
+    // Back to waiting (its copy was withdrawn), keeping it until 'until'
+    public void markWaiting(LocalDate until) {
+        this.readyItem = null;
+        this.expiryDate = until;
+        this.state = State.WAITING;
+    }
+
+    public void close(State state) {
+        this.readyItem = null;
+        this.state = state;
+    }
+}
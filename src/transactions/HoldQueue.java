@@ -0,0 +1,119 @@
+package transactions;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO of the WAITING holds on one title, linked through the holds
+ * themselves: taking the head, appending and cancelling from the middle
+ * are all constant time however long the queue is. Not thread-safe; the
+ * owner (HoldRegistry) guards it.
+ */
+public class HoldQueue implements Iterable<Hold> {
+    private Hold head;
+    private Hold tail;
+    private int size;
+
+    public void addLast(Hold h) {
+        link(h);
+        h.prev = tail;
+        if (tail == null) {
+            head = h;
+        } else {
+            tail.next = h;
+        }
+        tail = h;
+    }
+
+    // Back to the front, for a hold whose set-aside copy was withdrawn
+    public void addFirst(Hold h) {
+        link(h);
+        h.next = head;
+        if (head == null) {
+            tail = h;
+        } else {
+            head.prev = h;
+        }
+        head = h;
+    }
+
+    public Hold peek() {
+        return head;
+    }
+
+    public Hold poll() {
+        Hold h = head;
+        if (h != null)
+            remove(h);
+        return h;
+    }
+
+    // False if the hold isn't in this queue
+    public boolean remove(Hold h) {
+        if (h.queue != this)
+            return false;
+        if (h.prev == null) {
+            head = h.next;
+        } else {
+            h.prev.next = h.next;
+        }
+        if (h.next == null) {
+            tail = h.prev;
+        } else {
+            h.next.prev = h.prev;
+        }
+        h.prev = h.next = null;
+        h.queue = null;
+        size--;
+        return true;
+    }
+
+    public boolean contains(Hold h) {
+        return h.queue == this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Holds ahead of 'h' (walks the queue; for display only)
+    public int positionOf(Hold h) {
+        int n = 0;
+        for (Hold x = head; x != null && x != h; x = x.next) {
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public Iterator<Hold> iterator() {
+        return new Iterator<>() {
+            private Hold at = head;
+
+            @Override
+            public boolean hasNext() {
+                return at != null;
+            }
+
+            @Override
+            public Hold next() {
+                if (at == null)
+                    throw new NoSuchElementException();
+                Hold h = at;
+                at = at.next;
+                return h;
+            }
+        };
+    }
+
+    private void link(Hold h) {
+        if (h.queue != null)
+            throw new IllegalStateException("Hold " + h.getHoldID() + " is already queued");
+        h.queue = this;
+        size++;
+    }
+}
@@ -21,6 +21,15 @@ public class Loan {
         this.dueDate = issueDate.plusDays(14); // 2 week loan period
     }
 
+    // Restores a loan with its original dates (journal replay)
+    public Loan(int loanID, Borrower borrower, BookItem bookItem, LocalDate issueDate, LocalDate dueDate) {
+        this.loanID = loanID;
+        this.borrower = borrower;
+        this.bookItem = bookItem;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+    }
+
     public int getLoanID() {
         return loanID;
     }
@@ -33,6 +42,10 @@ public class Loan {
         return borrower;
     }
 
+    public LocalDate getIssueDate() {
+        return issueDate;
+    }
+
     public LocalDate getDueDate() {
         return dueDate;
     }
@@ -42,14 +55,23 @@ public class Loan {
     }
 
     public void markReturned() {
-        this.returnDate = LocalDate.now();
+        markReturned(LocalDate.now());
+    }
+
+    public void markReturned(LocalDate returnDate) {
+        this.returnDate = returnDate;
+        borrower.loanReturned(this);
     }
 
     public boolean isOverdue() {
+        return isOverdue(LocalDate.now());
+    }
+
+    public boolean isOverdue(LocalDate today) {
         if (returnDate != null) {
             return returnDate.isAfter(dueDate);
         }
-        return LocalDate.now().isAfter(dueDate);
+        return today.isAfter(dueDate);
     }
 
     public double calculateFine() {
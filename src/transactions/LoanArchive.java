@@ -0,0 +1,254 @@
+package transactions;
+
+import entities.BookItem;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import users.Borrower;
+
+/**
+ * Columnar store for returned loans. Each closed loan becomes one row
+ * spread over primitive arrays (24 bytes: five ints plus the due and return
+ * dates as short offsets from the issue date, against 100+ for a Loan with
+ * its three LocalDates), and copies are referenced through a small item
+ * table instead of per-row pointers.
+ *
+ * The fifth int links a row to the same borrower's next row, so one
+ * borrower's history is read by following that chain from their first row:
+ * it costs O(their loans), and the walk runs on a snapshot without holding
+ * the archive's lock. Reports scan every row sequentially with
+ * {@link #forEach} or a {@link Snapshot}.
+ */
+public class LoanArchive {
+
+    // Receives one archived row; dates are epoch days
+    public interface RowVisitor {
+        void visit(int loanID, int borrowerID, BookItem item, long issueDay, long dueDay, long returnDay);
+    }
+
+    /**
+     * Read-only view of the rows appended so far. Row columns never change
+     * once written (only a borrower's next-row link is set, by that
+     * borrower's next append) and growing copies into new arrays, so a
+     * snapshot can be scanned (also in parallel, by row range) without
+     * holding the lock. Taking one copies no data.
+     */
+    public static class Snapshot {
+        private final int size;
+        private final int[] loanIds;
+        private final int[] borrowerIds;
+        private final int[] itemRefs;
+        private final int[] issueDays;
+        private final short[] dueOffsets;
+        private final short[] returnOffsets;
+        private final int[] nextRows;
+        private final BookItem[] items;
+
+        private Snapshot(LoanArchive a) {
+            this.size = a.size;
+            this.loanIds = a.loanIds;
+            this.borrowerIds = a.borrowerIds;
+            this.itemRefs = a.itemRefs;
+            this.issueDays = a.issueDays;
+            this.dueOffsets = a.dueOffsets;
+            this.returnOffsets = a.returnOffsets;
+            this.nextRows = a.nextRows;
+            this.items = a.items;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Visits rows [from, to)
+        public void forEach(int from, int to, RowVisitor v) {
+            for (int row = from; row < to; row++) {
+                visit(row, v);
+            }
+        }
+
+        // Visits up to 'count' rows of one borrower's chain, starting at 'firstRow'
+        void forEachLinked(int firstRow, int count, RowVisitor v) {
+            for (int row = firstRow; count > 0 && row >= 0 && row < size; row = nextRows[row], count--) {
+                visit(row, v);
+            }
+        }
+
+        private void visit(int row, RowVisitor v) {
+            long issue = issueDays[row];
+            v.visit(loanIds[row], borrowerIds[row], items[itemRefs[row]], issue, issue + dueOffsets[row],
+                    issue + returnOffsets[row]);
+        }
+
+        // Column reads for callers that can't go through a RowVisitor (e.g. ones that throw)
+        public int loanId(int row) {
+            return loanIds[row];
+        }
+
+        public int borrowerId(int row) {
+            return borrowerIds[row];
+        }
+
+        public BookItem item(int row) {
+            return items[itemRefs[row]];
+        }
+
+        public long issueDay(int row) {
+            return issueDays[row];
+        }
+
+        public long dueDay(int row) {
+            return issueDays[row] + dueOffsets[row];
+        }
+
+        public long returnDay(int row) {
+            return issueDays[row] + returnOffsets[row];
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // End of a borrower's chain (also passed to append for their first row)
+    public static final int NO_ROW = -1;
+
+    private int size;
+    private int[] loanIds;
+    private int[] borrowerIds;
+    private int[] itemRefs;
+    private int[] issueDays;
+    private short[] dueOffsets; // due date - issue date, in days
+    private short[] returnOffsets; // return date - issue date, in days
+    private int[] nextRows; // the same borrower's next row, or NO_ROW
+
+    // Grown by copying, like the columns, so snapshots can share it
+    private BookItem[] items;
+    private int itemCount;
+    private Map<BookItem, Integer> itemRefByItem;
+
+    public LoanArchive() {
+        this.loanIds = new int[INITIAL_CAPACITY];
+        this.borrowerIds = new int[INITIAL_CAPACITY];
+        this.itemRefs = new int[INITIAL_CAPACITY];
+        this.issueDays = new int[INITIAL_CAPACITY];
+        this.dueOffsets = new short[INITIAL_CAPACITY];
+        this.returnOffsets = new short[INITIAL_CAPACITY];
+        this.nextRows = new int[INITIAL_CAPACITY];
+        this.items = new BookItem[16];
+        this.itemRefByItem = new IdentityHashMap<>();
+    }
+
+    // Whether a returned loan's dates fit the short offsets of a row
+    public static boolean fits(Loan loan) {
+        if (loan.getReturnDate() == null)
+            return false;
+        long issue = loan.getIssueDate().toEpochDay();
+        long due = loan.getDueDate().toEpochDay() - issue;
+        long returned = loan.getReturnDate().toEpochDay() - issue;
+        return issue == (int) issue && due == (short) due && returned == (short) returned;
+    }
+
+    // Appends a returned loan as the start of a borrower chain and returns its row number
+    public int append(Loan loan) {
+        return append(loan, NO_ROW);
+    }
+
+    /**
+     * Appends a returned loan and returns its row number. 'previousRow' is the
+     * borrower's last row (linked to the new one) or NO_ROW for their first.
+     */
+    public synchronized int append(Loan loan, int previousRow) {
+        if (loan.getReturnDate() == null)
+            throw new IllegalArgumentException("Loan " + loan.getLoanID() + " is still open");
+        if (!fits(loan))
+            throw new IllegalArgumentException("Loan " + loan.getLoanID() + " spans too many days to archive");
+        if (size == loanIds.length)
+            grow();
+
+        int issue = (int) loan.getIssueDate().toEpochDay();
+        int row = size++;
+        loanIds[row] = loan.getLoanID();
+        borrowerIds[row] = loan.getBorrower().getId();
+        itemRefs[row] = itemRef(loan.getBookItem());
+        issueDays[row] = issue;
+        dueOffsets[row] = (short) (loan.getDueDate().toEpochDay() - issue);
+        returnOffsets[row] = (short) (loan.getReturnDate().toEpochDay() - issue);
+        nextRows[row] = NO_ROW;
+        if (previousRow != NO_ROW)
+            nextRows[previousRow] = row;
+        return row;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Sequential scan over every row, in archive order
+    public synchronized void forEach(RowVisitor v) {
+        for (int row = 0; row < size; row++) {
+            visitRow(row, v);
+        }
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Visits one borrower's rows, oldest first, by following their chain
+     * from 'firstRow' for 'count' rows. Only taking the snapshot holds the
+     * lock, so returns aren't held up by a long history. The caller keeps
+     * the borrower from appending meanwhile.
+     */
+    public void forEachOfBorrower(int firstRow, int count, RowVisitor v) {
+        snapshot().forEachLinked(firstRow, count, v);
+    }
+
+    // Drops the spare capacity left by growing, e.g. once a snapshot is loaded
+    public synchronized void trimToSize() {
+        int cap = Math.max(size, 1);
+        if (cap < loanIds.length)
+            resize(cap);
+    }
+
+    // Rebuilds a (returned) Loan object for one row
+    public static Loan toLoan(Borrower borrower, int loanID, BookItem item, long issueDay, long dueDay,
+            long returnDay) {
+        Loan loan = new Loan(loanID, borrower, item, LocalDate.ofEpochDay(issueDay), LocalDate.ofEpochDay(dueDay));
+        loan.markReturned(LocalDate.ofEpochDay(returnDay));
+        return loan;
+    }
+
+    private void visitRow(int row, RowVisitor v) {
+        long issue = issueDays[row];
+        v.visit(loanIds[row], borrowerIds[row], items[itemRefs[row]], issue, issue + dueOffsets[row],
+                issue + returnOffsets[row]);
+    }
+
+    private int itemRef(BookItem item) {
+        Integer ref = itemRefByItem.get(item);
+        if (ref == null) {
+            ref = itemCount++;
+            if (ref == items.length)
+                items = Arrays.copyOf(items, ref * 2);
+            items[ref] = item;
+            itemRefByItem.put(item, ref);
+        }
+        return ref;
+    }
+
+    private void grow() {
+        resize(loanIds.length + (loanIds.length >> 1) + 1);
+    }
+
+    // Snapshots keep the arrays they were taken from, so resizing always copies
+    private void resize(int cap) {
+        loanIds = Arrays.copyOf(loanIds, cap);
+        borrowerIds = Arrays.copyOf(borrowerIds, cap);
+        itemRefs = Arrays.copyOf(itemRefs, cap);
+        issueDays = Arrays.copyOf(issueDays, cap);
+        dueOffsets = Arrays.copyOf(dueOffsets, cap);
+        returnOffsets = Arrays.copyOf(returnOffsets, cap);
+        nextRows = Arrays.copyOf(nextRows, cap);
+    }
+}
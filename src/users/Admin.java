@@ -12,13 +12,19 @@ public class Admin extends Staff {
 
     // Admin-specific capabilities
     public void addNewBookTitle(BookTitle title, LibraryDatabase db) {
-        db.addBookTitle(title);
-        System.out.println("Title added: " + title.getTitle());
+        if (db.addBookTitle(title)) {
+            System.out.println("Title added: " + title.getTitle());
+        } else {
+            System.out.println("ISBN already exists: " + title.getIsbn());
+        }
     }
 
     public void addBookItem(BookItem item, LibraryDatabase db) {
-        db.addBookItem(item);
-        System.out.println("Item added. Barcode: " + item.getBarcode());
+        if (db.addBookItem(item)) {
+            System.out.println("Item added. Barcode: " + item.getBarcode());
+        } else {
+            System.out.println("Barcode already exists: " + item.getBarcode());
+        }
     }
 
     @Override
@@ -1,36 +1,127 @@
 package users;
 
 import enums.AccountStatus;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import transactions.Loan;
+import transactions.LoanArchive;
 
 public class Borrower extends Person {
     private AccountStatus accountStatus;
     private int maxBookLimit;
+    // Loans still held as objects: open ones, plus returned ones not yet archived
     private List<Loan> loanHistory;
+    // Loans not yet returned, kept incrementally so checks don't scan the history
+    private Set<Loan> openLoans;
+    // Returned loans live in the shared columnar archive, chained from this borrower's first row
+    private LoanArchive archive;
+    private int firstArchivedRow;
+    private int lastArchivedRow;
+    private int archivedCount;
 
     public Borrower(int id, String name, String password, String contactInfo) {
         super(id, name, password, contactInfo);
         this.accountStatus = AccountStatus.ACTIVE;
         this.maxBookLimit = 5;
         this.loanHistory = new ArrayList<>();
+        this.openLoans = new LinkedHashSet<>();
+        this.firstArchivedRow = LoanArchive.NO_ROW;
+        this.lastArchivedRow = LoanArchive.NO_ROW;
     }
 
-    public void addLoan(Loan loan) {
+    public synchronized void addLoan(Loan loan) {
         loanHistory.add(loan);
+        if (loan.getReturnDate() == null) {
+            openLoans.add(loan);
+        }
     }
 
-    public List<Loan> getActiveLoans() {
-        List<Loan> active = new ArrayList<>();
-        for (Loan l : loanHistory) {
-            if (l.getReturnDate() == null) {
-                active.add(l);
-            }
+    // Called by Loan.markReturned
+    public synchronized void loanReturned(Loan loan) {
+        openLoans.remove(loan);
+    }
+
+    // Moves a returned loan out of the object list into the columnar archive.
+    // A loan whose dates don't fit an archive row stays in the list.
+    public synchronized void archiveLoan(Loan loan, LoanArchive archive) {
+        if (this.archive != null && this.archive != archive)
+            throw new IllegalStateException("Borrower " + getId() + " already uses another archive");
+        if (!LoanArchive.fits(loan)) {
+            if (!loanHistory.contains(loan))
+                loanHistory.add(loan);
+            return;
         }
-        return active;
+        this.archive = archive;
+        int row = archive.append(loan, lastArchivedRow);
+        if (firstArchivedRow == LoanArchive.NO_ROW)
+            firstArchivedRow = row;
+        lastArchivedRow = row;
+        archivedCount++;
+        loanHistory.remove(loan);
+    }
+
+    public AccountStatus getAccountStatus() {
+        return accountStatus;
+    }
+
+    public void setAccountStatus(AccountStatus accountStatus) {
+        this.accountStatus = accountStatus;
+    }
+
+    public int getMaxBookLimit() {
+        return maxBookLimit;
+    }
+
+    public synchronized int getActiveLoanCount() {
+        return openLoans.size();
+    }
+
+    // O(1): account must be ACTIVE and below its borrowing limit
+    public synchronized boolean canBorrow() {
+        return accountStatus == AccountStatus.ACTIVE && openLoans.size() < maxBookLimit;
+    }
+
+    public synchronized int getLoanHistorySize() {
+        return archivedCount + loanHistory.size();
     }
 
+    // Archived loans (rebuilt as Loan objects) followed by the ones still held in memory.
+    // Prefer forEachArchivedLoan for large histories.
+    public synchronized List<Loan> getLoanHistory() {
+        List<Loan> all = new ArrayList<>(getLoanHistorySize());
+        forEachArchivedLoan((id, borrowerId, item, issue, due, returned) -> all
+                .add(LoanArchive.toLoan(this, id, item, issue, due, returned)));
+        all.addAll(loanHistory);
+        return Collections.unmodifiableList(all);
+    }
+
+    public synchronized void forEachArchivedLoan(LoanArchive.RowVisitor v) {
+        if (archive != null)
+            archive.forEachOfBorrower(firstArchivedRow, archivedCount, v);
+    }
+
+    // Whether an archive row is one of this borrower's (and not an earlier
+    // person's with the same ID), for scans that walk the whole archive
+    public synchronized boolean ownsArchivedRow(int row, int borrowerID) {
+        return borrowerID == getId() && firstArchivedRow >= 0 && row >= firstArchivedRow;
+    }
+
+    // Loans still held as objects (open ones, plus any not archived), oldest first
+    public synchronized List<Loan> getUnarchivedLoans() {
+        return new ArrayList<>(loanHistory);
+    }
+
+    // Snapshot of the open loans, oldest first
+    public synchronized List<Loan> getActiveLoans() {
+        return new ArrayList<>(openLoans);
+    }
+
+    // Rows are formatted under the lock and printed after it, so a slow console
+    // doesn't hold up loans and returns for this borrower
     public void printLoanHistory() {
         String ANSI_RESET = "\u001B[0m";
         String ANSI_BOLD = "\u001B[1m";
@@ -38,23 +129,33 @@ public class Borrower extends Person {
         String ANSI_GREEN = "\u001B[32m";
         String ANSI_YELLOW = "\u001B[33m";
 
+        List<String> rows = new ArrayList<>();
+        synchronized (this) {
+            forEachArchivedLoan((id, borrowerId, item, issue, due, returned) -> rows
+                    .add(" - " + item.getBookTitle().getTitle() + " (" + ANSI_GREEN + "Returned: "
+                            + LocalDate.ofEpochDay(returned) + ANSI_RESET + ")"));
+            for (Loan l : loanHistory) {
+                // colors
+                String dateInfo;
+                if (l.getReturnDate() != null) {
+                    dateInfo = ANSI_GREEN + "Returned: " + l.getReturnDate() + ANSI_RESET;
+                } else if (l.isOverdue()) {
+                    dateInfo = ANSI_RED + "OVERDUE (Due: " + l.getDueDate() + ")" + ANSI_RESET;
+                } else {
+                    dateInfo = "Due: " + l.getDueDate();
+                }
+
+                rows.add(" - " + l.getBookItem().getBookTitle().getTitle() +
+                        " (" + dateInfo + ")");
+            }
+        }
+
         System.out.println(ANSI_BOLD + "\nLoan History for " + getName() + ANSI_RESET);
-        if (loanHistory.isEmpty()) {
+        if (rows.isEmpty()) {
             System.out.println(ANSI_YELLOW + " - No history." + ANSI_RESET);
         }
-        for (Loan l : loanHistory) {
-            // colors
-            String dateInfo;
-            if (l.getReturnDate() != null) {
-                dateInfo = ANSI_GREEN + "Returned: " + l.getReturnDate() + ANSI_RESET;
-            } else if (l.isOverdue()) {
-                dateInfo = ANSI_RED + "OVERDUE (Due: " + l.getDueDate() + ")" + ANSI_RESET;
-            } else {
-                dateInfo = "Due: " + l.getDueDate();
-            }
-
-            System.out.println(" - " + l.getBookItem().getBookTitle().getTitle() +
-                    " (" + dateInfo + ")");
+        for (String row : rows) {
+            System.out.println(row);
         }
     }
 
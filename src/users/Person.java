@@ -26,6 +26,15 @@ public abstract class Person {
         return id;
     }
 
+    public String getContactInfo() {
+        return contactInfo;
+    }
+
+    // Needed to persist the account (see core.LibraryJournal)
+    public String getPassword() {
+        return password;
+    }
+
     public boolean validatePassword(String inputPassword) {
         return this.password.equals(inputPassword);
     }
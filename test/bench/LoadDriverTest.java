@@ -0,0 +1,64 @@
+package bench;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.LibraryDatabase;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoadDriverTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void populationsAreReproducible() {
+        LibraryDatabase a = new LibraryDatabase(true);
+        LibraryDatabase b = new LibraryDatabase(true);
+        DataGenerator.Population pa = new DataGenerator(42).populate(a, 300, 2);
+        DataGenerator.Population pb = new DataGenerator(42).populate(b, 300, 2);
+
+        assertEquals(300, pa.titles.length);
+        assertEquals(600, pa.items.length);
+        assertEquals(100, pa.borrowers.length);
+        assertEquals(600, a.getInventory().size());
+        for (int i = 0; i < pa.titles.length; i++) {
+            assertEquals(pa.titles[i].getTitle(), pb.titles[i].getTitle());
+            assertEquals(pa.titles[i].getAuthors().get(0).getName(), pb.titles[i].getAuthors().get(0).getName());
+        }
+    }
+
+    @Test
+    void shortRunReportsEveryOperation() throws Exception {
+        Path journal = dir.resolve("load.journal");
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            LoadDriver.main(new String[] { "--titles", "500", "--copies", "2", "--sessions", "2", "--warmup", "0",
+                    "--duration", "1", "--journal", journal.toString(), "--sync", "NONE" });
+        } finally {
+            System.setOut(stdout);
+        }
+        String out = bytes.toString(StandardCharsets.UTF_8);
+
+        for (String op : new String[] { "LOGIN", "SEARCH", "ISSUE", "RETURN" }) {
+            Matcher m = Pattern.compile("(?m)^" + op + "\\s+\\|\\s+(\\d+)\\s+\\|\\s+(\\d+)").matcher(out);
+            assertTrue(m.find(), op + " row missing:\n" + out);
+            assertTrue(Long.parseLong(m.group(1)) > 0, op + " never ran");
+            if (op.equals("LOGIN") || op.equals("SEARCH"))
+                assertEquals(0, Long.parseLong(m.group(2)), op + " failed");
+        }
+        assertTrue(out.contains("TOTAL"));
+        assertFalse(out.contains("Journal close failed"));
+        assertTrue(Files.size(journal) > 0);
+    }
+}
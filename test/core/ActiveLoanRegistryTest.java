@@ -0,0 +1,95 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import transactions.Loan;
+import users.Borrower;
+
+class ActiveLoanRegistryTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 5, 4);
+
+    private final BookTitle title = new BookTitle("978-1", "The Lathe of Heaven", "Science Fiction", "Avon");
+    private final BookItem c1 = new BookItem("C1", title);
+    private final BookItem c2 = new BookItem("C2", title);
+    private final Borrower orr = new Borrower(4, "George Orr", "pw", "orr@portland.org");
+
+    private Loan loan(int id, BookItem item) {
+        return new Loan(id, orr, item, DAY, DAY.plusDays(14));
+    }
+
+    @Test
+    void loansAreFoundByCopyAndById() {
+        for (boolean concurrent : new boolean[] { false, true }) {
+            ActiveLoanRegistry loans = new ActiveLoanRegistry(concurrent);
+            Loan first = loan(1, c1);
+            assertTrue(loans.issue(first));
+            assertTrue(loans.issue(loan(2, c2)));
+
+            assertSame(first, loans.findByItem(c1));
+            assertSame(first, loans.findById(1));
+            assertEquals(2, loans.size());
+        }
+    }
+
+    @Test
+    void aCopyOrIdCanOnlyBeOnOneOpenLoan() {
+        ActiveLoanRegistry loans = new ActiveLoanRegistry(true);
+        Loan first = loan(1, c1);
+        assertTrue(loans.issue(first));
+        assertFalse(loans.issue(loan(2, c1)));
+        // A clashing ID leaves the copy free
+        assertFalse(loans.issue(loan(1, c2)));
+        assertNull(loans.findByItem(c2));
+        assertSame(first, loans.findById(1));
+        assertEquals(1, loans.size());
+    }
+
+    @Test
+    void closingRemovesTheLoanEverywhere() {
+        ActiveLoanRegistry loans = new ActiveLoanRegistry(true);
+        Loan first = loan(1, c1);
+        Loan second = loan(2, c2);
+        loans.issue(first);
+        loans.issue(second);
+
+        assertTrue(loans.close(first));
+        assertNull(loans.findByItem(c1));
+        assertTrue(loans.close(second));
+        assertFalse(loans.close(second));
+
+        assertNull(loans.findById(1));
+        assertNull(loans.findByItem(c2));
+        assertEquals(0, loans.size());
+        assertTrue(loans.getDueDates().dueBetween(DAY, DAY.plusDays(30)).isEmpty());
+    }
+
+    @Test
+    void databaseReturnsByCopy() {
+        LibraryDatabase db = new LibraryDatabase(true);
+        db.addBookTitle(title);
+        db.addBookItem(c1);
+        db.addPerson(orr);
+
+        Loan l = db.issueLoan(orr, c1);
+        assertSame(l, db.findActiveLoanById(l.getLoanID()));
+        assertSame(l, db.findActiveLoanByBookItem(c1));
+        assertEquals(List.of(l), orr.getActiveLoans());
+
+        assertSame(l, db.returnLoan(c1, DAY.plusDays(3)));
+        assertNull(db.findActiveLoanByBookItem(c1));
+        assertNull(db.findActiveLoanById(l.getLoanID()));
+        assertEquals(BookStatus.AVAILABLE, c1.getStatus());
+        assertEquals(0, db.getActiveLoanCount());
+        assertNull(db.returnLoan(c1));
+    }
+}
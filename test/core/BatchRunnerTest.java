@@ -0,0 +1,111 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.Admin;
+import users.Borrower;
+import users.Librarian;
+
+class BatchRunnerTest {
+    @TempDir
+    Path dir;
+
+    private final LibraryDatabase db = new LibraryDatabase(true);
+    private final LibraryService service = new LibraryService(db);
+    private final Librarian desk = new Librarian(2, "Desk", "pw", "desk@lib.org", 0);
+    private final Admin admin = new Admin(1, "Admin", "pw", "admin@lib.org", 0);
+
+    private void stock() {
+        BookTitle t = new BookTitle("978-1", "The Tombs of Atuan", "Fantasy", "Atheneum");
+        db.addBookTitle(t);
+        db.addBookItem(new BookItem("B1", t));
+        db.addBookItem(new BookItem("B2", t));
+        db.addPerson(new Borrower(4, "Tenar", "pw", "tenar@atuan.org"));
+    }
+
+    private static BatchRunner.Summary run(BatchRunner runner, String script, StringWriter report)
+            throws IOException {
+        return runner.run(new BufferedReader(new StringReader(script)), report);
+    }
+
+    @Test
+    void runsDeskCommandsAndReportsEachLine() throws IOException {
+        stock();
+        StringWriter report = new StringWriter();
+        BatchRunner.Summary s = run(new BatchRunner(service, desk, 2), String.join("\n",
+                "# desk 1",
+                "ISSUE 4 B1",
+                "",
+                "issue, 4, B2",
+                "RETURN B1",
+                "RETURN B1",
+                "ISSUE x B1",
+                "ISSUE 4",
+                "RENEW B2"), report);
+
+        assertEquals(9, s.lines);
+        assertEquals(7, s.executed);
+        assertEquals(3, s.ok);
+        assertEquals(4, s.failed);
+        assertEquals(Map.of("NOT_LOANED", 1L, "BAD_NUMBER", 1L, "USAGE: ISSUE borrowerId barcode", 1L,
+                "UNKNOWN_COMMAND", 1L), s.failures);
+        String due = LocalDate.now().plusDays(14).toString();
+        assertEquals(List.of(
+                "2,OK due " + due + ",ISSUE 4 B1",
+                "4,OK due " + due + ",issue, 4, B2",
+                "5,OK,RETURN B1",
+                "6,NOT_LOANED,RETURN B1",
+                "7,BAD_NUMBER,ISSUE x B1",
+                "8,USAGE: ISSUE borrowerId barcode,ISSUE 4",
+                "9,UNKNOWN_COMMAND,RENEW B2"), report.toString().lines().toList());
+        assertNull(db.findActiveLoanByBookItem(db.findItemByBarcode("B1")));
+        assertNotNull(db.findActiveLoanByBookItem(db.findItemByBarcode("B2")));
+    }
+
+    @Test
+    void roleRulesApply() throws IOException {
+        stock();
+        StringWriter report = new StringWriter();
+        run(new BatchRunner(service, admin, 10), "ADD_ITEM 978-1 B3\nADD_ITEM 978-9 B4\nADD_ITEM 978-1 B3\nRETURN B1",
+                report);
+        assertEquals(List.of("1,OK,ADD_ITEM 978-1 B3", "2,NOT_FOUND,ADD_ITEM 978-9 B4",
+                "3,DUPLICATE,ADD_ITEM 978-1 B3", "4,FORBIDDEN,RETURN B1"), report.toString().lines().toList());
+        assertNotNull(db.findItemByBarcode("B3"));
+    }
+
+    @Test
+    void journaledBatchesReplay() throws IOException {
+        Path path = dir.resolve("batch.journal");
+        LibraryJournal journal = LibraryJournal.open(path, LibraryJournal.SyncPolicy.EVERY_COMMIT, 20);
+        db.attachJournal(journal);
+        stock();
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            script.append(i % 2 == 0 ? "ISSUE 4 B1\n" : "RETURN B1\n");
+        }
+        BatchRunner.Summary s = run(new BatchRunner(service, desk, 8), script.toString(), new StringWriter());
+        assertEquals(50, s.ok);
+        String live = DatabaseState.of(db);
+        journal.close();
+
+        LibraryDatabase replayed = new LibraryDatabase(true);
+        try (LibraryJournal j = LibraryJournal.open(path, LibraryJournal.SyncPolicy.NONE, 20)) {
+            j.replay(replayed, 0);
+        }
+        assertEquals(live, DatabaseState.of(replayed));
+    }
+}
@@ -0,0 +1,121 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import users.Borrower;
+
+class CatalogAutocompleteTest {
+    private final LibraryDatabase db = new LibraryDatabase(true);
+    private final Borrower reader = new Borrower(4, "Ged", "pw", "ged@roke.org");
+
+    private BookTitle title(String isbn, String name, Author a) {
+        BookTitle t = new BookTitle(isbn, name, "Fantasy", "Parnassus");
+        if (a != null)
+            t.addAuthor(a);
+        db.addBookTitle(t);
+        db.addBookItem(new BookItem(isbn + "-0", t));
+        return t;
+    }
+
+    private void lend(BookTitle t, int times) {
+        BookItem copy = db.findItemByBarcode(t.getIsbn() + "-0");
+        for (int i = 0; i < times; i++) {
+            db.issueLoan(reader, copy);
+            db.returnLoan(copy);
+        }
+    }
+
+    private static List<String> texts(List<CatalogAutocomplete.Suggestion> suggestions) {
+        List<String> out = new ArrayList<>();
+        for (CatalogAutocomplete.Suggestion s : suggestions) {
+            out.add(s.text);
+        }
+        return out;
+    }
+
+    private void awaitConsumers() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((db.getEvents().getSubscriptions().size() < 2
+                || db.getEvents().getSubscriptions().stream().anyMatch(s -> s.getLag() > 0))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void suggestionsFollowPopularityAndEarlierWords() throws Exception {
+        db.attachEvents(new LibraryEventRing(1024));
+        db.addPerson(reader);
+        Author leGuin = new Author(1, "Ursula K. Le Guin");
+        db.addAuthor(leGuin);
+        BookTitle wizard = title("978-1", "A Wizard of Earthsea", leGuin);
+        BookTitle wind = title("978-2", "The Other Wind", leGuin);
+        BookTitle wild = title("978-3", "Wild Seed", null);
+        lend(wild, 2);
+
+        CatalogAutocomplete ac = db.getAutocomplete();
+        CirculationAnalytics analytics = new CirculationAnalytics(db);
+        analytics.start();
+        ac.trackPopularity(db, analytics);
+        awaitConsumers();
+        lend(wind, 3);
+        awaitConsumers();
+
+        assertEquals(List.of("The Other Wind", "Wild Seed", "A Wizard of Earthsea"), texts(ac.suggest("wi", 10)));
+        assertEquals(List.of("The Other Wind"), texts(ac.suggest("other w", 10)));
+        assertEquals(List.of("Ursula K. Le Guin"), texts(ac.suggest("le g", 10)));
+        assertEquals(3, ac.suggest("le g", 10).get(0).popularity);
+        assertEquals(List.of("The Other Wind"), texts(ac.suggest("wi", 1)));
+        assertTrue(ac.suggest("xyz", 10).isEmpty());
+
+        db.renameBookTitle(wizard, "The Tombs of Atuan");
+        assertEquals(List.of("The Tombs of Atuan"), texts(ac.suggest("tomb", 10)));
+        assertEquals(List.of("The Other Wind", "Wild Seed"), texts(ac.suggest("wi", 10)));
+        analytics.stop();
+        ac.stop();
+    }
+
+    @Test
+    void removingANamePrunesItsTrieNodes() {
+        CatalogAutocomplete ac = db.getAutocomplete();
+        title("978-1", "Earthsea", null);
+        int before = ac.nodeCount();
+
+        BookTitle odd = title("978-2", "Zyzzyva Quixotic Earthbound", null);
+        assertTrue(ac.nodeCount() > before);
+        db.removeBookTitle(odd);
+        assertEquals(before, ac.nodeCount());
+        assertTrue(ac.suggest("zyz", 10).isEmpty());
+        assertEquals(List.of("Earthsea"), texts(ac.suggest("earth", 10)));
+    }
+
+    // Desks keep issuing while popularity is seeded: each loan counts exactly once
+    @Test
+    void seedingCountsEveryLoanOnce() throws Exception {
+        db.attachEvents(new LibraryEventRing(1 << 16));
+        db.addPerson(reader);
+        BookTitle t = title("978-1", "Always Coming Home", null);
+        lend(t, 500);
+
+        Thread desk = new Thread(() -> lend(t, 2000));
+        desk.start();
+        CatalogAutocomplete ac = db.getAutocomplete();
+        CirculationAnalytics analytics = new CirculationAnalytics(db);
+        analytics.start();
+        ac.trackPopularity(db, analytics);
+        desk.join();
+        awaitConsumers();
+
+        assertEquals(2500, ac.suggest("always", 1).get(0).popularity);
+        analytics.stop();
+        ac.stop();
+    }
+}
@@ -0,0 +1,94 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import users.Borrower;
+
+class CatalogFacetsTest {
+    private final LibraryDatabase db = new LibraryDatabase(true);
+    private final Author leGuin = new Author(1, "Ursula K. Le Guin");
+    private final Author banks = new Author(2, "Iain M. Banks");
+    private final Borrower reader = new Borrower(4, "Reader", "pw", "reader@example.org");
+
+    private BookTitle title(String isbn, String genre, String publisher, Author author, int copies) {
+        BookTitle t = new BookTitle(isbn, "Title " + isbn, genre, publisher);
+        t.addAuthor(author);
+        db.addBookTitle(t);
+        for (int i = 0; i < copies; i++) {
+            db.addBookItem(new BookItem(isbn + "-" + i, t));
+        }
+        return t;
+    }
+
+    private static Map<String, Integer> counts(CatalogFacets.Result r, CatalogFacets.Facet f) {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (CatalogFacets.FacetCount c : r.facets.get(f)) {
+            out.put(c.label, c.count);
+        }
+        return out;
+    }
+
+    @Test
+    void eachFacetCountsUnderTheOtherFacetsChoices() {
+        db.addAuthor(leGuin);
+        db.addAuthor(banks);
+        db.addPerson(reader);
+        BookTitle earthsea = title("1", "Fantasy", "Parnassus", leGuin, 1);
+        BookTitle tehanu = title("2", "fantasy", "Atheneum", leGuin, 0);
+        BookTitle dispossessed = title("3", "Science Fiction", "Harper", leGuin, 2);
+        title("4", "Science Fiction", "Orbit", banks, 1);
+
+        CatalogFacets.Selection s = new CatalogFacets.Selection()
+                .add(CatalogFacets.Facet.AUTHOR, leGuin)
+                .add(CatalogFacets.Facet.AVAILABILITY, CatalogFacets.AVAILABLE);
+        CatalogFacets.Result r = db.filterCatalog(s, 0, 10, 10);
+
+        assertEquals(2, r.total);
+        assertEquals(List.of(earthsea, dispossessed), r.titles);
+        // Genres are matched case-insensitively and shown as first spelled
+        assertEquals(Map.of("Fantasy", 1, "Science Fiction", 1), counts(r, CatalogFacets.Facet.GENRE));
+        // The chosen facets count as if they were unchosen
+        assertEquals(Map.of("Ursula K. Le Guin", 2, "Iain M. Banks", 1), counts(r, CatalogFacets.Facet.AUTHOR));
+        assertEquals(Map.of("available", 2, "unavailable", 1), counts(r, CatalogFacets.Facet.AVAILABILITY));
+
+        // Lending the only copy moves the title out of "available"
+        db.issueLoan(reader, db.findItemByBarcode("1-0"));
+        r = db.filterCatalog(s, 0, 10, 10);
+        assertEquals(List.of(dispossessed), r.titles);
+
+        s.toggle(CatalogFacets.Facet.AVAILABILITY, CatalogFacets.AVAILABLE).add(CatalogFacets.Facet.GENRE, "FANTASY");
+        r = db.filterCatalog(s, 0, 10, 10);
+        assertEquals(List.of(earthsea, tehanu), r.titles);
+
+        // Paging and removals
+        r = db.filterCatalog(s, 1, 1, 10);
+        assertEquals(2, r.total);
+        assertEquals(List.of(tehanu), r.titles);
+        db.removeBookTitle(tehanu);
+        assertEquals(List.of(earthsea), db.filterCatalog(s, 0, 10, 10).titles);
+        assertEquals(3, db.filterCatalog(new CatalogFacets.Selection(), 0, 10, 10).total);
+    }
+
+    @Test
+    void facetLimitKeepsTheLargestValues() {
+        db.addAuthor(leGuin);
+        // Publisher P<k> has k + 1 titles
+        for (int k = 0; k < 5; k++) {
+            for (int i = 0; i <= k; i++) {
+                title(k + "-" + i, "Fantasy", "P" + k, leGuin, 0);
+            }
+        }
+        CatalogFacets.Result r = db.filterCatalog(new CatalogFacets.Selection(), 0, 0, 2);
+        assertEquals(15, r.total);
+        assertTrue(r.titles.isEmpty());
+        assertEquals(List.of("P4", "P3"), List.copyOf(counts(r, CatalogFacets.Facet.PUBLISHER).keySet()));
+    }
+}
@@ -0,0 +1,105 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import entities.BookTitle;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogImporterTest {
+    @TempDir
+    Path dir;
+
+    private final LibraryDatabase db = new LibraryDatabase(true);
+
+    private Path csv(String name, List<String> lines) throws IOException {
+        return Files.write(dir.resolve(name), lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void splitsQuotedFields() {
+        assertArrayEquals(new String[] { "1", "a, b", "say \"hi\"", "" },
+                CatalogImporter.splitCsv("1,\"a, b\",\"say \"\"hi\"\"\","));
+        assertNull(CatalogImporter.splitCsv("1,\"open"));
+    }
+
+    @Test
+    void importsTitlesItemsAndBorrowersAndRejectsBadRows() throws IOException {
+        Path titles = csv("titles.csv", List.of(
+                "isbn,title,genre,publisher,authors",
+                "978-1,\"Rocannon's World\",Science Fiction,Ace,Ursula K. Le Guin",
+                "978-2,Planet of Exile,Science Fiction,Ace,Ursula K. Le Guin; Terry Carr",
+                "978-1,Duplicate,X,Y,",
+                "978-3,Too short"));
+        Path items = csv("items.csv", List.of(
+                "barcode,isbn",
+                "B1,978-1",
+                "B2,978-2",
+                "B3,978-9",
+                "",
+                "B1,978-2"));
+        Path borrowers = csv("borrowers.csv", List.of(
+                "7,Rocannon,pw,rocannon@hilf.org",
+                "x,Nobody,pw,none",
+                "7,Again,pw,again@hilf.org"));
+
+        // One-row batches so parsing really overlaps with the ordered inserts
+        CatalogImporter importer = new CatalogImporter(db, 3, 1, null, 100);
+        CatalogImporter.Result t = importer.importFile(CatalogImporter.Kind.TITLES, titles, dir.resolve("t.rej"));
+        CatalogImporter.Result i = importer.importFile(CatalogImporter.Kind.ITEMS, items, dir.resolve("i.rej"));
+        CatalogImporter.Result b = importer.importFile(CatalogImporter.Kind.BORROWERS, borrowers, dir.resolve("b.rej"));
+
+        assertEquals(4, t.rows);
+        assertEquals(2, t.imported);
+        assertEquals(2, t.rejected);
+        assertEquals(List.of("4,duplicate ISBN,978-1,Duplicate,X,Y,",
+                "5,expected 5 columns, got 2,978-3,Too short"), Files.readAllLines(dir.resolve("t.rej")));
+        assertEquals(5, i.rows);
+        assertEquals(2, i.imported);
+        assertEquals(List.of("4,unknown ISBN,B3,978-9", "5,blank line,", "6,duplicate barcode,B1,978-2"),
+                Files.readAllLines(dir.resolve("i.rej")));
+        assertEquals(1, b.imported);
+        assertEquals(2, b.rejected);
+
+        BookTitle exile = db.findBookByISBN("978-2");
+        assertEquals("Planet of Exile", exile.getTitle());
+        assertEquals(2, exile.getAuthors().size());
+        // Shared authors are created once
+        assertSame(db.findAuthorByName("Ursula K. Le Guin"), exile.getAuthors().get(0));
+        assertEquals(2, db.getAuthors().size());
+        assertEquals(1, exile.getCopies().size());
+        assertNotNull(db.findPersonById(7));
+        assertEquals("Rocannon", db.findPersonById(7).getName());
+    }
+
+    @Test
+    void keepsFileOrderAcrossManyBatches() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int n = 0; n < 5_000; n++) {
+            lines.add("978-" + n + ",Title " + n + ",Genre,Publisher,");
+        }
+        // Every ISBN twice: the first occurrence must win
+        for (int n = 0; n < 5_000; n++) {
+            lines.add("978-" + n + ",Again " + n + ",Genre,Publisher,");
+        }
+        CatalogImporter.Result r = new CatalogImporter(db, 4, 64, null, 1000)
+                .importFile(CatalogImporter.Kind.TITLES, csv("big.csv", lines), dir.resolve("big.rej"));
+
+        assertEquals(5_000, r.imported);
+        assertEquals(5_000, r.rejected);
+        for (int n = 0; n < 5_000; n += 499) {
+            assertEquals("Title " + n, db.findBookByISBN("978-" + n).getTitle());
+        }
+        assertEquals("Title 0", db.getCatalog().get(0).getTitle());
+    }
+}
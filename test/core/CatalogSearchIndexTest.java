@@ -0,0 +1,75 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookTitle;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CatalogSearchIndexTest {
+    private CatalogSearchIndex index;
+    private BookTitle stone;
+    private BookTitle chamber;
+    private BookTitle hobbit;
+    private BookTitle stonehenge;
+
+    @BeforeEach
+    void setUp() {
+        index = new CatalogSearchIndex();
+        Author rowling = new Author(1, "J.K. Rowling");
+        stone = title("978-1", "Harry Potter and the Philosopher's Stone", "Fantasy", "Bloomsbury", rowling);
+        chamber = title("978-2", "Harry Potter and the Chamber of Secrets", "Fantasy", "Bloomsbury", rowling);
+        hobbit = title("978-3", "The Hobbit", "Fantasy", "Allen & Unwin", new Author(2, "J.R.R. Tolkien"));
+        stonehenge = title("978-4", "Stonehenge", "History", "Potter Press", new Author(3, "Mike Parker"));
+    }
+
+    private BookTitle title(String isbn, String name, String genre, String publisher, Author a) {
+        BookTitle t = new BookTitle(isbn, name, genre, publisher);
+        t.addAuthor(a);
+        index.add(t);
+        return t;
+    }
+
+    @Test
+    void matchesEveryTokenWithTheLastAsPrefix() {
+        assertEquals(List.of(stone), index.search("harry sto"));
+        assertEquals(List.of(chamber, stone), index.search("potter har"));
+        assertTrue(index.search("harry hobbit").isEmpty());
+        assertTrue(index.search("").isEmpty());
+    }
+
+    @Test
+    void ranksByFieldWeightThenTitle() {
+        // Title words outweigh the publisher
+        assertEquals(List.of(chamber, stone, stonehenge), index.search("potter"));
+        // A prefix counts each title once, at its best word
+        assertEquals(List.of(stone, stonehenge), index.search("ston"));
+    }
+
+    @Test
+    void limitKeepsTheBestRanked() {
+        assertEquals(List.of(chamber), index.search("potter", 1));
+        assertEquals(List.of(chamber, stone), index.search("potter", 2));
+        assertEquals(index.search("potter"), index.search("potter", 10));
+        assertTrue(index.search("potter", 0).isEmpty());
+    }
+
+    @Test
+    void removeAndUpdateReindex() {
+        index.remove(chamber);
+        assertEquals(List.of(stone, stonehenge), index.search("potter"));
+        hobbit.setTitle("The Hobbit and the Stone");
+        index.update(hobbit);
+        assertEquals(List.of(stone, stonehenge, hobbit), index.search("stone"));
+    }
+
+    @Test
+    void fuzzyToleratesTyposClosestFirst() {
+        assertEquals(List.of(hobbit), index.searchFuzzy("hobit"));
+        assertEquals(List.of(chamber, stone), index.searchFuzzy("hary poter", 2));
+        assertEquals(List.of(stonehenge), index.searchFuzzy("stonehenj"));
+    }
+}
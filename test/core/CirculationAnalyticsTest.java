@@ -0,0 +1,159 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import users.Borrower;
+
+class CirculationAnalyticsTest {
+    private final LocalDate today = LocalDate.now();
+    private final YearMonth month = YearMonth.from(today);
+
+    private LibraryDatabase db;
+    private BookItem fantasy;
+    private BookItem sf;
+    private Borrower reader;
+
+    private void populate(boolean events) {
+        db = new LibraryDatabase(true);
+        if (events)
+            db.attachEvents(new LibraryEventRing(1024));
+        Author leGuin = new Author(1, "Ursula K. Le Guin");
+        db.addAuthor(leGuin);
+        BookTitle earthsea = new BookTitle("978-1", "A Wizard of Earthsea", "Fantasy", "Parnassus");
+        earthsea.addAuthor(leGuin);
+        BookTitle dispossessed = new BookTitle("978-2", "The Dispossessed", "SF", "Harper");
+        dispossessed.addAuthor(leGuin);
+        db.addBookTitle(earthsea);
+        db.addBookTitle(dispossessed);
+        fantasy = new BookItem("B1", earthsea);
+        sf = new BookItem("B2", dispossessed);
+        db.addBookItem(fantasy);
+        db.addBookItem(sf);
+        reader = new Borrower(4, "Shevek", "pw", "shevek@anarres.org");
+        db.addPerson(reader);
+    }
+
+    // Issues and returns 'copy' 'times' times, each loan lasting 'days'
+    private void circulate(BookItem copy, int times, int days) {
+        for (int i = 0; i < times; i++) {
+            db.issueLoan(reader, copy);
+            db.returnLoan(copy, today.plusDays(days));
+        }
+    }
+
+    private static long issues(List<CirculationAnalytics.Row> rows, String label) {
+        return rows.stream().filter(r -> r.label.equals(label)).mapToLong(r -> r.issues).sum();
+    }
+
+    @Test
+    void historyIsRolledUpByEveryDimension() {
+        populate(false);
+        circulate(fantasy, 3, 7);
+        circulate(sf, 1, 21);
+        db.issueLoan(reader, sf);
+
+        CirculationAnalytics analytics = new CirculationAnalytics(db);
+        analytics.start();
+        List<CirculationAnalytics.Row> genres = analytics.top(CirculationAnalytics.Dimension.GENRE, month, month,
+                CirculationAnalytics.Measure.ISSUES, 10);
+        assertEquals("Fantasy", genres.get(0).label);
+        assertEquals(3, issues(genres, "Fantasy"));
+        assertEquals(2, issues(genres, "SF"));
+
+        // Returns count in the month they came back, which may be the next one
+        List<CirculationAnalytics.Row> authors = analytics.top(CirculationAnalytics.Dimension.AUTHOR, month,
+                month.plusMonths(1), CirculationAnalytics.Measure.RETURNS, 10);
+        assertEquals(1, authors.size());
+        assertEquals(4, authors.get(0).returns);
+
+        List<CirculationAnalytics.Row> longest = analytics.top(CirculationAnalytics.Dimension.TITLE, month,
+                month.plusMonths(1), CirculationAnalytics.Measure.AVG_LOAN_DAYS, 1);
+        assertEquals("The Dispossessed", longest.get(0).label);
+        assertEquals(21.0, longest.get(0).avgLoanDays);
+        assertTrue(analytics.top(CirculationAnalytics.Dimension.GENRE, month.minusMonths(2), month.minusMonths(1),
+                CirculationAnalytics.Measure.ISSUES, 10).isEmpty());
+    }
+
+    @Test
+    void liveEventsKeepTheAggregatesCurrent() throws Exception {
+        populate(true);
+        circulate(fantasy, 1, 7);
+        CirculationAnalytics analytics = new CirculationAnalytics(db);
+        analytics.start();
+        assertEquals(1, issues(analytics.top(CirculationAnalytics.Dimension.GENRE, month, month,
+                CirculationAnalytics.Measure.ISSUES, 10), "Fantasy"));
+
+        circulate(sf, 2, 3);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (db.getEvents().getSubscriptions().stream().anyMatch(s -> s.getLag() > 0)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        List<CirculationAnalytics.Row> genres = analytics.top(CirculationAnalytics.Dimension.GENRE, month, month,
+                CirculationAnalytics.Measure.ISSUES, 10);
+        analytics.stop();
+        assertEquals(1, issues(genres, "Fantasy"));
+        assertEquals(2, issues(genres, "SF"));
+    }
+
+    // A desk keeps issuing while the analytics load: each loan counts exactly once
+    @Test
+    void startingUnderLoadCountsEveryLoanOnce() throws Exception {
+        populate(false);
+        db.attachEvents(new LibraryEventRing(1 << 16));
+        circulate(fantasy, 500, 1);
+
+        Thread desk = new Thread(() -> circulate(fantasy, 2000, 1));
+        desk.start();
+        CirculationAnalytics analytics = new CirculationAnalytics(db);
+        analytics.start();
+        desk.join();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (db.getEvents().getSubscriptions().stream().anyMatch(s -> s.getLag() > 0)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        List<CirculationAnalytics.Row> genres = analytics.top(CirculationAnalytics.Dimension.GENRE, month, month,
+                CirculationAnalytics.Measure.ISSUES, 10);
+        analytics.stop();
+        assertEquals(2500, issues(genres, "Fantasy"));
+    }
+
+    @Test
+    void historyScanSeesArchivedAndOpenLoans() {
+        populate(false);
+        circulate(fantasy, 5, 2);
+        db.issueLoan(reader, sf);
+
+        long[] counts = new CirculationAnalytics(db).scanHistory(new CirculationAnalytics.HistoryScan<long[]>() {
+            @Override
+            public long[] create() {
+                return new long[2];
+            }
+
+            @Override
+            public void add(long[] acc, int loanID, int borrowerID, BookItem item, long issueDay, long dueDay,
+                    long returnDay) {
+                acc[returnDay == CirculationAnalytics.OPEN ? 1 : 0]++;
+            }
+
+            @Override
+            public long[] merge(long[] left, long[] right) {
+                left[0] += right[0];
+                left[1] += right[1];
+                return left;
+            }
+        });
+        assertEquals(5, counts[0]);
+        assertEquals(1, counts[1]);
+    }
+}
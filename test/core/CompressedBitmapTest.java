@@ -0,0 +1,98 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CompressedBitmapTest {
+
+    // Sparse chunks, a dense chunk and members past the first 64K
+    private static BitSet members(Random rnd, int denseChunk) {
+        BitSet set = new BitSet();
+        for (int i = 0; i < 3_000; i++) {
+            set.set(rnd.nextInt(5 << 16));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            set.set((denseChunk << 16) + rnd.nextInt(1 << 16));
+        }
+        return set;
+    }
+
+    private static CompressedBitmap of(BitSet set) {
+        CompressedBitmap b = new CompressedBitmap();
+        set.stream().forEach(b::add);
+        return b;
+    }
+
+    private static void assertSame(BitSet expected, CompressedBitmap actual) {
+        assertEquals(expected.cardinality(), actual.getCardinality());
+        assertArrayEquals(expected.stream().toArray(), actual.toArray(0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void addAndRemoveAcrossTheDenseThreshold() {
+        CompressedBitmap b = new CompressedBitmap();
+        BitSet expected = new BitSet();
+        for (int id = 0; id < 10_000; id += 2) {
+            assertTrue(b.add(id));
+            expected.set(id);
+        }
+        assertFalse(b.add(0));
+        assertSame(expected, b);
+        // Back below the threshold, and empty again
+        for (int id = 0; id < 10_000; id += 4) {
+            assertTrue(b.remove(id));
+            expected.clear(id);
+        }
+        assertFalse(b.remove(0));
+        assertSame(expected, b);
+        assertTrue(b.contains(2));
+        assertFalse(b.contains(4));
+        expected.stream().forEach(b::remove);
+        assertTrue(b.isEmpty());
+    }
+
+    @Test
+    void setOperationsMatchBitSet() {
+        Random rnd = new Random(11);
+        for (int round = 0; round < 5; round++) {
+            BitSet x = members(rnd, 1);
+            BitSet y = members(rnd, round % 2 == 0 ? 1 : 3);
+            CompressedBitmap a = of(x);
+            CompressedBitmap b = of(y);
+
+            BitSet and = (BitSet) x.clone();
+            and.and(y);
+            BitSet or = (BitSet) x.clone();
+            or.or(y);
+            assertSame(and, a.and(b));
+            assertSame(and, b.and(a));
+            assertSame(or, a.or(b));
+            assertEquals(and.cardinality(), a.andCardinality(b));
+            assertEquals(and.cardinality(), a.forProbing().andCardinality(b));
+            assertSame(and, b.and(a.forProbing()));
+            // Operands are left alone
+            assertSame(x, a);
+            assertSame(y, b);
+        }
+    }
+
+    @Test
+    void pagesInAscendingOrder() {
+        BitSet set = members(new Random(5), 2);
+        CompressedBitmap b = of(set);
+        int[] all = set.stream().toArray();
+        int[] page = b.toArray(19_000, 100);
+        assertArrayEquals(Arrays.copyOfRange(all, 19_000, 19_100), page);
+        assertEquals(0, b.toArray(all.length, 10).length);
+        long[] sum = new long[1];
+        b.forEach(id -> sum[0] += id);
+        assertEquals(set.stream().asLongStream().sum(), sum[0]);
+    }
+}
@@ -0,0 +1,75 @@
+package core;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import transactions.Hold;
+import transactions.Loan;
+import users.Borrower;
+import users.Person;
+
+// A canonical text dump of a database, for comparing a live one with its recovery
+final class DatabaseState {
+    private DatabaseState() {
+    }
+
+    static String of(LibraryDatabase db) {
+        StringBuilder sb = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        synchronized (db.getAuthors()) {
+            for (Author a : db.getAuthors()) {
+                lines.add("author " + a.getAuthorID() + ' ' + a.getName());
+            }
+        }
+        synchronized (db.getCatalog()) {
+            for (BookTitle t : db.getCatalog()) {
+                lines.add("title " + t.getIsbn() + ' ' + t.getTitle() + " by " + t.getAuthorNames() + ' '
+                        + t.getAvailableCount() + '/' + t.getTotalCopies());
+            }
+        }
+        synchronized (db.getInventory()) {
+            for (BookItem i : db.getInventory()) {
+                lines.add("item " + i.getBarcode() + ' ' + i.getBookTitle().getIsbn() + ' ' + i.getStatus() + ' '
+                        + i.getPurchaseDate());
+            }
+        }
+        synchronized (db.getPersons()) {
+            for (Person p : db.getPersons()) {
+                String line = "person " + p.getId() + ' ' + p.getRoleType() + ' ' + p.getName();
+                if (p instanceof Borrower b) {
+                    line += " history";
+                    for (Loan l : b.getLoanHistory()) {
+                        line += " " + l.getLoanID() + ':' + l.getBookItem().getBarcode() + ':' + l.getIssueDate()
+                                + ':' + l.getDueDate() + ':' + l.getReturnDate();
+                    }
+                }
+                lines.add(line);
+            }
+        }
+        lines.sort(null);
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+
+        List<Loan> loans = new ArrayList<>(db.getAllLoans());
+        loans.sort(Comparator.comparingInt(Loan::getLoanID));
+        for (Loan l : loans) {
+            sb.append("loan ").append(l.getLoanID()).append(' ').append(l.getBorrower().getId()).append(' ')
+                    .append(l.getBookItem().getBarcode()).append(' ').append(l.getDueDate()).append('\n');
+        }
+        List<Hold> holds = db.getHolds().allHolds();
+        holds.sort(Comparator.comparingInt(Hold::getHoldID));
+        for (Hold h : holds) {
+            sb.append("hold ").append(h.getHoldID()).append(' ').append(h.getState()).append(' ')
+                    .append(h.getBorrower().getId()).append(' ').append(h.getBookTitle().getIsbn()).append(' ')
+                    .append(h.getExpiryDate()).append(' ')
+                    .append(h.getReadyItem() == null ? "-" : h.getReadyItem().getBarcode())
+                    .append(" #").append(db.getHoldPosition(h)).append('\n');
+        }
+        sb.append("next loan ").append(db.peekNextLoanId()).append('\n');
+        return sb.toString();
+    }
+}
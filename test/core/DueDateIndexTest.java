@@ -0,0 +1,95 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import transactions.Loan;
+import users.Borrower;
+
+class DueDateIndexTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 6, 10);
+
+    private final BookTitle title = new BookTitle("978-1", "The Word for World Is Forest", "Science Fiction", "Berkley");
+    private final Borrower selver = new Borrower(4, "Selver", "pw", "selver@athshe.org");
+    private int nextId = 1;
+
+    private Loan dueIn(int days) {
+        int id = nextId++;
+        return new Loan(id, selver, new BookItem("C" + id, title), DAY.minusDays(14), DAY.plusDays(days));
+    }
+
+    @Test
+    void rangesComeBackEarliestFirst() {
+        DueDateIndex index = new DueDateIndex();
+        Loan late = dueIn(-3);
+        Loan yesterday = dueIn(-1);
+        Loan today = dueIn(0);
+        Loan tomorrow = dueIn(1);
+        Loan later = dueIn(10);
+        for (Loan l : List.of(later, today, late, tomorrow, yesterday)) {
+            index.add(l);
+        }
+
+        assertEquals(List.of(late, yesterday), index.dueBefore(DAY));
+        assertEquals(List.of(today, tomorrow), index.dueBetween(DAY, DAY.plusDays(1)));
+        assertEquals(List.of(later), index.dueBetween(DAY.plusDays(2), DAY.plusDays(30)));
+
+        index.remove(yesterday);
+        index.remove(yesterday);
+        assertEquals(List.of(late), index.dueBefore(DAY));
+    }
+
+    @Test
+    void purgeOnlyDropsEmptyPastDays() {
+        DueDateIndex index = new DueDateIndex();
+        Loan late = dueIn(-2);
+        Loan gone = dueIn(-1);
+        index.add(late);
+        index.add(gone);
+        index.remove(gone);
+        index.purgeBefore(DAY);
+        assertEquals(List.of(late), index.dueBefore(DAY));
+        // A loan landing on a purged day is still found
+        Loan again = dueIn(-1);
+        index.add(again);
+        assertEquals(List.of(late, again), index.dueBefore(DAY));
+    }
+
+    @Test
+    void sweepReportsOverdueAndDueSoonLoans() {
+        LibraryDatabase db = new LibraryDatabase(true);
+        db.addBookTitle(title);
+        db.addPerson(selver);
+        List<Loan> loans = new ArrayList<>();
+        for (int days : new int[] { -5, 0, 1, 2, 9 }) {
+            Loan l = dueIn(days);
+            db.addBookItem(l.getBookItem());
+            db.restoreLoan(l, true);
+            loans.add(l);
+        }
+        db.returnLoan(loans.get(4).getBookItem(), DAY);
+
+        List<OverdueSweeper.Report> heard = new ArrayList<>();
+        OverdueSweeper sweeper = new OverdueSweeper(db, 1, heard::add);
+        OverdueSweeper.Report r = sweeper.sweep(DAY);
+
+        assertEquals(DAY, r.getDate());
+        assertEquals(List.of(loans.get(0)), r.getOverdue());
+        assertEquals(List.of(loans.get(1), loans.get(2)), r.getDueSoon());
+        assertTrue(r.getExpiredHolds().isEmpty());
+        assertSame(r, sweeper.getLastReport());
+        assertEquals(List.of(r), heard);
+
+        // A day later the one due yesterday is overdue too
+        OverdueSweeper.Report next = sweeper.sweep(DAY.plusDays(1));
+        assertEquals(List.of(loans.get(0), loans.get(1)), next.getOverdue());
+        assertEquals(List.of(loans.get(2), loans.get(3)), next.getDueSoon());
+    }
+}
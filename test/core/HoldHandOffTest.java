@@ -0,0 +1,202 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transactions.Hold;
+import transactions.Loan;
+import users.Borrower;
+
+// Copies set aside for holds: expiry, withdrawal and status changes pass them on
+class HoldHandOffTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    @TempDir
+    Path dir;
+
+    private final LibraryDatabase db = new LibraryDatabase(true);
+    private final BookTitle title = new BookTitle("978-1", "Tehanu", "Fantasy", "Atheneum");
+    private final Borrower ged = new Borrower(4, "Ged", "pw", "ged@roke.org");
+    private final Borrower tenar = new Borrower(5, "Tenar", "pw", "tenar@atuan.org");
+    private final Borrower therru = new Borrower(6, "Therru", "pw", "therru@gont.org");
+    private final Borrower ogion = new Borrower(7, "Ogion", "pw", "ogion@re-albi.org");
+
+    private void stock(String... barcodes) {
+        db.addBookTitle(title);
+        for (String b : barcodes) {
+            db.addBookItem(new BookItem(b, title, DAY.minusYears(1)));
+        }
+        for (Borrower b : List.of(ged, tenar, therru, ogion)) {
+            db.addPerson(b);
+        }
+    }
+
+    private BookItem copy(String barcode) {
+        return db.findItemByBarcode(barcode);
+    }
+
+    // Types of the events published from 'from' on, once delivered
+    private static List<LibraryEventRing.Type> events(LibraryEventRing ring, long from) throws InterruptedException {
+        List<LibraryEventRing.Type> types = new ArrayList<>();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", from, 64, e -> {
+            synchronized (types) {
+                types.add(e.getType());
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sub.getSequence() < ring.getCursor() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        sub.close();
+        synchronized (types) {
+            return new ArrayList<>(types);
+        }
+    }
+
+    @Test
+    void lapsedPickupPassesTheCopyOnAndReportsIt() throws Exception {
+        stock("C1");
+        LibraryEventRing ring = new LibraryEventRing(1024);
+        db.attachEvents(ring);
+        db.issueLoan(ogion, copy("C1"));
+        Hold first = db.placeHold(ged, title, DAY, 0);
+        Hold second = db.placeHold(tenar, title, DAY, 0);
+        db.returnLoan(copy("C1"), DAY);
+        assertSame(copy("C1"), first.getReadyItem());
+
+        long from = ring.getCursor();
+        OverdueSweeper.Report report = new OverdueSweeper(db, 1, null)
+                .sweep(DAY.plusDays(HoldRegistry.PICKUP_DAYS + 1));
+
+        assertEquals(List.of(first), report.getExpiredHolds());
+        assertEquals(Hold.State.EXPIRED, first.getState());
+        assertEquals(List.of(second), report.getPromotedHolds());
+        assertEquals(Hold.State.READY, second.getState());
+        assertSame(copy("C1"), second.getReadyItem());
+        assertEquals(BookStatus.ON_HOLD, copy("C1").getStatus());
+        assertEquals(List.of(LibraryEventRing.Type.HOLD_CLOSED, LibraryEventRing.Type.HOLD_READY), events(ring, from));
+    }
+
+    @Test
+    void lostReadyCopyIsReplacedFromTheShelf() {
+        stock("C1", "C2");
+        db.issueLoan(ogion, copy("C1"));
+        db.issueLoan(therru, copy("C2"));
+        Hold h = db.placeHold(ged, title, DAY, 0);
+        db.returnLoan(copy("C1"), DAY);
+        db.returnLoan(copy("C2"), DAY);
+        assertEquals(BookStatus.AVAILABLE, copy("C2").getStatus());
+
+        db.setItemStatus(copy("C1"), BookStatus.LOST, DAY.plusDays(1));
+
+        assertEquals(BookStatus.LOST, copy("C1").getStatus());
+        assertEquals(Hold.State.READY, h.getState());
+        assertSame(copy("C2"), h.getReadyItem());
+        assertEquals(DAY.plusDays(1 + HoldRegistry.PICKUP_DAYS), h.getExpiryDate());
+        assertEquals(BookStatus.ON_HOLD, copy("C2").getStatus());
+    }
+
+    @Test
+    void copyBackOnTheShelfGoesToTheQueue() {
+        stock("C1");
+        db.setItemStatus(copy("C1"), BookStatus.LOST, DAY);
+        Hold h = db.placeHold(ged, title, DAY, 0);
+        assertEquals(Hold.State.WAITING, h.getState());
+
+        db.setItemStatus(copy("C1"), BookStatus.AVAILABLE, DAY.plusDays(2));
+
+        assertSame(copy("C1"), h.getReadyItem());
+        assertEquals(BookStatus.ON_HOLD, copy("C1").getStatus());
+        assertEquals(0, db.getHoldQueueLength(title));
+    }
+
+    @Test
+    void removingTheHolderPassesTheirCopyOn() {
+        stock("C1");
+        Hold first = db.placeHold(ged, title, DAY, 0);
+        Hold second = db.placeHold(tenar, title, DAY, 0);
+        assertSame(copy("C1"), first.getReadyItem());
+
+        assertTrue(db.removePerson(ged, DAY.plusDays(1)));
+
+        assertEquals(Hold.State.CANCELLED, first.getState());
+        assertSame(copy("C1"), second.getReadyItem());
+        assertEquals(DAY.plusDays(1 + HoldRegistry.PICKUP_DAYS), second.getExpiryDate());
+    }
+
+    @Test
+    void failedIssueKeepsTheHold() {
+        stock("C1", "C2", "C3");
+        Hold h = db.placeHold(ged, title, DAY, 0);
+        assertSame(copy("C1"), h.getReadyItem());
+        // An open loan registered on the held copy (e.g. by an import)
+        assertTrue(db.addLoan(new Loan(db.nextLoanId(), tenar, copy("C1"))));
+
+        assertNull(db.issueLoan(ged, copy("C1")));
+        assertEquals(Hold.State.READY, h.getState());
+        assertSame(h, db.findReadyHold(copy("C1")));
+        assertEquals(BookStatus.ON_HOLD, copy("C1").getStatus());
+
+        // Nor does an issue fail on a loan ID addLoan took
+        int taken = db.peekNextLoanId();
+        assertTrue(db.addLoan(new Loan(taken, tenar, copy("C3"))));
+        Loan issued = db.issueLoan(therru, copy("C2"));
+        assertNotEquals(taken, issued.getLoanID());
+    }
+
+    @Test
+    void cancellingAClosedHoldChangesNothing() {
+        stock("C1");
+        LibraryEventRing ring = new LibraryEventRing(1024);
+        db.attachEvents(ring);
+        Hold h = db.placeHold(ged, title, DAY, 0);
+        assertTrue(db.cancelHold(h, DAY));
+        assertEquals(BookStatus.AVAILABLE, copy("C1").getStatus());
+
+        long published = ring.getCursor();
+        assertFalse(db.cancelHold(h, DAY));
+        assertEquals(published, ring.getCursor());
+        assertNull(db.findHoldById(h.getHoldID()));
+    }
+
+    @Test
+    void replayRedoesHandOffsOnTheJournaledDay() throws IOException {
+        Path path = dir.resolve("library.journal");
+        LibraryJournal journal = LibraryJournal.open(path, LibraryJournal.SyncPolicy.NONE, 20);
+        db.attachJournal(journal);
+        stock("C1", "C2", "C3");
+        db.issueLoan(ogion, copy("C3"));
+        db.placeHold(ged, title, DAY, 0);
+        db.placeHold(tenar, title, DAY, 0);
+        db.placeHold(therru, title, DAY, 0);
+        db.returnLoan(copy("C3"), DAY);
+
+        db.removeBookItem(copy("C1"), DAY.plusDays(1));
+        db.setItemStatus(copy("C2"), BookStatus.LOST, DAY.plusDays(2));
+        db.removePerson(tenar, DAY.plusDays(3));
+        db.setItemStatus(copy("C2"), BookStatus.AVAILABLE, DAY.plusDays(4));
+        String live = DatabaseState.of(db);
+        journal.close();
+
+        LibraryDatabase replayed = new LibraryDatabase(true);
+        try (LibraryJournal j = LibraryJournal.open(path, LibraryJournal.SyncPolicy.NONE, 20)) {
+            j.replay(replayed, 0);
+        }
+        assertEquals(live, DatabaseState.of(replayed));
+    }
+}
@@ -0,0 +1,154 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transactions.Hold;
+import users.Borrower;
+
+// Desks racing on the same few titles: replaying the journal must rebuild the
+// live state, and the event stream must follow the journal
+class JournalOrderingTest {
+    private static final int DESKS = 4;
+    private static final int STEPS = 20_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentCirculationReplaysToTheSameState() throws Exception {
+        Path path = dir.resolve("library.journal");
+        LibraryDatabase db = new LibraryDatabase(true);
+        LibraryJournal journal = LibraryJournal.open(path, LibraryJournal.SyncPolicy.NONE, 20);
+        db.attachJournal(journal);
+
+        List<BookTitle> titles = new ArrayList<>();
+        List<BookItem> items = new ArrayList<>();
+        List<Borrower> borrowers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BookTitle t = new BookTitle("978-" + i, "Title " + i, "Genre", "Publisher");
+            db.addBookTitle(t);
+            titles.add(t);
+            for (int k = 0; k <= i % 3; k++) {
+                BookItem item = new BookItem("B" + i + "-" + k, t);
+                db.addBookItem(item);
+                items.add(item);
+            }
+        }
+        for (int i = 0; i < 30; i++) {
+            Borrower b = new Borrower(100 + i, "Borrower " + i, "pw", "b" + i + "@lib.com");
+            db.addPerson(b);
+            borrowers.add(b);
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Thread> desks = new ArrayList<>();
+        for (int d = 0; d < DESKS; d++) {
+            Random rnd = new Random(d);
+            boolean sweeper = d == 0;
+            desks.add(new Thread(() -> {
+                for (int step = 0; step < STEPS; step++) {
+                    BookItem item = items.get(rnd.nextInt(items.size()));
+                    Borrower b = borrowers.get(rnd.nextInt(borrowers.size()));
+                    switch (rnd.nextInt(8)) {
+                        case 0, 1 -> db.issueLoan(b, item);
+                        case 2, 3 -> db.returnLoan(item, today);
+                        case 4 -> db.placeHold(b, titles.get(rnd.nextInt(titles.size())), today, 0);
+                        case 5 -> {
+                            Hold h = db.findReadyHold(item);
+                            if (h != null)
+                                db.issueLoan(h.getBorrower(), item);
+                        }
+                        case 6 -> {
+                            List<Hold> mine = db.findHoldsByBorrower(b);
+                            if (!mine.isEmpty())
+                                db.cancelHold(mine.get(0), today);
+                        }
+                        default -> {
+                            if (sweeper && rnd.nextInt(50) == 0)
+                                db.expireHolds(today.plusDays(1 + rnd.nextInt(200)));
+                        }
+                    }
+                }
+            }));
+        }
+        desks.forEach(Thread::start);
+        for (Thread t : desks) {
+            t.join();
+        }
+        String live = DatabaseState.of(db);
+        journal.close();
+
+        LibraryDatabase replayed = new LibraryDatabase(true);
+        try (LibraryJournal again = LibraryJournal.open(path, LibraryJournal.SyncPolicy.NONE, 20)) {
+            again.replay(replayed);
+        }
+        assertEquals(live, DatabaseState.of(replayed));
+    }
+
+    @Test
+    void eventsOfOneCopyFollowTheJournal() throws Exception {
+        LibraryDatabase db = new LibraryDatabase(true);
+        LibraryJournal journal = LibraryJournal.open(dir.resolve("library.journal"),
+                LibraryJournal.SyncPolicy.EVERY_COMMIT, 20);
+        db.attachJournal(journal);
+        LibraryEventRing ring = new LibraryEventRing(1 << 16);
+        db.attachEvents(ring);
+        BookTitle t = new BookTitle("978-1", "Title", "Genre", "Publisher");
+        db.addBookTitle(t);
+        BookItem item = new BookItem("B1", t);
+        db.addBookItem(item);
+        List<Borrower> borrowers = new ArrayList<>();
+        for (int d = 0; d < DESKS; d++) {
+            Borrower b = new Borrower(100 + d, "Borrower " + d, "pw", "b" + d + "@lib.com");
+            db.addPerson(b);
+            borrowers.add(b);
+        }
+
+        List<LibraryEventRing.Type> seen = new ArrayList<>();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", ring.getCursor(), 64, e -> {
+            if (e.getType() == LibraryEventRing.Type.LOAN_ISSUED || e.getType() == LibraryEventRing.Type.LOAN_RETURNED)
+                seen.add(e.getType());
+        });
+        AtomicInteger changes = new AtomicInteger();
+        List<Thread> desks = new ArrayList<>();
+        for (Borrower b : borrowers) {
+            desks.add(new Thread(() -> {
+                for (int step = 0; step < 500; step++) {
+                    if (db.issueLoan(b, item) != null)
+                        changes.incrementAndGet();
+                    if (db.returnLoan(item) != null)
+                        changes.incrementAndGet();
+                }
+            }));
+        }
+        desks.forEach(Thread::start);
+        for (Thread d : desks) {
+            d.join();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sub.getSequence() < ring.getCursor() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        sub.close();
+        journal.close();
+
+        assertTrue(changes.get() > 0);
+        assertEquals(changes.get(), seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i % 2 == 0 ? LibraryEventRing.Type.LOAN_ISSUED : LibraryEventRing.Type.LOAN_RETURNED,
+                    seen.get(i), "event " + i);
+        }
+    }
+}
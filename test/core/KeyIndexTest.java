@@ -0,0 +1,122 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import users.Borrower;
+
+class KeyIndexTest {
+
+    // Keys are the records themselves
+    private static KeyIndex<String> index() {
+        return new KeyIndex<>(s -> s);
+    }
+
+    @Test
+    void keysAreUnique() {
+        KeyIndex<String> index = index();
+        String first = new String("b1");
+        assertTrue(index.add(first));
+        assertFalse(index.add(new String("b1")));
+        assertSame(first, index.get("b1"));
+        assertEquals(1, index.size());
+
+        // Only the indexed instance removes
+        assertFalse(index.remove(new String("b1")));
+        assertTrue(index.remove(first));
+        assertNull(index.get("b1"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void removalKeepsCollidingKeysReachable() {
+        KeyIndex<String> index = index();
+        // "Aa" and "BB" share a hashCode, as do all their concatenations
+        List<String> colliding = List.of("AaAa", "AaBB", "BBAa", "BBBB");
+        colliding.forEach(index::add);
+        index.add("other");
+
+        assertTrue(index.remove("AaBB"));
+        assertSame("AaAa", index.get("AaAa"));
+        assertSame("BBAa", index.get("BBAa"));
+        assertSame("BBBB", index.get("BBBB"));
+        assertNull(index.get("AaBB"));
+        assertTrue(index.remove("AaAa"));
+        assertSame("BBBB", index.get("BBBB"));
+    }
+
+    @Test
+    void lookupsUseTheStoredKey() {
+        AtomicInteger keyed = new AtomicInteger();
+        KeyIndex<String> index = new KeyIndex<>(s -> {
+            keyed.incrementAndGet();
+            return s;
+        });
+        for (int i = 0; i < 100; i++) {
+            index.add("k" + i);
+        }
+        int afterAdds = keyed.get();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("k" + i, index.get("k" + i));
+        }
+        assertNull(index.get("k100"));
+        assertEquals(afterAdds, keyed.get());
+    }
+
+    @Test
+    void matchesAMapThroughGrowthAndChurn() {
+        KeyIndex<String> index = index();
+        List<String> live = new ArrayList<>();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            if (!live.isEmpty() && rnd.nextInt(3) == 0) {
+                assertTrue(index.remove(live.remove(rnd.nextInt(live.size()))));
+            } else {
+                String key = "k" + i;
+                assertTrue(index.add(key));
+                live.add(key);
+            }
+        }
+        assertEquals(live.size(), index.size());
+        for (String key : live) {
+            assertSame(key, index.get(key));
+        }
+        assertNull(index.get("k-missing"));
+    }
+
+    @Test
+    void databaseLookupsIgnoreCase() {
+        LibraryDatabase db = new LibraryDatabase(true);
+        Author a = new Author(1, "Ursula K. Le Guin");
+        BookTitle t = new BookTitle("978-0-SBN", "The Dispossessed", "Science Fiction", "Harper");
+        BookItem copy = new BookItem("BC-100", t);
+        Borrower shevek = new Borrower(42, "Shevek", "pw", "shevek@anarres.org");
+        assertTrue(db.addAuthor(a));
+        assertTrue(db.addBookTitle(t));
+        assertTrue(db.addBookItem(copy));
+        assertTrue(db.addPerson(shevek));
+
+        assertSame(a, db.findAuthorByName("ursula k. le guin"));
+        assertSame(t, db.findBookByISBN("978-0-sbn"));
+        assertSame(copy, db.findItemByBarcode("bc-100"));
+        assertSame(shevek, db.findPersonById(42));
+        assertFalse(db.addBookTitle(new BookTitle("978-0-sbn", "Duplicate", "X", "Y")));
+        assertFalse(db.addBookItem(new BookItem("bc-100", t)));
+        assertFalse(db.addPerson(new Borrower(42, "Takver", "pw", "takver@anarres.org")));
+
+        assertTrue(db.removeBookItem(copy));
+        assertNull(db.findItemByBarcode("BC-100"));
+        assertSame(t, db.findBookByISBN("978-0-SBN"));
+    }
+}
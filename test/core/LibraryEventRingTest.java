@@ -0,0 +1,205 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class LibraryEventRingTest {
+
+    // Collects the sequence and subject of every delivered event
+    private static class Recorder implements LibraryEventRing.Handler {
+        final List<Long> sequences = new ArrayList<>();
+        final List<Object> subjects = new ArrayList<>();
+        final AtomicLong lost = new AtomicLong();
+        volatile CountDownLatch arrived = new CountDownLatch(0);
+
+        @Override
+        public synchronized void onEvent(LibraryEventRing.Event e) {
+            sequences.add(e.getSequence());
+            subjects.add(e.getSubject());
+            arrived.countDown();
+        }
+
+        @Override
+        public void onOverrun(long count) {
+            lost.addAndGet(count);
+        }
+    }
+
+    private static void awaitSequence(LibraryEventRing.Subscription sub, long target) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sub.getSequence() < target && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(target, sub.getSequence());
+    }
+
+    @Test
+    void concurrentPublishersAreDeliveredInSequenceOrder() throws Exception {
+        LibraryEventRing ring = new LibraryEventRing(1 << 18);
+        Recorder rec = new Recorder();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", 0, 64, rec);
+
+        int publishers = 4;
+        int each = 20_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < publishers; p++) {
+            int id = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < each; i++) {
+                    ring.publish(LibraryEventRing.Type.LOAN_ISSUED, id * each + i, null);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        awaitSequence(sub, publishers * each);
+        sub.close();
+
+        synchronized (rec) {
+            assertEquals(publishers * each, rec.sequences.size());
+            int[] last = new int[publishers];
+            Arrays.fill(last, -1);
+            for (int i = 0; i < rec.sequences.size(); i++) {
+                assertEquals(i, rec.sequences.get(i));
+                int v = (Integer) rec.subjects.get(i);
+                assertTrue(v % each > last[v / each], "publisher order");
+                last[v / each] = v % each;
+            }
+        }
+        assertEquals(0, rec.lost.get());
+    }
+
+    @Test
+    void idleConsumerParksUntilThePublish() throws Exception {
+        LibraryEventRing ring = new LibraryEventRing(16);
+        Recorder rec = new Recorder();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", 0, 64, rec);
+        Thread consumer = null;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("events-test"))
+                consumer = t;
+        }
+
+        // With nothing to read the consumer waits untimed, not on a polling timer
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (consumer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, consumer.getState());
+
+        rec.arrived = new CountDownLatch(1);
+        ring.publish(LibraryEventRing.Type.TITLE_ADDED, "t", null);
+        assertTrue(rec.arrived.await(10, TimeUnit.SECONDS));
+        sub.close();
+        consumer.join(10_000);
+        assertFalse(consumer.isAlive());
+    }
+
+    @Test
+    void failingHandlerIsReportedAndTheStreamGoesOn() throws Exception {
+        LibraryEventRing ring = new LibraryEventRing(16);
+        List<Object> delivered = new ArrayList<>();
+        List<Object> failed = new ArrayList<>();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", 0, 64, new LibraryEventRing.Handler() {
+            @Override
+            public void onEvent(LibraryEventRing.Event e) {
+                if ("bad".equals(e.getSubject()))
+                    throw new IllegalStateException("boom");
+                synchronized (delivered) {
+                    delivered.add(e.getSubject());
+                }
+            }
+
+            @Override
+            public void onError(LibraryEventRing.Event e, RuntimeException failure) {
+                synchronized (failed) {
+                    failed.add(e.getSubject());
+                }
+            }
+        });
+        ring.publish(LibraryEventRing.Type.TITLE_ADDED, "a", null);
+        ring.publish(LibraryEventRing.Type.TITLE_ADDED, "bad", null);
+        ring.publish(LibraryEventRing.Type.TITLE_ADDED, "b", null);
+        awaitSequence(sub, 3);
+        sub.close();
+
+        assertEquals(List.of("a", "b"), delivered);
+        assertEquals(List.of("bad"), failed);
+        assertEquals(1, sub.getErrorCount());
+    }
+
+    @Test
+    void lappedConsumerIsToldHowManyEventsItLost() throws Exception {
+        LibraryEventRing ring = new LibraryEventRing(8);
+        for (int i = 0; i < 20; i++) {
+            ring.publish(LibraryEventRing.Type.LOAN_RETURNED, i, null);
+        }
+        Recorder rec = new Recorder();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", 0, 64, rec);
+        awaitSequence(sub, 20);
+        sub.close();
+
+        assertEquals(12, rec.lost.get());
+        assertEquals(12, sub.getLostCount());
+        synchronized (rec) {
+            assertEquals(List.of(12, 13, 14, 15, 16, 17, 18, 19), rec.subjects);
+        }
+    }
+
+    @Test
+    void claimedSequencesHoldBackLaterEvents() throws Exception {
+        LibraryEventRing ring = new LibraryEventRing(8);
+        Recorder rec = new Recorder();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", 0, 64, rec);
+        long first = ring.claim(2);
+        ring.publish(LibraryEventRing.Type.TITLE_ADDED, "c", null);
+        Thread.sleep(20);
+        assertEquals(0, sub.getSequence());
+
+        ring.publish(first + 1, LibraryEventRing.Type.TITLE_ADDED, "b", null);
+        ring.publish(first, LibraryEventRing.Type.TITLE_ADDED, "a", null);
+        awaitSequence(sub, 3);
+        synchronized (rec) {
+            assertEquals(List.of("a", "b", "c"), rec.subjects);
+        }
+        sub.close();
+    }
+
+    @Test
+    void publishingALapAheadWaitsForALateClaim() throws Exception {
+        LibraryEventRing ring = new LibraryEventRing(8);
+        long late = ring.claim(1);
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                ring.publish(LibraryEventRing.Type.TITLE_ADDED, i, null);
+            }
+        });
+        publisher.start();
+        publisher.join(50);
+        // Stuck on the slot the late claim still owes
+        assertTrue(publisher.isAlive());
+        ring.publish(late, LibraryEventRing.Type.TITLE_ADDED, "late", null);
+        publisher.join();
+
+        Recorder rec = new Recorder();
+        LibraryEventRing.Subscription sub = ring.subscribe("test", 0, 64, rec);
+        awaitSequence(sub, ring.getCursor());
+        assertEquals(ring.getCursor() - ring.getCapacity(), rec.lost.get());
+        synchronized (rec) {
+            assertEquals(ring.getCapacity(), rec.subjects.size());
+            assertEquals(19, rec.subjects.get(rec.subjects.size() - 1));
+        }
+        sub.close();
+    }
+}
@@ -0,0 +1,106 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import users.Admin;
+import users.Borrower;
+import users.Librarian;
+
+class LibraryHttpServerTest {
+    private LibraryDatabase db;
+    private LibraryHttpServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        db = new LibraryDatabase(true);
+        db.addPerson(new Admin(1, "Admin", "admin123", "admin@lib.com", 5000));
+        db.addPerson(new Librarian(2, "Staff", "staff1", "staff@lib.com", 3000));
+        db.addPerson(new Borrower(4, "Charlie", "pass1", "charlie@gmail.com"));
+        server = new LibraryHttpServer(db, 0, 4);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<String> call(String method, String path, String user, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        if (user != null) {
+            req.header("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(user.getBytes(StandardCharsets.UTF_8)));
+        }
+        return client.send(req.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void requestsNeedALogin() throws Exception {
+        assertEquals(401, call("GET", "/api/catalog", null, null).statusCode());
+        assertEquals(401, call("GET", "/api/catalog", "4:wrong", null).statusCode());
+        assertEquals(200, call("GET", "/api/catalog", "4:pass1", null).statusCode());
+    }
+
+    @Test
+    void adminAddsATitleThatMembersCanSearch() throws Exception {
+        String title = "{\"isbn\":\"978-1\",\"title\":\"The Left Hand of Darkness\",\"genre\":\"SF\",\"publisher\":\"Ace\"}";
+        assertEquals(403, call("POST", "/api/titles", "4:pass1", title).statusCode());
+        assertEquals(201, call("POST", "/api/titles", "1:admin123", title).statusCode());
+        assertEquals(409, call("POST", "/api/titles", "1:admin123", title).statusCode());
+
+        HttpResponse<String> found = call("GET", "/api/catalog?q=darkness", "4:pass1", null);
+        assertEquals(200, found.statusCode());
+        assertTrue(found.body().contains("\"isbn\":\"978-1\""));
+        assertEquals(404, call("GET", "/api/titles/978-2", "4:pass1", null).statusCode());
+        assertEquals(400, call("POST", "/api/titles", "1:admin123", "{\"isbn\":\"978-3\"}").statusCode());
+    }
+
+    @Test
+    void newAuthorsGetTheNextId() throws Exception {
+        db.addAuthor(new Author(41, "Ursula K. Le Guin"));
+        HttpResponse<String> first = call("POST", "/api/authors", "1:admin123", "{\"name\":\"Iain M. Banks\"}");
+        assertEquals(201, first.statusCode());
+        assertTrue(first.body().contains("\"id\":42"));
+        assertTrue(call("POST", "/api/authors", "1:admin123", "{\"name\":\"Octavia E. Butler\"}").body()
+                .contains("\"id\":43"));
+        assertEquals(409, call("POST", "/api/authors", "1:admin123", "{\"name\":\"Iain M. Banks\"}").statusCode());
+    }
+
+    @Test
+    void deskIssuesAndReturnsACopy() throws Exception {
+        BookTitle t = new BookTitle("978-1", "The Left Hand of Darkness", "SF", "Ace");
+        db.addBookTitle(t);
+        BookItem copy = new BookItem("B1", t);
+        db.addBookItem(copy);
+
+        String issue = "{\"borrowerId\":\"4\",\"barcode\":\"B1\"}";
+        assertEquals(403, call("POST", "/api/loans", "4:pass1", issue).statusCode());
+        assertEquals(201, call("POST", "/api/loans", "2:staff1", issue).statusCode());
+        assertEquals(BookStatus.LOANED, copy.getStatus());
+        assertTrue(call("GET", "/api/members/4/loans", "4:pass1", null).body().contains("\"barcode\":\"B1\""));
+        assertEquals(409, call("DELETE", "/api/titles/978-1", "1:admin123", null).statusCode());
+
+        assertEquals(200, call("POST", "/api/returns", "2:staff1", "{\"barcode\":\"B1\"}").statusCode());
+        assertEquals(BookStatus.AVAILABLE, copy.getStatus());
+        assertEquals(204, call("DELETE", "/api/titles/978-1", "1:admin123", null).statusCode());
+    }
+}
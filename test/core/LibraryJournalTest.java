@@ -0,0 +1,215 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import enums.BookStatus;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import transactions.Loan;
+import users.Borrower;
+
+class LibraryJournalTest {
+    private static final LocalDate BOUGHT = LocalDate.of(2019, 3, 14);
+
+    @TempDir
+    Path dir;
+
+    private LibraryJournal open(Path path) throws IOException {
+        return LibraryJournal.open(path, LibraryJournal.SyncPolicy.EVERY_COMMIT, 20);
+    }
+
+    // Author, title, two copies (one bought long ago), a borrower, one open and one returned loan
+    private void populate(LibraryDatabase db) {
+        Author a = new Author(1, "Ursula K. Le Guin");
+        db.addAuthor(a);
+        BookTitle t = new BookTitle("978-1", "A Wizard of Earthsea", "Fantasy", "Parnassus");
+        t.addAuthor(a);
+        db.addBookTitle(t);
+        db.addBookItem(new BookItem("B1", t, BOUGHT));
+        db.addBookItem(new BookItem("B2", t));
+        Borrower b = new Borrower(4, "Charlie", "pass1", "charlie@gmail.com");
+        db.addPerson(b);
+        db.issueLoan(b, db.findItemByBarcode("B1"));
+        db.issueLoan(b, db.findItemByBarcode("B2"));
+        db.returnLoan(db.findItemByBarcode("B2"));
+        db.renameBookTitle(t, "A Wizard of Earthsea (50th Anniversary)");
+    }
+
+    private static void assertPopulated(LibraryDatabase db) {
+        BookTitle t = db.findBookByISBN("978-1");
+        assertNotNull(t);
+        assertEquals("A Wizard of Earthsea (50th Anniversary)", t.getTitle());
+        assertEquals("Ursula K. Le Guin", t.getAuthorNames());
+        assertEquals(BOUGHT, db.findItemByBarcode("B1").getPurchaseDate());
+        assertEquals(BookStatus.LOANED, db.findItemByBarcode("B1").getStatus());
+        assertEquals(BookStatus.AVAILABLE, db.findItemByBarcode("B2").getStatus());
+        Loan open = db.findActiveLoanByBookItem(db.findItemByBarcode("B1"));
+        assertNotNull(open);
+        assertEquals(4, open.getBorrower().getId());
+        assertEquals(1, db.getActiveLoanCount());
+        assertEquals(2, ((Borrower) db.findPersonById(4)).getLoanHistorySize());
+    }
+
+    @Test
+    void replayRebuildsTheDatabase() throws IOException {
+        Path path = dir.resolve("library.journal");
+        LibraryDatabase db = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            db.attachJournal(journal);
+            populate(db);
+        }
+
+        LibraryDatabase replayed = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(9, journal.replay(replayed));
+        }
+        assertPopulated(replayed);
+        // The next loan ID follows the replayed ones
+        assertEquals(db.peekNextLoanId(), replayed.peekNextLoanId());
+    }
+
+    @Test
+    void tornTailIsDiscardedAndAppendsFollowTheLastGoodRecord() throws IOException {
+        Path path = dir.resolve("library.journal");
+        LibraryDatabase db = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            db.attachJournal(journal);
+            populate(db);
+            db.addPerson(new Borrower(5, "Dave", "pass2", "dave@gmail.com"));
+        }
+        // A crash halfway through the last record
+        long size = Files.size(path);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 5);
+        }
+
+        LibraryDatabase replayed = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(9, journal.replay(replayed));
+            assertNull(replayed.findPersonById(5));
+            replayed.attachJournal(journal);
+            replayed.addPerson(new Borrower(6, "Eve", "pass3", "eve@gmail.com"));
+        }
+
+        LibraryDatabase again = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(10, journal.replay(again));
+        }
+        assertPopulated(again);
+        assertNotNull(again.findPersonById(6));
+    }
+
+    @Test
+    void corruptRecordEndsTheReplay() throws IOException {
+        Path path = dir.resolve("library.journal");
+        try (LibraryJournal journal = open(path)) {
+            LibraryDatabase db = new LibraryDatabase();
+            db.attachJournal(journal);
+            populate(db);
+        }
+        // Flip a byte in the last record's payload: its CRC no longer matches
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 0x5A;
+        Files.write(path, bytes);
+
+        LibraryDatabase replayed = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(8, journal.replay(replayed));
+        }
+        assertEquals("A Wizard of Earthsea", replayed.findBookByISBN("978-1").getTitle());
+        // The bad record was cut off, so the file now replays cleanly
+        assertTrue(Files.size(path) < bytes.length);
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(8, journal.replay(new LibraryDatabase()));
+        }
+    }
+
+    // A record whose CRC checks out but whose payload is short is corruption,
+    // not a record from an older format: replay fails instead of guessing
+    @Test
+    void shortRecordFailsTheReplay() throws IOException {
+        Path path = dir.resolve("library.journal");
+        try (LibraryJournal journal = open(path)) {
+            LibraryDatabase db = new LibraryDatabase();
+            db.attachJournal(journal);
+            populate(db);
+        }
+        // ADD_ITEM without its purchase date
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(7);
+        out.writeUTF("B3");
+        out.writeUTF("978-1");
+        CRC32 crc = new CRC32();
+        crc.update(payload.toByteArray());
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(framed);
+        frame.writeInt(payload.size());
+        frame.writeInt((int) crc.getValue());
+        payload.writeTo(frame);
+        Files.write(path, framed.toByteArray(), StandardOpenOption.APPEND);
+
+        try (LibraryJournal journal = open(path)) {
+            assertThrows(EOFException.class, () -> journal.replay(new LibraryDatabase()));
+        }
+    }
+
+    @Test
+    void journalOlderThanTheSnapshotIsResetNotReplayed() throws IOException {
+        Path path = dir.resolve("library.journal");
+        try (LibraryJournal journal = open(path)) {
+            journal.reset(3);
+            LibraryDatabase db = new LibraryDatabase();
+            db.attachJournal(journal);
+            populate(db);
+        }
+
+        LibraryDatabase fromSnapshot = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(0, journal.replay(fromSnapshot, 4));
+            assertEquals(4, journal.getEpoch());
+        }
+        assertNull(fromSnapshot.findBookByISBN("978-1"));
+
+        // Reopened, it now carries the snapshot's epoch and nothing else
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(0, journal.replay(new LibraryDatabase(), 4));
+            assertEquals(4, journal.getEpoch());
+        }
+    }
+
+    @Test
+    void journalOfTheSnapshotsEpochIsReplayed() throws IOException {
+        Path path = dir.resolve("library.journal");
+        try (LibraryJournal journal = open(path)) {
+            journal.reset(4);
+            LibraryDatabase db = new LibraryDatabase();
+            db.attachJournal(journal);
+            populate(db);
+        }
+        LibraryDatabase replayed = new LibraryDatabase();
+        try (LibraryJournal journal = open(path)) {
+            assertEquals(9, journal.replay(replayed, 4));
+        }
+        assertPopulated(replayed);
+        assertSame(replayed.findBookByISBN("978-1"), replayed.findItemByBarcode("B1").getBookTitle());
+    }
+}
@@ -0,0 +1,120 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.Borrower;
+import users.Librarian;
+
+// Runs with -Dlibrary.metrics=true (see the surefire configuration)
+class LibraryMetricsTest {
+    @TempDir
+    Path dir;
+
+    private final LibraryDatabase db = new LibraryDatabase(true);
+    private final LibraryService service = new LibraryService(db);
+    private final Librarian desk = new Librarian(2, "Desk", "pw", "desk@lib.org", 0);
+
+    @BeforeEach
+    void setUp() {
+        assertTrue(LibraryMetrics.ENABLED);
+        LibraryMetrics.reset();
+        BookTitle t = new BookTitle("978-1", "The Beginning Place", "Fantasy", "Harper");
+        db.addBookTitle(t);
+        db.addBookItem(new BookItem("B1", t));
+        db.addPerson(desk);
+        db.addPerson(new Borrower(4, "Hugh", "pw", "hugh@example.org"));
+    }
+
+    // Two issues (one fails), two returns (one fails), a bad and a good login
+    private void deskTraffic() {
+        service.issue(desk, 4, "B1");
+        service.issue(desk, 4, "B1");
+        service.returnItem(desk, "B1");
+        service.returnItem(desk, "B1");
+        service.login(2, "wrong");
+        service.login(2, "pw");
+    }
+
+    @Test
+    void countsOperationsAndFailures() {
+        deskTraffic();
+        for (LibraryMetrics.Op op : List.of(LibraryMetrics.Op.ISSUE, LibraryMetrics.Op.RETURN,
+                LibraryMetrics.Op.LOGIN)) {
+            assertEquals(2, LibraryMetrics.getCount(op), op.name());
+            assertEquals(1, LibraryMetrics.getErrors(op), op.name());
+            assertEquals(2, LibraryMetrics.getLatency(op).getCount(), op.name());
+        }
+        assertEquals(0, LibraryMetrics.getCount(LibraryMetrics.Op.SEARCH));
+        LibraryMetrics.reset();
+        assertEquals(0, LibraryMetrics.getCount(LibraryMetrics.Op.ISSUE));
+    }
+
+    @Test
+    void mbeanShowsCountersAndGauges() throws Exception {
+        LibraryMetrics.registerMBean(db);
+        deskTraffic();
+        service.issue(desk, 4, "B1");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("library:type=Metrics");
+        assertEquals(1, server.getAttribute(name, "CatalogSize"));
+        assertEquals(1, server.getAttribute(name, "ActiveLoanCount"));
+        assertEquals(1, server.getAttribute(name, "ArchivedLoanCount"));
+        assertEquals(3L, entries((TabularData) server.getAttribute(name, "OperationCounts")).get("ISSUE"));
+        assertEquals(1L, entries((TabularData) server.getAttribute(name, "ErrorCounts")).get("RETURN"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, LibraryMetrics.getCount(LibraryMetrics.Op.ISSUE));
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    void operationsAreFlightRecorderEvents() throws Exception {
+        Path file = dir.resolve("ops.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("library.Operation").withThreshold(Duration.ZERO);
+            recording.start();
+            deskTraffic();
+            recording.stop();
+            recording.dump(file);
+        }
+        long failedIssues = 0;
+        int events = 0;
+        for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+            if (!e.getEventType().getName().equals("library.Operation"))
+                continue;
+            events++;
+            if (e.getString("operation").equals("ISSUE") && !e.getBoolean("ok"))
+                failedIssues++;
+        }
+        assertEquals(6, events);
+        assertEquals(1, failedIssues);
+    }
+
+    private static Map<Object, Object> entries(TabularData table) {
+        Map<Object, Object> m = new HashMap<>();
+        for (Object row : table.values()) {
+            CompositeData d = (CompositeData) row;
+            m.put(d.get("key"), d.get("value"));
+        }
+        return m;
+    }
+}
@@ -0,0 +1,205 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.Borrower;
+
+// Recovery is the last snapshot plus the journal written after it
+class LibrarySnapshotTest {
+    @TempDir
+    Path dir;
+
+    private LibraryJournal open(Path path) throws IOException {
+        return LibraryJournal.open(path, LibraryJournal.SyncPolicy.NONE, 20);
+    }
+
+    private LibraryDatabase recover(Path snapshot, Path journal) throws IOException {
+        LibraryDatabase db = new LibraryDatabase(true);
+        long epoch = LibrarySnapshot.load(snapshot, db);
+        try (LibraryJournal j = open(journal)) {
+            j.replay(db, epoch);
+        }
+        return db;
+    }
+
+    @Test
+    void snapshotPlusJournalRebuildsTheDatabase() throws IOException {
+        Path journalPath = dir.resolve("library.journal");
+        Path snapshotPath = dir.resolve("library.snapshot");
+        LibraryDatabase db = new LibraryDatabase(true);
+        LibraryJournal journal = open(journalPath);
+        db.attachJournal(journal);
+
+        Author a = new Author(1, "Ursula K. Le Guin");
+        db.addAuthor(a);
+        BookTitle t = new BookTitle("978-1", "A Wizard of Earthsea", "Fantasy", "Parnassus");
+        t.addAuthor(a);
+        db.addBookTitle(t);
+        db.addBookItem(new BookItem("B1", t, LocalDate.of(2019, 3, 14)));
+        Borrower ged = new Borrower(4, "Ged", "pw", "ged@roke.org");
+        Borrower tenar = new Borrower(5, "Tenar", "pw", "tenar@atuan.org");
+        db.addPerson(ged);
+        db.addPerson(tenar);
+        db.issueLoan(ged, db.findItemByBarcode("B1"));
+        db.placeHold(tenar, t);
+
+        LibrarySnapshot.checkpoint(db, snapshotPath);
+        assertEquals(1, journal.getEpoch());
+
+        // After the checkpoint: the return hands the copy to Tenar, and a second copy arrives
+        db.returnLoan(db.findItemByBarcode("B1"));
+        db.addBookItem(new BookItem("B2", t));
+        db.issueLoan(ged, db.findItemByBarcode("B2"));
+        db.renameBookTitle(t, "A Wizard of Earthsea (50th Anniversary)");
+        String live = DatabaseState.of(db);
+        journal.close();
+
+        assertEquals(live, DatabaseState.of(recover(snapshotPath, journalPath)));
+    }
+
+    @Test
+    void archivedHistoriesSurviveASnapshotOnlyForTheirOwner() throws IOException {
+        Path snapshotPath = dir.resolve("library.snapshot");
+        LibraryDatabase db = new LibraryDatabase(true);
+        BookTitle t = new BookTitle("978-1", "Tehanu", "Fantasy", "Atheneum");
+        db.addBookTitle(t);
+        BookItem copy = new BookItem("B1", t);
+        db.addBookItem(copy);
+        Borrower gone = new Borrower(4, "Ged", "pw", "ged@roke.org");
+        Borrower stays = new Borrower(5, "Tenar", "pw", "tenar@atuan.org");
+        db.addPerson(gone);
+        db.addPerson(stays);
+        for (Borrower b : List.of(gone, stays, gone)) {
+            db.issueLoan(b, copy);
+            db.returnLoan(copy);
+        }
+        db.removePerson(gone);
+        Borrower reused = new Borrower(4, "Therru", "pw", "therru@gont.org");
+        db.addPerson(reused);
+        db.issueLoan(reused, copy);
+        db.returnLoan(copy);
+        db.issueLoan(stays, copy);
+        String live = DatabaseState.of(db);
+
+        LibrarySnapshot.write(db, 1, snapshotPath);
+        LibraryDatabase loaded = new LibraryDatabase(true);
+        LibrarySnapshot.load(snapshotPath, loaded);
+        assertEquals(live, DatabaseState.of(loaded));
+        assertEquals(1, ((Borrower) loaded.findPersonById(4)).getLoanHistorySize());
+        assertEquals(2, ((Borrower) loaded.findPersonById(5)).getLoanHistorySize());
+        assertEquals(2, loaded.getLoanArchive().size());
+    }
+
+    @Test
+    void backgroundTaskCheckpointsOnceTheJournalIsBigEnough() throws Exception {
+        Path journalPath = dir.resolve("library.journal");
+        Path snapshotPath = dir.resolve("library.snapshot");
+        LibraryDatabase db = new LibraryDatabase(true);
+        LibraryJournal journal = open(journalPath);
+        db.attachJournal(journal);
+        assertFalse(db.checkpointIfDue(snapshotPath, 1));
+
+        db.startCheckpoints(snapshotPath, 1024, 10);
+        BookTitle t = new BookTitle("978-1", "Tehanu", "Fantasy", "Atheneum");
+        db.addBookTitle(t);
+        for (int i = 0; i < 100 && journal.getEpoch() == 0; i++) {
+            db.addBookItem(new BookItem("B" + i, t));
+            Thread.sleep(5);
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (journal.getEpoch() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        db.stopCheckpoints();
+        assertTrue(journal.getEpoch() > 0);
+        assertTrue(Files.exists(snapshotPath));
+
+        db.addPerson(new Borrower(4, "Ged", "pw", "ged@roke.org"));
+        String live = DatabaseState.of(db);
+        journal.close();
+        assertEquals(live, DatabaseState.of(recover(snapshotPath, journalPath)));
+    }
+
+    @Test
+    void checkpointsDuringCirculationLoseNoRecords() throws Exception {
+        Path journalPath = dir.resolve("library.journal");
+        Path snapshotPath = dir.resolve("library.snapshot");
+        LibraryDatabase db = new LibraryDatabase(true);
+        LibraryJournal journal = open(journalPath);
+        db.attachJournal(journal);
+
+        List<BookTitle> titles = new ArrayList<>();
+        List<BookItem> items = new ArrayList<>();
+        List<Borrower> borrowers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BookTitle t = new BookTitle("978-" + i, "Title " + i, "Genre", "Publisher");
+            db.addBookTitle(t);
+            titles.add(t);
+            for (int k = 0; k < 2; k++) {
+                BookItem item = new BookItem("B" + i + "-" + k, t);
+                db.addBookItem(item);
+                items.add(item);
+            }
+        }
+        for (int i = 0; i < 20; i++) {
+            Borrower b = new Borrower(100 + i, "Borrower " + i, "pw", "b" + i + "@lib.com");
+            db.addPerson(b);
+            borrowers.add(b);
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Thread> desks = new ArrayList<>();
+        for (int d = 0; d < 3; d++) {
+            Random rnd = new Random(d);
+            int desk = d;
+            desks.add(new Thread(() -> {
+                for (int step = 0; step < 5_000; step++) {
+                    BookItem item = items.get(rnd.nextInt(items.size()));
+                    Borrower b = borrowers.get(rnd.nextInt(borrowers.size()));
+                    switch (rnd.nextInt(5)) {
+                        case 0, 1 -> db.issueLoan(b, item);
+                        case 2, 3 -> db.returnLoan(item, today);
+                        default -> {
+                            // Each desk adds copies and patrons of its own, so new entities race the snapshot too
+                            if (rnd.nextInt(10) == 0) {
+                                BookTitle t = titles.get(rnd.nextInt(titles.size()));
+                                db.addBookItem(new BookItem("N" + desk + "-" + step, t));
+                                db.addPerson(new Borrower(1000 + desk * 10_000 + step, "New", "pw", "n@lib.com"));
+                            } else {
+                                db.placeHold(b, titles.get(rnd.nextInt(titles.size())), today, 0);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        desks.forEach(Thread::start);
+        int checkpoints = 0;
+        while (desks.stream().anyMatch(Thread::isAlive)) {
+            LibrarySnapshot.checkpoint(db, snapshotPath);
+            checkpoints++;
+        }
+        for (Thread t : desks) {
+            t.join();
+        }
+        String live = DatabaseState.of(db);
+        journal.close();
+
+        assertTrue(checkpoints > 0 && Files.exists(snapshotPath));
+        assertEquals(live, DatabaseState.of(recover(snapshotPath, journalPath)));
+    }
+}
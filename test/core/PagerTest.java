@@ -0,0 +1,68 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import org.junit.jupiter.api.Test;
+
+class PagerTest {
+
+    // Output of paging through 'rows' with the given keystrokes, one per line
+    private static String page(int pageSize, int rows, String keys) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            list.add(i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        Pager pager = new Pager(new Scanner(keys), out, pageSize);
+        pager.show("Numbers", "N", list, (n, sb) -> sb.append("row ").append(n));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void singlePageNeedsNoInput() {
+        String out = page(5, 3, "");
+        assertTrue(out.contains("row 1\nrow 2\nrow 3\n"));
+        assertTrue(out.contains("Page 1/1 (3 rows)"));
+        assertFalse(out.contains("[p]rev"));
+        assertTrue(page(5, 0, "").contains("Nothing to show."));
+    }
+
+    @Test
+    void navigatesByCommand() {
+        // Next, jump to 4, back one, then past the last page
+        String out = page(3, 10, "\ng 4\np\nn\nn\n");
+        List<String> pages = new ArrayList<>();
+        for (String line : out.split("\n")) {
+            int at = line.indexOf("Page ");
+            if (at >= 0)
+                pages.add(line.substring(at, line.indexOf(' ', at + 5)));
+        }
+        assertEquals(List.of("Page 1/4", "Page 2/4", "Page 4/4", "Page 3/4", "Page 4/4"), pages);
+        assertTrue(out.contains("row 10\n"));
+    }
+
+    @Test
+    void quitsAndReportsBadJumps() {
+        String out = page(2, 10, "g x\nq\n");
+        assertTrue(out.contains("Usage: g <page>"));
+        assertFalse(out.contains("row 3"));
+    }
+
+    @Test
+    void cellsArePaddedOrTruncated() {
+        StringBuilder sb = new StringBuilder();
+        Pager.cell(sb, "Earthsea", 10);
+        Pager.cell(sb, "The Left Hand of Darkness", 10);
+        Pager.cell(sb, 42, 4);
+        assertEquals("Earthsea   | The Lef... | 42   | ", sb.toString());
+    }
+}
@@ -0,0 +1,142 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookItem;
+import entities.BookTitle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import transactions.Hold;
+import transactions.Loan;
+import users.Borrower;
+
+class ReferentialIntegrityTest {
+
+    private LibraryDatabase db = new LibraryDatabase(true);
+
+    private BookTitle title(String isbn, int copies) {
+        BookTitle t = new BookTitle(isbn, "Title " + isbn, "Genre", "Publisher");
+        db.addBookTitle(t);
+        for (int k = 0; k < copies; k++) {
+            db.addBookItem(new BookItem(isbn + "-" + k, t));
+        }
+        return t;
+    }
+
+    @Test
+    void titleWithACopyOnLoanIsKeptWhole() {
+        BookTitle t = title("978-1", 3);
+        Borrower b = new Borrower(4, "Ged", "pw", "ged@roke.org");
+        db.addPerson(b);
+        db.issueLoan(b, db.findItemByBarcode("978-1-2"));
+
+        assertFalse(db.removeBookTitle(t));
+        assertSame(t, db.findBookByISBN("978-1"));
+        assertEquals(3, t.getCopies().size());
+        for (int k = 0; k < 3; k++) {
+            assertSame(t, db.findItemByBarcode("978-1-" + k).getBookTitle());
+        }
+        assertFalse(db.removeBookItem(db.findItemByBarcode("978-1-2")));
+        assertFalse(db.removePerson(b));
+
+        // A desk still holding a removed copy can't lend it
+        BookItem spare = db.findItemByBarcode("978-1-0");
+        assertTrue(db.removeBookItem(spare));
+        assertNull(db.issueLoan(b, spare));
+    }
+
+    @Test
+    void removingATitleCascadesToCopiesHoldsAndIndexes() {
+        Author a = new Author(1, "Ursula K. Le Guin");
+        db.addAuthor(a);
+        BookTitle t = new BookTitle("978-1", "The Farthest Shore", "Fantasy", "Atheneum");
+        t.addAuthor(a);
+        db.addBookTitle(t);
+        db.addBookItem(new BookItem("B1", t));
+        Borrower holder = new Borrower(4, "Arren", "pw", "arren@enlad.org");
+        db.addPerson(holder);
+        Hold h = db.placeHold(holder, t);
+
+        assertTrue(db.removeBookTitle(t));
+        assertNull(db.findBookByISBN("978-1"));
+        assertNull(db.findItemByBarcode("B1"));
+        assertTrue(db.getInventory().isEmpty());
+        assertTrue(db.searchCatalog("farthest").isEmpty());
+        assertTrue(db.findTitlesByAuthor(a).isEmpty());
+        assertFalse(h.isOpen());
+        assertFalse(db.removeBookTitle(t));
+
+        assertTrue(db.removePerson(holder));
+        assertNull(db.findPersonById(4));
+    }
+
+    @Test
+    void removingAnAuthorTakesThemOffTheirTitles() {
+        Author a = new Author(1, "Ursula K. Le Guin");
+        db.addAuthor(a);
+        BookTitle t = new BookTitle("978-1", "The Other Wind", "Fantasy", "Harcourt");
+        t.addAuthor(a);
+        db.addBookTitle(t);
+        db.removeAuthor(a);
+        assertTrue(t.getAuthors().isEmpty());
+        assertNull(db.findAuthorByName("Ursula K. Le Guin"));
+    }
+
+    // Desks issue while an admin removes titles and copies: an open loan must never point at a removed copy
+    @Test
+    void removersAreAtomicWithIssues() throws Exception {
+        List<Borrower> borrowers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Borrower b = new Borrower(100 + i, "Borrower " + i, "pw", "b" + i + "@lib.com");
+            db.addPerson(b);
+            borrowers.add(b);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> desks = new ArrayList<>();
+        for (int d = 0; d < 3; d++) {
+            Random rnd = new Random(d);
+            desks.add(new Thread(() -> {
+                while (!done.get()) {
+                    BookItem item = db.findItemByBarcode(rnd.nextInt(20) + "-" + rnd.nextInt(3));
+                    if (item != null)
+                        db.issueLoan(borrowers.get(rnd.nextInt(borrowers.size())), item);
+                    if (rnd.nextInt(4) == 0 && item != null)
+                        db.returnLoan(item);
+                }
+            }));
+        }
+        desks.forEach(Thread::start);
+        Random rnd = new Random(42);
+        for (int round = 0; round < 3000; round++) {
+            String isbn = String.valueOf(rnd.nextInt(20));
+            BookTitle t = db.findBookByISBN(isbn);
+            if (t == null) {
+                title(isbn, 3);
+            } else if (rnd.nextBoolean()) {
+                db.removeBookTitle(t);
+            } else {
+                BookItem item = db.findItemByBarcode(isbn + "-" + rnd.nextInt(3));
+                if (item != null && db.removeBookItem(item))
+                    db.addBookItem(new BookItem(item.getBarcode(), t));
+            }
+        }
+        done.set(true);
+        for (Thread t : desks) {
+            t.join();
+        }
+
+        for (Loan loan : db.getAllLoans()) {
+            BookItem item = loan.getBookItem();
+            assertSame(item, db.findItemByBarcode(item.getBarcode()), "loan on a removed copy");
+            assertSame(item.getBookTitle(), db.findBookByISBN(item.getBookTitle().getIsbn()), "loan on a removed title");
+        }
+    }
+}
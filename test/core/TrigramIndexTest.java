@@ -0,0 +1,86 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.Author;
+import entities.BookTitle;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+
+    private static TrigramIndex of(String... terms) {
+        TrigramIndex index = new TrigramIndex();
+        for (String t : terms) {
+            index.add(t);
+        }
+        return index;
+    }
+
+    @Test
+    void findsTermsWithinTheAllowedEdits() {
+        TrigramIndex index = of("tolkien", "tolstoy", "token", "hobbit", "habit");
+
+        Map<String, Integer> hits = index.similar("tolkein", 2);
+        assertEquals(Integer.valueOf(1), hits.get("tolkien")); // adjacent swap
+        assertTrue(!hits.containsKey("tolstoy"));
+
+        assertEquals(Map.of("hobbit", 0, "habit", 2), index.similar("hobbit", 2));
+        assertEquals(Map.of("hobbit", 1, "habit", 1), index.similar("hobit", 1));
+        assertEquals(Map.of("token", 0), index.similar("token", 0));
+        assertTrue(index.similar("dragon", 2).isEmpty());
+    }
+
+    @Test
+    void repeatedLookupsAgree() {
+        TrigramIndex index = new TrigramIndex();
+        for (int i = 0; i < 500; i++) {
+            index.add("word" + (char) ('a' + i % 26) + (char) ('a' + i / 26));
+        }
+        Map<String, Integer> first = index.similar("wordqq", 1);
+        assertTrue(first.containsKey("wordqq"));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(first, index.similar("wordqq", 1));
+        }
+    }
+
+    @Test
+    void termsStayUntilTheirLastReferenceGoes() {
+        TrigramIndex index = of("earthsea", "earthsea");
+        index.remove("earthsea");
+        assertEquals(Map.of("earthsea", 1), index.similar("earthsee", 1));
+        index.remove("earthsea");
+        assertTrue(index.similar("earthsee", 1).isEmpty());
+
+        // A freed ID is reused without stale postings
+        index.add("archipelago");
+        assertEquals(Map.of("archipelago", 1), index.similar("archipelgo", 2));
+        assertTrue(index.similar("earthsee", 2).isEmpty());
+    }
+
+    @Test
+    void distanceCountsASwapAsOneEdit() {
+        assertEquals(0, TrigramIndex.distance("ursula", "ursula", 2));
+        assertEquals(1, TrigramIndex.distance("ursula", "urusla", 2));
+        assertEquals(2, TrigramIndex.distance("ursula", "ursa", 2));
+        assertEquals(3, TrigramIndex.distance("ursula", "xyz", 2)); // gives up at max + 1
+    }
+
+    @Test
+    void fuzzyCatalogSearchToleratesTypos() {
+        LibraryDatabase db = new LibraryDatabase(true);
+        Author leGuin = new Author(1, "Ursula Le Guin");
+        db.addAuthor(leGuin);
+        BookTitle wizard = new BookTitle("111", "A Wizard of Earthsea", "Fantasy", "Parnassus");
+        wizard.addAuthor(leGuin);
+        db.addBookTitle(wizard);
+        db.addBookTitle(new BookTitle("222", "The Hobbit", "Fantasy", "Allen"));
+
+        assertEquals(List.of(wizard), db.searchCatalogFuzzy("wizzard earthsae"));
+        assertEquals(List.of(wizard), db.searchCatalogFuzzy("ursla"));
+        assertTrue(db.searchCatalogFuzzy("wizzard hobbit").isEmpty());
+        assertEquals(List.of(leGuin), db.findAuthorsLike("ursla le gwin"));
+    }
+}
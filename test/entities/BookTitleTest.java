@@ -0,0 +1,126 @@
+package entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import enums.BookStatus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BookTitleTest {
+    private final BookTitle title = new BookTitle("978-1", "The Lathe of Heaven", "SF", "Scribner");
+
+    private List<BookItem> copies(int n) {
+        List<BookItem> items = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            BookItem item = new BookItem("B" + i, title);
+            title.addCopy(item);
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    void firstCopyOnTheShelfIsTheEarliestAdded() {
+        List<BookItem> items = copies(200);
+        assertSame(items.get(0), title.findAvailableCopy());
+        for (int i = 0; i < 130; i++) {
+            items.get(i).setStatus(BookStatus.LOANED);
+        }
+        assertSame(items.get(130), title.findAvailableCopy());
+        assertEquals(70, title.getAvailableCount());
+        assertEquals(130, title.getCopyCount(BookStatus.LOANED));
+
+        items.get(5).setStatus(BookStatus.AVAILABLE);
+        assertSame(items.get(5), title.findAvailableCopy());
+        for (int i = 130; i < 200; i++) {
+            items.get(i).setStatus(BookStatus.LOST);
+        }
+        items.get(5).setStatus(BookStatus.REFERENCE_ONLY);
+        assertNull(title.findAvailableCopy());
+        assertEquals(0, title.getAvailableCount());
+    }
+
+    @Test
+    void removalsAndCompactionKeepTheOrder() {
+        List<BookItem> items = copies(100);
+        for (int i = 0; i < 100; i += 3) {
+            items.get(i).setStatus(BookStatus.LOANED);
+        }
+        // Remove most copies, which compacts the slots more than once
+        List<BookItem> kept = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (i % 7 == 0) {
+                kept.add(items.get(i));
+            } else {
+                title.removeCopy(items.get(i));
+            }
+        }
+        assertEquals(kept, title.getCopies());
+        assertEquals(kept.size(), title.getTotalCopies());
+        BookItem firstShelved = kept.stream().filter(i -> i.getStatus() == BookStatus.AVAILABLE).findFirst().get();
+        assertSame(firstShelved, title.findAvailableCopy());
+        assertEquals(kept.stream().filter(i -> i.getStatus() == BookStatus.AVAILABLE).count(),
+                title.getAvailableCount());
+
+        BookItem late = new BookItem("LATE", title);
+        title.addCopy(late);
+        for (BookItem i : kept) {
+            i.setStatus(BookStatus.LOANED);
+        }
+        assertSame(late, title.findAvailableCopy());
+        title.removeCopy(late);
+        assertNull(title.findAvailableCopy());
+        assertEquals(0, title.getAvailableCount());
+    }
+
+    // Desks flipping copies concurrently: the count is never negative and ends exact
+    @Test
+    void countsStayExactUnderConcurrentTransitions() throws Exception {
+        List<BookItem> items = copies(8);
+        AtomicInteger negative = new AtomicInteger();
+        List<Thread> desks = new ArrayList<>();
+        for (int d = 0; d < 4; d++) {
+            Random rnd = new Random(d);
+            desks.add(new Thread(() -> {
+                for (int step = 0; step < 50_000; step++) {
+                    BookItem item = items.get(rnd.nextInt(items.size()));
+                    if (rnd.nextBoolean()) {
+                        item.compareAndSetStatus(BookStatus.AVAILABLE, BookStatus.LOANED);
+                    } else {
+                        item.compareAndSetStatus(BookStatus.LOANED, BookStatus.AVAILABLE);
+                    }
+                    int available = title.getAvailableCount();
+                    if (available < 0 || available > items.size())
+                        negative.incrementAndGet();
+                }
+            }));
+        }
+        desks.forEach(Thread::start);
+        for (Thread t : desks) {
+            t.join();
+        }
+        assertEquals(0, negative.get());
+        long shelved = items.stream().filter(i -> i.getStatus() == BookStatus.AVAILABLE).count();
+        assertEquals(shelved, title.getAvailableCount());
+        assertEquals(items.size() - shelved, title.getCopyCount(BookStatus.LOANED));
+        assertTrue(shelved == 0 || title.findAvailableCopy().getStatus() == BookStatus.AVAILABLE);
+    }
+
+    @Test
+    void listenerHearsTheFirstAndLastCopyOnTheShelf() {
+        List<Boolean> heard = new ArrayList<>();
+        title.setAvailabilityListener((t, available) -> heard.add(available));
+        List<BookItem> items = copies(2);
+        items.get(0).setStatus(BookStatus.LOANED);
+        items.get(1).setStatus(BookStatus.LOANED);
+        items.get(0).setStatus(BookStatus.AVAILABLE);
+        title.removeCopy(items.get(0));
+        assertEquals(List.of(false, true, false, true, false), heard);
+    }
+}
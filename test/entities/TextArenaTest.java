@@ -0,0 +1,90 @@
+package entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+// The compact catalog stores: arena text and dictionary-coded values. The
+// entity tests also run with -Dlibrary.compact=true (see the surefire configuration).
+class TextArenaTest {
+
+    @Test
+    void textRoundTripsWhateverItsLength() {
+        List<String> texts = List.of("", "978-0-06-093546-7", "Ténar of Atuan — 地海", "x".repeat(127),
+                "y".repeat(128), "z".repeat(20_000));
+        List<Integer> refs = new ArrayList<>();
+        for (String s : texts) {
+            refs.add(TextArena.put(s));
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(texts.get(i), TextArena.get(refs.get(i)));
+        }
+    }
+
+    @Test
+    void fillsPagesAndGivesHugeTextItsOwn() {
+        long before = TextArena.allocatedBytes();
+        String huge = "h".repeat((1 << 20) + 10);
+        int big = TextArena.put(huge);
+        // Enough small records to spill into a fresh page
+        List<Integer> refs = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            refs.add(TextArena.put("barcode-" + i));
+        }
+        assertEquals(huge, TextArena.get(big));
+        for (int i = 0; i < refs.size(); i += 997) {
+            assertEquals("barcode-" + i, TextArena.get(refs.get(i)));
+        }
+        assertTrue(TextArena.allocatedBytes() >= before + huge.length() + (1 << 20));
+    }
+
+    @Test
+    void dictionaryCodesEachValueOnce() throws Exception {
+        ValueDictionary genres = new ValueDictionary();
+        assertEquals(-1, genres.encode(null));
+        assertNull(genres.decode(-1));
+        int fantasy = genres.encode("Fantasy");
+        assertEquals(fantasy, genres.encode(new String("Fantasy")));
+        assertEquals("Fantasy", genres.decode(fantasy));
+
+        // Racing encoders agree on every code
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String v = "Genre " + i;
+                    seen.add(v + "=" + genres.encode(v));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(501, genres.size());
+        assertEquals(500, seen.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("Genre " + i, genres.decode(genres.encode("Genre " + i)));
+        }
+    }
+
+    @Test
+    void titlesKeepTheirTextInEitherMode() {
+        BookTitle t = new BookTitle("978-1", "The Eye of the Heron", "Science Fiction", "Harper");
+        BookItem copy = new BookItem("B-1", t);
+        assertEquals("978-1", t.getIsbn());
+        assertEquals("The Eye of the Heron", t.getTitle());
+        assertEquals("Science Fiction", t.getGenre());
+        assertEquals("Harper", t.getPublisher());
+        assertEquals("B-1", copy.getBarcode());
+        t.setTitle("The Eye of the Heron (reissue)");
+        assertEquals("The Eye of the Heron (reissue)", t.getTitle());
+    }
+}
@@ -0,0 +1,137 @@
+package transactions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import users.Borrower;
+
+class LoanArchiveTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 1);
+
+    private final BookTitle title = new BookTitle("978-1", "The Dispossessed", "SF", "Harper");
+    private final BookItem copy = new BookItem("B1", title);
+
+    private Loan returned(int id, Borrower b, int dueIn, int returnedAfter) {
+        Loan loan = new Loan(id, b, copy, DAY, DAY.plusDays(dueIn));
+        b.addLoan(loan);
+        loan.markReturned(DAY.plusDays(returnedAfter));
+        return loan;
+    }
+
+    private static List<Integer> history(Borrower b) {
+        List<Integer> ids = new ArrayList<>();
+        b.forEachArchivedLoan((id, borrowerId, item, issue, due, returned) -> ids.add(id));
+        return ids;
+    }
+
+    @Test
+    void rowsKeepEveryDate() {
+        LoanArchive archive = new LoanArchive();
+        Borrower b = new Borrower(4, "Shevek", "pw", "shevek@anarres.org");
+        b.archiveLoan(returned(7, b, 14, 30), archive);
+
+        LoanArchive.Snapshot snap = archive.snapshot();
+        assertEquals(1, snap.size());
+        assertEquals(7, snap.loanId(0));
+        assertEquals(4, snap.borrowerId(0));
+        assertSame(copy, snap.item(0));
+        assertEquals(DAY.toEpochDay(), snap.issueDay(0));
+        assertEquals(DAY.plusDays(14).toEpochDay(), snap.dueDay(0));
+        assertEquals(DAY.plusDays(30).toEpochDay(), snap.returnDay(0));
+        assertEquals(1, b.getLoanHistorySize());
+        assertEquals(DAY.plusDays(30), b.getLoanHistory().get(0).getReturnDate());
+    }
+
+    @Test
+    void loansTooLongForARowStayInTheHistoryList() {
+        LoanArchive archive = new LoanArchive();
+        Borrower b = new Borrower(4, "Shevek", "pw", "shevek@anarres.org");
+        Loan ancient = returned(1, b, 14, 40_000);
+        assertFalse(LoanArchive.fits(ancient));
+        assertThrows(IllegalArgumentException.class, () -> archive.append(ancient));
+
+        b.archiveLoan(ancient, archive);
+        assertEquals(0, archive.size());
+        assertEquals(1, b.getLoanHistorySize());
+        assertSame(ancient, b.getLoanHistory().get(0));
+    }
+
+    @Test
+    void historiesAreSeparatedByBorrowerAndByReusedId() {
+        LoanArchive archive = new LoanArchive();
+        Borrower first = new Borrower(4, "Shevek", "pw", "shevek@anarres.org");
+        Borrower other = new Borrower(5, "Takver", "pw", "takver@anarres.org");
+        first.archiveLoan(returned(1, first, 14, 3), archive);
+        other.archiveLoan(returned(2, other, 14, 3), archive);
+        first.archiveLoan(returned(3, first, 14, 3), archive);
+
+        // A later person given the same ID doesn't inherit the first one's rows
+        Borrower reused = new Borrower(4, "Sadik", "pw", "sadik@anarres.org");
+        reused.archiveLoan(returned(4, reused, 14, 3), archive);
+
+        assertEquals(List.of(1, 3), history(first));
+        assertEquals(List.of(2), history(other));
+        assertEquals(List.of(4), history(reused));
+        assertFalse(reused.ownsArchivedRow(0, 4));
+        assertTrue(reused.ownsArchivedRow(3, 4));
+    }
+
+    // Walking one history follows the borrower's chain and doesn't hold the
+    // archive, so other borrowers' returns go ahead meanwhile
+    @Test
+    void historyWalkDoesNotBlockAppends() {
+        LoanArchive archive = new LoanArchive();
+        Borrower reader = new Borrower(4, "Shevek", "pw", "shevek@anarres.org");
+        Borrower other = new Borrower(5, "Takver", "pw", "takver@anarres.org");
+        for (int i = 0; i < 2000; i++) {
+            Borrower b = (i % 100 == 0) ? reader : other;
+            b.archiveLoan(returned(i, b, 14, 3), archive);
+        }
+        List<Integer> seen = new ArrayList<>();
+        boolean[] appended = new boolean[1];
+        reader.forEachArchivedLoan((id, borrowerId, item, issue, due, returned) -> {
+            if (seen.isEmpty()) {
+                Thread t = new Thread(() -> other.archiveLoan(returned(5000, other, 14, 3), archive));
+                t.start();
+                try {
+                    t.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                appended[0] = !t.isAlive();
+            }
+            seen.add(id);
+        });
+        assertTrue(appended[0]);
+        assertEquals(20, seen.size());
+        assertEquals(1900, seen.get(19));
+        assertEquals(2001, archive.size());
+    }
+
+    @Test
+    void trimmingKeepsRowsAndEarlierSnapshots() {
+        LoanArchive archive = new LoanArchive();
+        Borrower b = new Borrower(4, "Shevek", "pw", "shevek@anarres.org");
+        for (int i = 0; i < 3000; i++) {
+            b.archiveLoan(returned(i, b, 14, i % 100), archive);
+        }
+        LoanArchive.Snapshot before = archive.snapshot();
+        archive.trimToSize();
+        b.archiveLoan(returned(3000, b, 14, 1), archive);
+
+        assertEquals(3000, before.size());
+        assertEquals(3001, archive.size());
+        assertEquals(DAY.plusDays(2999 % 100).toEpochDay(), before.returnDay(2999));
+        assertEquals(3001, history(b).size());
+        assertEquals(3000, history(b).get(3000));
+    }
+}
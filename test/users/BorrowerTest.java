@@ -0,0 +1,70 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entities.BookItem;
+import entities.BookTitle;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import transactions.Loan;
+import transactions.LoanArchive;
+
+class BorrowerTest {
+    private final BookTitle title = new BookTitle("978-1", "Tehanu", "Fantasy", "Atheneum");
+
+    private Loan lend(Borrower b, int id) {
+        Loan loan = new Loan(id, b, new BookItem("B" + id, title));
+        b.addLoan(loan);
+        return loan;
+    }
+
+    @Test
+    void borrowingLimitCountsOnlyOpenLoans() {
+        Borrower b = new Borrower(4, "Tenar", "pw", "tenar@atuan.org");
+        Loan first = null;
+        for (int i = 1; i <= b.getMaxBookLimit(); i++) {
+            assertTrue(b.canBorrow());
+            Loan loan = lend(b, i);
+            if (first == null)
+                first = loan;
+        }
+        assertFalse(b.canBorrow());
+        assertEquals(b.getMaxBookLimit(), b.getActiveLoanCount());
+
+        first.markReturned();
+        assertTrue(b.canBorrow());
+        assertEquals(b.getMaxBookLimit() - 1, b.getActiveLoanCount());
+        assertEquals(first.getLoanID() + 1, b.getActiveLoans().get(0).getLoanID());
+    }
+
+    @Test
+    void historyKeepsArchivedLoansFirst() {
+        Borrower b = new Borrower(4, "Tenar", "pw", "tenar@atuan.org");
+        LoanArchive archive = new LoanArchive();
+        Loan old = lend(b, 1);
+        old.markReturned(LocalDate.of(2024, 1, 2));
+        b.archiveLoan(old, archive);
+        lend(b, 2);
+
+        assertEquals(2, b.getLoanHistorySize());
+        assertEquals(1, b.getLoanHistory().get(0).getLoanID());
+        assertEquals(LocalDate.of(2024, 1, 2), b.getLoanHistory().get(0).getReturnDate());
+        assertEquals(2, b.getLoanHistory().get(1).getLoanID());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            b.printLoanHistory();
+        } finally {
+            System.setOut(console);
+        }
+        String printed = bytes.toString();
+        assertTrue(printed.contains("Returned: 2024-01-02"));
+        assertTrue(printed.indexOf("Returned: 2024-01-02") < printed.indexOf("Due: "));
+    }
+}